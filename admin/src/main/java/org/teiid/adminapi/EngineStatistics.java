@@ -67,6 +67,18 @@ public interface EngineStatistics extends AdminObject, DomainAware {
 	 */
 	long getDiskSpaceUsedInMB();
 	
+	/**
+	 * Total number of batches evicted from heap memory by the buffer manager
+	 * @return
+	 */
+	long getEvictionCount();
+	
+	/**
+	 * Fraction of buffer manager batch reads that did not require a cache read
+	 * @return
+	 */
+	double getHitRatio();
+	
 	/**
 	 * Current active plan count
 	 * @return
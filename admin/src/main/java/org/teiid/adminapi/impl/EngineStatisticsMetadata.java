@@ -30,6 +30,8 @@ public class EngineStatisticsMetadata extends AdminObjectImpl implements EngineS
 	private long cacheWriteCount;
 	private long cacheReadCount;	
 	private long diskSpaceUsedInMB;
+	private long evictionCount;
+	private double hitRatio;
 	private int activePlanCount;
 	private int waitPlanCount;
 	private int maxWaitPlanCount;
@@ -74,6 +76,16 @@ public class EngineStatisticsMetadata extends AdminObjectImpl implements EngineS
 		return diskSpaceUsedInMB;
 	}
 
+	@Override
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	@Override
+	public double getHitRatio() {
+		return hitRatio;
+	}
+
 	@Override
 	public int getActivePlanCount() {
 		return activePlanCount;
@@ -121,6 +133,14 @@ public class EngineStatisticsMetadata extends AdminObjectImpl implements EngineS
 		this.diskSpaceUsedInMB = diskSpaceUsedInMB;
 	}
 
+	public void setEvictionCount(long evictionCount) {
+		this.evictionCount = evictionCount;
+	}
+
+	public void setHitRatio(double hitRatio) {
+		this.hitRatio = hitRatio;
+	}
+
 	public void setActivePlanCount(int activePlanCount) {
 		this.activePlanCount = activePlanCount;
 	}
@@ -144,6 +164,8 @@ public class EngineStatisticsMetadata extends AdminObjectImpl implements EngineS
 		sb.append("; cacheWriteCount ").append(cacheWriteCount); //$NON-NLS-1$
 		sb.append("; cacheReadCount ").append(cacheReadCount); //$NON-NLS-1$	
 		sb.append("; diskSpaceUsedInMB ").append(diskSpaceUsedInMB); //$NON-NLS-1$
+		sb.append("; evictionCount ").append(evictionCount); //$NON-NLS-1$
+		sb.append("; hitRatio ").append(hitRatio); //$NON-NLS-1$
 		sb.append("; activePlanCount ").append(activePlanCount); //$NON-NLS-1$
 		sb.append("; waitPlanCount ").append(waitPlanCount); //$NON-NLS-1$
 		sb.append("; maxWaitPlanCount ").append(maxWaitPlanCount); //$NON-NLS-1$
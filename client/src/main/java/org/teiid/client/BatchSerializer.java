@@ -18,10 +18,13 @@
 
 package org.teiid.client;
 
+import java.io.ByteArrayInputStream;
 import java.io.Externalizable;
 import java.io.IOException;
 import java.io.ObjectInput;
+import java.io.ObjectInputStream;
 import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
 import java.io.ObjectStreamConstants;
 import java.math.BigDecimal;
 import java.math.BigInteger;
@@ -33,9 +36,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TimeZone;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
 import org.teiid.core.TeiidRuntimeException;
 import org.teiid.core.types.ArrayImpl;
@@ -45,6 +53,7 @@ import org.teiid.core.types.ClobType;
 import org.teiid.core.types.DataTypeManager;
 import org.teiid.core.types.GeometryType;
 import org.teiid.core.types.XMLType;
+import org.teiid.core.util.MultiArrayOutputStream;
 import org.teiid.jdbc.JDBCPlugin;
 
 
@@ -62,12 +71,25 @@ import org.teiid.jdbc.JDBCPlugin;
  *   uses a safer date/time serialization
  * <li>version 3: starts with 8.6 and adds better repeated string performance
  * <li>version 4: starts with 8.10 and adds the geometry type
+ * <li>version 5: negotiated via the {@link org.teiid.net.socket.Handshake} and adds delta encoded
+ *   integral columns, dictionary encoding of all repeated strings, and optional deflate compression
+ *   of the column data
  * </ul>
  */
 public class BatchSerializer {
 
 	public static final byte VERSION_GEOMETRY = (byte)4;
-    static final byte CURRENT_VERSION = VERSION_GEOMETRY;
+	public static final byte VERSION_COLUMNAR = (byte)5;
+    public static final byte CURRENT_VERSION = VERSION_COLUMNAR;
+    
+    private static final byte COMPRESSED = 1;
+    private static final Set<String> COMPRESSIBLE_TYPES = new HashSet<String>(Arrays.asList(
+    		DataTypeManager.DefaultDataTypes.BIG_DECIMAL, DataTypeManager.DefaultDataTypes.BIG_INTEGER, DataTypeManager.DefaultDataTypes.BOOLEAN, 
+    		DataTypeManager.DefaultDataTypes.BYTE, DataTypeManager.DefaultDataTypes.CHAR, DataTypeManager.DefaultDataTypes.DATE,
+    		DataTypeManager.DefaultDataTypes.DOUBLE, DataTypeManager.DefaultDataTypes.FLOAT, DataTypeManager.DefaultDataTypes.INTEGER,
+    		DataTypeManager.DefaultDataTypes.LONG, DataTypeManager.DefaultDataTypes.SHORT, DataTypeManager.DefaultDataTypes.TIME,
+    		DataTypeManager.DefaultDataTypes.TIMESTAMP, DataTypeManager.DefaultDataTypes.STRING, DataTypeManager.DefaultDataTypes.VARBINARY,
+    		DataTypeManager.DefaultDataTypes.NULL));
 
 	private BatchSerializer() {} // Uninstantiable
 
@@ -83,12 +105,14 @@ public class BatchSerializer {
         serializers.put(DataTypeManager.DefaultDataTypes.DATE,          new ColumnSerializer[] {new DateColumnSerializer(), new DateColumnSerializer1(), new DateColumnSerializer()});
         serializers.put(DataTypeManager.DefaultDataTypes.DOUBLE,        new ColumnSerializer[] {new DoubleColumnSerializer()});
         serializers.put(DataTypeManager.DefaultDataTypes.FLOAT,         new ColumnSerializer[] {new FloatColumnSerializer()});
-        serializers.put(DataTypeManager.DefaultDataTypes.INTEGER,       new ColumnSerializer[] {new IntColumnSerializer()});
-        serializers.put(DataTypeManager.DefaultDataTypes.LONG,          new ColumnSerializer[] {new LongColumnSerializer()});
+        ColumnSerializer intSerializer = new IntColumnSerializer();
+        serializers.put(DataTypeManager.DefaultDataTypes.INTEGER,       new ColumnSerializer[] {intSerializer, intSerializer, intSerializer, intSerializer, intSerializer, new DeltaColumnSerializer(false)});
+        ColumnSerializer longSerializer = new LongColumnSerializer();
+        serializers.put(DataTypeManager.DefaultDataTypes.LONG,          new ColumnSerializer[] {longSerializer, longSerializer, longSerializer, longSerializer, longSerializer, new DeltaColumnSerializer(true)});
         serializers.put(DataTypeManager.DefaultDataTypes.SHORT,         new ColumnSerializer[] {new ShortColumnSerializer()});
         serializers.put(DataTypeManager.DefaultDataTypes.TIME,          new ColumnSerializer[] {new TimeColumnSerializer(), new TimeColumnSerializer1(), new TimeColumnSerializer()});
         serializers.put(DataTypeManager.DefaultDataTypes.TIMESTAMP,     new ColumnSerializer[] {new TimestampColumnSerializer()});
-        serializers.put(DataTypeManager.DefaultDataTypes.STRING,     	new ColumnSerializer[] {defaultSerializer, new StringColumnSerializer1(), new StringColumnSerializer1(), new StringColumnSerializer3()});
+        serializers.put(DataTypeManager.DefaultDataTypes.STRING,     	new ColumnSerializer[] {defaultSerializer, new StringColumnSerializer1(), new StringColumnSerializer1(), new StringColumnSerializer3(), new StringColumnSerializer3(), new StringColumnSerializer5()});
         serializers.put(DataTypeManager.DefaultDataTypes.CLOB,  	   	new ColumnSerializer[] {defaultSerializer, new ClobColumnSerializer1()});
         serializers.put(DataTypeManager.DefaultDataTypes.BLOB,     		new ColumnSerializer[] {defaultSerializer, new BlobColumnSerializer1()});
         serializers.put(DataTypeManager.DefaultDataTypes.GEOMETRY,     	new ColumnSerializer[] {defaultSerializer, new GeometryColumnSerializer()});
@@ -360,6 +384,53 @@ public class BatchSerializer {
     	}
     }
 
+    /**
+     * Dictionary encodes all strings longer than a single character using
+     * variable length references.
+     */
+    private static class StringColumnSerializer5 extends StringColumnSerializer1 {
+    	private static final byte REPEATED_STRING = 0;
+    	@Override
+    	protected Object readObject(ObjectInput in, List<Object> cache, byte version)
+    			throws IOException, ClassNotFoundException {
+    		byte b = in.readByte();
+    		if (b == REPEATED_STRING) {
+    			return cache.get((int)readVarLong(in));
+    		}
+    		String val = null;
+    		if (b == ObjectStreamConstants.TC_STRING) {
+    			val = in.readUTF();
+    		} else {
+    			val = (String) in.readObject();
+    		}
+    		if (val.length() > 1) {
+    			cache.add(val);
+    		}
+    		return val;
+    	}
+    	
+    	@Override
+    	protected void writeObject(ObjectOutput out, Object obj,
+    			Map<Object, Integer> cache, byte version) throws IOException {
+    		String str = (String)obj;
+    		Integer val = cache.get(str);
+    		if (val != null) {
+    			out.writeByte(REPEATED_STRING);
+    			writeVarLong(out, val);
+    			return;
+    		} 
+    		if (str.length() > 1) {
+    			cache.put(str, cache.size());
+    		}
+    		super.writeObject(out, obj, cache, version);
+    	}
+    	
+    	@Override
+    	public boolean usesCache(byte version) {
+    		return true;
+    	}
+    }
+    
     private static class NullColumnSerializer1 extends ColumnSerializer {
     	@Override
     	public void writeColumn(ObjectOutput out, int col,
@@ -575,6 +646,74 @@ public class BatchSerializer {
         }
     }
 
+    /**
+     * Writes integral values as zig-zag variable length deltas from the previous non-null
+     * value in the column, which is compact for keys and other ordered or narrow values.
+     */
+    private static class DeltaColumnSerializer extends ColumnSerializer {
+    	private boolean isLong;
+    	
+    	public DeltaColumnSerializer(boolean isLong) {
+    		this.isLong = isLong;
+		}
+    	
+    	@Override
+    	public void writeColumn(ObjectOutput out, int col,
+    			List<? extends List<?>> batch, Map<Object, Integer> cache,
+    			byte version) throws IOException {
+    		writeIsNullData(out, col, batch);
+    		long last = 0;
+    		for (int i = 0; i < batch.size(); i++) {
+    			Object obj = batch.get(i).get(col);
+    			if (obj != null) {
+    				long val = isLong?((Long)obj).longValue():((Integer)obj).longValue();
+    				long delta = val - last;
+    				writeVarLong(out, (delta << 1) ^ (delta >> 63));
+    				last = val;
+    			}
+    		}
+    	}
+    	
+    	@Override
+    	public void readColumn(ObjectInput in, int col,
+    			List<List<Object>> batch, byte[] isNull, List<Object> cache,
+    			byte version) throws IOException, ClassNotFoundException {
+    		readIsNullData(in, isNull);
+    		long last = 0;
+    		for (int i = 0; i < batch.size(); i++) {
+    			if (!isNullObject(isNull, i)) {
+    				long delta = readVarLong(in);
+    				last += (delta >>> 1) ^ -(delta & 1);
+    				if (isLong) {
+    					batch.get(i).set(col, Long.valueOf(last));
+    				} else {
+    					batch.get(i).set(col, Integer.valueOf((int)last));
+    				}
+    			}
+    		}
+    	}
+    }
+    
+    static void writeVarLong(ObjectOutput out, long val) throws IOException {
+    	while ((val & ~0x7fL) != 0) {
+    		out.writeByte((int)((val & 0x7f) | 0x80));
+    		val >>>= 7;
+    	}
+    	out.writeByte((int)val);
+    }
+    
+    static long readVarLong(ObjectInput in) throws IOException {
+    	long result = 0;
+    	for (int shift = 0; shift < 64; shift += 7) {
+    		byte b = in.readByte();
+    		result |= (long)(b & 0x7f) << shift;
+    		if ((b & 0x80) == 0) {
+    			return result;
+    		}
+    	}
+    	throw new IOException("Malformed variable length value"); //$NON-NLS-1$
+    }
+
     private static class FloatColumnSerializer extends ColumnSerializer {
         @Override
 		protected void writeObject(ObjectOutput out, Object obj, Map<Object, Integer> cache, byte version) throws IOException {
@@ -840,6 +979,14 @@ public class BatchSerializer {
     }
 
     public static void writeBatch(ObjectOutput out, String[] types, List<? extends List<?>> batch, byte version) throws IOException {
+    	writeBatch(out, types, batch, version, false);
+    }
+    
+    /**
+     * Write the batch.  Compression is only used if the version supports it and
+     * all of the column types have a primitive serialization form.
+     */
+    public static void writeBatch(ObjectOutput out, String[] types, List<? extends List<?>> batch, byte version, boolean compress) throws IOException {
         if (batch == null) {
             out.writeInt(-1);
         } else {
@@ -852,31 +999,78 @@ public class BatchSerializer {
             if (batch.size() > 0) {
 	            int columns = types.length;
 	            out.writeInt(columns);
-	            Map<Object, Integer> cache = null;
-	            for(int i = 0; i < columns; i++) {
-	            	ColumnSerializer serializer = getSerializer(types[i], version);
-	            	
-	            	if (cache == null && serializer.usesCache(version)) {
-	            		cache = new HashMap<Object, Integer>();
+	            if (version >= VERSION_COLUMNAR) {
+	            	if (compress && isCompressible(types)) {
+	            		out.writeByte(COMPRESSED);
+	            		MultiArrayOutputStream bytes = new MultiArrayOutputStream(1 << 13);
+	            		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+	            		try {
+		            		ObjectOutputStream oos = new ObjectOutputStream(new DeflaterOutputStream(bytes, deflater));
+		            		writeColumns(oos, types, batch, version);
+		            		oos.close();
+	            		} finally {
+	            			deflater.end();
+	            		}
+	            		out.writeInt(bytes.getCount());
+	            		bytes.writeTo(out);
+	            		return;
 	            	}
-	                try {
-	                    serializer.writeColumn(out, i, batch, cache, version);
-	                } catch (ClassCastException e) {
-	                    Object obj = null;
-	                    String objectClass = null;
-	                    objectSearch: for (int row = 0; row < batch.size(); row++) {
-	                        obj = batch.get(row).get(i);
-	                        if (obj != null) {
-	                            objectClass = obj.getClass().getName();
-	                            break objectSearch;
-	                        }
-	                    }
-	                     throw new TeiidRuntimeException(JDBCPlugin.Event.TEIID20001, e, JDBCPlugin.Util.gs(JDBCPlugin.Event.TEIID20001, new Object[] {types[i], new Integer(i), objectClass}));
-	                }
+	            	out.writeByte(0);
 	            }
+	            writeColumns(out, types, batch, version);
             }
         }
     }
+    
+    private static boolean isCompressible(String[] types) {
+    	for (String type : types) {
+    		if (!COMPRESSIBLE_TYPES.contains(type)) {
+    			//lobs, xml, objects, arrays, etc. may rely upon the outer stream 
+    			return false;
+    		}
+    	}
+    	return true;
+    }
+
+	private static void writeColumns(ObjectOutput out, String[] types,
+			List<? extends List<?>> batch, byte version) throws IOException {
+		int columns = types.length;
+		Map<Object, Integer> cache = null;
+		for(int i = 0; i < columns; i++) {
+			ColumnSerializer serializer = getSerializer(types[i], version);
+			
+			if (cache == null && serializer.usesCache(version)) {
+				cache = new HashMap<Object, Integer>();
+			}
+		    try {
+		        serializer.writeColumn(out, i, batch, cache, version);
+		    } catch (ClassCastException e) {
+		        Object obj = null;
+		        String objectClass = null;
+		        objectSearch: for (int row = 0; row < batch.size(); row++) {
+		            obj = batch.get(row).get(i);
+		            if (obj != null) {
+		                objectClass = obj.getClass().getName();
+		                break objectSearch;
+		            }
+		        }
+		         throw new TeiidRuntimeException(JDBCPlugin.Event.TEIID20001, e, JDBCPlugin.Util.gs(JDBCPlugin.Event.TEIID20001, new Object[] {types[i], new Integer(i), objectClass}));
+		    }
+		}
+	}
+
+    private static void readColumns(ObjectInput in, String[] types, byte version,
+			int columns, List<List<Object>> batch, byte[] isNullBuffer)
+			throws IOException, ClassNotFoundException {
+		List<Object> cache = null;
+		for (int col = 0; col < columns; col++) {
+		    ColumnSerializer serializer = getSerializer(types[col], version);
+		    if (cache == null && serializer.usesCache(version)) {
+				cache = new ArrayList<Object>();
+			}
+		    serializer.readColumn(in, col, batch, isNullBuffer, cache, version);
+		}
+	}
 
     public static List<List<Object>> readBatch(ObjectInput in, String[] types) throws IOException, ClassNotFoundException {
     	int rows = 0;
@@ -911,13 +1105,17 @@ public class BatchSerializer {
             batch.add(currentRow, Arrays.asList(new Object[columns]));
         }
         byte[] isNullBuffer = new byte[(extraRows > 0) ? numBytes + 1: numBytes];
-        List<Object> cache = null;
-        for (int col = 0; col < columns; col++) {
-            ColumnSerializer serializer = getSerializer(types[col], version);
-            if (cache == null && serializer.usesCache(version)) {
-        		cache = new ArrayList<Object>();
+        if (version >= VERSION_COLUMNAR && in.readByte() == COMPRESSED) {
+        	byte[] bytes = new byte[in.readInt()];
+        	in.readFully(bytes);
+        	ObjectInputStream ois = new ObjectInputStream(new InflaterInputStream(new ByteArrayInputStream(bytes)));
+        	try {
+        		readColumns(ois, types, version, columns, batch, isNullBuffer);
+        	} finally {
+        		ois.close();
         	}
-            serializer.readColumn(in, col, batch, isNullBuffer, cache, version);
+        } else {
+        	readColumns(in, types, version, columns, batch, isNullBuffer);
         }
         return batch;
     }
@@ -32,6 +32,14 @@ import org.teiid.core.TeiidProcessingException;
 
 public interface DQP {
 	
+	/**
+	 * The batchFirst value for a forward only {@link #processCursorRequest(long, int, int)}
+	 * that continues from the end of the previously requested results.  Such requests may
+	 * be issued before the prior request completes so that the server can keep sending results
+	 * while the client has outstanding requests.
+	 */
+	public static final int NEXT_BATCH = 0;
+	
 	@Secure(optional=true)
 	ResultsFuture<ResultsMessage> executeRequest(long reqID, RequestMessage message) throws TeiidProcessingException, TeiidComponentException;
 	
@@ -77,6 +77,7 @@ public class ResultsMessage implements Externalizable {
     private String debugLog;
     
     private byte clientSerializationVersion;
+    private boolean compressResults;
         
     /** 
      * Query plan annotations, if OPTION SHOWPLAN or OPTION PLANONLY was used:
@@ -312,7 +313,7 @@ public class ResultsMessage implements Externalizable {
         if (delayDeserialization) {
         	BatchSerializer.writeBatch(out, dataTypes, null, clientSerializationVersion);
     	} else {
-        	BatchSerializer.writeBatch(out, dataTypes, results, clientSerializationVersion);
+        	BatchSerializer.writeBatch(out, dataTypes, results, clientSerializationVersion, compressResults);
     	}
         
         // Plan descriptions
@@ -361,7 +362,7 @@ public class ResultsMessage implements Externalizable {
 		if (serializationBuffer == null) {
 			serializationBuffer = new MultiArrayOutputStream(1 << 13);
 			CompactObjectOutputStream oos = new CompactObjectOutputStream(serializationBuffer);
-			BatchSerializer.writeBatch(oos, dataTypes, results, clientSerializationVersion);
+			BatchSerializer.writeBatch(oos, dataTypes, results, clientSerializationVersion, compressResults);
 			oos.close();
 		}
 		int result = serializationBuffer.getCount();
@@ -427,6 +428,17 @@ public class ResultsMessage implements Externalizable {
 		this.clientSerializationVersion = clientSerializationVersion;
 	}
 	
+	public boolean isCompressResults() {
+		return compressResults;
+	}
+	
+	/**
+	 * @param compressResults true if the client has negotiated compressed batches
+	 */
+	public void setCompressResults(boolean compressResults) {
+		this.compressResults = compressResults;
+	}
+	
 	public void setUpdateCount(int updateCount) {
 		this.updateCount = updateCount;
 	}
@@ -301,6 +301,25 @@ public class PreparedStatementImpl extends StatementImpl implements TeiidPrepare
 	   	return this.updateCounts;
     }
 
+    /**
+     * Non-blocking execution of the current batch.  The batch is cleared once it has been
+     * submitted and the update counts are available after the returned future completes.
+     * <br>
+     * Unlike {@link #executeBatch()} large batches are not split, so callers should
+     * submit reasonably sized batches.
+     */
+    public ResultsFuture<Boolean> submitExecuteBatch() throws SQLException {
+    	if (batchParameterList == null || batchParameterList.isEmpty()) {
+    		this.updateCounts = new int[0];
+    		return booleanFuture(false);
+    	}
+    	try {
+    		return executeSql(new String[] {this.prepareSql}, true, ResultsMode.UPDATECOUNT, false, null);
+    	} finally {
+    		batchParameterList.clear();
+    	}
+    }
+
 	static int[] concatArrays(int[] array1, int[] array2) {
 		int length = array1.length;
 		array1 = Arrays.copyOf(array1, length + array2.length);
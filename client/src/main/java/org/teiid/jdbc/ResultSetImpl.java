@@ -24,6 +24,7 @@ import java.io.Reader;
 import java.math.BigDecimal;
 import java.net.URL;
 import java.sql.*;
+import java.util.ArrayDeque;
 import java.util.Calendar;
 import java.util.List;
 import java.util.Map;
@@ -35,6 +36,7 @@ import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.teiid.client.DQP;
 import org.teiid.client.ResultsMessage;
 import org.teiid.client.lob.LobChunkInputStream;
 import org.teiid.client.lob.StreamingLobChunckProducer;
@@ -63,6 +65,10 @@ public class ResultSetImpl extends WrapperImpl implements TeiidResultSet, BatchF
 	private static final int BEFORE_FIRST_ROW = 0;
 
 	public static final String DISABLE_FETCH_SIZE = "disableResultSetFetchSize"; //$NON-NLS-1$
+	/**
+	 * The number of forward only batch requests to keep outstanding against the server
+	 */
+	public static final String FETCH_WINDOW = "resultSetFetchWindow"; //$NON-NLS-1$
 
 	// the object which was last read from Results
 	private Object currentValue;
@@ -97,10 +103,14 @@ public class ResultSetImpl extends WrapperImpl implements TeiidResultSet, BatchF
     
     private ResultsFuture<ResultsMessage> prefetch;
     private boolean usePrefetch;
+    //additional next batch requests beyond the prefetch
+    private ArrayDeque<ResultsFuture<ResultsMessage>> pendingBatches = new ArrayDeque<ResultsFuture<ResultsMessage>>(2);
+    private Integer fetchWindow;
 
 	private int skipTo;
 	
 	private static boolean DISABLE_FETCH_SIZE_DEFAULT = PropertiesUtils.getBooleanProperty(System.getProperties(), "org.teiid." + DISABLE_FETCH_SIZE, false); //$NON-NLS-1$
+	private static int FETCH_WINDOW_DEFAULT = PropertiesUtils.getIntProperty(System.getProperties(), "org.teiid." + FETCH_WINDOW, 1); //$NON-NLS-1$
 	
 	private Boolean disableFetchSize;
 
@@ -151,6 +161,10 @@ public class ResultSetImpl extends WrapperImpl implements TeiidResultSet, BatchF
 		this.maxFieldSize = maxFieldSize;
 	}
 	
+	public int getMaxFieldSize() {
+		return maxFieldSize;
+	}
+	
     public void close() throws SQLException{
     	if(!isClosed) {
             // close the the server's statement object (if necessary)
@@ -373,10 +387,10 @@ public class ResultSetImpl extends WrapperImpl implements TeiidResultSet, BatchF
         try {
         	if (prefetch != null) {
     			//TODO: this is not efficient if the user is skipping around the results
-    			//but the server logic at this point basically requires us
-    			//to read what we have requested before requesting more (no queuing)
+    			//outstanding requests are answered in order - the prefetch followed by any
+    			//queued NEXT_BATCH requests, see the fetch window - so they must be read in order
     			ResultsMessage result = getResults(prefetch);
-    			prefetch = null;
+    			prefetch = pendingBatches.poll();
     			Batch nextBatch = processBatch(result);
 				return nextBatch;
         	}
@@ -447,10 +461,15 @@ public class ResultSetImpl extends WrapperImpl implements TeiidResultSet, BatchF
 
 	private Batch getCurrentBatch(ResultsMessage currentResultMsg) throws TeiidSQLException {
 		this.updatedPlanDescription = currentResultMsg.getPlanDescription();
-		if (usePrefetch && !asynch 
-				&& prefetch == null && currentResultMsg.getLastRow() != currentResultMsg.getFinalRow()) {
-			//fetch before processing the results
-			prefetch = submitRequestBatch(currentResultMsg.getLastRow() + 1);
+		if (usePrefetch && !asynch && currentResultMsg.getLastRow() != currentResultMsg.getFinalRow()) {
+			if (prefetch == null) {
+				//fetch before processing the results
+				prefetch = submitRequestBatch(currentResultMsg.getLastRow() + 1);
+			}
+			//keep the server sending by topping up the outstanding requests
+			for (int window = getFetchWindow(); pendingBatches.size() + 1 < window;) {
+				pendingBatches.add(submitRequestBatch(DQP.NEXT_BATCH));
+			}
 		}
 		currentResultMsg.processResults();
 		List<?> lastTuple = null;
@@ -1771,6 +1790,30 @@ public class ResultSetImpl extends WrapperImpl implements TeiidResultSet, BatchF
 		return DataTypeTransformer.transform(getObject(columnLabel), type);
 	}
 	
+	/**
+	 * The window is only used by servers that understand {@link DQP#NEXT_BATCH} requests
+	 * and when the results can be consumed sequentially without skipping.
+	 */
+	private int getFetchWindow() throws TeiidSQLException {
+		if (fetchWindow == null) {
+			fetchWindow = 1;
+			if (maxRows == 0 && parameters == 0) {
+				try {
+					ConnectionImpl conn = statement.getConnection();
+					if (conn != null && conn.getServerConnection() != null) {
+						String serverVersion = conn.getServerConnection().getServerVersion();
+						if (serverVersion != null && serverVersion.compareTo("10.00") >= 0) { //$NON-NLS-1$
+							fetchWindow = Math.max(1, PropertiesUtils.getIntProperty(conn.getConnectionProps(), FETCH_WINDOW, FETCH_WINDOW_DEFAULT));
+						}
+					}
+				} catch (SQLException e) {
+					throw TeiidSQLException.create(e);
+				}
+			}
+		}
+		return fetchWindow;
+	}
+	
 	ResultsFuture<ResultsMessage> getPrefetch() {
 		return prefetch;
 	}
@@ -42,6 +42,8 @@ public class Handshake implements Externalizable {
     private byte[] publicKeyLarge;
     private AuthenticationType authType = AuthenticationType.USERPASSWORD;
     private boolean cbc = true;
+    private byte serializationVersion;
+    private boolean compressResults;
     
     public Handshake() {
     	
@@ -119,6 +121,29 @@ public class Handshake implements Externalizable {
         this.cbc = cbc;
     }
     
+    /**
+     * The batch serialization version.  The server sends the highest version it supports
+     * and the client responds with the version to use.  0 if not negotiated.
+     */
+    public byte getSerializationVersion() {
+		return serializationVersion;
+	}
+    
+    public void setSerializationVersion(byte serializationVersion) {
+		this.serializationVersion = serializationVersion;
+	}
+    
+    /**
+     * @return true if the client requests compressed result batches
+     */
+    public boolean isCompressResults() {
+		return compressResults;
+	}
+    
+    public void setCompressResults(boolean compressResults) {
+		this.compressResults = compressResults;
+	}
+    
     @Override
     public void readExternal(ObjectInput in) throws IOException,
     		ClassNotFoundException {
@@ -138,8 +163,18 @@ public class Handshake implements Externalizable {
     	    cbc = in.readBoolean();
     	} catch (OptionalDataException e) {
     	    cbc = false;
+    	    return;
     	} catch (EOFException e) {
     	    cbc = false;
+    	    return;
+    	}
+    	try {
+    		serializationVersion = in.readByte();
+    		compressResults = in.readBoolean();
+    	} catch (OptionalDataException e) {
+    		serializationVersion = 0;
+    	} catch (EOFException e) {
+    		serializationVersion = 0;
     	}
     }
     
@@ -155,6 +190,8 @@ public class Handshake implements Externalizable {
 	    	out.write(publicKeyLarge);
     	}
     	out.writeBoolean(cbc);
+    	out.writeByte(serializationVersion);
+    	out.writeBoolean(compressResults);
     }
     
 }
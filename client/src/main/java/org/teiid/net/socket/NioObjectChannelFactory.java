@@ -0,0 +1,678 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.net.socket;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.teiid.client.util.ResultsFuture;
+import org.teiid.client.util.ResultsReceiver;
+import org.teiid.core.types.InputStreamFactory.StreamFactoryReference;
+import org.teiid.core.util.AccessibleByteArrayOutputStream;
+import org.teiid.core.util.ExecutorUtils;
+import org.teiid.core.util.ExternalizeUtil;
+import org.teiid.core.util.PropertiesUtils;
+import org.teiid.jdbc.JDBCPlugin;
+import org.teiid.net.CommunicationException;
+import org.teiid.net.HostInfo;
+import org.teiid.netty.handler.codec.serialization.CompactObjectInputStream;
+import org.teiid.netty.handler.codec.serialization.ObjectDecoderInputStream;
+import org.teiid.netty.handler.codec.serialization.ObjectEncoderOutputStream;
+
+/**
+ * Non-blocking alternative to the {@link OioOjbectChannelFactory}.
+ * <br>
+ * All channels created by a factory share a single selector thread that only performs
+ * the non-blocking socket reads and writes.  Read bytes are decoded, including any lob
+ * stream I/O, on a dispatch pool and read interest is suspended until the channel's
+ * pending bytes are consumed.  Once a listener has been set, see {@link NioObjectChannel#setListener(ResultsReceiver)},
+ * messages are delivered from the dispatch pool so that waiting callers do not need
+ * to contend to perform blocking socket reads.
+ * <br>
+ * The selector thread never invokes a listener, so it will not block on a {@link NioObjectChannel#write(Object)}.
+ * <br>
+ * The wire format is the same as the {@link ObjectEncoderOutputStream}/{@link ObjectDecoderInputStream}.
+ * SSL connections are delegated to the {@link OioOjbectChannelFactory}.
+ */
+public final class NioObjectChannelFactory implements ObjectChannelFactory {
+
+	private final static int STREAM_BUFFER_SIZE = 1<<15;
+	private final static int DEFAULT_MAX_OBJECT_SIZE = 1 << 25;
+
+	private static final Object CLOSED = new Object();
+
+	private static Logger log = Logger.getLogger("org.teiid.client.sockets"); //$NON-NLS-1$
+
+	/**
+	 * Selector thread shared by the open channels.  Exits when the last channel is closed.
+	 */
+	final class NioSelector implements Runnable {
+		private Selector selector;
+		private ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+		private volatile boolean running = true;
+		private int channels;
+		private ExecutorService dispatcher;
+
+		NioSelector() throws IOException {
+			this.selector = Selector.open();
+			this.dispatcher = ExecutorUtils.newFixedThreadPool(dispatchThreads, "TeiidClientDispatch"); //$NON-NLS-1$
+			Thread t = new Thread(this, "TeiidClientSelector"); //$NON-NLS-1$
+			t.setDaemon(true);
+			t.start();
+		}
+
+		/**
+		 * Run the task on the selector thread
+		 */
+		void execute(Runnable task) {
+			this.tasks.add(task);
+			this.selector.wakeup();
+		}
+
+		/**
+		 * Run the task on the dispatch pool, or by the caller if the pool has been shutdown
+		 */
+		void dispatch(Runnable task) {
+			try {
+				this.dispatcher.execute(task);
+			} catch (RejectedExecutionException e) {
+				task.run();
+			}
+		}
+
+		void shutdown() {
+			this.running = false;
+			this.selector.wakeup();
+			this.dispatcher.shutdown();
+		}
+
+		@Override
+		public void run() {
+			Throwable failure = null;
+			try {
+				while (running) {
+					selector.select();
+					Runnable task = null;
+					while ((task = tasks.poll()) != null) {
+						task.run();
+					}
+					Iterator<SelectionKey> iter = selector.selectedKeys().iterator();
+					while (iter.hasNext()) {
+						SelectionKey key = iter.next();
+						iter.remove();
+						NioObjectChannel channel = (NioObjectChannel)key.attachment();
+						if (key.isValid() && key.isWritable()) {
+							channel.processWrite(key);
+						}
+						if (key.isValid() && key.isReadable()) {
+							channel.processRead(key);
+						}
+					}
+				}
+			} catch (Throwable e) {
+				log.log(Level.WARNING, "Unexpected selector failure", e); //$NON-NLS-1$
+				failure = e;
+			} finally {
+				if (failure == null) {
+					failure = new EOFException();
+				}
+				for (SelectionKey key : new ArrayList<SelectionKey>(selector.keys())) {
+					((NioObjectChannel)key.attachment()).failed(failure);
+				}
+				try {
+					selector.close();
+				} catch (IOException e) {
+					//ignore
+				}
+			}
+		}
+	}
+
+	final class NioObjectChannel implements ObjectChannel {
+		private final SocketChannel socketChannel;
+		private final NioSelector nioSelector;
+		private final int maxObjectSize;
+
+		//write state
+		private AccessibleByteArrayOutputStream bytes = new AccessibleByteArrayOutputStream(STREAM_BUFFER_SIZE);
+		private ObjectOutputStream outputStream;
+		private volatile ByteBuffer pendingWrite;
+		private volatile ResultsFuture<Void> pendingWriteFuture;
+
+		//read state - accessed by the selector thread while read interest is set, otherwise by the dispatch task
+		private ByteBuffer readBuffer = ByteBuffer.allocate(STREAM_BUFFER_SIZE);
+		private ByteBuffer header = ByteBuffer.allocate(4);
+		private byte[] frame;
+		private int framePosition;
+		private int remaining;
+		private boolean chunk;
+		private Object result;
+		private List<StreamFactoryReference> streams;
+		private int streamIndex;
+		private OutputStream stream;
+
+		//received state, guarded by received
+		private ArrayDeque<Object> received = new ArrayDeque<Object>();
+		private ResultsReceiver<Object> listener;
+		private Throwable failure;
+
+		private NioObjectChannel(SocketChannel socketChannel, NioSelector nioSelector, int maxObjectSize) throws IOException {
+			log.fine("creating new NioObjectChannel"); //$NON-NLS-1$
+			this.socketChannel = socketChannel;
+			this.nioSelector = nioSelector;
+			this.maxObjectSize = maxObjectSize;
+			this.outputStream = new ObjectEncoderOutputStream(new DataOutputStream(bytes), STREAM_BUFFER_SIZE);
+		}
+
+		/**
+		 * Set the listener that will receive all subsequent messages from the dispatch pool.
+		 * Messages already received are passed to the listener immediately.
+		 */
+		public void setListener(ResultsReceiver<Object> listener) {
+			synchronized (received) {
+				for (Object obj : received) {
+					if (obj == CLOSED) {
+						listener.exceptionOccurred(failure);
+					} else {
+						listener.receiveResults(obj);
+					}
+				}
+				received.clear();
+				this.listener = listener;
+			}
+		}
+
+		@Override
+		public void close() {
+			log.finer("closing socket"); //$NON-NLS-1$
+			failed(new EOFException());
+		}
+
+		void failed(Throwable e) {
+			ResultsReceiver<Object> toNotify = null;
+			synchronized (received) {
+				if (failure != null) {
+					return;
+				}
+				failure = e;
+				toNotify = listener;
+				if (toNotify == null) {
+					received.add(CLOSED);
+					received.notifyAll();
+				}
+			}
+			try {
+				socketChannel.close();
+			} catch (IOException ex) {
+				//ignore
+			}
+			if (stream != null) {
+				try {
+					stream.close();
+				} catch (IOException ex) {
+					//ignore
+				}
+			}
+			ResultsFuture<Void> writeFuture = pendingWriteFuture;
+			if (writeFuture != null) {
+				completeWrite(writeFuture, e);
+			}
+			if (toNotify != null) {
+				final ResultsReceiver<Object> receiver = toNotify;
+				final Throwable t = e;
+				nioSelector.dispatch(new Runnable() {
+					@Override
+					public void run() {
+						receiver.exceptionOccurred(t);
+					}
+				});
+			}
+			releaseSelector(nioSelector);
+		}
+
+		@Override
+		public SocketAddress getRemoteAddress() {
+			return socketChannel.socket().getRemoteSocketAddress();
+		}
+
+		@Override
+		public InetAddress getLocalAddress() {
+			return socketChannel.socket().getLocalAddress();
+		}
+
+		@Override
+		public boolean isOpen() {
+			synchronized (received) {
+				return failure == null && socketChannel.isOpen();
+			}
+		}
+
+		/**
+		 * Blocking read for use prior to setting a listener, such as during the handshake.
+		 */
+		@Override
+		public Object read() throws IOException, ClassNotFoundException {
+			log.finer("reading message from socket"); //$NON-NLS-1$
+			Object obj = null;
+			synchronized (received) {
+				long end = System.currentTimeMillis() + soTimeout;
+				while ((obj = received.peek()) == null) {
+					long wait = end - System.currentTimeMillis();
+					if (soTimeout > 0 && wait <= 0) {
+						break;
+					}
+					try {
+						received.wait(soTimeout > 0?wait:0);
+					} catch (InterruptedException e) {
+						throw new InterruptedIOException();
+					}
+				}
+				if (obj != CLOSED && obj != null) {
+					received.poll();
+				}
+			}
+			if (obj == null) {
+				Long timeout = OioOjbectChannelFactory.TIMEOUTS.get();
+				if (timeout != null && timeout < System.currentTimeMillis()) {
+					OioOjbectChannelFactory.TIMEOUTS.set(null);
+					throw new InterruptedIOException(JDBCPlugin.Util.gs(JDBCPlugin.Event.TEIID20035));
+				}
+				throw new SocketTimeoutException();
+			}
+			if (obj == CLOSED) {
+				if (failure instanceof IOException) {
+					throw (IOException)failure;
+				}
+				if (failure instanceof ClassNotFoundException) {
+					throw (ClassNotFoundException)failure;
+				}
+				throw new IOException(failure);
+			}
+			return obj;
+		}
+
+		/**
+		 * Writes are performed directly by the caller and only hand off to the
+		 * selector thread if the socket buffer is full.  The call does not return until
+		 * the message has been written.
+		 * <br>
+		 * Must not be called by the selector thread.
+		 */
+		@Override
+		public synchronized Future<?> write(Object msg) {
+			log.finer("writing message to socket"); //$NON-NLS-1$
+		    ResultsFuture<Void> result = new ResultsFuture<Void>();
+		    try {
+		    	bytes.reset();
+		        outputStream.writeObject(msg);
+		        outputStream.flush();
+		        ByteBuffer buffer = ByteBuffer.wrap(bytes.getBuffer(), 0, bytes.getCount());
+		        socketChannel.write(buffer);
+		        if (buffer.hasRemaining()) {
+		        	this.pendingWrite = buffer;
+		        	this.pendingWriteFuture = result;
+		        	nioSelector.execute(new Runnable() {
+		        		@Override
+		        		public void run() {
+		        			SelectionKey key = socketChannel.keyFor(nioSelector.selector);
+		        			if (key != null && key.isValid()) {
+		        				key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+		        			}
+		        		}
+		        	});
+		        	try {
+			        	result.get();
+		        	} finally {
+		        		this.pendingWrite = null;
+		        		this.pendingWriteFuture = null;
+		        	}
+		        } else {
+		        	result.getResultsReceiver().receiveResults(null);
+		        }
+		        if (bytes.getBuffer().length > STREAM_BUFFER_SIZE << 2) {
+		        	//don't retain the buffer from a large write
+		        	bytes.setBuffer(new byte[STREAM_BUFFER_SIZE]);
+		        }
+		    } catch (IOException e) {
+		        failed(e);
+		        completeWrite(result, e);
+		    } catch (InterruptedException e) {
+		    	Thread.currentThread().interrupt();
+		    	failed(e);
+		        completeWrite(result, e);
+		    } catch (ExecutionException e) {
+		    	//already failed
+		    }
+		    return result;
+		}
+
+		/**
+		 * Complete the write future if it has not already been completed by another thread
+		 * @param e the failure or null if successful
+		 */
+		private void completeWrite(ResultsFuture<Void> writeFuture, Throwable e) {
+			synchronized (writeFuture) {
+				if (writeFuture.isDone()) {
+					return;
+				}
+				if (e != null) {
+					writeFuture.getResultsReceiver().exceptionOccurred(e);
+				} else {
+					writeFuture.getResultsReceiver().receiveResults(null);
+				}
+			}
+		}
+
+		void processWrite(SelectionKey key) {
+			ByteBuffer buffer = this.pendingWrite;
+			ResultsFuture<Void> writeFuture = this.pendingWriteFuture;
+			if (buffer == null || writeFuture == null) {
+				key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+				return;
+			}
+			try {
+				socketChannel.write(buffer);
+			} catch (IOException e) {
+				failed(e);
+				return;
+			}
+			if (!buffer.hasRemaining()) {
+				key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+				completeWrite(writeFuture, null);
+			}
+		}
+
+		/**
+		 * Read what is available and hand off the decoding to the dispatch pool.
+		 * Read interest is suspended until the dispatch task has consumed the bytes
+		 * so that a slow consumer applies back pressure to the socket.
+		 */
+		void processRead(final SelectionKey key) {
+			try {
+				int read = socketChannel.read(readBuffer);
+				if (read < 0) {
+					throw new EOFException();
+				}
+				if (read == 0) {
+					return;
+				}
+			} catch (Throwable e) {
+				failed(e);
+				return;
+			}
+			key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+			nioSelector.dispatch(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						readBuffer.flip();
+						decode(readBuffer);
+						readBuffer.clear();
+					} catch (Throwable e) {
+						failed(e);
+						return;
+					}
+					nioSelector.execute(new Runnable() {
+						@Override
+						public void run() {
+							if (key.isValid()) {
+								key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+							}
+						}
+					});
+				}
+			});
+		}
+
+		/**
+		 * Incrementally decode the frames written by the {@link ObjectEncoderOutputStream}.
+		 * Consumes all of the bytes in the buffer.
+		 */
+		private void decode(ByteBuffer buffer) throws IOException, ClassNotFoundException {
+			while (buffer.hasRemaining()) {
+				if (frame != null) {
+					int length = Math.min(buffer.remaining(), frame.length - framePosition);
+					buffer.get(frame, framePosition, length);
+					framePosition += length;
+					if (framePosition < frame.length) {
+						return;
+					}
+					CompactObjectInputStream cois = new CompactObjectInputStream(new ByteArrayInputStream(frame), NioObjectChannelFactory.class.getClassLoader());
+					frame = null;
+					result = cois.readObject();
+					streams = ExternalizeUtil.readList(cois, StreamFactoryReference.class);
+					streamIndex = 0;
+					nextStream();
+					continue;
+				}
+				if (remaining > 0) {
+					int length = Math.min(buffer.remaining(), remaining);
+					stream.write(buffer.array(), buffer.position(), length);
+					buffer.position(buffer.position() + length);
+					remaining -= length;
+					continue;
+				}
+				while (header.hasRemaining() && buffer.hasRemaining()) {
+					header.put(buffer.get());
+				}
+				if (header.hasRemaining()) {
+					return;
+				}
+				if (!chunk) {
+					int length = header.getInt(0);
+					if (length <= 0) {
+						throw new StreamCorruptedException("invalid data length: " + length); //$NON-NLS-1$
+					}
+					if (length > maxObjectSize) {
+						throw new StreamCorruptedException(JDBCPlugin.Util.gs(JDBCPlugin.Event.TEIID20028, length, maxObjectSize));
+					}
+					frame = new byte[length];
+					framePosition = 0;
+					header.clear();
+					continue;
+				}
+				remaining = 0xffff & header.getShort(0);
+				header.clear();
+				header.limit(2);
+				if (remaining == 0) {
+					stream.close();
+					stream = null;
+					streamIndex++;
+					nextStream();
+				}
+			}
+		}
+
+		private void nextStream() throws IOException {
+			header.clear();
+			if (streamIndex < streams.size()) {
+				chunk = true;
+				header.limit(2);
+				stream = ObjectDecoderInputStream.createStream(streams.get(streamIndex));
+				return;
+			}
+			chunk = false;
+			Object obj = result;
+			result = null;
+			streams = null;
+			ResultsReceiver<Object> toNotify = null;
+			synchronized (received) {
+				toNotify = listener;
+				if (toNotify == null) {
+					received.add(obj);
+					received.notifyAll();
+					return;
+				}
+			}
+			toNotify.receiveResults(obj);
+		}
+	}
+
+	private Properties props;
+	private int receiveBufferSize = 0;
+	private int sendBufferSize = 0;
+	private boolean conserveBandwidth;
+	private int soTimeout = 1000;
+	private int maxObjectSize = DEFAULT_MAX_OBJECT_SIZE;
+	private int dispatchThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+	private volatile OioOjbectChannelFactory sslChannelFactory;
+	private NioSelector nioSelector;
+
+	public NioObjectChannelFactory(Properties props) {
+		this.props = props;
+		PropertiesUtils.setBeanProperties(this, props, "org.teiid.sockets"); //$NON-NLS-1$
+	}
+
+	@Override
+	public ObjectChannel createObjectChannel(HostInfo info) throws CommunicationException, IOException {
+		if (info.isSsl()) {
+			if (this.sslChannelFactory == null) {
+				this.sslChannelFactory = new OioOjbectChannelFactory(props);
+			}
+			return this.sslChannelFactory.createObjectChannel(info);
+		}
+		SocketChannel socketChannel = SocketChannel.open();
+		NioSelector selector = null;
+		boolean success = false;
+		try {
+			Socket socket = socketChannel.socket();
+			if (receiveBufferSize > 0) {
+				socket.setReceiveBufferSize(receiveBufferSize);
+			}
+			if (sendBufferSize > 0) {
+				socket.setSendBufferSize(sendBufferSize);
+			}
+		    socket.setTcpNoDelay(!conserveBandwidth); // enable Nagle's algorithm to conserve bandwidth
+			socketChannel.connect(new InetSocketAddress(info.getInetAddress(), info.getPortNumber()));
+			socketChannel.configureBlocking(false);
+			selector = acquireSelector();
+			final NioObjectChannel channel = new NioObjectChannel(socketChannel, selector, maxObjectSize);
+			final NioSelector nioSelector = selector;
+			selector.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						channel.socketChannel.register(nioSelector.selector, SelectionKey.OP_READ, channel);
+					} catch (ClosedChannelException e) {
+						channel.failed(e);
+					}
+				}
+			});
+			success = true;
+			return channel;
+		} finally {
+			if (!success) {
+				socketChannel.close();
+				if (selector != null) {
+					releaseSelector(selector);
+				}
+			}
+		}
+	}
+
+	private synchronized NioSelector acquireSelector() throws IOException {
+		if (nioSelector == null) {
+			nioSelector = new NioSelector();
+		}
+		nioSelector.channels++;
+		return nioSelector;
+	}
+
+	private synchronized void releaseSelector(NioSelector selector) {
+		if (--selector.channels == 0) {
+			selector.shutdown();
+			if (nioSelector == selector) {
+				nioSelector = null;
+			}
+		}
+	}
+
+	public int getSendBufferSize() {
+		return sendBufferSize;
+	}
+
+	public void setSendBufferSize(int sendBufferSize) {
+		this.sendBufferSize = sendBufferSize;
+	}
+
+	public int getReceiveBufferSize() {
+		return receiveBufferSize;
+	}
+
+	public void setReceiveBufferSize(int receiveBufferSize) {
+		this.receiveBufferSize = receiveBufferSize;
+	}
+
+	public boolean isConserveBandwidth() {
+		return conserveBandwidth;
+	}
+
+	public void setConserveBandwidth(boolean conserveBandwidth) {
+		this.conserveBandwidth = conserveBandwidth;
+	}
+
+	public void setSoTimeout(int soTimeout) {
+		this.soTimeout = soTimeout;
+	}
+
+	public void setMaxObjectSize(int maxObjectSize) {
+		this.maxObjectSize = maxObjectSize;
+	}
+
+	public int getSoTimeout() {
+		return soTimeout;
+	}
+
+	public int getDispatchThreads() {
+		return dispatchThreads;
+	}
+
+	public void setDispatchThreads(int dispatchThreads) {
+		this.dispatchThreads = Math.max(1, dispatchThreads);
+	}
+
+}
@@ -146,6 +146,8 @@ public class SocketServerConnectionFactory implements ServerConnectionFactory, S
 	private int maxCachedInstances=16;
 
 	private boolean disablePing;
+	private boolean compressResults;
+	private boolean useNio;
 
 	public static synchronized SocketServerConnectionFactory getInstance() {
 		if (INSTANCE == null) {
@@ -178,9 +180,29 @@ public class SocketServerConnectionFactory implements ServerConnectionFactory, S
 		this.disablePing = disable;
 	}
 	
+	/**
+	 * Request deflate compressed result batches from servers that support it.
+	 * Useful when bandwidth rather than processing is the bottleneck.
+	 */
+	public void setCompressResults(boolean compressResults) {
+		this.compressResults = compressResults;
+	}
+	
+	/**
+	 * Use non-blocking channels that share a single selector thread to receive results.
+	 * Useful when a client has many connections or many concurrent requests.
+	 */
+	public void setUseNio(boolean useNio) {
+		this.useNio = useNio;
+	}
+	
 	public void initialize(Properties info) {
 		PropertiesUtils.setBeanProperties(this, info, "org.teiid.sockets"); //$NON-NLS-1$
-		this.channelFactory = new OioOjbectChannelFactory(info);
+		if (this.useNio) {
+			this.channelFactory = new NioObjectChannelFactory(info);
+		} else {
+			this.channelFactory = new OioOjbectChannelFactory(info);
+		}
 
 		if (disablePing) {
 			return;
@@ -270,6 +292,7 @@ public class SocketServerConnectionFactory implements ServerConnectionFactory, S
 			}
 		}
 		SocketServerInstanceImpl ssii = new SocketServerInstanceImpl(info, getSynchronousTtl(), this.channelFactory.getSoTimeout());
+		ssii.setCompressResults(this.compressResults);
 		ssii.connect(this.channelFactory);
 		if (useCache) {
 			key.actual = ssii;
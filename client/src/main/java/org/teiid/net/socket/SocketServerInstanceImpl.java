@@ -20,6 +20,7 @@ package org.teiid.net.socket;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.InvalidClassException;
 import java.io.Serializable;
 import java.lang.reflect.InvocationHandler;
@@ -40,6 +41,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.teiid.client.BatchSerializer;
 import org.teiid.client.security.Secure;
 import org.teiid.client.util.ExceptionHolder;
 import org.teiid.client.util.ExceptionUtil;
@@ -75,7 +77,9 @@ public class SocketServerInstanceImpl implements SocketServerInstance {
     private HashMap<Class<?>, Object> serviceMap = new HashMap<Class<?>, Object>();
     
     private boolean hasReader;
+    private boolean asynch;
     private int soTimeout;
+    private boolean compressResults;
     
     public SocketServerInstanceImpl(HostInfo info, long synchTimeout, int soTimeout) {
     	if (!info.isResolved()) {
@@ -86,10 +90,29 @@ public class SocketServerInstanceImpl implements SocketServerInstance {
         this.soTimeout = soTimeout;
     }
     
+    public void setCompressResults(boolean compressResults) {
+		this.compressResults = compressResults;
+	}
+    
     public synchronized void connect(ObjectChannelFactory channelFactory) throws CommunicationException, IOException {
         this.socketChannel = channelFactory.createObjectChannel(info);
         try {
         	doHandshake();
+        	if (this.socketChannel instanceof NioObjectChannelFactory.NioObjectChannel) {
+        		//messages are dispatched by the channel dispatch pool rather than by a waiting reader
+        		((NioObjectChannelFactory.NioObjectChannel)this.socketChannel).setListener(new ResultsReceiver<Object>() {
+        			@Override
+        			public void receiveResults(Object results) {
+        				receivedMessage(results);
+        			}
+        			
+        			@Override
+        			public void exceptionOccurred(Throwable e) {
+        				SocketServerInstanceImpl.this.exceptionOccurred(e);
+        			}
+        		});
+        		this.asynch = true;
+        	}
         } catch (CommunicationException e) {
         	this.socketChannel.close();
         	throw e;
@@ -154,6 +177,9 @@ public class SocketServerInstanceImpl implements SocketServerInstance {
             }*/
             serverVersion = handshake.getVersion();
             handshake.setVersion();
+            byte serializationVersion = (byte)Math.min(handshake.getSerializationVersion(), BatchSerializer.CURRENT_VERSION);
+            handshake.setSerializationVersion(serializationVersion);
+            handshake.setCompressResults(this.compressResults && serializationVersion >= BatchSerializer.VERSION_COLUMNAR);
             
             byte[] serverPublicKey = handshake.getPublicKey();
             byte[] serverPublicKeyLarge = handshake.getPublicKeyLarge();
@@ -303,6 +329,25 @@ public class SocketServerInstanceImpl implements SocketServerInstance {
     public void read(long timeout, TimeUnit unit, ResultsFuture<?> future) throws TimeoutException, InterruptedException {
     	long timeoutMillis = (int)Math.min(unit.toMillis(timeout), Integer.MAX_VALUE);
 		long start = System.currentTimeMillis();
+		if (asynch) {
+			Long deadline = OioOjbectChannelFactory.TIMEOUTS.get();
+			if (deadline == null || deadline >= start + timeoutMillis) {
+				return; //the future will be completed by the channel dispatch pool
+			}
+			//honor the login timeout
+			synchronized (future) {
+				long wait = deadline - System.currentTimeMillis();
+				while (!future.isDone() && wait > 0) {
+					future.wait(wait);
+					wait = deadline - System.currentTimeMillis();
+				}
+			}
+			if (!future.isDone()) {
+				OioOjbectChannelFactory.TIMEOUTS.set(null);
+				exceptionOccurred(new InterruptedIOException(JDBCPlugin.Util.gs(JDBCPlugin.Event.TEIID20035)));
+			}
+			return;
+		}
 		while (!future.isDone()) {
 			boolean reading = false;
 			synchronized (this) {
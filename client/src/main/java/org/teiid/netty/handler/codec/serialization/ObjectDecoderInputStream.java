@@ -114,23 +114,7 @@ public class ObjectDecoderInputStream extends ObjectInputStream {
 		        }
     		}
 	        if (stream == null) {
-	        	final File f = File.createTempFile("teiid", null); //$NON-NLS-1$
-		        StreamFactoryReference sfr = streams.get(streamIndex);
-		        sfr.setStreamFactory(new InputStreamFactory() {
-					
-					@Override
-					public InputStream getInputStream() throws IOException {
-						return new BufferedInputStream(new FileInputStream(f)) {
-							@Override
-							protected void finalize() throws Throwable {
-								super.finalize();
-								f.delete();
-							}
-						};
-					}
-					
-				});
-		        this.stream = new FileOutputStream(f);
+		        this.stream = createStream(streams.get(streamIndex));
 	        }
         	foundLength = false;
 	        if (remaining != 0) {
@@ -157,6 +141,29 @@ public class ObjectDecoderInputStream extends ObjectInputStream {
         return toReturn;
     }
     
+    /**
+     * Back the given reference with a temporary file.
+     * @return the stream to write the received chunks to
+     */
+    public static OutputStream createStream(StreamFactoryReference sfr) throws IOException {
+    	final File f = File.createTempFile("teiid", null); //$NON-NLS-1$
+        sfr.setStreamFactory(new InputStreamFactory() {
+			
+			@Override
+			public InputStream getInputStream() throws IOException {
+				return new BufferedInputStream(new FileInputStream(f)) {
+					@Override
+					protected void finalize() throws Throwable {
+						super.finalize();
+						f.delete();
+					}
+				};
+			}
+			
+		});
+        return new FileOutputStream(f);
+    }
+    
     void clearRemaining() throws IOException {
     	while (remaining > 0) {
     		long skipped = in.skip(remaining);
@@ -27,6 +27,7 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.sql.Timestamp;
 import java.util.Arrays;
 import java.util.List;
 
@@ -46,24 +47,30 @@ import org.teiid.query.unittest.TimestampUtil;
 public class TestBatchSerializer {
 
     private static List<List<Object>> helpTestSerialization(String[] types, List<?>[] batch, byte version) throws IOException, ClassNotFoundException {
-        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-        ObjectOutputStream out = new ObjectOutputStream(byteStream);
+    	return helpTestSerialization(types, batch, version, false);
+    }
+    
+    private static List<List<Object>> helpTestSerialization(String[] types, List<?>[] batch, byte version, boolean compress) throws IOException, ClassNotFoundException {
         List<List<?>> batchList = Arrays.asList(batch);
         
-        BatchSerializer.writeBatch(out, types, batchList, version);
-        out.flush();
-        
-        byte[] bytes = byteStream.toByteArray();
+        byte[] bytes = writeBatch(types, batch, version, compress);
         
         ByteArrayInputStream bytesIn = new ByteArrayInputStream(bytes);
         ObjectInputStream in = new ObjectInputStream(bytesIn);
         List<List<Object>> newBatch = BatchSerializer.readBatch(in, types);
-        out.close();
         in.close();
 
         assertTrue(batchList.equals(newBatch));
         return newBatch;
     }
+
+    private static byte[] writeBatch(String[] types, List<?>[] batch, byte version, boolean compress) throws IOException {
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(byteStream);
+        BatchSerializer.writeBatch(out, types, Arrays.asList(batch), version, compress);
+        out.close();
+        return byteStream.toByteArray();
+    }
     
     private static final String[] sampleBatchTypes = {DataTypeManager.DefaultDataTypes.BIG_DECIMAL,
                                                       DataTypeManager.DefaultDataTypes.BIG_INTEGER,
@@ -170,4 +177,30 @@ public class TestBatchSerializer {
     	assertFalse(val instanceof GeometryType);
     }
 
+    @Test public void testCompressed() throws Exception {
+        //drop the object column so that the batch is compressible
+        String[] types = new String[] {DataTypeManager.DefaultDataTypes.INTEGER, DataTypeManager.DefaultDataTypes.STRING, DataTypeManager.DefaultDataTypes.TIMESTAMP};
+        List<?>[] batch = new List[833];
+        for (int i = 0; i < batch.length; i++) {
+        	batch[i] = Arrays.asList(i%16 == 0?null:i, sampleString(i%64), new Timestamp(i*1000l));
+        }
+        helpTestSerialization(types, batch, BatchSerializer.VERSION_COLUMNAR, true);
+        assertTrue(writeBatch(types, batch, BatchSerializer.VERSION_COLUMNAR, true).length < writeBatch(types, batch, BatchSerializer.VERSION_COLUMNAR, false).length);
+        helpTestSerialization(types, new List[] {batch[1]}, BatchSerializer.VERSION_COLUMNAR, true);
+        //the object column prevents compression
+        batch = sampleBatchWithNulls(833);
+        helpTestSerialization(sampleBatchTypes, batch, BatchSerializer.VERSION_COLUMNAR, true);
+        assertEquals(writeBatch(sampleBatchTypes, batch, BatchSerializer.VERSION_COLUMNAR, false).length, writeBatch(sampleBatchTypes, batch, BatchSerializer.VERSION_COLUMNAR, true).length);
+        //not compressible
+        helpTestSerialization(new String[] {DataTypeManager.DefaultDataTypes.LONG,  "string[]"}, new List[] {Arrays.asList(1l, new ArrayImpl(new String[] {"Silly String", "Silly String"}))}, BatchSerializer.VERSION_COLUMNAR, true);
+    }
+    
+    @Test public void testDeltaEncoding() throws Exception {
+    	String[] types = new String[] {DataTypeManager.DefaultDataTypes.INTEGER, DataTypeManager.DefaultDataTypes.LONG};
+    	List<?>[] batch = new List[] {Arrays.asList(Integer.MAX_VALUE, Long.MIN_VALUE), Arrays.asList(null, Long.MAX_VALUE), 
+    			Arrays.asList(Integer.MIN_VALUE, null), Arrays.asList(-1, 0l), Arrays.asList(0, -1l)};
+    	helpTestSerialization(types, batch, BatchSerializer.VERSION_COLUMNAR);
+    	helpTestSerialization(types, batch, BatchSerializer.VERSION_GEOMETRY);
+    }
+
 }
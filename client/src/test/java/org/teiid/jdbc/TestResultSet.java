@@ -30,13 +30,17 @@ import java.sql.Types;
 import java.util.*;
 
 import org.junit.Test;
+import org.mockito.Matchers;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.teiid.client.DQP;
 import org.teiid.client.ResultsMessage;
 import org.teiid.client.lob.LobChunk;
 import org.teiid.client.util.ResultsFuture;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.core.types.XMLType;
+import org.teiid.net.ServerConnection;
 
 @SuppressWarnings("nls")
 public class TestResultSet {
@@ -699,6 +703,46 @@ public class TestResultSet {
         cs.close();      
     }
     
+    @Test public void testForwardOnlyFetchWindow() throws Exception {
+    	StatementImpl statement = createMockStatement(ResultSet.TYPE_FORWARD_ONLY);
+    	ConnectionImpl conn = mock(ConnectionImpl.class);
+    	ServerConnection serverConnection = mock(ServerConnection.class);
+    	stub(serverConnection.getServerVersion()).toReturn("10.00.00");
+    	stub(conn.getServerConnection()).toReturn(serverConnection);
+    	Properties props = new Properties();
+    	props.setProperty(ResultSetImpl.FETCH_WINDOW, "3");
+    	stub(conn.getConnectionProps()).toReturn(props);
+    	stub(statement.getConnection()).toReturn(conn);
+    	final int total = 95;
+    	final int[] next = new int[] {1};
+    	stub(statement.getDQP().processCursorRequest(Matchers.eq(TestAllResultsImpl.REQUEST_ID), Matchers.anyInt(), Matchers.eq(10))).toAnswer(new Answer<ResultsFuture<ResultsMessage>>() {
+			@Override
+			public ResultsFuture<ResultsMessage> answer(
+					InvocationOnMock invocation) throws Throwable {
+				int begin = (Integer)invocation.getArguments()[1];
+				if (begin == DQP.NEXT_BATCH) {
+					begin = next[0];
+				}
+				int length = Math.max(0, Math.min(10, total - begin + 1));
+				next[0] = begin + length;
+				ResultsFuture<ResultsMessage> result = new ResultsFuture<ResultsMessage>();
+				result.getResultsReceiver().receiveResults(TestAllResultsImpl.exampleResultsMsg4(begin, length, begin + length - 1 >= total));
+				return result;
+			}
+		});
+    	stub(statement.getFetchSize()).toReturn(10);
+    	ResultsMessage msg = TestAllResultsImpl.exampleResultsMsg4(1, 10, false);
+    	next[0] = 11;
+    	ResultSetImpl cs = new ResultSetImpl(msg, statement);
+    	int i = 0;
+    	while (cs.next()) {
+    		assertEquals(++i, cs.getObject(1));
+    	}
+    	assertEquals(total, i);
+    	Mockito.verify(statement.getDQP(), Mockito.atLeastOnce()).processCursorRequest(TestAllResultsImpl.REQUEST_ID, DQP.NEXT_BATCH, 10);
+    	cs.close();
+    }
+    
     @Test public void testOutputParameter() throws Exception {
         StatementImpl statement = createMockStatement(ResultSet.TYPE_FORWARD_ONLY);
         ResultsMessage resultsMsg = new ResultsMessage();
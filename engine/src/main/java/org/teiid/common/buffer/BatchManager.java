@@ -36,6 +36,12 @@ public interface BatchManager {
 	
 	boolean prefersMemory();
 	
+	/**
+	 * Hint that the batches are read only and may be read from the cache
+	 * rather than retained in memory after a read.
+	 */
+	void setCacheResident(boolean cacheResident);
+	
 	Long createManagedBatch(List<? extends List<?>> batch, Long previous, boolean removeOld) throws TeiidComponentException;
 	
 	void remove();
@@ -0,0 +1,269 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.common.buffer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.query.sql.symbol.Expression;
+
+/**
+ * A column oriented form of a {@link TupleBatch}.  Integer, long, and double columns
+ * are held as primitive arrays with a null bitmap, all other columns as object arrays.
+ * <br>
+ * Rows are available as boxed lists through {@link #getTuple(int)} and {@link #toTupleBatch()}
+ * for processing that is not column aware.
+ */
+public class ColumnBatch {
+
+	private long beginRow;
+	private int rowCount;
+	private byte termination = TupleBatch.NOT_TERMINATED;
+	private Class<?>[] types;
+	private Object[] columns;
+	private long[][] nulls;
+
+	/**
+	 * Create an empty batch with all values null
+	 * @param beginRow the one-based row of the tuple source which is the first row in this batch
+	 * @param types the column types
+	 * @param rowCount
+	 */
+	public ColumnBatch(long beginRow, Class<?>[] types, int rowCount) {
+		this.beginRow = beginRow;
+		this.types = types;
+		this.rowCount = rowCount;
+		this.columns = new Object[types.length];
+		this.nulls = new long[types.length][];
+		for (int col = 0; col < types.length; col++) {
+			Class<?> type = types[col];
+			if (type == DataTypeManager.DefaultDataClasses.INTEGER) {
+				columns[col] = new int[rowCount];
+			} else if (type == DataTypeManager.DefaultDataClasses.LONG) {
+				columns[col] = new long[rowCount];
+			} else if (type == DataTypeManager.DefaultDataClasses.DOUBLE) {
+				columns[col] = new double[rowCount];
+			} else {
+				columns[col] = new Object[rowCount];
+				continue;
+			}
+			long[] bitmap = new long[(rowCount + 63) >> 6];
+			Arrays.fill(bitmap, -1l);
+			nulls[col] = bitmap;
+		}
+	}
+
+	/**
+	 * @return the column types for the given schema
+	 */
+	public static Class<?>[] getTypes(List<? extends Expression> schema) {
+		Class<?>[] types = new Class<?>[schema.size()];
+		for (int i = 0; i < types.length; i++) {
+			types[i] = schema.get(i).getType();
+		}
+		return types;
+	}
+
+	/**
+	 * Create the columnar form of the batch.  Each primitive value is unboxed once.
+	 * @param types the column types of the batch
+	 */
+	public static ColumnBatch fromTupleBatch(TupleBatch batch, Class<?>[] types) {
+		List<List<?>> tuples = batch.getTuples();
+		ColumnBatch result = new ColumnBatch(batch.getBeginRow(), types, tuples.size());
+		result.termination = batch.getTermination();
+		for (int col = 0; col < types.length; col++) {
+			Object column = result.columns[col];
+			if (column instanceof Object[]) {
+				Object[] values = (Object[])column;
+				for (int row = 0; row < values.length; row++) {
+					values[row] = tuples.get(row).get(col);
+				}
+				continue;
+			}
+			for (int row = 0; row < result.rowCount; row++) {
+				result.setValue(row, col, tuples.get(row).get(col));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Convert back to a row based batch.  Primitive values are boxed.
+	 */
+	public TupleBatch toTupleBatch() {
+		List<List<?>> tuples = new ArrayList<List<?>>(rowCount);
+		for (int row = 0; row < rowCount; row++) {
+			tuples.add(getTuple(row));
+		}
+		TupleBatch result = new TupleBatch(beginRow, tuples);
+		result.setTermination(termination);
+		return result;
+	}
+
+	/**
+	 * @return a new boxed list of the values at the given zero-based row
+	 */
+	public List<Object> getTuple(int row) {
+		List<Object> tuple = new ArrayList<Object>(columns.length);
+		for (int col = 0; col < columns.length; col++) {
+			tuple.add(getValue(row, col));
+		}
+		return tuple;
+	}
+
+	public long getBeginRow() {
+		return beginRow;
+	}
+
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	public int getColumnCount() {
+		return columns.length;
+	}
+
+	public Class<?> getType(int col) {
+		return types[col];
+	}
+
+	public byte getTermination() {
+		return termination;
+	}
+
+	public void setTermination(byte termination) {
+		this.termination = termination;
+	}
+
+	/**
+	 * @return true if the column is held as a primitive array
+	 */
+	public boolean isPrimitive(int col) {
+		return nulls[col] != null;
+	}
+
+	public boolean isNull(int row, int col) {
+		long[] bitmap = nulls[col];
+		if (bitmap == null) {
+			return ((Object[])columns[col])[row] == null;
+		}
+		return (bitmap[row >> 6] & (1l << row)) != 0;
+	}
+
+	public int getInt(int row, int col) {
+		return ((int[])columns[col])[row];
+	}
+
+	public long getLong(int row, int col) {
+		return ((long[])columns[col])[row];
+	}
+
+	public double getDouble(int row, int col) {
+		return ((double[])columns[col])[row];
+	}
+
+	/**
+	 * @return the value at the zero-based row and column, boxing a primitive value
+	 */
+	public Object getValue(int row, int col) {
+		Object column = columns[col];
+		if (column instanceof Object[]) {
+			return ((Object[])column)[row];
+		}
+		if (isNull(row, col)) {
+			return null;
+		}
+		if (column instanceof int[]) {
+			return ((int[])column)[row];
+		}
+		if (column instanceof long[]) {
+			return ((long[])column)[row];
+		}
+		return ((double[])column)[row];
+	}
+
+	public void setValue(int row, int col, Object value) {
+		Object column = columns[col];
+		if (column instanceof Object[]) {
+			((Object[])column)[row] = value;
+			return;
+		}
+		if (value == null) {
+			setNull(row, col);
+			return;
+		}
+		if (column instanceof int[]) {
+			((int[])column)[row] = (Integer)value;
+		} else if (column instanceof long[]) {
+			((long[])column)[row] = (Long)value;
+		} else {
+			((double[])column)[row] = (Double)value;
+		}
+		nulls[col][row >> 6] &= ~(1l << row);
+	}
+
+	public void setNull(int row, int col) {
+		long[] bitmap = nulls[col];
+		if (bitmap == null) {
+			((Object[])columns[col])[row] = null;
+			return;
+		}
+		bitmap[row >> 6] |= 1l << row;
+	}
+
+	/**
+	 * @return the backing array of an integer column
+	 */
+	public int[] getIntColumn(int col) {
+		return (int[])columns[col];
+	}
+
+	/**
+	 * @return the backing array of a long column
+	 */
+	public long[] getLongColumn(int col) {
+		return (long[])columns[col];
+	}
+
+	/**
+	 * @return the backing array of a double column
+	 */
+	public double[] getDoubleColumn(int col) {
+		return (double[])columns[col];
+	}
+
+	/**
+	 * @return the backing array of a non-primitive column
+	 */
+	public Object[] getObjectColumn(int col) {
+		return (Object[])columns[col];
+	}
+
+	/**
+	 * @return the null bitmap of a primitive column, with bit (row % 64) of
+	 * word (row / 64) set if the row is null
+	 */
+	public long[] getNullBitmap(int col) {
+		return nulls[col];
+	}
+
+}
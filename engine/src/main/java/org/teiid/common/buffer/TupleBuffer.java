@@ -394,6 +394,13 @@ public class TupleBuffer {
 		this.manager.setPrefersMemory(prefersMemory);
 	}
 	
+	/**
+	 * @see BatchManager#setCacheResident(boolean)
+	 */
+	public void setCacheResident(boolean cacheResident) {
+		this.manager.setCacheResident(cacheResident);
+	}
+	
 	public String[] getTypes() {
 		return manager.getTypes();
 	}
@@ -26,6 +26,10 @@ import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
 import java.lang.ref.PhantomReference;
 import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
@@ -78,12 +82,38 @@ import org.teiid.query.util.Options;
 public class BufferManagerImpl implements BufferManager, ReplicatedObject<String> {
 
 	private static final int SYSTEM_OVERHEAD_MEGS = 150;
+	
+	/**
+	 * The ordering used to select batches for eviction from the heap.
+	 */
+	public enum EvictionPolicy {
+		/**
+		 * Least recently/frequently used with a time decay
+		 */
+		LRFU,
+		/**
+		 * Window TinyLFU, which is resistant to scans displacing frequently used batches 
+		 */
+		TINYLFU;
+		
+		<V extends BaseCacheEntry> EvictionQueue<V> createQueue(AtomicLong clock) {
+			if (this == TINYLFU) {
+				return new TinyLfuEvictionQueue<V>(clock);
+			}
+			return new LrfuEvictionQueue<V>(clock);
+		}
+	}
 
 	/**
 	 * Asynch cleaner attempts to age out old entries and to reduce the memory size when 
 	 * little is reserved.
 	 */
 	private static final int MAX_READ_AGE = 1<<19;
+	
+	private static final long ADAPT_INTERVAL_MILLIS = 1000;
+	static final double HIGH_HEAP_USAGE = .85;
+	static final double LOW_HEAP_USAGE = .6;
+	
 	private static final class Cleaner extends TimerTask {
 		WeakReference<BufferManagerImpl> bufferRef;
 		
@@ -101,6 +131,13 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 				}
 				AutoCleanupUtil.doCleanup(false);
 				impl.cleaning.set(true);
+				if (impl.adaptiveReserve) {
+					long now = System.currentTimeMillis();
+					if (now - impl.lastAdapt >= ADAPT_INTERVAL_MILLIS) {
+						impl.lastAdapt = now;
+						impl.adaptReserve(getHeapUsage());
+					}
+				}
 				try {
 					long evicted = impl.doEvictions(impl.maxProcessingBytes, true, impl.initialEvictionQueue);
 					if (evicted != 0 && LogManager.isMessageToBeRecorded(LogConstants.CTX_BUFFER_MGR, MessageLevel.TRACE)) {
@@ -158,6 +195,8 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 		private long totalSize;
 		private long currentSize;
 		private long rowsSampled;
+		private boolean columnar = columnarSpill;
+		private boolean cacheResident;
 
 		private BatchManagerImpl(Long newID, Class<?>[] types) {
 			this.id = newID;
@@ -193,6 +232,11 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 			this.prefersMemory.set(prefers);
 		}
 		
+		@Override
+		public void setCacheResident(boolean cacheResident) {
+			this.cacheResident = cacheResident;
+		}
+		
 		@Override
 		public boolean useSoftCache() {
 			return prefersMemory.get();
@@ -270,7 +314,12 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 		@Override
 		public List<? extends List<?>> deserialize(ObjectInput ois)
 				throws IOException, ClassNotFoundException {
-			List<? extends List<?>> batch = BatchSerializer.readBatch(ois, types);
+			List<? extends List<?>> batch = null;
+			if (columnar) {
+				batch = columnarSerializer.readBatch(ois, types);
+			} else {
+				batch = BatchSerializer.readBatch(ois, types);
+			}
 			if (lobManager != null) {
 				for (int i = batch.size() - 1; i >= 0; i--) {
 					try {
@@ -292,7 +341,11 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 			}
 			try {
 				//it's expected that the containing structure has updated the lob manager
-				BatchSerializer.writeBatch(oos, types, obj);
+				if (columnar) {
+					columnarSerializer.writeBatch(oos, types, obj);
+				} else {
+					BatchSerializer.writeBatch(oos, types, obj);
+				}
 			} catch (RuntimeException e) {
 				if (ExceptionUtil.getExceptionOfType(e, ClassCastException.class) != null) {
 					throw e;
@@ -319,6 +372,9 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 			if (LogManager.isMessageToBeRecorded(LogConstants.CTX_BUFFER_MGR, MessageLevel.TRACE)) {
 				LogManager.logTrace(LogConstants.CTX_BUFFER_MGR, id, "getting batch", batch, "total reads", reads, "reference hits", referenceHit.get()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 			}
+			if (retain && cacheResident && adaptiveReserve) {
+				return getResidentBatch(batch);
+			}
 			CacheEntry ce = fastGet(batch, prefersMemory.get(), retain);
 			if (ce != null) {
 			    if (!retain) {
@@ -357,6 +413,53 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 			return (List<List<?>>)ce.getObject();
 		}
 
+		/**
+		 * Get a batch without promoting it into the memory entries.  Once a batch
+		 * has been persisted it is deserialized from the cache, which is typically
+		 * the memory buffer, each time it is not already referenced.
+		 */
+		@SuppressWarnings("unchecked")
+		private List<List<?>> getResidentBatch(Long batch) throws TeiidComponentException {
+			CacheEntry ce = getReferencedEntry(batch);
+			if (ce != null) {
+				return (List<List<?>>)ce.getObject();
+			}
+			Object o = cache.lockForLoad(batch, this);
+			try {
+				ce = getReferencedEntry(batch);
+				if (ce != null) {
+					return (List<List<?>>)ce.getObject();
+				}
+				readCount.incrementAndGet();
+				ce = cache.get(o, batch, this.ref);
+				if (ce == null) {
+					throw new AssertionError("Batch not found in storage " + batch); //$NON-NLS-1$
+				}
+				if (useWeakReferences) {
+					//allow concurrent readers to share the deserialized batch
+					weakReferenceCache.getValue(ce);
+				}
+			} finally {
+				cache.unlockForLoad(o);
+			}
+			return (List<List<?>>)ce.getObject();
+		}
+		
+		private CacheEntry getReferencedEntry(Long batch) {
+			CacheEntry ce = memoryEntries.get(batch);
+			if (ce == null && useWeakReferences) {
+				ce = weakReferenceCache.getByHash(batch);
+				if (ce != null && !ce.getId().equals(batch)) {
+					ce = null;
+				}
+			}
+			if (ce == null || ce.getObject() == null) {
+				return null;
+			}
+			referenceHit.getAndIncrement();
+			return ce;
+		}
+
 		@Override
 		public void remove(Long batch) {
 			Integer sizeEstimate = BufferManagerImpl.this.remove(id, batch, prefersMemory.get());
@@ -422,12 +525,17 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
     //set to acceptable defaults for testing
     private int maxProcessingBytes = 1 << 21; 
     private Integer maxProcessingBytesOrig;
-    long maxReserveBytes = 1 << 28;
+    volatile long maxReserveBytes = 1 << 28;
+    private long configuredMaxReserveBytes;
+    private boolean adaptiveReserve;
+    private long lastAdapt;
     AtomicLong reserveBatchBytes = new AtomicLong();
     AtomicLong overheadBytes = new AtomicLong();
     private int maxActivePlans = DQPConfiguration.DEFAULT_MAX_ACTIVE_PLANS; //used as a hint to set the reserveBatchKB
     private boolean useWeakReferences = true;
     private boolean inlineLobs = true;
+    private boolean columnarSpill;
+    private ColumnarBatchSerializer columnarSerializer = new ColumnarBatchSerializer();
     private int targetBytesPerRow = TARGET_BYTES_PER_ROW;
     private int maxSoftReferences;
     private int nominalProcessingMemoryMax = maxProcessingBytes;
@@ -439,8 +547,9 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
     
     private AtomicLong readAttempts = new AtomicLong();
     //TODO: consider the size estimate in the weighting function
-    LrfuEvictionQueue<CacheEntry> evictionQueue = new LrfuEvictionQueue<CacheEntry>(readAttempts);
-    LrfuEvictionQueue<CacheEntry> initialEvictionQueue = new LrfuEvictionQueue<CacheEntry>(readAttempts);
+    private EvictionPolicy evictionPolicy = EvictionPolicy.LRFU;
+    EvictionQueue<CacheEntry> evictionQueue = evictionPolicy.createQueue(readAttempts);
+    EvictionQueue<CacheEntry> initialEvictionQueue = evictionPolicy.createQueue(readAttempts);
     ConcurrentHashMap<Long, CacheEntry> memoryEntries = new ConcurrentHashMap<Long, CacheEntry>(16, .75f, CONCURRENCY_LEVEL);
     
     //limited size reference caches based upon the memory settings
@@ -470,6 +579,7 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
     private AtomicLong readCount = new AtomicLong();
 	private AtomicLong writeCount = new AtomicLong();
 	private AtomicLong referenceHit = new AtomicLong();
+	private AtomicLong evictionCount = new AtomicLong();
 	
 	//TODO: this does not scale well with multiple embedded instances
 	private static final Timer timer = new Timer("BufferManager Cleaner", true); //$NON-NLS-1$
@@ -513,10 +623,42 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 		return writeCount.get();
 	}
 	
+	/**
+	 * @return the bytes of columnar spill data prior to compression
+	 */
+	public long getColumnarBytesEncoded() {
+		return columnarSerializer.getBytesEncoded();
+	}
+	
+	/**
+	 * @return the bytes of columnar spill data after compression
+	 */
+	public long getColumnarBytesCompressed() {
+		return columnarSerializer.getBytesCompressed();
+	}
+	
 	public long getReadAttempts() {
 		return readAttempts.get();
 	}
 	
+	/**
+	 * @return the number of batches evicted from the heap
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+	
+	/**
+	 * @return the fraction of batch reads that did not require a read from the cache 
+	 */
+	public double getHitRatio() {
+		long attempts = readAttempts.get();
+		if (attempts == 0) {
+			return 0;
+		}
+		return Math.max(0, 1 - (double)readCount.get()/attempts);
+	}
+	
 	@Override
 	public int getMaxProcessingSize() {
 		return maxProcessingBytes;
@@ -636,6 +778,7 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 		if (maxReserveBatchKB > -1) {
 			long maxReserve = ((long)maxReserveBatchKB)<<10;
 			this.maxReserveBytes = maxReserve;
+			this.configuredMaxReserveBytes = maxReserve;
 			this.reserveBatchBytes.set(maxReserve);
 		} else {
 			this.maxReserveBytes = -1;
@@ -656,6 +799,7 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 			this.maxReserveBytes += Math.max(0, Math.min(one_gig, maxMemory) * .4);
     	}
 		this.reserveBatchBytes.set(maxReserveBytes);
+		this.configuredMaxReserveBytes = maxReserveBytes;
 		if (this.maxProcessingBytesOrig == null) {
 			//store the config value so that we can be reinitialized (this is not a clean approach)
 			this.maxProcessingBytesOrig = this.maxProcessingBytes;
@@ -894,8 +1038,8 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 		//we delay work here as there should be excess vm space, we are using an overestimate, and we want the cleaner to do the work if possible
 		//TODO: track sizes held by each queue independently
 		long maxToFree = Math.min(max, memoryCount - maxReserveBytes);
-		LrfuEvictionQueue<CacheEntry> first = initialEvictionQueue;
-		LrfuEvictionQueue<CacheEntry> second = evictionQueue;
+		EvictionQueue<CacheEntry> first = initialEvictionQueue;
+		EvictionQueue<CacheEntry> second = evictionQueue;
 		if (evictionQueue.getSize() > 2*initialEvictionQueue.getSize()) {
 			//attempt to evict from the non-initial queue first as these should essentially be cost "free" and hopefully the reference cache can mitigate
 			//the cost of rereading
@@ -911,7 +1055,7 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 		}
 	}
 	
-	long doEvictions(long maxToFree, boolean ageOut, LrfuEvictionQueue<CacheEntry> queue) {
+	long doEvictions(long maxToFree, boolean ageOut, EvictionQueue<CacheEntry> queue) {
 		if (queue == evictionQueue) {
 			maxToFree = Math.min(maxToFree, this.maxProcessingBytes);
 		}
@@ -920,7 +1064,7 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 				ageOut 
 				|| (queue == evictionQueue && activeBatchBytes.get() + overheadBytes.get() + this.maxReserveBytes/2 > reserveBatchBytes.get()) //nominal cleaning criterion 
 				|| (queue != evictionQueue && activeBatchBytes.get() + overheadBytes.get() + 3*this.maxReserveBytes/4 > reserveBatchBytes.get()))) { //assume that basically all initial batches will need to be written out at some point
-			CacheEntry ce = queue.firstEntry(!ageOut);
+			CacheEntry ce = ageOut?queue.oldestEntry():queue.firstEntry(true);
 			if (ce == null) {
 				break;
 			}
@@ -951,6 +1095,7 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 				if (evicted) {
 					synchronized (ce) {
 						if (memoryEntries.remove(ce.getId()) != null) {
+							evictionCount.getAndIncrement();
 							freed += ce.getSizeEstimate();
 							activeBatchBytes.addAndGet(-ce.getSizeEstimate());
 							queue.remove(ce); //ensures that an intervening get will still be cleaned
@@ -1179,8 +1324,8 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 		this.cache.shutdown();
 		this.cache = null;
 		this.memoryEntries.clear();
-		this.evictionQueue.getEvictionQueue().clear();
-		this.initialEvictionQueue.getEvictionQueue().clear();
+		this.evictionQueue.clear();
+		this.initialEvictionQueue.clear();
 		this.cleaner.cancel();
 	}
 
@@ -1319,6 +1464,107 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 	public void setInlineLobs(boolean inlineLobs) {
 		this.inlineLobs = inlineLobs;
 	}
+	
+	/**
+	 * Set to true to use the compressed columnar format for batches written to storage.
+	 * Only affects batch managers created after the call.
+	 * @param columnarSpill
+	 */
+	public void setColumnarSpill(boolean columnarSpill) {
+		this.columnarSpill = columnarSpill;
+	}
+	
+	public boolean isColumnarSpill() {
+		return columnarSpill;
+	}
+	
+	/**
+	 * Set the policy used to order heap batches for eviction.  Should be called prior to use.
+	 */
+	public void setEvictionPolicy(EvictionPolicy evictionPolicy) {
+		this.evictionPolicy = evictionPolicy;
+		this.evictionQueue = evictionPolicy.createQueue(readAttempts);
+		this.initialEvictionQueue = evictionPolicy.createQueue(readAttempts);
+	}
+	
+	public EvictionPolicy getEvictionPolicy() {
+		return evictionPolicy;
+	}
+	
+	/**
+	 * Set to true to adapt the reserve to heap pressure.  Under heap pressure the reserve
+	 * shrinks, so more batches are moved to the cache memory buffer, and it grows back to the 
+	 * initialized value as the pressure eases.  Read only buffers marked as cache resident
+	 * are also read from the cache rather than being retained on heap.
+	 * <br>
+	 * Only the heap reserve adapts, the cache memory buffer is not resized and batches read
+	 * from it are still deserialized.  Intended for use with an off heap memory buffer.
+	 * @param adaptiveReserve
+	 */
+	public void setAdaptiveReserve(boolean adaptiveReserve) {
+		this.adaptiveReserve = adaptiveReserve;
+	}
+	
+	public boolean isAdaptiveReserve() {
+		return adaptiveReserve;
+	}
+	
+	/**
+	 * Adjust the reserve by a fraction of the initialized value based upon
+	 * the heap usage.  The reserve will not go below 1/4 of the initialized value.
+	 * @param heapUsage the fraction of the max heap in use
+	 */
+	void adaptReserve(double heapUsage) {
+		long max = this.configuredMaxReserveBytes;
+		if (max <= 0) {
+			return;
+		}
+		long current = this.maxReserveBytes;
+		long step = Math.max(1, max >> 4);
+		long delta = 0;
+		if (heapUsage > HIGH_HEAP_USAGE) {
+			delta = -Math.min(step, current - (max >> 2));
+		} else if (heapUsage < LOW_HEAP_USAGE) {
+			delta = Math.min(step, max - current);
+		}
+		if (delta == 0) {
+			return;
+		}
+		this.maxReserveBytes = current + delta;
+		this.reserveBatchBytes.addAndGet(delta);
+		if (LogManager.isMessageToBeRecorded(LogConstants.CTX_BUFFER_MGR, MessageLevel.DETAIL)) {
+			LogManager.logDetail(LogConstants.CTX_BUFFER_MGR, "Adjusted the max reserve to", this.maxReserveBytes, "with heap usage", heapUsage); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		if (delta < 0) {
+			persistBatchReferences((int)Math.min(Integer.MAX_VALUE, -delta));
+		}
+	}
+	
+	/**
+	 * @return the fraction of the heap in use after the last collection, or the
+	 * current usage if the collection usage is not available
+	 */
+	static double getHeapUsage() {
+		long used = 0;
+		long max = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() != MemoryType.HEAP || !pool.isCollectionUsageThresholdSupported()) {
+				continue;
+			}
+			MemoryUsage usage = pool.getCollectionUsage();
+			if (usage == null || usage.getMax() <= 0) {
+				continue;
+			}
+			used += usage.getUsed();
+			max += usage.getMax();
+		}
+		if (max == 0) {
+			Runtime runtime = Runtime.getRuntime();
+			used = runtime.totalMemory() - runtime.freeMemory();
+			max = runtime.maxMemory();
+		}
+		return (double)used/max;
+	}
 
 	public int getMaxReserveKB() {
 		return (int)(maxReserveBytes>>10);
@@ -0,0 +1,718 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.common.buffer.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.teiid.client.BatchSerializer;
+import org.teiid.client.ResizingArrayList;
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.core.util.AccessibleByteArrayOutputStream;
+
+/**
+ * A columnar encoding of batches intended for spill storage.
+ * <br>
+ * Each column with a columnar encoding is written as a null indicator followed by the non-null values:
+ * <ul>
+ * <li>integral, boolean, and date/time values are bit packed relative to the minimum value or as deltas
+ * <li>strings are bit packed references to a dictionary when there are enough repeated values
+ * <li>floating point values are written as their raw bits
+ * </ul>
+ * The encoded columns are compressed as a single block with a simple LZ4 style compressor.
+ * Any remaining columns, such as lobs and objects, follow the block using the {@link BatchSerializer}
+ * row based encoding.
+ */
+final class ColumnarBatchSerializer {
+
+	private enum ColumnType {
+		INTEGER,
+		LONG,
+		SHORT,
+		BYTE,
+		CHAR,
+		BOOLEAN,
+		DATE,
+		TIME,
+		TIMESTAMP,
+		FLOAT,
+		DOUBLE,
+		STRING
+	}
+
+	private static final Map<String, ColumnType> COLUMN_TYPES = new HashMap<String, ColumnType>();
+	static {
+		COLUMN_TYPES.put(DataTypeManager.DefaultDataTypes.INTEGER, ColumnType.INTEGER);
+		COLUMN_TYPES.put(DataTypeManager.DefaultDataTypes.LONG, ColumnType.LONG);
+		COLUMN_TYPES.put(DataTypeManager.DefaultDataTypes.SHORT, ColumnType.SHORT);
+		COLUMN_TYPES.put(DataTypeManager.DefaultDataTypes.BYTE, ColumnType.BYTE);
+		COLUMN_TYPES.put(DataTypeManager.DefaultDataTypes.CHAR, ColumnType.CHAR);
+		COLUMN_TYPES.put(DataTypeManager.DefaultDataTypes.BOOLEAN, ColumnType.BOOLEAN);
+		COLUMN_TYPES.put(DataTypeManager.DefaultDataTypes.DATE, ColumnType.DATE);
+		COLUMN_TYPES.put(DataTypeManager.DefaultDataTypes.TIME, ColumnType.TIME);
+		COLUMN_TYPES.put(DataTypeManager.DefaultDataTypes.TIMESTAMP, ColumnType.TIMESTAMP);
+		COLUMN_TYPES.put(DataTypeManager.DefaultDataTypes.FLOAT, ColumnType.FLOAT);
+		COLUMN_TYPES.put(DataTypeManager.DefaultDataTypes.DOUBLE, ColumnType.DOUBLE);
+		COLUMN_TYPES.put(DataTypeManager.DefaultDataTypes.STRING, ColumnType.STRING);
+	}
+
+	private static final byte NO_NULLS = 0;
+	private static final byte ALL_NULLS = 1;
+	private static final byte SOME_NULLS = 2;
+
+	private static final byte FRAME_OF_REFERENCE = 0;
+	private static final byte DELTA = 1;
+
+	private static final byte PLAIN = 0;
+	private static final byte DICTIONARY = 1;
+
+	private static final int MIN_MATCH = 4;
+	private static final int MAX_OFFSET = 0xFFFF;
+	private static final int HASH_BITS = 12;
+
+	private AtomicLong bytesEncoded = new AtomicLong();
+	private AtomicLong bytesCompressed = new AtomicLong();
+
+	/**
+	 * @return the total size of the encoded columns prior to compression
+	 */
+	public long getBytesEncoded() {
+		return bytesEncoded.get();
+	}
+
+	/**
+	 * @return the total size of the encoded columns after compression
+	 */
+	public long getBytesCompressed() {
+		return bytesCompressed.get();
+	}
+
+	public void writeBatch(ObjectOutput out, String[] types, List<? extends List<?>> batch) throws IOException {
+		out.writeInt(batch.size());
+		if (batch.isEmpty()) {
+			return;
+		}
+		AccessibleByteArrayOutputStream baos = new AccessibleByteArrayOutputStream(1 << 12);
+		DataOutputStream dos = new DataOutputStream(baos);
+		List<Integer> otherColumns = null;
+		for (int col = 0; col < types.length; col++) {
+			ColumnType type = COLUMN_TYPES.get(types[col]);
+			if (type == null) {
+				if (otherColumns == null) {
+					otherColumns = new ArrayList<Integer>();
+				}
+				otherColumns.add(col);
+				continue;
+			}
+			writeColumn(dos, type, col, batch);
+		}
+		dos.flush();
+		int length = baos.getCount();
+		byte[] compressed = new byte[length + length/255 + 16];
+		int compressedLength = compress(baos.getBuffer(), length, compressed);
+		out.writeInt(length);
+		if (compressedLength < length) {
+			out.writeInt(compressedLength);
+			out.write(compressed, 0, compressedLength);
+		} else {
+			out.writeInt(-1);
+			out.write(baos.getBuffer(), 0, length);
+			compressedLength = length;
+		}
+		bytesEncoded.addAndGet(length);
+		bytesCompressed.addAndGet(compressedLength);
+		if (otherColumns != null) {
+			final int[] cols = new int[otherColumns.size()];
+			String[] otherTypes = new String[cols.length];
+			for (int i = 0; i < cols.length; i++) {
+				cols[i] = otherColumns.get(i);
+				otherTypes[i] = types[cols[i]];
+			}
+			BatchSerializer.writeBatch(out, otherTypes, project(batch, cols));
+		}
+	}
+
+	public List<List<Object>> readBatch(ObjectInput in, String[] types) throws IOException, ClassNotFoundException {
+		int rows = in.readInt();
+		List<List<Object>> batch = new ResizingArrayList<List<Object>>(rows);
+		if (rows == 0) {
+			return batch;
+		}
+		for (int row = 0; row < rows; row++) {
+			batch.add(Arrays.asList(new Object[types.length]));
+		}
+		int length = in.readInt();
+		int compressedLength = in.readInt();
+		byte[] bytes = new byte[length];
+		if (compressedLength < 0) {
+			in.readFully(bytes);
+		} else {
+			byte[] compressed = new byte[compressedLength];
+			in.readFully(compressed);
+			decompress(compressed, compressedLength, bytes);
+		}
+		DataInputStream dis = new DataInputStream(new ByteArrayInputStream(bytes));
+		List<Integer> otherColumns = null;
+		for (int col = 0; col < types.length; col++) {
+			ColumnType type = COLUMN_TYPES.get(types[col]);
+			if (type == null) {
+				if (otherColumns == null) {
+					otherColumns = new ArrayList<Integer>();
+				}
+				otherColumns.add(col);
+				continue;
+			}
+			readColumn(dis, type, col, batch);
+		}
+		if (otherColumns != null) {
+			String[] otherTypes = new String[otherColumns.size()];
+			for (int i = 0; i < otherTypes.length; i++) {
+				otherTypes[i] = types[otherColumns.get(i)];
+			}
+			List<List<Object>> other = BatchSerializer.readBatch(in, otherTypes);
+			for (int row = 0; row < rows; row++) {
+				List<Object> otherRow = other.get(row);
+				List<Object> tuple = batch.get(row);
+				for (int i = 0; i < otherTypes.length; i++) {
+					tuple.set(otherColumns.get(i), otherRow.get(i));
+				}
+			}
+		}
+		return batch;
+	}
+
+	private static List<List<?>> project(final List<? extends List<?>> batch, final int[] cols) {
+		return new AbstractList<List<?>>() {
+			@Override
+			public List<?> get(int index) {
+				final List<?> tuple = batch.get(index);
+				return new AbstractList<Object>() {
+					@Override
+					public Object get(int i) {
+						return tuple.get(cols[i]);
+					}
+
+					@Override
+					public int size() {
+						return cols.length;
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return batch.size();
+			}
+		};
+	}
+
+	private static void writeColumn(DataOutputStream out, ColumnType type, int col, List<? extends List<?>> batch) throws IOException {
+		int rows = batch.size();
+		Object[] values = new Object[rows];
+		int count = 0;
+		byte[] nulls = new byte[(rows + 7) >> 3];
+		for (int row = 0; row < rows; row++) {
+			Object value = batch.get(row).get(col);
+			if (value == null) {
+				nulls[row >> 3] |= 1 << (row & 7);
+			} else {
+				values[count++] = value;
+			}
+		}
+		if (count == 0) {
+			out.writeByte(ALL_NULLS);
+			return;
+		}
+		if (count < rows) {
+			out.writeByte(SOME_NULLS);
+			out.write(nulls);
+		} else {
+			out.writeByte(NO_NULLS);
+		}
+		switch (type) {
+		case FLOAT:
+			for (int i = 0; i < count; i++) {
+				out.writeInt(Float.floatToRawIntBits((Float)values[i]));
+			}
+			break;
+		case DOUBLE:
+			for (int i = 0; i < count; i++) {
+				out.writeLong(Double.doubleToRawLongBits((Double)values[i]));
+			}
+			break;
+		case STRING:
+			writeStrings(out, values, count);
+			break;
+		case TIMESTAMP:
+		{
+			long[] millis = new long[count];
+			long[] nanos = new long[count];
+			for (int i = 0; i < count; i++) {
+				Timestamp ts = (Timestamp)values[i];
+				millis[i] = ts.getTime();
+				nanos[i] = ts.getNanos();
+			}
+			writeLongs(out, millis, count);
+			writeLongs(out, nanos, count);
+			break;
+		}
+		default:
+		{
+			long[] longs = new long[count];
+			for (int i = 0; i < count; i++) {
+				longs[i] = toLong(type, values[i]);
+			}
+			writeLongs(out, longs, count);
+		}
+		}
+	}
+
+	private static void readColumn(DataInputStream in, ColumnType type, int col, List<List<Object>> batch) throws IOException {
+		int rows = batch.size();
+		byte nullType = in.readByte();
+		if (nullType == ALL_NULLS) {
+			return;
+		}
+		byte[] nulls = null;
+		int count = rows;
+		if (nullType == SOME_NULLS) {
+			nulls = new byte[(rows + 7) >> 3];
+			in.readFully(nulls);
+			for (int row = 0; row < rows; row++) {
+				if ((nulls[row >> 3] & (1 << (row & 7))) != 0) {
+					count--;
+				}
+			}
+		}
+		Object[] values = new Object[count];
+		switch (type) {
+		case FLOAT:
+			for (int i = 0; i < count; i++) {
+				values[i] = Float.intBitsToFloat(in.readInt());
+			}
+			break;
+		case DOUBLE:
+			for (int i = 0; i < count; i++) {
+				values[i] = Double.longBitsToDouble(in.readLong());
+			}
+			break;
+		case STRING:
+			readStrings(in, values, count);
+			break;
+		case TIMESTAMP:
+		{
+			long[] millis = readLongs(in, count);
+			long[] nanos = readLongs(in, count);
+			for (int i = 0; i < count; i++) {
+				Timestamp ts = new Timestamp(millis[i]);
+				ts.setNanos((int)nanos[i]);
+				values[i] = ts;
+			}
+			break;
+		}
+		default:
+		{
+			long[] longs = readLongs(in, count);
+			for (int i = 0; i < count; i++) {
+				values[i] = fromLong(type, longs[i]);
+			}
+		}
+		}
+		int index = 0;
+		for (int row = 0; row < rows; row++) {
+			if (nulls != null && (nulls[row >> 3] & (1 << (row & 7))) != 0) {
+				continue;
+			}
+			batch.get(row).set(col, DataTypeManager.getCanonicalValue(values[index++]));
+		}
+	}
+
+	private static long toLong(ColumnType type, Object value) {
+		switch (type) {
+		case CHAR:
+			return ((Character)value).charValue();
+		case BOOLEAN:
+			return ((Boolean)value).booleanValue()?1:0;
+		case DATE:
+		case TIME:
+			return ((java.util.Date)value).getTime();
+		default:
+			return ((Number)value).longValue();
+		}
+	}
+
+	private static Object fromLong(ColumnType type, long value) {
+		switch (type) {
+		case INTEGER:
+			return Integer.valueOf((int)value);
+		case SHORT:
+			return Short.valueOf((short)value);
+		case BYTE:
+			return Byte.valueOf((byte)value);
+		case CHAR:
+			return Character.valueOf((char)value);
+		case BOOLEAN:
+			return Boolean.valueOf(value != 0);
+		case DATE:
+			return new java.sql.Date(value);
+		case TIME:
+			return new Time(value);
+		default:
+			return Long.valueOf(value);
+		}
+	}
+
+	/**
+	 * Write the values as bit packed offsets from the minimum value, or as
+	 * bit packed deltas if that is narrower.
+	 */
+	static void writeLongs(DataOutput out, long[] values, int count) throws IOException {
+		long min = values[0];
+		long max = values[0];
+		long minDelta = 0;
+		long maxDelta = 0;
+		for (int i = 1; i < count; i++) {
+			long value = values[i];
+			if (value < min) {
+				min = value;
+			} else if (value > max) {
+				max = value;
+			}
+			long delta = value - values[i - 1];
+			if (i == 1 || delta < minDelta) {
+				minDelta = delta;
+			}
+			if (i == 1 || delta > maxDelta) {
+				maxDelta = delta;
+			}
+		}
+		int bits = getBits(min, max);
+		int deltaBits = getBits(minDelta, maxDelta);
+		BitWriter writer = new BitWriter(out);
+		if (count > 1 && deltaBits < bits) {
+			out.writeByte(DELTA);
+			out.writeLong(values[0]);
+			out.writeLong(minDelta);
+			out.writeByte(deltaBits);
+			for (int i = 1; i < count; i++) {
+				writer.write(values[i] - values[i - 1] - minDelta, deltaBits);
+			}
+		} else {
+			out.writeByte(FRAME_OF_REFERENCE);
+			out.writeLong(min);
+			out.writeByte(bits);
+			for (int i = 0; i < count; i++) {
+				writer.write(values[i] - min, bits);
+			}
+		}
+		writer.flush();
+	}
+
+	static long[] readLongs(DataInput in, int count) throws IOException {
+		long[] values = new long[count];
+		BitReader reader = new BitReader(in);
+		if (in.readByte() == DELTA) {
+			values[0] = in.readLong();
+			long minDelta = in.readLong();
+			int bits = in.readByte();
+			for (int i = 1; i < count; i++) {
+				values[i] = values[i - 1] + minDelta + reader.read(bits);
+			}
+		} else {
+			long min = in.readLong();
+			int bits = in.readByte();
+			for (int i = 0; i < count; i++) {
+				values[i] = min + reader.read(bits);
+			}
+		}
+		return values;
+	}
+
+	private static int getBits(long min, long max) {
+		long range = max - min;
+		if (range < 0) {
+			return 64; //overflow
+		}
+		return 64 - Long.numberOfLeadingZeros(range);
+	}
+
+	private static void writeStrings(DataOutput out, Object[] values, int count) throws IOException {
+		Map<String, Integer> dictionary = new HashMap<String, Integer>();
+		List<String> entries = new ArrayList<String>();
+		long[] refs = new long[count];
+		int maxEntries = count >> 1;
+		for (int i = 0; i < count; i++) {
+			String value = (String)values[i];
+			Integer ref = dictionary.get(value);
+			if (ref == null) {
+				if (entries.size() >= maxEntries) {
+					dictionary = null;
+					break;
+				}
+				ref = entries.size();
+				dictionary.put(value, ref);
+				entries.add(value);
+			}
+			refs[i] = ref;
+		}
+		if (dictionary == null) {
+			out.writeByte(PLAIN);
+			for (int i = 0; i < count; i++) {
+				writeString(out, (String)values[i]);
+			}
+			return;
+		}
+		out.writeByte(DICTIONARY);
+		out.writeInt(entries.size());
+		for (String entry : entries) {
+			writeString(out, entry);
+		}
+		writeLongs(out, refs, count);
+	}
+
+	private static void readStrings(DataInput in, Object[] values, int count) throws IOException {
+		if (in.readByte() == PLAIN) {
+			for (int i = 0; i < count; i++) {
+				values[i] = readString(in);
+			}
+			return;
+		}
+		String[] entries = new String[in.readInt()];
+		for (int i = 0; i < entries.length; i++) {
+			entries[i] = (String)DataTypeManager.getCanonicalValue(readString(in));
+		}
+		long[] refs = readLongs(in, count);
+		for (int i = 0; i < count; i++) {
+			values[i] = entries[(int)refs[i]];
+		}
+	}
+
+	/**
+	 * Similar to {@link DataOutput#writeUTF(String)}, but without the length restriction
+	 */
+	private static void writeString(DataOutput out, String value) throws IOException {
+		int length = value.length();
+		out.writeInt(length);
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c > 0 && c < 0x80) {
+				out.write(c);
+			} else if (c < 0x800) {
+				out.write(0xC0 | (c >> 6));
+				out.write(0x80 | (c & 0x3F));
+			} else {
+				out.write(0xE0 | (c >> 12));
+				out.write(0x80 | ((c >> 6) & 0x3F));
+				out.write(0x80 | (c & 0x3F));
+			}
+		}
+	}
+
+	private static String readString(DataInput in) throws IOException {
+		int length = in.readInt();
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			int b = in.readUnsignedByte();
+			if (b < 0x80) {
+				chars[i] = (char)b;
+			} else if ((b & 0xE0) == 0xC0) {
+				chars[i] = (char)(((b & 0x1F) << 6) | (in.readUnsignedByte() & 0x3F));
+			} else {
+				chars[i] = (char)(((b & 0x0F) << 12) | ((in.readUnsignedByte() & 0x3F) << 6) | (in.readUnsignedByte() & 0x3F));
+			}
+		}
+		return new String(chars);
+	}
+
+	private static final class BitWriter {
+		private DataOutput out;
+		private int current;
+		private int used;
+
+		BitWriter(DataOutput out) {
+			this.out = out;
+		}
+
+		void write(long value, int bits) throws IOException {
+			int remaining = bits;
+			while (remaining > 0) {
+				int take = Math.min(8 - used, remaining);
+				current |= ((int)(value >>> (bits - remaining)) & ((1 << take) - 1)) << used;
+				used += take;
+				remaining -= take;
+				if (used == 8) {
+					out.write(current);
+					current = 0;
+					used = 0;
+				}
+			}
+		}
+
+		void flush() throws IOException {
+			if (used > 0) {
+				out.write(current);
+			}
+		}
+	}
+
+	private static final class BitReader {
+		private DataInput in;
+		private int current;
+		private int available;
+
+		BitReader(DataInput in) {
+			this.in = in;
+		}
+
+		long read(int bits) throws IOException {
+			long value = 0;
+			int read = 0;
+			while (read < bits) {
+				if (available == 0) {
+					current = in.readUnsignedByte();
+					available = 8;
+				}
+				int take = Math.min(available, bits - read);
+				value |= ((long)((current >>> (8 - available)) & ((1 << take) - 1))) << read;
+				available -= take;
+				read += take;
+			}
+			return value;
+		}
+	}
+
+	/**
+	 * Compress using the LZ4 block sequence layout - a token of literal and match lengths,
+	 * the literals, and a two byte match offset.  The last sequence contains only literals.
+	 * @param dest must be at least srcLength + srcLength/255 + 16 bytes
+	 * @return the compressed length
+	 */
+	static int compress(byte[] src, int srcLength, byte[] dest) {
+		int[] table = new int[1 << HASH_BITS];
+		int anchor = 0;
+		int pos = 0;
+		int destPos = 0;
+		int limit = srcLength - MIN_MATCH;
+		while (pos <= limit) {
+			int seq = readInt(src, pos);
+			int hash = (seq * -1640531535) >>> (32 - HASH_BITS);
+			int ref = table[hash] - 1;
+			table[hash] = pos + 1;
+			if (ref < 0 || pos - ref > MAX_OFFSET || readInt(src, ref) != seq) {
+				pos++;
+				continue;
+			}
+			int matchLength = MIN_MATCH;
+			while (pos + matchLength < srcLength && src[ref + matchLength] == src[pos + matchLength]) {
+				matchLength++;
+			}
+			destPos = writeSequence(src, anchor, pos - anchor, pos - ref, matchLength, dest, destPos);
+			pos += matchLength;
+			anchor = pos;
+		}
+		return writeSequence(src, anchor, srcLength - anchor, 0, 0, dest, destPos);
+	}
+
+	private static int writeSequence(byte[] src, int literalStart, int literalLength, int offset, int matchLength, byte[] dest, int destPos) {
+		int tokenPos = destPos++;
+		int token = Math.min(literalLength, 15) << 4;
+		if (literalLength >= 15) {
+			destPos = writeLength(literalLength - 15, dest, destPos);
+		}
+		System.arraycopy(src, literalStart, dest, destPos, literalLength);
+		destPos += literalLength;
+		if (matchLength > 0) {
+			dest[destPos++] = (byte)offset;
+			dest[destPos++] = (byte)(offset >>> 8);
+			int length = matchLength - MIN_MATCH;
+			token |= Math.min(length, 15);
+			if (length >= 15) {
+				destPos = writeLength(length - 15, dest, destPos);
+			}
+		}
+		dest[tokenPos] = (byte)token;
+		return destPos;
+	}
+
+	private static int writeLength(int length, byte[] dest, int destPos) {
+		while (length >= 255) {
+			dest[destPos++] = (byte)255;
+			length -= 255;
+		}
+		dest[destPos++] = (byte)length;
+		return destPos;
+	}
+
+	static void decompress(byte[] src, int srcLength, byte[] dest) {
+		int pos = 0;
+		int destPos = 0;
+		while (pos < srcLength) {
+			int token = src[pos++] & 0xFF;
+			int literalLength = token >>> 4;
+			if (literalLength == 15) {
+				int b = 0;
+				do {
+					b = src[pos++] & 0xFF;
+					literalLength += b;
+				} while (b == 255);
+			}
+			System.arraycopy(src, pos, dest, destPos, literalLength);
+			pos += literalLength;
+			destPos += literalLength;
+			if (pos >= srcLength) {
+				break;
+			}
+			int offset = (src[pos++] & 0xFF) | ((src[pos++] & 0xFF) << 8);
+			int matchLength = token & 0x0F;
+			if (matchLength == 15) {
+				int b = 0;
+				do {
+					b = src[pos++] & 0xFF;
+					matchLength += b;
+				} while (b == 255);
+			}
+			matchLength += MIN_MATCH;
+			//the match may overlap the output, so copy byte by byte
+			int ref = destPos - offset;
+			for (int i = 0; i < matchLength; i++) {
+				dest[destPos++] = dest[ref++];
+			}
+		}
+	}
+
+	private static int readInt(byte[] bytes, int pos) {
+		return (bytes[pos] & 0xFF) | ((bytes[pos + 1] & 0xFF) << 8) | ((bytes[pos + 2] & 0xFF) << 16) | ((bytes[pos + 3] & 0xFF) << 24);
+	}
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.common.buffer.impl;
+
+import org.teiid.common.buffer.BaseCacheEntry;
+
+/**
+ * An eviction ordering for cache entries.  Has assumptions that match buffermanager usage -
+ * callers of {@link #touch(BaseCacheEntry)} should be synchronized on the value.
+ * Null values are not allowed.
+ * @param <V>
+ */
+public interface EvictionQueue<V extends BaseCacheEntry> {
+
+	/**
+	 * @return true if the value was added
+	 */
+	boolean add(V value);
+
+	/**
+	 * @return true if the value was removed
+	 */
+	boolean remove(V value);
+
+	/**
+	 * Record an access to the value.  The value will be added if it is not already present. 
+	 */
+	void touch(V value);
+
+	/**
+	 * Return the next eviction candidate
+	 * @param poll if true the candidate is removed
+	 */
+	V firstEntry(boolean poll);
+
+	/**
+	 * Return, without removing, the entry that is the best candidate for age based eviction.
+	 * Its key has the oldest, or close to the oldest, last access.
+	 */
+	V oldestEntry();
+
+	int getSize();
+
+	void clear();
+
+}
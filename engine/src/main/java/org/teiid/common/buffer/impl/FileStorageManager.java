@@ -22,6 +22,11 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -45,6 +50,7 @@ public class FileStorageManager implements StorageManager {
 	
 	private static final long MB = 1024L * 1024L;
 	public static final int DEFAULT_MAX_OPEN_FILES = 64;
+	public static final int DEFAULT_MAX_MAPPED_WINDOWS = 4096;
 	public static final long DEFAULT_MAX_BUFFERSPACE = 50L * 1024L * MB;
 	private static final String FILE_PREFIX = "b_"; //$NON-NLS-1$
 	
@@ -54,12 +60,81 @@ public class FileStorageManager implements StorageManager {
 	
 	private AtomicLong sample = new AtomicLong();
 	
+	private static Object unsafe;
+	private static Method invokeCleaner;
+	
+	static {
+		try {
+			//java 9+
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe"); //$NON-NLS-1$
+			invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class); //$NON-NLS-1$
+			Field f = unsafeClass.getDeclaredField("theUnsafe"); //$NON-NLS-1$
+			f.setAccessible(true);
+			unsafe = f.get(null);
+		} catch (Exception e) {
+			invokeCleaner = null;
+		}
+	}
+	
+	/**
+	 * Release the mapping without waiting for garbage collection so that the disk
+	 * and address space are freed promptly.  The buffer must not be accessed afterwards,
+	 * so this is only called on windows that are exclusively accessed under the store lock.
+	 */
+	static void unmap(MappedByteBuffer buffer) {
+		try {
+			if (invokeCleaner != null) {
+				invokeCleaner.invoke(unsafe, buffer);
+				return;
+			}
+			//java 8
+			Method cleanerMethod = buffer.getClass().getMethod("cleaner"); //$NON-NLS-1$
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buffer);
+			if (cleaner != null) {
+				cleaner.getClass().getMethod("clean").invoke(cleaner); //$NON-NLS-1$
+			}
+		} catch (Exception e) {
+			//leave the mapping to be released by garbage collection
+			LogManager.logDetail(LogConstants.CTX_BUFFER_MGR, e, "Could not unmap a buffer file window"); //$NON-NLS-1$
+		}
+	}
+	
+	private static class MappedWindow {
+		private DiskStore store;
+		private long index;
+		
+		public MappedWindow(DiskStore store, long index) {
+			this.store = store;
+			this.index = index;
+		}
+		
+		@Override
+		public int hashCode() {
+			return store.hashCode() * 31 + (int)index;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			if (!(obj instanceof MappedWindow)) {
+				return false;
+			}
+			MappedWindow other = (MappedWindow)obj;
+			return other.store == store && other.index == index;
+		}
+	}
+	
 	private class FileInfo {
     	private File file;
         private RandomAccessFile fileData;       // may be null if not open
+        private long length; //tracked to avoid a stat call per access
 
         public FileInfo(File file) {
             this.file = file;
+            this.length = file.length();
         }
 
         public RandomAccessFile open() throws FileNotFoundException {
@@ -88,6 +163,7 @@ public class FileStorageManager implements StorageManager {
 				}
         	}
         	file.delete();
+        	length = 0;
         }
 
         public String toString() {
@@ -98,6 +174,7 @@ public class FileStorageManager implements StorageManager {
 	public class DiskStore extends FileStore {
 	    private String name;
 		private FileInfo fileInfo; 
+		private long windowCount;
 	    
 	    public DiskStore(String name) {
 			this.name = name;
@@ -108,12 +185,15 @@ public class FileStorageManager implements StorageManager {
 	    	if (fileInfo == null) {
 	    		return 0;
 	    	}
-	    	return fileInfo.file.length();
+	    	return fileInfo.length;
 	    }
 	    
 	    @Override
 	    protected synchronized int readWrite(long fileOffset, byte[] b, int offSet,
 	    		int length, boolean write) throws IOException {
+	    	if (mappedWindowSize > 0) {
+	    		return readWriteMapped(fileOffset, b, offSet, length, write);
+	    	}
 	    	if (!write) {
 	    		if (fileInfo == null) {
 	    			return -1;
@@ -141,9 +221,97 @@ public class FileStorageManager implements StorageManager {
 	    	return length;
 	    }
 
+	    /**
+	     * Access the file through mapped windows of the file so that reads and writes
+	     * against resident pages do not require a system call.
+	     */
+	    private int readWriteMapped(long fileOffset, byte[] b, int offSet,
+	    		int length, boolean write) throws IOException {
+	    	if (fileInfo == null) {
+	    		if (!write) {
+	    			return -1;
+	    		}
+	    		fileInfo = new FileInfo(createFile(name));
+	    	}
+	    	long fileLength = fileInfo.length;
+	    	if (write) {
+	    		if (fileOffset + length > fileLength) {
+		    		try {
+		    			setLength(fileInfo.open(), fileOffset + length, false);
+		    		} finally {
+		    			fileInfo.close();
+		    		}
+		    		fileLength = fileOffset + length;
+	    		}
+	    	} else {
+	    		if (fileOffset >= fileLength) {
+	    			return -1;
+	    		}
+	    		length = (int)Math.min(length, fileLength - fileOffset);
+	    	}
+	    	int remaining = length;
+	    	while (remaining > 0) {
+	    		long index = fileOffset / mappedWindowSize;
+	    		int position = (int)(fileOffset % mappedWindowSize);
+	    		int toCopy = (int)Math.min(remaining, mappedWindowSize - position);
+	    		MappedByteBuffer buffer = getWindow(index, position + toCopy, fileLength);
+	    		buffer.position(position);
+	    		if (write) {
+	    			buffer.put(b, offSet, toCopy);
+	    		} else {
+	    			buffer.get(b, offSet, toCopy);
+	    		}
+	    		fileOffset += toCopy;
+	    		offSet += toCopy;
+	    		remaining -= toCopy;
+	    	}
+	    	return length;
+	    }
+	    
+	    /**
+	     * Get the window mapping at least the given size.  The tail window is remapped as 
+	     * the file grows.
+	     */
+	    private MappedByteBuffer getWindow(long index, int size, long fileLength) throws IOException {
+	    	MappedWindow key = new MappedWindow(this, index);
+	    	MappedByteBuffer buffer = mappedWindows.get(key);
+	    	if (buffer != null && buffer.capacity() >= size) {
+	    		return buffer;
+	    	}
+	    	long start = index * mappedWindowSize;
+	    	long mapSize = Math.min(mappedWindowSize, fileLength - start);
+	    	try {
+	    		//the mapping remains valid after the file is closed
+	    		buffer = fileInfo.open().getChannel().map(MapMode.READ_WRITE, start, mapSize);
+	    	} finally {
+	    		fileInfo.close();
+	    	}
+	    	MappedByteBuffer old = mappedWindows.put(key, buffer);
+	    	if (old != null) {
+	    		//the smaller tail window is only accessed under this lock
+	    		unmap(old);
+	    	}
+	    	this.windowCount = Math.max(this.windowCount, index + 1);
+	    	return buffer;
+	    }
+	    
+	    /**
+	     * Unmap the windows at or after the given index.  Windows already 
+	     * dropped from the mapped window cache are released once they are garbage collected.
+	     */
+	    private void removeWindows(long fromIndex) {
+	    	for (long i = fromIndex; i < this.windowCount; i++) {
+	    		MappedByteBuffer buffer = mappedWindows.remove(new MappedWindow(this, i));
+	    		if (buffer != null) {
+	    			unmap(buffer);
+	    		}
+	    	}
+	    	this.windowCount = Math.min(this.windowCount, fromIndex);
+	    }
+
 		private void setLength(RandomAccessFile fileAccess, long newLength, boolean truncate)
 				throws IOException {
-			long currentLength = fileAccess.length();
+			long currentLength = fileInfo.length;
 			long bytesUsed = newLength - currentLength;
 			if (bytesUsed == 0) {
 				return;
@@ -165,6 +333,7 @@ public class FileStorageManager implements StorageManager {
 				}
 			}
 			fileAccess.setLength(newLength);
+			fileInfo.length = newLength;
 			long used = usedBufferSpace.addAndGet(bytesUsed);
 			if (LogManager.isMessageToBeRecorded(org.teiid.logging.LogConstants.CTX_BUFFER_MGR, MessageLevel.DETAIL) && (sample.getAndIncrement() % 100) == 0) {
 				LogManager.logDetail(LogConstants.CTX_BUFFER_MGR, "sampling bytes used:", used); //$NON-NLS-1$
@@ -175,6 +344,7 @@ public class FileStorageManager implements StorageManager {
 				used = usedBufferSpace.get();
 				if (used > maxBufferSpace) {
 					fileAccess.setLength(currentLength);
+					fileInfo.length = currentLength;
 					usedBufferSpace.addAndGet(-bytesUsed);
 					throw new OutOfDiskException(QueryPlugin.Util.getString("FileStoreageManager.space_exhausted", bytesUsed, used, maxBufferSpace)); //$NON-NLS-1$
 				}
@@ -186,6 +356,9 @@ public class FileStorageManager implements StorageManager {
 	    	if (fileInfo == null) {
 				fileInfo = new FileInfo(createFile(name));
 	        }
+	    	if (mappedWindowSize > 0) {
+	    		removeWindows(length / mappedWindowSize);
+	    	}
 	    	try {
 	    		setLength(fileInfo.open(), length, true);
 	    	} finally {
@@ -196,6 +369,7 @@ public class FileStorageManager implements StorageManager {
 	    @Override
 		public synchronized void removeDirect() {
 			usedBufferSpace.addAndGet(-getLength());
+			removeWindows(0);
 			if (fileInfo != null){
 				fileInfo.delete();
 			}
@@ -205,6 +379,8 @@ public class FileStorageManager implements StorageManager {
 
     // Initialization
     private int maxOpenFiles = DEFAULT_MAX_OPEN_FILES;
+    private long mappedWindowSize;
+    private int maxMappedWindows = DEFAULT_MAX_MAPPED_WINDOWS;
     private String directory;
     private File dirFile;
     //use subdirectories to hold the files since we may create a relatively unbounded amount of lob files and 
@@ -227,6 +403,14 @@ public class FileStorageManager implements StorageManager {
     	}
     });
     
+    private Map<MappedWindow, MappedByteBuffer> mappedWindows = Collections.synchronizedMap(new LinkedHashMap<MappedWindow, MappedByteBuffer>(16, .75f, true) {
+    	@Override
+    	protected boolean removeEldestEntry(
+    			java.util.Map.Entry<MappedWindow, MappedByteBuffer> eldest) {
+    		return this.size() > maxMappedWindows;
+    	}
+    });
+    
     /**
      * Initialize
      */
@@ -257,6 +441,33 @@ public class FileStorageManager implements StorageManager {
 		this.maxOpenFiles = maxOpenFiles;
 	}
     
+    /**
+     * Set the size in bytes of the file windows to memory map.  If greater than 0, 
+     * files are accessed through mapped windows rather than with positional reads and writes.
+     * Should be a multiple of the page size.  The max is 1GB.
+     * @param mappedWindowSize
+     */
+    public void setMappedWindowSize(long mappedWindowSize) {
+		this.mappedWindowSize = Math.min(mappedWindowSize, 1 << 30);
+	}
+    
+    public long getMappedWindowSize() {
+		return mappedWindowSize;
+	}
+    
+    /**
+     * Set the max number of windows that will be mapped at a time.
+     * The least recently used windows are released first.
+     * @param maxMappedWindows
+     */
+    public void setMaxMappedWindows(int maxMappedWindows) {
+		this.maxMappedWindows = maxMappedWindows;
+	}
+    
+    public int getMappedWindows() {
+    	return this.mappedWindows.size();
+    }
+    
     public void setStorageDirectory(String directory) {
 		this.directory = directory;
 	}
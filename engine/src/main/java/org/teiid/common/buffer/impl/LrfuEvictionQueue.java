@@ -33,10 +33,10 @@ import org.teiid.common.buffer.CacheKey;
  * Null values are not allowed.
  * @param <V>
  */
-public class LrfuEvictionQueue<V extends BaseCacheEntry> {
+public class LrfuEvictionQueue<V extends BaseCacheEntry> implements EvictionQueue<V> {
 	
-	private static final long DEFAULT_HALF_LIFE = 1<<16;
-	private static final long MIN_INTERVAL = 1<<9;
+	static final long DEFAULT_HALF_LIFE = 1<<16;
+	static final long MIN_INTERVAL = 1<<9;
 	//TODO: until Java 7 ConcurrentSkipListMap has a scaling bug in that
 	//the level function limits the effective map size to ~ 2^16
 	//above which it performs comparably under multi-threaded load to a synchronized LinkedHashMap
@@ -82,6 +82,17 @@ public class LrfuEvictionQueue<V extends BaseCacheEntry> {
 		return evictionQueue.values();
 	}
 	
+	@Override
+	public void clear() {
+		evictionQueue.clear();
+		size.set(0);
+	}
+	
+	@Override
+	public V oldestEntry() {
+		return firstEntry(false);
+	}
+	
 	public V firstEntry(boolean poll) {
 		Map.Entry<CacheKey, V> entry = null;
 		if (poll) {
@@ -114,6 +125,11 @@ public class LrfuEvictionQueue<V extends BaseCacheEntry> {
 	
 	long computeNextOrderingValue(long currentTime,
 			long lastAccess, long orderingValue) {
+		return computeNextOrderingValue(currentTime, lastAccess, orderingValue, halfLife, maxInterval);
+	}
+	
+	static long computeNextOrderingValue(long currentTime,
+			long lastAccess, long orderingValue, long halfLife, long maxInterval) {
 		long delta = currentTime - lastAccess;
 		if (delta > maxInterval) {
 			return currentTime;
@@ -0,0 +1,392 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.common.buffer.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.teiid.common.buffer.BaseCacheEntry;
+import org.teiid.common.buffer.CacheKey;
+
+/**
+ * A W-TinyLFU eviction queue.  Has assumptions that match buffermanager usage.
+ * Null values are not allowed.
+ * <br>
+ * New entries enter a small LRU window.  Entries leaving the window compete with the 
+ * least recently used entry of the probationary segment of a segmented LRU main region
+ * and are only admitted if they have been more frequently used as estimated by a
+ * count-min sketch.  This makes the ordering resistant to large scans that would otherwise 
+ * displace the working set.
+ * <br>
+ * Since there is no fixed capacity, the region sizes are relative to the current size.
+ * Entries leaving the window wait for admission until they are used again or until an 
+ * eviction candidate is requested.
+ * <br>
+ * Accesses to existing entries are recorded in striped lossy buffers and applied 
+ * in batches by whichever thread acquires the lock.
+ * @param <V>
+ */
+public class TinyLfuEvictionQueue<V extends BaseCacheEntry> implements EvictionQueue<V> {
+	
+	private static final int BUFFER_SIZE = 16;
+	private static final int MAX_SKETCH_LENGTH = 1 << 22;
+	private static final int WINDOW_PERCENT = 1;
+	private static final int PROTECTED_PERCENT = 80;
+	private static final long MAX_INTERVAL = 62*LrfuEvictionQueue.DEFAULT_HALF_LIFE;
+
+	/**
+	 * A count-min sketch of 4-bit counters with a depth of 4.  The counters
+	 * are halved once the number of increments reaches the sample size so that
+	 * the frequencies reflect recent history.  Not thread-safe.
+	 */
+	static class FrequencySketch {
+		
+		private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+		private static final long RESET_MASK = 0x7777777777777777L;
+		
+		private long[] table;
+		private int sampleSize;
+		private int additions;
+		
+		FrequencySketch(int length) {
+			setLength(length);
+		}
+		
+		void ensureCapacity(int size) {
+			if (size > table.length && table.length < MAX_SKETCH_LENGTH) {
+				setLength(size);
+			}
+		}
+
+		/**
+		 * Set the table length.  When growing, the existing counters are preserved 
+		 * by replicating the table, since an item's new index only adds high bits
+		 * to its old index.
+		 */
+		private void setLength(int length) {
+			int tableLength = Integer.highestOneBit(Math.max(16, Math.min(length - 1, MAX_SKETCH_LENGTH/2)) << 1);
+			long[] old = this.table;
+			this.table = new long[tableLength];
+			this.sampleSize = 10 * tableLength;
+			if (old == null || old.length > tableLength) {
+				this.additions = 0;
+				return;
+			}
+			for (int i = 0; i < tableLength; i += old.length) {
+				System.arraycopy(old, 0, this.table, i, old.length);
+			}
+		}
+		
+		int frequency(Long id) {
+			int hash = spread(id.hashCode());
+			int start = (hash & 3) << 2;
+			int frequency = Integer.MAX_VALUE;
+			for (int i = 0; i < 4; i++) {
+				int index = indexOf(hash, i);
+				int count = (int)((table[index] >>> ((start + i) << 2)) & 0xfL);
+				frequency = Math.min(frequency, count);
+			}
+			return frequency;
+		}
+		
+		void increment(Long id) {
+			int hash = spread(id.hashCode());
+			int start = (hash & 3) << 2;
+			boolean added = false;
+			for (int i = 0; i < 4; i++) {
+				int index = indexOf(hash, i);
+				int offset = (start + i) << 2;
+				long mask = 0xfL << offset;
+				if ((table[index] & mask) != mask) {
+					table[index] += 1L << offset;
+					added = true;
+				}
+			}
+			if (added && ++additions == sampleSize) {
+				reset();
+			}
+		}
+		
+		private void reset() {
+			for (int i = 0; i < table.length; i++) {
+				table[i] = (table[i] >>> 1) & RESET_MASK;
+			}
+			additions >>>= 1;
+		}
+		
+		private int indexOf(int item, int i) {
+			long hash = (item + SEEDS[i]) * SEEDS[i];
+			hash += hash >>> 32;
+			return ((int)hash) & (table.length - 1);
+		}
+		
+		private static int spread(int x) {
+			x = ((x >>> 16) ^ x) * 0x45d9f3b;
+			x = ((x >>> 16) ^ x) * 0x45d9f3b;
+			return (x >>> 16) ^ x;
+		}
+	}
+	
+	private static class AccessBuffer<V> {
+		AtomicReferenceArray<V> entries = new AtomicReferenceArray<V>(BUFFER_SIZE);
+		AtomicInteger writeIndex = new AtomicInteger();
+	}
+
+	private AtomicLong clock;
+	private ConcurrentHashMap<Long, V> entries = new ConcurrentHashMap<Long, V>();
+	private AccessBuffer<V>[] buffers;
+	private ReentrantLock lock = new ReentrantLock();
+	
+	//guarded by lock
+	private FrequencySketch sketch = new FrequencySketch(16);
+	private LinkedHashMap<Long, V> window = new LinkedHashMap<Long, V>(16, .75f, true);
+	private LinkedHashMap<Long, V> pending = new LinkedHashMap<Long, V>(16, .75f, true);
+	private LinkedHashMap<Long, V> probation = new LinkedHashMap<Long, V>(16, .75f, true);
+	private LinkedHashMap<Long, V> protectedSegment = new LinkedHashMap<Long, V>(16, .75f, true);
+	
+	@SuppressWarnings("unchecked")
+	public TinyLfuEvictionQueue(AtomicLong clock) {
+		this.clock = clock;
+		int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1) << 1);
+		this.buffers = new AccessBuffer[stripes];
+		for (int i = 0; i < stripes; i++) {
+			this.buffers[i] = new AccessBuffer<V>();
+		}
+	}
+	
+	@Override
+	public boolean add(V value) {
+		lock.lock();
+		try {
+			if (entries.putIfAbsent(value.getId(), value) != null) {
+				return false;
+			}
+			sketch.ensureCapacity(entries.size());
+			sketch.increment(value.getId());
+			window.put(value.getId(), value);
+			int windowMax = Math.max(1, entries.size() * WINDOW_PERCENT / 100);
+			while (window.size() > windowMax) {
+				V candidate = removeFirst(window);
+				pending.put(candidate.getId(), candidate);
+			}
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public boolean remove(V value) {
+		if (!entries.containsKey(value.getId())) {
+			return false;
+		}
+		lock.lock();
+		try {
+			return removeDirect(value);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean removeDirect(V value) {
+		Long id = value.getId();
+		if (!entries.remove(id, value)) {
+			return false;
+		}
+		if (window.remove(id) == null && pending.remove(id) == null && probation.remove(id) == null) {
+			protectedSegment.remove(id);
+		}
+		return true;
+	}
+	
+	@Override
+	public void touch(V value) {
+		//maintain the lrfu key, which is used for age checks and memory buffer placement
+		CacheKey key = value.getKey();
+		long tick = clock.get();
+		if (tick - LrfuEvictionQueue.MIN_INTERVAL >= key.getLastAccess()) {
+			long orderingValue = LrfuEvictionQueue.computeNextOrderingValue(tick, key.getLastAccess(), key.getOrderingValue(), 
+					LrfuEvictionQueue.DEFAULT_HALF_LIFE, MAX_INTERVAL);
+			value.setKey(new CacheKey(key.getId(), tick, orderingValue));
+		}
+		if (!entries.containsKey(value.getId())) {
+			add(value);
+			return;
+		}
+		AccessBuffer<V> buffer = buffers[(int)Thread.currentThread().getId() & (buffers.length - 1)];
+		int index = buffer.writeIndex.getAndIncrement();
+		if (index < BUFFER_SIZE) {
+			buffer.entries.lazySet(index, value);
+			return;
+		}
+		//the buffer is full, drop the access if another thread is already draining
+		if (lock.tryLock()) {
+			try {
+				drainBuffers();
+				onAccess(value);
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+	
+	private void drainBuffers() {
+		for (AccessBuffer<V> buffer : buffers) {
+			int count = Math.min(buffer.writeIndex.get(), BUFFER_SIZE);
+			for (int i = 0; i < count; i++) {
+				V value = buffer.entries.getAndSet(i, null);
+				if (value != null) {
+					onAccess(value);
+				}
+			}
+			buffer.writeIndex.set(0);
+		}
+	}
+
+	private void onAccess(V value) {
+		Long id = value.getId();
+		if (entries.get(id) != value) {
+			return; //no longer present
+		}
+		sketch.increment(id);
+		if (window.get(id) != null || protectedSegment.get(id) != null) {
+			return; //moved to the most recently used position
+		}
+		if (pending.remove(id) != null) {
+			//used again, so admit without competing
+			probation.put(id, value);
+		} else if (probation.remove(id) != null) {
+			protectedSegment.put(id, value);
+			int protectedMax = (int)((long)(entries.size() - window.size()) * PROTECTED_PERCENT / 100);
+			while (protectedSegment.size() > protectedMax) {
+				//demote to probation
+				V demoted = removeFirst(protectedSegment);
+				probation.put(demoted.getId(), demoted);
+			}
+		}
+	}
+	
+	@Override
+	public V firstEntry(boolean poll) {
+		lock.lock();
+		try {
+			drainBuffers();
+			V result = selectVictim();
+			if (result != null && poll) {
+				removeDirect(result);
+			}
+			return result;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * The least recently used entries of each region are compared by their keys
+	 * so that age based eviction is not stopped by recent window entries. 
+	 */
+	@Override
+	public V oldestEntry() {
+		lock.lock();
+		try {
+			drainBuffers();
+			V result = older(first(window), first(pending));
+			result = older(result, first(probation));
+			return older(result, first(protectedSegment));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private V selectVictim() {
+		V victim = first(probation);
+		if (victim == null) {
+			victim = first(protectedSegment);
+		}
+		V candidate = first(pending);
+		if (candidate == null) {
+			if (victim == null) {
+				return first(window);
+			}
+			return victim;
+		}
+		if (victim == null || sketch.frequency(candidate.getId()) <= sketch.frequency(victim.getId())) {
+			return candidate;
+		}
+		//admit the candidate to the main region
+		pending.remove(candidate.getId());
+		probation.put(candidate.getId(), candidate);
+		return victim;
+	}
+	
+	private static <V extends BaseCacheEntry> V older(V v1, V v2) {
+		if (v1 == null) {
+			return v2;
+		}
+		if (v2 == null || v1.getKey().getLastAccess() <= v2.getKey().getLastAccess()) {
+			return v1;
+		}
+		return v2;
+	}
+	
+	private static <V> V first(LinkedHashMap<Long, V> map) {
+		Iterator<V> iter = map.values().iterator();
+		if (iter.hasNext()) {
+			return iter.next();
+		}
+		return null;
+	}
+	
+	private static <V> V removeFirst(LinkedHashMap<Long, V> map) {
+		Iterator<V> iter = map.values().iterator();
+		V result = iter.next();
+		iter.remove();
+		return result;
+	}
+	
+	@Override
+	public int getSize() {
+		return entries.size();
+	}
+	
+	@Override
+	public void clear() {
+		lock.lock();
+		try {
+			drainBuffers();
+			entries.clear();
+			window.clear();
+			pending.clear();
+			probation.clear();
+			protectedSegment.clear();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "Size:" + getSize(); //$NON-NLS-1$
+	}
+	
+}
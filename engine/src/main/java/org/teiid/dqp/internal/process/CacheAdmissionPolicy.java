@@ -0,0 +1,341 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.dqp.internal.process;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.teiid.core.util.EquivalenceUtil;
+import org.teiid.dqp.internal.process.SessionAwareCache.CacheID;
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+import org.teiid.metadata.FunctionMethod.Determinism;
+import org.teiid.vdb.runtime.VDBKey;
+
+/**
+ * Decides which results should be added to the result set cache when the user has
+ * not requested caching with a hint or the result set cache mode.
+ * <br>
+ * The execution cost, frequency, and result size are tracked for each query.  Once a query
+ * has been seen {@link #MIN_EXECUTIONS} times its results are cached if they fit within the
+ * memory budget, displacing admitted entries with a lower benefit per byte if needed.
+ * <br>
+ * Only admitted results are used to answer queries that rely upon automatic caching - results 
+ * cached for a hint or the result set cache mode are not shared with them.
+ */
+public class CacheAdmissionPolicy {
+	
+	public static final int MIN_EXECUTIONS = 2;
+	static final int MAX_TRACKED = 2048;
+	
+	static class QueryStatistics {
+		int executions;
+		double cost;
+		long size;
+		//the results admitted into the cache, at most one per session, user, or vdb scope
+		List<AdmittedEntry> admitted;
+		
+		double getBenefit(int count) {
+			return count * cost / Math.max(size, 1);
+		}
+		
+		long getAdmittedBytes() {
+			long result = 0;
+			if (admitted != null) {
+				for (AdmittedEntry entry : admitted) {
+					result += entry.size;
+				}
+			}
+			return result;
+		}
+	}
+	
+	/**
+	 * Results admitted into the cache.  The scope is determined by the determinism
+	 * of the results, so requests from other sessions or users may not see the entry.
+	 */
+	static class AdmittedEntry {
+		CacheID cacheId;
+		Determinism determinism;
+		String sessionId;
+		String userName;
+		long size;
+		
+		AdmittedEntry(CacheID cacheId, Determinism determinism, long size) {
+			this.cacheId = cacheId;
+			this.determinism = determinism;
+			this.size = size;
+			if (determinism.compareTo(Determinism.SESSION_DETERMINISTIC) <= 0) {
+				this.sessionId = cacheId.getOriginalSessionId();
+			} else if (determinism == Determinism.USER_DETERMINISTIC) {
+				this.userName = cacheId.getOriginalUserName();
+			}
+		}
+		
+		/**
+		 * @return true if the entry would be found in the cache for the given id
+		 */
+		boolean isVisible(CacheID id) {
+			return (sessionId == null || sessionId.equals(id.getOriginalSessionId())) 
+					&& (userName == null || userName.equals(id.getOriginalUserName()));
+		}
+		
+		boolean isSameScope(AdmittedEntry other) {
+			return EquivalenceUtil.areEqual(sessionId, other.sessionId) && EquivalenceUtil.areEqual(userName, other.userName);
+		}
+	}
+	
+	private Map<List<Object>, QueryStatistics> statistics = new LinkedHashMap<List<Object>, QueryStatistics>(16, .75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<List<Object>, QueryStatistics> eldest) {
+			if (size() <= MAX_TRACKED) {
+				return false;
+			}
+			//no longer tracked - the entries are left to the cache eviction 
+			admittedBytes -= eldest.getValue().getAdmittedBytes();
+			return true;
+		}
+	};
+	
+	private long admittedBytes;
+	
+	/**
+	 * Get the key for tracking a query.  Whitespace is normalized so that trivially different 
+	 * query strings share statistics.
+	 */
+	public static List<Object> getKey(VDBKey vdbKey, boolean ansiQuotedIdentifiers, String sql, List<?> parameters) {
+		List<Object> key = new ArrayList<Object>(4);
+		key.add(vdbKey);
+		key.add(ansiQuotedIdentifiers);
+		key.add(normalize(sql));
+		if (parameters != null && !parameters.isEmpty()) {
+			key.add(new ArrayList<Object>(parameters));
+		}
+		return key;
+	}
+	
+	static String normalize(String sql) {
+		StringBuilder result = new StringBuilder(sql.length());
+		char quote = 0;
+		boolean space = false;
+		for (int i = 0; i < sql.length(); i++) {
+			char c = sql.charAt(i);
+			if (quote != 0) {
+				if (c == quote) {
+					quote = 0;
+				}
+			} else if (c == '\'' || c == '"') {
+				quote = c;
+			} else if (Character.isWhitespace(c)) {
+				space = true;
+				continue;
+			}
+			if (space) {
+				if (result.length() > 0) {
+					result.append(' ');
+				}
+				space = false;
+			}
+			result.append(c);
+		}
+		return result.toString();
+	}
+	
+	/**
+	 * Determine if the results of the query should be collected for caching.
+	 */
+	public synchronized boolean shouldCache(List<Object> key, CacheID cacheId, long maxBytes, SessionAwareCache<?> cache) {
+		QueryStatistics stats = statistics.get(key);
+		if (stats == null || stats.executions + 1 < MIN_EXECUTIONS || stats.size > maxBytes) {
+			return false;
+		}
+		long available = maxBytes - admittedBytes;
+		if (stats.size > available) {
+			//entries may have expired, been evicted, or been invalidated by the cache
+			removeStale(cache);
+			available = maxBytes - admittedBytes;
+		}
+		if (stats.admitted != null) {
+			for (AdmittedEntry entry : stats.admitted) {
+				if (entry.isVisible(cacheId)) {
+					//may be replaced
+					available += entry.size;
+				}
+			}
+		}
+		if (stats.size <= available) {
+			return true;
+		}
+		double benefit = stats.getBenefit(stats.executions + 1);
+		for (QueryStatistics other : statistics.values()) {
+			if (other != stats && other.admitted != null && other.getBenefit(other.executions) < benefit) {
+				available += other.getAdmittedBytes();
+				if (stats.size <= available) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Record the execution of a query against the sources
+	 * @param cost the processing time in milliseconds, not including time spent waiting on the client
+	 * @param size the estimated size of the results in bytes
+	 */
+	public synchronized void executed(List<Object> key, long cost, long size) {
+		QueryStatistics stats = statistics.get(key);
+		if (stats == null) {
+			stats = new QueryStatistics();
+			statistics.put(key, stats);
+		}
+		stats.executions++;
+		stats.cost += (cost - stats.cost) / stats.executions;
+		stats.size = size;
+	}
+	
+	/**
+	 * Record the use of cached results
+	 */
+	public synchronized void hit(List<Object> key) {
+		QueryStatistics stats = statistics.get(key);
+		if (stats != null) {
+			stats.executions++;
+		}
+	}
+	
+	/**
+	 * Track results that have been added to the cache.  If the budget is exceeded the 
+	 * admitted entries with the lowest benefit are removed from the cache.
+	 */
+	public synchronized void admit(List<Object> key, CacheID cacheId, Determinism determinism, long size, long maxBytes, SessionAwareCache<?> cache) {
+		QueryStatistics stats = statistics.get(key);
+		if (stats == null) {
+			stats = new QueryStatistics();
+			stats.executions = 1;
+			statistics.put(key, stats);
+		}
+		AdmittedEntry entry = new AdmittedEntry(cacheId, determinism, size);
+		if (stats.admitted == null) {
+			stats.admitted = new ArrayList<AdmittedEntry>(2);
+		}
+		//the entry for the same scope was replaced in the cache
+		removeAdmitted(stats, entry);
+		stats.admitted.add(entry);
+		stats.size = size;
+		admittedBytes += size;
+		if (admittedBytes > maxBytes) {
+			removeStale(cache);
+		}
+		while (admittedBytes > maxBytes) {
+			QueryStatistics victim = null;
+			for (QueryStatistics other : statistics.values()) {
+				if (other.admitted != null && (victim == null || other.getBenefit(other.executions) < victim.getBenefit(victim.executions))) {
+					victim = other;
+				}
+			}
+			AdmittedEntry victimEntry = victim.admitted.remove(0);
+			LogManager.logDetail(LogConstants.CTX_DQP, "Removing result set cache entry to stay within the automatic caching budget", victimEntry.cacheId); //$NON-NLS-1$
+			cache.remove(victimEntry.cacheId, victimEntry.determinism);
+			admittedBytes -= victimEntry.size;
+			if (victim.admitted.isEmpty()) {
+				victim.admitted = null;
+			}
+		}
+	}
+	
+	private void removeAdmitted(QueryStatistics stats, AdmittedEntry entry) {
+		for (Iterator<AdmittedEntry> iter = stats.admitted.iterator(); iter.hasNext();) {
+			AdmittedEntry existing = iter.next();
+			if (existing.isSameScope(entry)) {
+				admittedBytes -= existing.size;
+				iter.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Stop counting admitted entries that are no longer in the cache.  The cache does not 
+	 * notify of removals from ttl expiration, eviction, or invalidation, so this is checked 
+	 * when the budget is exceeded.
+	 */
+	private void removeStale(SessionAwareCache<?> cache) {
+		for (QueryStatistics stats : statistics.values()) {
+			if (stats.admitted == null) {
+				continue;
+			}
+			for (Iterator<AdmittedEntry> iter = stats.admitted.iterator(); iter.hasNext();) {
+				AdmittedEntry entry = iter.next();
+				if (!cache.containsKey(entry.cacheId, entry.determinism)) {
+					admittedBytes -= entry.size;
+					iter.remove();
+				}
+			}
+			if (stats.admitted.isEmpty()) {
+				stats.admitted = null;
+			}
+		}
+	}
+	
+	/**
+	 * Stop tracking the admitted results for the query as they have been replaced in the
+	 * cache by results that were not automatically cached.
+	 */
+	public synchronized void release(List<Object> key, CacheID cacheId, Determinism determinism) {
+		QueryStatistics stats = statistics.get(key);
+		if (stats != null && stats.admitted != null) {
+			removeAdmitted(stats, new AdmittedEntry(cacheId, determinism, 0));
+			if (stats.admitted.isEmpty()) {
+				stats.admitted = null;
+			}
+		}
+	}
+	
+	/**
+	 * @return true if results for the query were automatically admitted in a scope visible 
+	 * to the request and are still tracked
+	 */
+	public synchronized boolean isAdmitted(List<Object> key, CacheID cacheId) {
+		QueryStatistics stats = statistics.get(key);
+		if (stats == null || stats.admitted == null) {
+			return false;
+		}
+		for (AdmittedEntry entry : stats.admitted) {
+			if (entry.isVisible(cacheId)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	public synchronized long getAdmittedBytes() {
+		return admittedBytes;
+	}
+	
+	public synchronized void clear() {
+		statistics.clear();
+		admittedBytes = 0;
+	}
+	
+}
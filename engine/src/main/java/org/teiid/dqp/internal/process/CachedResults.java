@@ -61,6 +61,8 @@ public class CachedResults implements Serializable, Cachable {
 	
 	public void setResults(TupleBuffer results, ProcessorPlan plan) {
 		this.results = results;
+		//cached results are read only
+		this.results.setCacheResident(true);
 		this.uuid = results.getId();
 		this.hasLobs = results.isLobs();
 		if (plan != null) {
@@ -96,6 +98,7 @@ public class CachedResults implements Serializable, Cachable {
 			TupleBuffer buffer = bufferManager.getTupleBuffer(this.uuid);
 			if (buffer != null) {
 				this.results = buffer;
+				this.results.setCacheResident(true);
 			}
 			
 			try {
@@ -102,6 +102,8 @@ public class DQPCore implements DQP {
     private TempTableDataManager dataTierMgr;
     private SessionAwareCache<PreparedPlan> prepPlanCache;
     private SessionAwareCache<CachedResults> rsCache;
+    private SemanticCacheIndex semanticCacheIndex;
+    private CacheAdmissionPolicy cacheAdmissionPolicy;
     private TransactionService transactionService;
     private EventDistributor eventDistributor;
     
@@ -263,6 +265,9 @@ public class DQPCore implements DQP {
 		Request request = null;
 	    if ( requestMsg.isPreparedStatement() || requestMsg.isCallableStatement() || requestMsg.getRequestOptions().isContinuous()) {
 	    	request = new PreparedStatementRequest(prepPlanCache);
+	    } else if (options != null && options.isAutoParameterize() && prepPlanCache != null 
+	    		&& requestMsg.getCommand() == null && !requestMsg.isBatchedUpdate()) {
+	    	request = new PreparedStatementRequest(prepPlanCache, true);
 	    } else {
 	    	request = new Request();
 	    }
@@ -631,6 +636,18 @@ public class DQPCore implements DQP {
 		return rsCache;
 	}
 	
+	SemanticCacheIndex getSemanticCacheIndex() {
+		return semanticCacheIndex;
+	}
+	
+	CacheAdmissionPolicy getCacheAdmissionPolicy() {
+		return cacheAdmissionPolicy;
+	}
+	
+	Options getOptions() {
+		return options;
+	}
+	
 	int getProcessorTimeSlice() {
 		return this.config.getTimeSliceInMilli();
 	}	
@@ -900,6 +917,8 @@ public class DQPCore implements DQP {
 	
 	public void setResultsetCache(SessionAwareCache<CachedResults> cache) {
 		this.rsCache = cache;
+		this.semanticCacheIndex = cache == null?null:new SemanticCacheIndex();
+		this.cacheAdmissionPolicy = cache == null?null:new CacheAdmissionPolicy();
 	}
 	
 	public void setPreparedPlanCache(SessionAwareCache<PreparedPlan> cache) {
@@ -141,6 +141,8 @@ public class DQPWorkContext implements Serializable {
     private HashMap<String, DataPolicy> policies;
     private boolean useCallingThread;
     private Version clientVersion = Version.latest();
+    private byte clientSerializationVersion = -1;
+    private boolean compressResults;
     private boolean admin;
     private MetadataFactory metadataFactory;
 
@@ -349,6 +351,28 @@ public class DQPWorkContext implements Serializable {
 		this.clientVersion = clientVersion;
 	}
 	
+	/**
+	 * @return the negotiated batch serialization version, or the version implied by the client version
+	 */
+	public byte getClientSerializationVersion() {
+		if (this.clientSerializationVersion >= 0) {
+			return this.clientSerializationVersion;
+		}
+		return this.clientVersion.getClientSerializationVersion();
+	}
+	
+	public void setClientSerializationVersion(byte clientSerializationVersion) {
+		this.clientSerializationVersion = clientSerializationVersion;
+	}
+	
+	public boolean isCompressResults() {
+		return compressResults;
+	}
+	
+	public void setCompressResults(boolean compressResults) {
+		this.compressResults = compressResults;
+	}
+	
 	public void setAdmin(boolean admin) {
 		this.admin = admin;
 	}
@@ -62,20 +62,42 @@ import org.teiid.query.util.CommandContext;
 public class PreparedStatementRequest extends Request {
     private SessionAwareCache<PreparedPlan> prepPlanCache;
     private PreparedPlan prepPlan;
+    private boolean autoParameterize;
+    private List<Object> literalValues;
     
     public PreparedStatementRequest(SessionAwareCache<PreparedPlan> prepPlanCache) {
     	this.prepPlanCache = prepPlanCache;
     }
     
+    /**
+     * @param autoParameterize if true the request is for a statement that may have its 
+     * literals replaced by parameters, see {@link QueryParameterizer}
+     */
+    public PreparedStatementRequest(SessionAwareCache<PreparedPlan> prepPlanCache, boolean autoParameterize) {
+    	this.prepPlanCache = prepPlanCache;
+    	this.autoParameterize = autoParameterize;
+    }
+    
     @Override
-    protected void checkReferences(List<Reference> references)
-    		throws QueryValidatorException {
+    protected boolean checkReferences(List<Reference> references, Command command)
+    		throws TeiidComponentException, TeiidProcessingException {
+    	if (this.autoParameterize) {
+    		if (this.literalValues == null) {
+    			return super.checkReferences(references, command);
+    		}
+    		if (!QueryParameterizer.isCompatible(references, this.literalValues) 
+    				|| !QueryParameterizer.isPlanIndependent(references, command, this.metadata)) {
+    			//stop before planning so that the original statement can be used
+    			return false;
+    		}
+    	}
     	for (Iterator<Reference> i = references.iterator(); i.hasNext();) {
     		if (i.next().isOptional()) {
     			i.remove(); //remove any optional parameter, which accounts for out params - the client does not send any bindings
     		}
     	}
         prepPlan.setReferences(references);
+        return true;
     }
     
     /** 
@@ -90,9 +112,28 @@ public class PreparedStatementRequest extends Request {
     	if (this.preParser != null) {
     		sqlQuery = this.preParser.preParse(sqlQuery, this.context);
     	}
+    	List<?> values = requestMsg.getParameterValues();
+    	if (this.autoParameterize) {
+    		List<Object> literals = new ArrayList<Object>();
+    		String parameterized = QueryParameterizer.parameterize(sqlQuery, literals);
+    		if (parameterized == null) {
+    			super.generatePlan(false);
+    			return;
+    		}
+    		LogManager.logTrace(LogConstants.CTX_DQP, new Object[] { "Automatically parameterized: ", parameterized }); //$NON-NLS-1$
+    		this.parameterizedCommand = parameterized;
+    		this.literalValues = literals;
+    		sqlQuery = parameterized;
+    		values = literals;
+    	}
     	CacheID id = new CacheID(this.workContext, Request.createParseInfo(this.requestMsg, this.workContext.getSession()), sqlQuery);
         prepPlan = prepPlanCache.get(id);
         
+        if (prepPlan != null && this.autoParameterize && !QueryParameterizer.isCompatible(prepPlan.getReferences(), this.literalValues)) {
+        	generateUnparameterizedPlan();
+        	return;
+        }
+        
         if (prepPlan != null) {
         	//already in cache. obtain the values from cache
             analysisRecord = prepPlan.getAnalysisRecord();
@@ -113,6 +154,11 @@ public class PreparedStatementRequest extends Request {
             prepPlan = new PreparedPlan();
             LogManager.logTrace(LogConstants.CTX_DQP, new Object[] { "Query does not exist in cache: ", sqlQuery}); //$NON-NLS-1$
             super.generatePlan(true);
+            if (this.processPlan == null) {
+            	//the literals cannot be replaced
+            	generateUnparameterizedPlan();
+            	return;
+            }
         	prepPlan.setCommand(this.userCommand);
         	
         	//there's no need to cache the plan if it's a stored procedure, since we already do that in the optimizer
@@ -137,12 +183,25 @@ public class PreparedStatementRequest extends Request {
 	        handlePreparedBatchUpdate();
         } else {
 	        List<Reference> params = prepPlan.getReferences();
-	        List<?> values = requestMsg.getParameterValues();
 	
 	    	PreparedStatementRequest.resolveParameterValues(params, values, this.context, this.metadata);
         }
     }
 
+    /**
+     * Plan the original statement when the literals cannot be used as parameters
+     */
+    private void generateUnparameterizedPlan() throws TeiidComponentException, TeiidProcessingException {
+    	LogManager.logDetail(LogConstants.CTX_DQP, requestId, "Literals are not compatible with the parameter types or may affect the plan, the statement will not be parameterized"); //$NON-NLS-1$
+    	this.prepPlan = null;
+    	this.parameterizedCommand = null;
+    	this.literalValues = null;
+    	this.processPlan = null;
+    	this.userCommand = null;
+    	this.analysisRecord = null;
+    	super.generatePlan(false);
+    }
+
     /**
      * There are two cases
      *   if 
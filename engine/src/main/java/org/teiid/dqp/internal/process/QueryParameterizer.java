@@ -0,0 +1,362 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.dqp.internal.process;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.teiid.core.TeiidComponentException;
+import org.teiid.core.TeiidProcessingException;
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.language.SQLConstants;
+import org.teiid.query.metadata.QueryMetadataInterface;
+import org.teiid.query.metadata.TempMetadataID;
+import org.teiid.query.optimizer.relational.PartitionAnalyzer;
+import org.teiid.query.parser.SQLParserUtil;
+import org.teiid.query.resolver.QueryResolver;
+import org.teiid.query.resolver.util.ResolverUtil;
+import org.teiid.query.sql.LanguageVisitor;
+import org.teiid.query.sql.lang.Command;
+import org.teiid.query.sql.lang.CompareCriteria;
+import org.teiid.query.sql.lang.SetQuery;
+import org.teiid.query.sql.lang.SubqueryFromClause;
+import org.teiid.query.sql.lang.UnaryFromClause;
+import org.teiid.query.sql.navigator.DeepPreOrderNavigator;
+import org.teiid.query.sql.symbol.ElementSymbol;
+import org.teiid.query.sql.symbol.GroupSymbol;
+import org.teiid.query.sql.symbol.Reference;
+
+/**
+ * Replaces literals in ad-hoc queries with parameters so that the prepared plan
+ * cache can be used for queries that differ only by literal values.
+ * <br>
+ * The replacement is lexical and conservative.  Only string and unsigned numeric literals
+ * that are the right hand side of a comparison in a select are replaced.  Literals that may affect
+ * the plan - in limits, like patterns, in lists, function arguments, etc. - are left in place.
+ * After resolving, {@link #isPlanIndependent(List, Command, QueryMetadataInterface)} rejects
+ * statements where a replaced literal is compared against a column the planner uses values for.
+ */
+public class QueryParameterizer {
+	
+	/**
+	 * @param values will be populated with the literal values
+	 * @return the sql with parameters or null if no literals could be replaced
+	 */
+	public static String parameterize(String sql, List<Object> values) {
+		int start = skipWhitespace(sql, 0);
+		if (!sql.regionMatches(true, start, "select", 0, 6) || (start + 6 < sql.length() && Character.isJavaIdentifierPart(sql.charAt(start + 6)))) { //$NON-NLS-1$
+			return null;
+		}
+		StringBuilder result = null;
+		int copied = 0;
+		int i = start;
+		boolean comparison = false;
+		while (i < sql.length()) {
+			char c = sql.charAt(i);
+			if (Character.isWhitespace(c)) {
+				i++;
+				continue;
+			}
+			if (comparison) {
+				comparison = false;
+				int end = getLiteralEnd(sql, i);
+				if (end > 0 && isLiteralBoundary(sql, end)) {
+					Object value = getValue(sql.substring(i, end));
+					if (value != null) {
+						if (result == null) {
+							result = new StringBuilder(sql.length());
+						}
+						result.append(sql, copied, i).append('?');
+						copied = end;
+						values.add(value);
+						i = end;
+						continue;
+					}
+				}
+			}
+			switch (c) {
+			case '?':
+				//already has parameters
+				return null;
+			case '\'':
+			case '"':
+				i = skipQuoted(sql, i, c);
+				if (i < 0) {
+					return null;
+				}
+				continue;
+			case '-':
+				if (sql.startsWith("--", i)) { //$NON-NLS-1$
+					int end = sql.indexOf('\n', i);
+					i = end < 0 ? sql.length() : end;
+					continue;
+				}
+				break;
+			case '/':
+				if (sql.startsWith("/*", i)) { //$NON-NLS-1$
+					int end = sql.indexOf("*/", i + 2); //$NON-NLS-1$
+					if (end < 0) {
+						return null;
+					}
+					i = end + 2;
+					continue;
+				}
+				break;
+			case '=':
+				//exclude the named argument syntax =>
+				comparison = i + 1 >= sql.length() || sql.charAt(i + 1) != '>';
+				break;
+			case '<':
+			case '>':
+			case '!':
+				if (i + 1 < sql.length() && (sql.charAt(i + 1) == '=' || (c == '<' && sql.charAt(i + 1) == '>'))) {
+					i++;
+				}
+				comparison = c != '!' || sql.charAt(i) == '=';
+				break;
+			default:
+				if (Character.isJavaIdentifierStart(c)) {
+					//skip the whole word so that identifier digits are not considered 
+					while (i + 1 < sql.length() && Character.isJavaIdentifierPart(sql.charAt(i + 1))) {
+						i++;
+					}
+				}
+				break;
+			}
+			i++;
+		}
+		if (result == null) {
+			return null;
+		}
+		result.append(sql, copied, sql.length());
+		return result.toString();
+	}
+	
+	/**
+	 * Determine if the literal values can be used with the parameter types determined by the resolver
+	 * without changing the meaning of the query.
+	 */
+	public static boolean isCompatible(List<Reference> references, List<?> values) {
+		if (references == null || references.size() != values.size()) {
+			return false;
+		}
+		for (int i = 0; i < values.size(); i++) {
+			Class<?> type = references.get(i).getType();
+			Class<?> valueType = values.get(i).getClass();
+			if (type != valueType && !DataTypeManager.isImplicitConversion(DataTypeManager.getDataTypeName(valueType), DataTypeManager.getDataTypeName(type))) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Determine if the parameters can be used in place of the literals without changing the plan.
+	 * The planner uses literals compared against the partitioning column of a union to prune
+	 * branches, and literals compared against a column with value statistics - min/max or the 
+	 * histogram gathered for a materialized view - to estimate the selectivity.
+	 */
+	public static boolean isPlanIndependent(final List<Reference> references, Command command, QueryMetadataInterface metadata) throws TeiidComponentException, TeiidProcessingException {
+		//groups and their definitions if known
+		final Map<GroupSymbol, Command> groups = new HashMap<GroupSymbol, Command>();
+		final List<ElementSymbol> compared = new ArrayList<ElementSymbol>();
+		LanguageVisitor visitor = new LanguageVisitor() {
+			@Override
+			public void visit(CompareCriteria obj) {
+				if (obj.getLeftExpression() instanceof ElementSymbol && references.contains(obj.getRightExpression())) {
+					compared.add((ElementSymbol)obj.getLeftExpression());
+				} else if (obj.getRightExpression() instanceof ElementSymbol && references.contains(obj.getLeftExpression())) {
+					compared.add((ElementSymbol)obj.getRightExpression());
+				}
+			}
+			
+			@Override
+			public void visit(UnaryFromClause obj) {
+				groups.put(obj.getGroup(), null);
+			}
+			
+			@Override
+			public void visit(SubqueryFromClause obj) {
+				groups.put(obj.getGroupSymbol(), obj.getCommand());
+			}
+		};
+		DeepPreOrderNavigator.doVisit(command, visitor);
+		if (compared.isEmpty()) {
+			return true;
+		}
+		Set<Object> partitioned = new HashSet<Object>();
+		for (Map.Entry<GroupSymbol, Command> entry : groups.entrySet()) {
+			GroupSymbol group = entry.getKey();
+			Command definition = entry.getValue();
+			if (definition == null && !(group.getMetadataID() instanceof TempMetadataID) && metadata.isVirtualGroup(group.getMetadataID())) {
+				definition = QueryResolver.resolveView(group, metadata.getVirtualPlan(group.getMetadataID()), SQLConstants.Reserved.SELECT, metadata, false).getCommand();
+			}
+			if (!(definition instanceof SetQuery)) {
+				continue;
+			}
+			List<ElementSymbol> symbols = null;
+			if (group.getMetadataID() instanceof TempMetadataID) {
+				//inline view
+				symbols = new ArrayList<ElementSymbol>();
+				for (TempMetadataID elementId : ((TempMetadataID)group.getMetadataID()).getElements()) {
+					ElementSymbol symbol = new ElementSymbol(elementId.getName(), group);
+					symbol.setMetadataID(elementId);
+					symbols.add(symbol);
+				}
+			} else {
+				symbols = ResolverUtil.resolveElementsInGroup(group, metadata);
+			}
+			for (ElementSymbol element : PartitionAnalyzer.extractPartionInfo((SetQuery)definition, symbols).keySet()) {
+				partitioned.add(element.getMetadataID());
+			}
+		}
+		for (ElementSymbol element : compared) {
+			Object id = element.getMetadataID();
+			if (partitioned.contains(id)) {
+				return false;
+			}
+			if (id instanceof TempMetadataID && ((TempMetadataID)id).getHistogram() != null) {
+				return false;
+			}
+			if (element.getGroupSymbol() == null) {
+				continue;
+			}
+			Object groupId = element.getGroupSymbol().getMetadataID();
+			if (!(groupId instanceof TempMetadataID) && metadata.hasMaterialization(groupId)) {
+				//statistics may be gathered when the materialized view is loaded
+				return false;
+			}
+			if (metadata.getMinimumValue(id) != null || metadata.getMaximumValue(id) != null) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static int skipWhitespace(String sql, int i) {
+		while (i < sql.length() && Character.isWhitespace(sql.charAt(i))) {
+			i++;
+		}
+		return i;
+	}
+	
+	/**
+	 * @return the index after the closing quote or -1 if unterminated
+	 */
+	private static int skipQuoted(String sql, int i, char quote) {
+		i++;
+		while (i < sql.length()) {
+			if (sql.charAt(i++) == quote) {
+				if (i < sql.length() && sql.charAt(i) == quote) {
+					i++;
+					continue;
+				}
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * @return the end of a string or unsigned numeric literal starting at i, or -1 
+	 */
+	private static int getLiteralEnd(String sql, int i) {
+		char c = sql.charAt(i);
+		if (c == '\'') {
+			return skipQuoted(sql, i, c);
+		}
+		if (!Character.isDigit(c)) {
+			return -1;
+		}
+		int end = i;
+		while (end < sql.length() && Character.isDigit(sql.charAt(end))) {
+			end++;
+		}
+		if (end < sql.length() && sql.charAt(end) == '.') {
+			end++;
+			while (end < sql.length() && Character.isDigit(sql.charAt(end))) {
+				end++;
+			}
+		}
+		if (end < sql.length() && (sql.charAt(end) == 'e' || sql.charAt(end) == 'E')) {
+			int exp = end + 1;
+			if (exp < sql.length() && (sql.charAt(exp) == '+' || sql.charAt(exp) == '-')) {
+				exp++;
+			}
+			if (exp >= sql.length() || !Character.isDigit(sql.charAt(exp))) {
+				return -1;
+			}
+			end = exp;
+			while (end < sql.length() && Character.isDigit(sql.charAt(end))) {
+				end++;
+			}
+		}
+		return end;
+	}
+	
+	/**
+	 * The literal must not be an operand of a following operator
+	 */
+	private static boolean isLiteralBoundary(String sql, int end) {
+		int next = skipWhitespace(sql, end);
+		if (next == sql.length()) {
+			return true;
+		}
+		char c = sql.charAt(next);
+		if (c == ')' || c == ';') {
+			return true;
+		}
+		//a keyword such as AND, OR, ORDER, etc. must be separated from the literal
+		return next > end && Character.isLetter(c);
+	}
+	
+	private static Object getValue(String literal) {
+		if (literal.charAt(0) == '\'') {
+			return literal.substring(1, literal.length() - 1).replace("''", "'"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		try {
+			if (literal.indexOf('e') >= 0 || literal.indexOf('E') >= 0) {
+				return Double.valueOf(literal);
+			}
+			if (literal.indexOf('.') >= 0) {
+				if (SQLParserUtil.DECIMAL_AS_DOUBLE) {
+					return Double.valueOf(literal);
+				}
+				return new BigDecimal(literal);
+			}
+			BigInteger value = new BigInteger(literal);
+			if (value.bitLength() < 32) {
+				return value.intValue();
+			}
+			if (value.bitLength() < 64) {
+				return value.longValue();
+			}
+			return value;
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+}
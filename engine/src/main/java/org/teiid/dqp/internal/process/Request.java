@@ -132,6 +132,10 @@ public class Request {
 	private Executor executor;
 	protected Options options;
 	protected PreParser preParser;
+	/**
+	 * The preparsed command string with literals replaced by parameters
+	 */
+	protected String parameterizedCommand;
 
     void initialize(RequestMessage requestMsg,
                               BufferManager bufferManager,
@@ -262,8 +266,12 @@ public class Request {
 		this.userRequestConcurrency = userRequestConcurrency;
 	}
 
-    protected void checkReferences(List<Reference> references) throws QueryValidatorException {
+    /**
+     * @return true if planning should continue for the command
+     */
+    protected boolean checkReferences(List<Reference> references, Command command) throws TeiidComponentException, TeiidProcessingException {
     	referenceCheck(references);
+    	return true;
     }
     
     static void referenceCheck(List<Reference> references) throws QueryValidatorException {
@@ -293,6 +301,9 @@ public class Request {
         String[] commands = requestMsg.getCommands();
         ParseInfo parseInfo = createParseInfo(this.requestMsg, this.workContext.getSession());
         QueryParser queryParser = QueryParser.getQueryParser();
+        if (this.parameterizedCommand != null) {
+        	return queryParser.parseCommand(this.parameterizedCommand, parseInfo);
+        }
 		if (requestMsg.isPreparedStatement() || requestMsg.isCallableStatement() || !requestMsg.isBatchedUpdate()) {
         	String commandStr = commands[0];
         	if (preParser != null) {
@@ -407,7 +418,9 @@ public class Request {
                 
         resolveCommand(command);
 
-        checkReferences(references);
+        if (!checkReferences(references, command)) {
+        	return;
+        }
         
         validateAccess(requestMsg.getCommands(), command, CommandType.USER);
         
@@ -20,6 +20,7 @@ package org.teiid.dqp.internal.process;
 
 import java.lang.ref.WeakReference;
 import java.sql.ResultSet;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -33,7 +34,10 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.teiid.api.exception.query.QueryParserException;
+import org.teiid.api.exception.query.QueryResolverException;
 import org.teiid.client.BatchSerializer;
+import org.teiid.client.DQP;
 import org.teiid.client.RequestMessage;
 import org.teiid.client.RequestMessage.ShowPlan;
 import org.teiid.client.ResizingArrayList;
@@ -77,8 +81,10 @@ import org.teiid.query.parser.QueryParser;
 import org.teiid.query.processor.BatchCollector;
 import org.teiid.query.processor.QueryProcessor;
 import org.teiid.query.processor.QueryProcessor.ExpiredTimeSliceException;
+import org.teiid.query.resolver.QueryResolver;
 import org.teiid.query.sql.lang.CacheHint;
 import org.teiid.query.sql.lang.Command;
+import org.teiid.query.sql.lang.Query;
 import org.teiid.query.sql.lang.SPParameter;
 import org.teiid.query.sql.lang.StoredProcedure;
 import org.teiid.query.sql.symbol.Expression;
@@ -86,6 +92,7 @@ import org.teiid.query.sql.symbol.Symbol;
 import org.teiid.query.util.CommandContext;
 import org.teiid.query.util.GeneratedKeysImpl;
 import org.teiid.query.util.Options;
+import org.teiid.vdb.runtime.VDBKey;
 
 /**
  * Compiles results and other information for the client.  There is quite a bit of logic
@@ -174,6 +181,9 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
     private Options options;
     private final int processorTimeslice;
 	private CacheID cid;
+	private boolean filteredCachedResults;
+	private List<Object> admissionKey;
+	private boolean autoCached;
 	private final TransactionService transactionService;
 	private final DQPWorkContext dqpWorkContext;
 	boolean active;
@@ -203,6 +213,9 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 	private ResultsReceiver<ResultsMessage> resultsReceiver;
 	private int begin;
 	private int end;
+	//outstanding next batch requests (credits) from a streaming forward only client
+	private ArrayDeque<CursorRequest> pendingRequests = new ArrayDeque<CursorRequest>(2);
+	private int lastSentRow;
     private TupleBatch savedBatch;
     private Map<Integer, LobWorkItem> lobStreams = Collections.synchronizedMap(new HashMap<Integer, LobWorkItem>(4));    
     
@@ -221,6 +234,9 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 	AtomicLong dataBytes = new AtomicLong();
 	private long planningStart;
 	private long planningEnd;
+	//time spent blocked on a forward only client
+	private long clientWaitStart;
+	private long clientWaitTime;
 	
 	private ThreadCpuTimer timer = new ThreadCpuTimer();
     
@@ -248,14 +264,67 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 	 * @param endRow
 	 */
     synchronized void requestResults(int beginRow, int endRow, ResultsReceiver<ResultsMessage> receiver) {
+    	if (beginRow == DQP.NEXT_BATCH) {
+    		int count = endRow - beginRow + 1;
+    		if (this.resultsReceiver != null) {
+    			if (!isForwardOnly()) {
+    				throw new IllegalStateException("Results already requested"); //$NON-NLS-1$
+    			}
+    			this.pendingRequests.add(new CursorRequest(receiver, count));
+    			return;
+    		}
+    		beginRow = this.lastSentRow + 1;
+    		endRow = beginRow + count - 1;
+    	}
 		if (this.resultsReceiver != null) {
 			throw new IllegalStateException("Results already requested"); //$NON-NLS-1$\
 		}
 		this.resultsReceiver = receiver;
 		this.begin = beginRow;
 		this.end = endRow;
+		endClientWait();
 	}
     
+    private void endClientWait() {
+    	if (this.clientWaitStart != 0) {
+    		this.clientWaitTime += System.currentTimeMillis() - this.clientWaitStart;
+    		this.clientWaitStart = 0;
+    	}
+    }
+    
+    /**
+     * @return the time since planning started, not including the time spent waiting on the client
+     */
+    private synchronized long getProcessingTime() {
+    	endClientWait();
+    	return System.currentTimeMillis() - planningStart - clientWaitTime;
+    }
+    
+    private static class CursorRequest {
+    	ResultsReceiver<ResultsMessage> receiver;
+    	int count;
+    	
+    	CursorRequest(ResultsReceiver<ResultsMessage> receiver, int count) {
+    		this.receiver = receiver;
+    		this.count = count;
+		}
+    }
+    
+    /**
+     * Start on the next outstanding cursor request.  Must be called holding the lock.
+     * @return true if there was an outstanding request
+     */
+    private boolean nextPendingRequest() {
+    	CursorRequest next = this.pendingRequests.poll();
+    	if (next == null) {
+    		return false;
+    	}
+    	this.resultsReceiver = next.receiver;
+    	this.begin = this.lastSentRow + 1;
+    	this.end = this.begin + next.count - 1;
+    	return true;
+    }
+    
 	@Override
 	protected boolean isDoneProcessing() {
 		return isClosed;
@@ -537,6 +606,9 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 					} finally {
 						CommandContext.popThreadLocalContext();
 					}
+				} else if (this.filteredCachedResults) {
+					//the filtered results are specific to this request
+					resultsBuffer.remove();
 				}
 	
 				this.resultsBuffer = null;
@@ -574,7 +646,7 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 			}
 			
 	        synchronized (this) {
-		        if (this.processingException == null && this.resultsReceiver != null) {
+		        if (this.processingException == null && (this.resultsReceiver != null || !this.pendingRequests.isEmpty())) {
 		        	//sanity check to ensure that something will be sent to the client
 		        	setCanceledException();
 		        }
@@ -611,7 +683,7 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 			if (requestMsg.getRequestOptions().isContinuous()) {
 				canUseCache = false;
 				LogManager.logDetail(LogConstants.CTX_DQP, requestID, "Command is continuous, result set caching will not be used"); //$NON-NLS-1$
-			} else if (!requestMsg.useResultSetCache() && getCacheHint() == null) {
+			} else if (!requestMsg.useResultSetCache() && getCacheHint() == null && !isAutoResultCache()) {
 				canUseCache = false;
 				LogManager.logDetail(LogConstants.CTX_DQP, requestID, "Command has no cache hint and result set cache mode is not on."); //$NON-NLS-1$
 			}
@@ -620,6 +692,9 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 				cacheId = new CacheID(this.dqpWorkContext, pi, requestMsg.getCommandString());
 		    	cachable = cacheId.setParameters(requestMsg.getParameterValues());
 				if (cachable) {
+					if (isAutoResultCache()) {
+						this.admissionKey = CacheAdmissionPolicy.getKey(cacheId.getVDBKey(), pi.ansiQuotedIdentifiers, requestMsg.getCommandString(), requestMsg.getParameterValues());
+					}
 					//allow cache to be transactionally aware
 					if (rsCache.isTransactional()) {
 						TransactionContext tc = request.getTransactionContext(false);
@@ -628,7 +703,11 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 							resume();
 						}
 					}
-					CachedResults cr = rsCache.get(cacheId);
+					CachedResults cr = null;
+					//without a hint or the result set cache mode only automatically admitted results are used
+					if (requestMsg.useResultSetCache() || getCacheHint() != null || dqpCore.getCacheAdmissionPolicy().isAdmitted(this.admissionKey, cacheId)) {
+						cr = rsCache.get(cacheId);
+					}
 					//check that there are enough cached results
 					//TODO: possibly ignore max rows for caching
 					if (cr != null && (cr.getRowLimit() == 0 || (requestMsg.getRowLimit() != 0 && requestMsg.getRowLimit() <= cr.getRowLimit()))) {
@@ -637,11 +716,16 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 						if (!request.validateAccess(requestMsg.getCommands(), this.originalCommand, CommandType.CACHED)) {
 							LogManager.logDetail(LogConstants.CTX_DQP, requestID, "Using result set cached results", cacheId); //$NON-NLS-1$
 							this.resultsBuffer = cr.getResults();
+							if (this.admissionKey != null) {
+								dqpCore.getCacheAdmissionPolicy().hit(this.admissionKey);
+							}
 							doneProducingBatches();
 							return;
 						}
 						LogManager.logDetail(LogConstants.CTX_DQP, requestID, "Cached result command to be modified, will not use the cached results", cacheId); //$NON-NLS-1$
-					} 
+					} else if (useSemanticCache(pi, rsCache)) {
+						return;
+					}
 				} else {
 					LogManager.logDetail(LogConstants.CTX_DQP, requestID, "Parameters are not serializable - cache cannot be used for", cacheId); //$NON-NLS-1$
 				}
@@ -655,8 +739,16 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 			analysisRecord = request.analysisRecord;
 		}
 		originalCommand = request.userCommand;
-        if (cachable && (requestMsg.useResultSetCache() || originalCommand.getCacheHint() != null) && rsCache != null && originalCommand.areResultsCachable()) {
+        boolean autoCache = false;
+        if (cachable && !requestMsg.useResultSetCache() && originalCommand.getCacheHint() == null && this.admissionKey != null) {
+        	autoCache = dqpCore.getCacheAdmissionPolicy().shouldCache(this.admissionKey, cacheId, this.options.getAutoResultCacheMaxBytes(), rsCache);
+        	if (autoCache) {
+        		LogManager.logDetail(LogConstants.CTX_DQP, requestID, "Automatically caching results for", cacheId); //$NON-NLS-1$
+        	}
+        }
+        if (cachable && (requestMsg.useResultSetCache() || originalCommand.getCacheHint() != null || autoCache) && rsCache != null && originalCommand.areResultsCachable()) {
         	this.cid = cacheId;
+        	this.autoCached = autoCache;
         	//turn on the collection of data objects used
         	request.processor.getContext().setDataObjects(new HashSet<Object>(4));
         }
@@ -782,6 +874,62 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 		request = null;
 	}
 
+	/**
+	 * Attempt to answer the request by filtering the cached results of a query with a broader predicate
+	 */
+	private boolean useSemanticCache(ParseInfo pi, SessionAwareCache<CachedResults> rsCache) throws TeiidComponentException, TeiidProcessingException {
+		SemanticCacheIndex index = dqpCore.getSemanticCacheIndex();
+		if (index == null || this.options == null || !this.options.isSemanticResultCache() 
+				|| (requestMsg.getParameterValues() != null && !requestMsg.getParameterValues().isEmpty())) {
+			return false;
+		}
+		VDBKey vdbKey = new VDBKey(this.dqpWorkContext.getVdbName(), this.dqpWorkContext.getVdbVersion());
+		if (!index.hasEntries(vdbKey)) {
+			return false;
+		}
+		request.initMetadata();
+		Command command = null;
+		try {
+			command = QueryParser.getQueryParser().parseCommand(requestMsg.getCommandString(), pi);
+			QueryResolver.resolveCommand(command, request.metadata);
+		} catch (QueryParserException e) {
+			return false; //will be reported by normal processing
+		} catch (QueryResolverException e) {
+			return false;
+		}
+		List<SemanticCacheIndex.Entry> candidates = index.getCandidates(vdbKey, command, pi.ansiQuotedIdentifiers);
+		if (candidates.isEmpty()) {
+			return false;
+		}
+		boolean teiidCollation = SemanticCacheIndex.isTeiidCollation(command, request.metadata, this.options);
+		for (SemanticCacheIndex.Entry entry : candidates) {
+			SemanticCacheIndex.Match match = entry.match((Query)command, teiidCollation);
+			if (match == null) {
+				continue;
+			}
+			CacheID id = new CacheID(this.dqpWorkContext, pi, entry.getSql());
+			CachedResults cr = rsCache.get(id);
+			if (cr == null) {
+				index.remove(vdbKey, entry);
+				continue;
+			}
+			if (cr.getRowLimit() != 0 || cr.getResults().isLobs()) {
+				continue;
+			}
+			if (request.validateAccess(requestMsg.getCommands(), command, CommandType.CACHED)) {
+				LogManager.logDetail(LogConstants.CTX_DQP, requestID, "Command to be modified, will not use semantically matched cached results", id); //$NON-NLS-1$
+				return false;
+			}
+			LogManager.logDetail(LogConstants.CTX_DQP, requestID, "Using semantically matched result set cached results", id, "with residual criteria", match.getCriteria()); //$NON-NLS-1$ //$NON-NLS-2$
+			this.originalCommand = command;
+			this.resultsBuffer = match.createResults(cr.getResults(), command.getProjectedSymbols(), dqpCore.getBufferManager(), this.dqpWorkContext.getSessionId(), requestMsg.getRowLimit());
+			this.filteredCachedResults = true;
+			doneProducingBatches();
+			return true;
+		}
+		return false;
+	}
+
 	private void initTransactionState(TransactionContext tc) {
 		transactionContext = tc;
 		if (this.transactionContext != null && this.transactionContext.getTransactionType() != Scope.NONE) {
@@ -828,6 +976,10 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
         	}
         }            		
         
+        if (this.autoCached && determinismLevel.compareTo(Determinism.SESSION_DETERMINISTIC) < 0) {
+        	LogManager.logDetail(LogConstants.CTX_DQP, requestID, "Not automatically caching results that are not deterministic", determinismLevel); //$NON-NLS-1$
+        	return;
+        }
         if (determinismLevel.compareTo(Determinism.SESSION_DETERMINISTIC) <= 0) {
 			LogManager.logInfo(LogConstants.CTX_DQP, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30008, originalCommand));
 		}
@@ -837,6 +989,36 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 			LogManager.logDetail(LogConstants.CTX_DQP, e, QueryPlugin.Util.getString("failed_to_cache")); //$NON-NLS-1$
 		}
         dqpCore.getRsCache().put(cid, determinismLevel, cr, originalCommand.getCacheHint() != null?originalCommand.getCacheHint().getTtl():null);
+        if (this.autoCached) {
+        	dqpCore.getCacheAdmissionPolicy().admit(this.admissionKey, cid, determinismLevel, getResultsSizeEstimate(), this.options.getAutoResultCacheMaxBytes(), dqpCore.getRsCache());
+        } else if (this.admissionKey != null) {
+        	dqpCore.getCacheAdmissionPolicy().release(this.admissionKey, cid, determinismLevel);
+        }
+        SemanticCacheIndex index = dqpCore.getSemanticCacheIndex();
+        if (index != null && this.options != null && this.options.isSemanticResultCache() 
+        		&& (requestMsg.getParameterValues() == null || requestMsg.getParameterValues().isEmpty())) {
+        	ParseInfo pi = Request.createParseInfo(requestMsg, this.dqpWorkContext.getSession());
+        	Command command = originalCommand;
+        	if (request.parameterizedCommand != null) {
+        		//the index needs the literal values rather than the automatic parameters
+	        	try {
+	        		command = QueryParser.getQueryParser().parseCommand(requestMsg.getCommandString(), pi);
+	        		QueryResolver.resolveCommand(command, request.metadata);
+	        	} catch (TeiidException e) {
+	        		LogManager.logDetail(LogConstants.CTX_DQP, e, requestID, "Could not add the results to the semantic cache index"); //$NON-NLS-1$
+	        		return;
+	        	}
+        	}
+        	index.add(cid.getVDBKey(), requestMsg.getCommandString(), pi.ansiQuotedIdentifiers, command);
+        }
+	}
+	
+	private boolean isAutoResultCache() {
+		return this.options != null && this.options.isAutoResultCache() && dqpCore.getCacheAdmissionPolicy() != null;
+	}
+	
+	private long getResultsSizeEstimate() {
+		return (long)this.resultsBuffer.getRowCount() * this.resultsBuffer.getRowSizeEstimate();
 	}
 	
 	public SessionAwareCache<CachedResults> getRsCache() {
@@ -856,6 +1038,9 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 					if (batch != null) {
 						throw new AssertionError("batch has no handler"); //$NON-NLS-1$
 					}
+					if (this.clientWaitStart == 0) {
+						this.clientWaitStart = System.currentTimeMillis();
+					}
 		        	throw BlockedException.block(requestID, "Blocking until client is ready"); //$NON-NLS-1$            	
 		        }
 				return result;
@@ -997,6 +1182,11 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 	         */
             receiver = this.resultsReceiver;
             this.resultsReceiver = null;    
+            this.lastSentRow = response.getLastRow();
+            if (nextPendingRequest()) {
+            	//the client has already asked for more
+            	moreWork();
+            }
 		}
 		cancelCancelTask();
 		if ((!this.dqpWorkContext.getSession().isEmbedded() && requestMsg.isDelaySerialization() && this.requestMsg.getShowPlan() == ShowPlan.ON) 
@@ -1050,7 +1240,7 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
         String[] columnNames = new String[columnSymbols.size()];
         String[] dataTypes = new String[columnSymbols.size()];
 
-        byte clientSerializationVersion = this.dqpWorkContext.getClientVersion().getClientSerializationVersion();
+        byte clientSerializationVersion = this.dqpWorkContext.getClientSerializationVersion();
         for(int i=0; i<columnSymbols.size(); i++) {
             Expression symbol = columnSymbols.get(i);
             columnNames[i] = Symbol.getShortName(Symbol.getOutputName(symbol));
@@ -1062,6 +1252,7 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
         ResultsMessage result = new ResultsMessage(batch, columnNames, dataTypes);
         
 		result.setClientSerializationVersion(clientSerializationVersion);
+		result.setCompressResults(this.dqpWorkContext.isCompressResults());
         result.setDelayDeserialization(this.requestMsg.isDelaySerialization() && this.originalCommand.returnsResultSet());
         return result;
     }
@@ -1091,10 +1282,15 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 
     private void sendError() {
     	ResultsReceiver<ResultsMessage> receiver = null;
+    	List<CursorRequest> pending = null;
     	synchronized (this) {
     		receiver = this.resultsReceiver;
     		this.resultsReceiver = null;
-    		if (receiver == null) {
+    		if (!this.pendingRequests.isEmpty()) {
+    			pending = new ArrayList<CursorRequest>(this.pendingRequests);
+    			this.pendingRequests.clear();
+    		}
+    		if (receiver == null && pending == null) {
     			LogManager.logDetail(LogConstants.CTX_DQP, processingException, "Unable to send error to client as results were already sent.", requestID); //$NON-NLS-1$
     			return;
     		}
@@ -1112,7 +1308,14 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
         setWarnings(response);
         response.setException(exception);
         setAnalysisRecords(response);
-        receiver.receiveResults(response);
+        if (receiver != null) {
+        	receiver.receiveResults(response);
+        }
+        if (pending != null) {
+        	for (CursorRequest request : pending) {
+        		request.receiver.receiveResults(response);
+        	}
+        }
     }
 
 	private Throwable addCancelCode(Throwable exception) {
@@ -1300,6 +1503,9 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 
 	private void done() {
 		doneProducingBatches();
+		if (this.admissionKey != null) {
+			dqpCore.getCacheAdmissionPolicy().executed(this.admissionKey, getProcessingTime(), getResultsSizeEstimate());
+		}
 		addToCache();
 		//TODO: we could perform more tracking to know what source lobs are in use
 		if (this.resultsBuffer.getLobCount() == 0) {
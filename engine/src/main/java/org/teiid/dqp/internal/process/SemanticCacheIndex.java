@@ -0,0 +1,654 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.dqp.internal.process;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.BufferManager.TupleSourceType;
+import org.teiid.common.buffer.TupleBuffer;
+import org.teiid.common.buffer.TupleSource;
+import org.teiid.core.TeiidComponentException;
+import org.teiid.core.TeiidProcessingException;
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.core.util.EquivalenceUtil;
+import org.teiid.query.eval.Evaluator;
+import org.teiid.query.metadata.QueryMetadataInterface;
+import org.teiid.query.sql.lang.BetweenCriteria;
+import org.teiid.query.sql.lang.Command;
+import org.teiid.query.sql.lang.CompareCriteria;
+import org.teiid.query.sql.lang.CompoundCriteria;
+import org.teiid.query.sql.lang.Criteria;
+import org.teiid.query.sql.lang.IsNullCriteria;
+import org.teiid.query.sql.lang.Limit;
+import org.teiid.query.sql.lang.MatchCriteria;
+import org.teiid.query.sql.lang.NotCriteria;
+import org.teiid.query.sql.lang.Option;
+import org.teiid.query.sql.lang.OrderByItem;
+import org.teiid.query.sql.lang.Query;
+import org.teiid.query.sql.lang.SetCriteria;
+import org.teiid.query.sql.lang.UnaryFromClause;
+import org.teiid.query.sql.symbol.Constant;
+import org.teiid.query.sql.symbol.ElementSymbol;
+import org.teiid.query.sql.symbol.Expression;
+import org.teiid.query.sql.symbol.GroupSymbol;
+import org.teiid.query.sql.util.SymbolMap;
+import org.teiid.query.sql.visitor.ElementCollectorVisitor;
+import org.teiid.query.util.Options;
+import org.teiid.vdb.runtime.VDBKey;
+
+/**
+ * Indexes simple result set cache entries by the group they select from so that a query
+ * with a narrower predicate, a subset of the projection, or a smaller limit can be answered
+ * by filtering cached results rather than executing against the sources.
+ * <br>
+ * Only single group queries without grouping, distinct, or functions in the criteria
+ * are indexed.  Index entries are only hints - the cached results must still be obtained
+ * through the result set cache so that scoping and invalidation are respected.
+ * <br>
+ * Residual criteria are evaluated by the engine, so residual string comparisons are only allowed
+ * when the source results are known to use the Teiid collation.
+ */
+public class SemanticCacheIndex {
+	
+	static final int MAX_ENTRIES_PER_GROUP = 16;
+	static final int MAX_GROUPS = 256;
+	
+	public static class Entry {
+		private String sql;
+		private boolean ansiQuotedIdentifiers;
+		private Query query;
+		
+		Entry(String sql, boolean ansiQuotedIdentifiers, Query query) {
+			this.sql = sql;
+			this.ansiQuotedIdentifiers = ansiQuotedIdentifiers;
+			this.query = query;
+		}
+		
+		public String getSql() {
+			return sql;
+		}
+		
+		/**
+		 * Determine if the results of this entry contain the results of the given query.
+		 * @param teiidCollation true if string comparisons against the group are known to use the Teiid collation,
+		 * see {@link SemanticCacheIndex#isTeiidCollation(Command, QueryMetadataInterface, Options)}
+		 * @return the {@link Match} or null if the results cannot be reused
+		 */
+		public Match match(Query newQuery, boolean teiidCollation) {
+			Map<ElementSymbol, Integer> elements = new HashMap<ElementSymbol, Integer>();
+			List<Expression> projected = query.getProjectedSymbols();
+			for (int i = 0; i < projected.size(); i++) {
+				elements.put((ElementSymbol)SymbolMap.getExpression(projected.get(i)), i);
+			}
+			List<Expression> newProjected = newQuery.getProjectedSymbols();
+			int[] projection = new int[newProjected.size()];
+			for (int i = 0; i < projection.length; i++) {
+				Integer index = elements.get(SymbolMap.getExpression(newProjected.get(i)));
+				if (index == null) {
+					return null;
+				}
+				projection[i] = index;
+			}
+			List<Criteria> cachedConjuncts = Criteria.separateCriteriaByAnd(query.getCriteria());
+			List<Criteria> residual = new ArrayList<Criteria>(Criteria.separateCriteriaByAnd(newQuery.getCriteria()));
+			for (Criteria crit : cachedConjuncts) {
+				boolean implied = false;
+				for (Criteria newCrit : residual) {
+					if (implies(newCrit, crit)) {
+						implied = true;
+						break;
+					}
+				}
+				if (!implied) {
+					return null;
+				}
+			}
+			residual.removeAll(cachedConjuncts);
+			Criteria residualCrit = null;
+			if (!residual.isEmpty()) {
+				if (!teiidCollation || isNoCache(query.getOption())) {
+					//the source may collate differently, so only exact predicates on strings are safe to reuse
+					for (Criteria crit : residual) {
+						if (isCollationSensitive(crit)) {
+							return null;
+						}
+					}
+				}
+				residualCrit = Criteria.combineCriteria(residual);
+				if (!elements.keySet().containsAll(ElementCollectorVisitor.getElements(residualCrit, true))) {
+					return null;
+				}
+			}
+			//the cached rows must be in the requested order
+			if (newQuery.getOrderBy() != null && !newQuery.getOrderBy().equals(query.getOrderBy())) {
+				return null;
+			}
+			int offset = 0;
+			int limit = -1;
+			if (newQuery.getLimit() != null) {
+				offset = getOffset(newQuery.getLimit());
+				limit = getRowLimit(newQuery.getLimit());
+			}
+			if (query.getLimit() != null) {
+				//a limited result can only be reused for the same criteria and order with a limit within the cached rows 
+				if (residualCrit != null || !EquivalenceUtil.areEqual(newQuery.getOrderBy(), query.getOrderBy()) 
+						|| limit == -1 || getOffset(query.getLimit()) != 0 || offset + (long)limit > getRowLimit(query.getLimit())) {
+					return null;
+				}
+			}
+			return new Match(elements, projection, residualCrit, offset, limit);
+		}
+	}
+	
+	/**
+	 * The instructions for computing a result from a cached result
+	 */
+	public static class Match {
+		private Map<ElementSymbol, Integer> elements;
+		private int[] projection;
+		private Criteria criteria;
+		private int offset;
+		private int limit;
+		
+		Match(Map<ElementSymbol, Integer> elements, int[] projection,
+				Criteria criteria, int offset, int limit) {
+			this.elements = elements;
+			this.projection = projection;
+			this.criteria = criteria;
+			this.offset = offset;
+			this.limit = limit;
+		}
+		
+		public Criteria getCriteria() {
+			return criteria;
+		}
+		
+		/**
+		 * Create a new buffer from the cached results
+		 * @param maxRows the maximum number of rows to return, or 0 for no limit
+		 */
+		public TupleBuffer createResults(TupleBuffer cached, List<? extends Expression> schema, BufferManager bufferManager, String connectionId, int maxRows) throws TeiidComponentException, TeiidProcessingException {
+			TupleBuffer result = bufferManager.createTupleBuffer(schema, connectionId, TupleSourceType.FINAL);
+			boolean success = false;
+			try {
+				Evaluator eval = new Evaluator(elements, null, null);
+				TupleSource ts = cached.createIndexedTupleSource();
+				int toSkip = offset;
+				int remaining = limit;
+				if (maxRows > 0 && (remaining == -1 || maxRows < remaining)) {
+					remaining = maxRows;
+				}
+				while (remaining != 0) {
+					List<?> tuple = ts.nextTuple();
+					if (tuple == null) {
+						break;
+					}
+					if (criteria != null && !eval.evaluate(criteria, tuple)) {
+						continue;
+					}
+					if (toSkip > 0) {
+						toSkip--;
+						continue;
+					}
+					List<Object> row = new ArrayList<Object>(projection.length);
+					for (int index : projection) {
+						row.add(tuple.get(index));
+					}
+					result.addTuple(row);
+					if (remaining > 0) {
+						remaining--;
+					}
+				}
+				ts.closeSource();
+				result.close();
+				success = true;
+				return result;
+			} finally {
+				if (!success) {
+					result.remove();
+				}
+			}
+		}
+	}
+	
+	private Map<List<Object>, List<Entry>> index = new LinkedHashMap<List<Object>, List<Entry>>(16, .75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<List<Object>, List<Entry>> eldest) {
+			return size() > MAX_GROUPS;
+		}
+	};
+	
+	/**
+	 * Add an entry for the cached command if it's eligible
+	 */
+	public void add(VDBKey vdbKey, String sql, boolean ansiQuotedIdentifiers, Command command) {
+		GroupSymbol group = getIndexableGroup(command);
+		if (group == null) {
+			return;
+		}
+		List<Object> key = getKey(vdbKey, group);
+		Entry entry = new Entry(sql, ansiQuotedIdentifiers, (Query)command.clone());
+		synchronized (index) {
+			List<Entry> entries = index.get(key);
+			if (entries == null) {
+				entries = new ArrayList<Entry>(2);
+				index.put(key, entries);
+			}
+			for (Iterator<Entry> iter = entries.iterator(); iter.hasNext();) {
+				Entry existing = iter.next();
+				if (existing.sql.equals(sql) && existing.ansiQuotedIdentifiers == ansiQuotedIdentifiers) {
+					iter.remove();
+				}
+			}
+			entries.add(0, entry);
+			if (entries.size() > MAX_ENTRIES_PER_GROUP) {
+				entries.remove(entries.size() - 1);
+			}
+		}
+	}
+	
+	public void remove(VDBKey vdbKey, Entry entry) {
+		List<Object> key = getKey(vdbKey, getIndexableGroup(entry.query));
+		synchronized (index) {
+			List<Entry> entries = index.get(key);
+			if (entries != null) {
+				entries.remove(entry);
+				if (entries.isEmpty()) {
+					index.remove(key);
+				}
+			}
+		}
+	}
+	
+	public boolean hasEntries(VDBKey vdbKey) {
+		synchronized (index) {
+			for (List<Object> key : index.keySet()) {
+				if (key.get(0).equals(vdbKey)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Get the entries that select from the same group as the command, most recent first.
+	 */
+	public List<Entry> getCandidates(VDBKey vdbKey, Command command, boolean ansiQuotedIdentifiers) {
+		GroupSymbol group = getIndexableGroup(command);
+		if (group == null) {
+			return Collections.emptyList();
+		}
+		List<Entry> result = new ArrayList<Entry>();
+		synchronized (index) {
+			List<Entry> entries = index.get(getKey(vdbKey, group));
+			if (entries != null) {
+				for (Entry entry : entries) {
+					if (entry.ansiQuotedIdentifiers == ansiQuotedIdentifiers) {
+						result.add(entry);
+					}
+				}
+			}
+		}
+		return result;
+	}
+	
+	public void clear() {
+		synchronized (index) {
+			index.clear();
+		}
+	}
+
+	private static List<Object> getKey(VDBKey vdbKey, GroupSymbol group) {
+		List<Object> key = new ArrayList<Object>(2);
+		key.add(vdbKey);
+		key.add(group.getNonCorrelationName());
+		return key;
+	}
+	
+	/**
+	 * @return the single group of a simple query or null if the command cannot be indexed
+	 */
+	static GroupSymbol getIndexableGroup(Command command) {
+		if (!(command instanceof Query)) {
+			return null;
+		}
+		Query query = (Query)command;
+		if (query.getInto() != null || query.getWith() != null || query.getFrom() == null 
+				|| query.getFrom().getClauses().size() != 1 || !(query.getFrom().getClauses().get(0) instanceof UnaryFromClause)
+				|| query.getGroupBy() != null || query.getHaving() != null || query.getSelect().isDistinct()) {
+			return null;
+		}
+		GroupSymbol group = ((UnaryFromClause)query.getFrom().getClauses().get(0)).getGroup();
+		if (group.getMetadataID() == null || group.hasAlias() || group.isTempTable() || group.isProcedure()) {
+			return null;
+		}
+		for (Expression ex : query.getProjectedSymbols()) {
+			if (!(SymbolMap.getExpression(ex) instanceof ElementSymbol)) {
+				return null;
+			}
+		}
+		if (query.getOrderBy() != null) {
+			for (OrderByItem item : query.getOrderBy().getOrderByItems()) {
+				if (!(SymbolMap.getExpression(item.getSymbol()) instanceof ElementSymbol)) {
+					return null;
+				}
+			}
+		}
+		Limit limit = query.getLimit();
+		if (limit != null && ((limit.getOffset() != null && !(limit.getOffset() instanceof Constant)) || !(limit.getRowLimit() instanceof Constant))) {
+			return null;
+		}
+		if (query.getCriteria() != null && !isSimple(query.getCriteria())) {
+			return null;
+		}
+		return group;
+	}
+	
+	/**
+	 * @return true if string comparisons against the group of the indexable command will use the Teiid collation -
+	 * either because the collation is required of pushdown or because the group is an internal materialized view
+	 */
+	static boolean isTeiidCollation(Command command, QueryMetadataInterface metadata, Options options) throws TeiidComponentException {
+		if (options.isRequireTeiidCollation()) {
+			return true;
+		}
+		if (isNoCache(command.getOption())) {
+			return false;
+		}
+		Object groupID = getIndexableGroup(command).getMetadataID();
+		return metadata.hasMaterialization(groupID) && metadata.getMaterialization(groupID) == null;
+	}
+	
+	private static boolean isNoCache(Option option) {
+		return option != null && (option.isNoCache() || (option.getNoCacheGroups() != null && !option.getNoCacheGroups().isEmpty()));
+	}
+	
+	/**
+	 * @return true if the result of a simple criteria may depend upon the collation
+	 */
+	static boolean isCollationSensitive(Criteria crit) {
+		if (crit instanceof IsNullCriteria) {
+			return false;
+		}
+		for (ElementSymbol element : ElementCollectorVisitor.getElements(crit, true)) {
+			if (element.getType() == DataTypeManager.DefaultDataClasses.STRING || element.getType() == DataTypeManager.DefaultDataClasses.CHAR) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Simple criteria compare elements to constants 
+	 */
+	static boolean isSimple(Criteria crit) {
+		if (crit instanceof CompoundCriteria) {
+			for (Criteria child : ((CompoundCriteria)crit).getCriteria()) {
+				if (!isSimple(child)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		if (crit instanceof NotCriteria) {
+			return isSimple(((NotCriteria)crit).getCriteria());
+		}
+		if (crit instanceof CompareCriteria) {
+			CompareCriteria cc = (CompareCriteria)crit;
+			return cc.getLeftExpression() instanceof ElementSymbol && cc.getRightExpression() instanceof Constant;
+		}
+		if (crit instanceof SetCriteria) {
+			SetCriteria sc = (SetCriteria)crit;
+			if (!(sc.getExpression() instanceof ElementSymbol)) {
+				return false;
+			}
+			for (Object value : sc.getValues()) {
+				if (!(value instanceof Constant)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		if (crit instanceof IsNullCriteria) {
+			return ((IsNullCriteria)crit).getExpression() instanceof ElementSymbol;
+		}
+		if (crit instanceof MatchCriteria) {
+			MatchCriteria mc = (MatchCriteria)crit;
+			return mc.getLeftExpression() instanceof ElementSymbol && mc.getRightExpression() instanceof Constant;
+		}
+		if (crit instanceof BetweenCriteria) {
+			BetweenCriteria bc = (BetweenCriteria)crit;
+			return bc.getExpression() instanceof ElementSymbol && bc.getLowerExpression() instanceof Constant && bc.getUpperExpression() instanceof Constant;
+		}
+		return false;
+	}
+	
+	/**
+	 * A closed or open interval of values for an element
+	 */
+	static class Range {
+		Expression element;
+		Constant lower;
+		boolean lowerInclusive;
+		Constant upper;
+		boolean upperInclusive;
+		
+		boolean contains(Constant value) {
+			if (lower != null) {
+				int comp = compare(value, lower);
+				if (comp < 0 || (comp == 0 && !lowerInclusive)) {
+					return false;
+				}
+			}
+			if (upper != null) {
+				int comp = compare(value, upper);
+				if (comp > 0 || (comp == 0 && !upperInclusive)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		
+		boolean contains(Range other) {
+			if (lower != null) {
+				if (other.lower == null) {
+					return false;
+				}
+				int comp = compare(other.lower, lower);
+				if (comp < 0 || (comp == 0 && other.lowerInclusive && !lowerInclusive)) {
+					return false;
+				}
+			}
+			if (upper != null) {
+				if (other.upper == null) {
+					return false;
+				}
+				int comp = compare(other.upper, upper);
+				if (comp > 0 || (comp == 0 && other.upperInclusive && !upperInclusive)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+	
+	/**
+	 * @return true if every row satisfying newCrit also satisfies crit
+	 */
+	static boolean implies(Criteria newCrit, Criteria crit) {
+		if (newCrit.equals(crit)) {
+			return true;
+		}
+		Collection<Constant> newValues = getValues(newCrit);
+		Range range = getRange(crit);
+		if (range != null) {
+			if (newValues != null) {
+				if (!range.element.equals(getElement(newCrit))) {
+					return false;
+				}
+				for (Constant value : newValues) {
+					if (!range.contains(value)) {
+						return false;
+					}
+				}
+				return true;
+			}
+			Range newRange = getRange(newCrit);
+			return newRange != null && range.element.equals(newRange.element) && range.contains(newRange);
+		}
+		Collection<Constant> values = getValues(crit);
+		if (values == null || newValues == null || !getElement(crit).equals(getElement(newCrit))) {
+			return false;
+		}
+		outer: for (Constant newValue : newValues) {
+			for (Constant value : values) {
+				if (compare(newValue, value) == 0) {
+					continue outer;
+				}
+			}
+			return false;
+		}
+		return true;
+	}
+	
+	private static Expression getElement(Criteria crit) {
+		if (crit instanceof CompareCriteria) {
+			return ((CompareCriteria)crit).getLeftExpression();
+		}
+		return ((SetCriteria)crit).getExpression();
+	}
+	
+	/**
+	 * @return the values for an equality or in predicate, or null if the criteria is not of that form 
+	 */
+	private static Collection<Constant> getValues(Criteria crit) {
+		if (crit instanceof CompareCriteria) {
+			CompareCriteria cc = (CompareCriteria)crit;
+			if (cc.getOperator() != CompareCriteria.EQ || !isSimple(cc)) {
+				return null;
+			}
+			Constant value = (Constant)cc.getRightExpression();
+			if (value.getValue() == null || value.getType() != cc.getLeftExpression().getType()) {
+				return null;
+			}
+			return Arrays.asList(value);
+		}
+		if (crit instanceof SetCriteria) {
+			SetCriteria sc = (SetCriteria)crit;
+			if (sc.isNegated() || !isSimple(sc)) {
+				return null;
+			}
+			List<Constant> values = new ArrayList<Constant>(sc.getValues().size());
+			for (Object value : sc.getValues()) {
+				Constant c = (Constant)value;
+				if (c.getValue() == null || c.getType() != sc.getExpression().getType()) {
+					return null;
+				}
+				values.add(c);
+			}
+			return values;
+		}
+		return null;
+	}
+	
+	/**
+	 * @return the range for a comparison or between predicate, or null if the criteria is not of that form
+	 */
+	private static Range getRange(Criteria crit) {
+		Range range = new Range();
+		if (crit instanceof CompareCriteria) {
+			CompareCriteria cc = (CompareCriteria)crit;
+			if (!isSimple(cc)) {
+				return null;
+			}
+			Constant value = (Constant)cc.getRightExpression();
+			if (value.getValue() == null || value.getType() != cc.getLeftExpression().getType()) {
+				return null;
+			}
+			range.element = cc.getLeftExpression();
+			switch (cc.getOperator()) {
+			case CompareCriteria.EQ:
+				range.lower = value;
+				range.upper = value;
+				range.lowerInclusive = true;
+				range.upperInclusive = true;
+				break;
+			case CompareCriteria.GT:
+			case CompareCriteria.GE:
+				range.lower = value;
+				range.lowerInclusive = cc.getOperator() == CompareCriteria.GE;
+				break;
+			case CompareCriteria.LT:
+			case CompareCriteria.LE:
+				range.upper = value;
+				range.upperInclusive = cc.getOperator() == CompareCriteria.LE;
+				break;
+			default:
+				return null;
+			}
+			return range;
+		}
+		if (crit instanceof BetweenCriteria) {
+			BetweenCriteria bc = (BetweenCriteria)crit;
+			if (bc.isNegated() || !isSimple(bc)) {
+				return null;
+			}
+			Constant lower = (Constant)bc.getLowerExpression();
+			Constant upper = (Constant)bc.getUpperExpression();
+			Class<?> type = bc.getExpression().getType();
+			if (lower.getValue() == null || upper.getValue() == null || lower.getType() != type || upper.getType() != type) {
+				return null;
+			}
+			range.element = bc.getExpression();
+			range.lower = lower;
+			range.lowerInclusive = true;
+			range.upper = upper;
+			range.upperInclusive = true;
+			return range;
+		}
+		return null;
+	}
+	
+	private static int compare(Constant value, Constant other) {
+		return Constant.COMPARATOR.compare(value.getValue(), other.getValue());
+	}
+	
+	private static int getOffset(Limit limit) {
+		if (limit.getOffset() == null) {
+			return 0;
+		}
+		return (Integer)((Constant)limit.getOffset()).getValue();
+	}
+	
+	private static int getRowLimit(Limit limit) {
+		return (Integer)((Constant)limit.getRowLimit()).getValue();
+	}
+	
+}
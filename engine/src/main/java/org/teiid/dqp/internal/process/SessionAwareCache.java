@@ -174,6 +174,26 @@ public class SessionAwareCache<T> {
 		return this.distributedCache.remove(id);
 	}
 	
+	/**
+	 * Check for an entry without affecting the cache statistics or access order.
+	 * An entry that has expired or been evicted by the underlying cache is not found.
+	 */
+	public boolean containsKey(CacheID id, Determinism determinismLevel) {
+		if (determinismLevel.compareTo(Determinism.SESSION_DETERMINISTIC) <= 0) {
+			id.setSessionId(id.originalSessionId);
+			return this.localCache.keySet().contains(id);
+		} 
+		id.setSessionId(null);
+		
+		if (determinismLevel == Determinism.USER_DETERMINISTIC) {
+			id.setUserName(id.originalUserName);
+		}
+		else {
+			id.setUserName(null);
+		}
+		return this.distributedCache.keySet().contains(id);
+	}
+	
 	public void put(CacheID id, Determinism determinismLevel, T t, Long ttl){
 		cachePuts.incrementAndGet();
 		if (determinismLevel.compareTo(Determinism.SESSION_DETERMINISTIC) <= 0) {
@@ -334,6 +354,14 @@ public class SessionAwareCache<T> {
 			return userName;
 		}
 		
+		String getOriginalSessionId() {
+			return originalSessionId;
+		}
+		
+		String getOriginalUserName() {
+			return originalUserName;
+		}
+		
 		private void setSessionId(String sessionId) {
 			this.sessionId = sessionId;
 		}
@@ -628,6 +628,9 @@ public class QueryPlugin { // extends Plugin {
         TEIID31259, 
         TEIID31260, 
         TEIID31261, 
-        TEIID31262
+        TEIID31262,
+        TEIID31263,
+        TEIID31264,
+        TEIID31265
 	}
 }
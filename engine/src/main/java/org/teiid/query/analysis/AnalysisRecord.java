@@ -77,7 +77,11 @@ public class AnalysisRecord {
     public static final String PROP_UPSERT = "Upsert"; //$NON-NLS-1$
     public static final String PROP_SORT_COLS = "Sort Columns"; //$NON-NLS-1$
     public static final String PROP_SORT_MODE = "Sort Mode"; //$NON-NLS-1$
+    public static final String PROP_SORT_RUNS = "Sort Runs"; //$NON-NLS-1$
+    public static final String PROP_SORT_MERGES = "Sort Merges"; //$NON-NLS-1$
+    public static final String PROP_SORT_BYTES_SPILLED = "Sort Bytes Spilled"; //$NON-NLS-1$
     public static final String PROP_ROLLUP = "Rollup"; //$NON-NLS-1$
+    public static final String PROP_HASH_AGGREGATE = "Hash Aggregate"; //$NON-NLS-1$
     public static final String PROP_NODE_STATS_LIST = "Statistics"; //$NON-NLS-1$
     public static final String PROP_NODE_COST_ESTIMATES = "Cost Estimates";  //$NON-NLS-1$
     public static final String PROP_ROW_OFFSET = "Row Offset";  //$NON-NLS-1$
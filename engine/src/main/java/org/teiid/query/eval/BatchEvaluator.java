@@ -0,0 +1,709 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.query.eval;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.teiid.common.buffer.ColumnBatch;
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.metadata.FunctionMethod.Determinism;
+import org.teiid.metadata.FunctionMethod.PushDown;
+import org.teiid.query.function.FunctionDescriptor;
+import org.teiid.query.function.FunctionMethods;
+import org.teiid.query.sql.lang.CompareCriteria;
+import org.teiid.query.sql.lang.CompoundCriteria;
+import org.teiid.query.sql.lang.Criteria;
+import org.teiid.query.sql.lang.IsNullCriteria;
+import org.teiid.query.sql.symbol.Constant;
+import org.teiid.query.sql.symbol.DerivedExpression;
+import org.teiid.query.sql.symbol.Expression;
+import org.teiid.query.sql.symbol.ExpressionSymbol;
+import org.teiid.query.sql.symbol.Function;
+
+/**
+ * Compiles a subset of criteria and expressions into kernels that are evaluated
+ * a batch at a time rather than a row at a time.
+ * <br>
+ * Supported are comparisons, AND/OR, IS NULL, integer/long/double arithmetic and the
+ * concat, ucase, lcase, and length string functions over column references and constants.
+ * Kernels read a {@link ColumnBatch}, so integer, long, and double columns are
+ * gathered directly from their primitive arrays.
+ * <br>
+ * Kernels do not produce errors.  If a value would produce an error, warning, or other special
+ * handling under row evaluation (overflow, divide by zero, NaN, an overly long string, etc.)
+ * the batch evaluation returns null and the caller is expected to evaluate the batch
+ * with the {@link Evaluator} instead.
+ */
+public class BatchEvaluator {
+
+	private static final class Fallback extends RuntimeException {
+		private static final long serialVersionUID = -5293914391398627471L;
+
+		Fallback() {
+			super(null, null, false, false);
+		}
+	}
+
+	private static final Fallback FALLBACK = new Fallback();
+
+	private enum VectorType {
+		INT, LONG, DOUBLE, OBJECT;
+
+		static VectorType forClass(Class<?> type) {
+			if (type == DataTypeManager.DefaultDataClasses.INTEGER) {
+				return INT;
+			}
+			if (type == DataTypeManager.DefaultDataClasses.LONG) {
+				return LONG;
+			}
+			if (type == DataTypeManager.DefaultDataClasses.DOUBLE) {
+				return DOUBLE;
+			}
+			return OBJECT;
+		}
+	}
+
+	/**
+	 * The values of an expression for each selected row
+	 */
+	static final class Vector {
+		int[] ints;
+		long[] longs;
+		double[] doubles;
+		Object[] objects;
+		boolean[] nulls;
+
+		Vector(VectorType type, int count) {
+			switch (type) {
+			case INT:
+				ints = new int[count];
+				break;
+			case LONG:
+				longs = new long[count];
+				break;
+			case DOUBLE:
+				doubles = new double[count];
+				break;
+			default:
+				objects = new Object[count];
+				return;
+			}
+			nulls = new boolean[count];
+		}
+
+		boolean isNull(int i) {
+			if (objects != null) {
+				return objects[i] == null;
+			}
+			return nulls[i];
+		}
+
+		Object getValue(int i) {
+			if (objects != null) {
+				return objects[i];
+			}
+			if (nulls[i]) {
+				return null;
+			}
+			if (ints != null) {
+				return ints[i];
+			}
+			if (longs != null) {
+				return longs[i];
+			}
+			return doubles[i];
+		}
+	}
+
+	private abstract static class ExpressionKernel {
+		final VectorType type;
+
+		ExpressionKernel(VectorType type) {
+			this.type = type;
+		}
+
+		abstract Vector evaluate(ColumnBatch batch, int[] selection, int count);
+	}
+
+	private abstract static class CriteriaKernel {
+		/**
+		 * Reduce the selection to the rows that evaluate to true.
+		 * @return the new count
+		 */
+		abstract int select(ColumnBatch batch, int[] selection, int count);
+	}
+
+	/**
+	 * A compiled criteria
+	 */
+	public static final class Filter {
+		private CriteriaKernel kernel;
+
+		Filter(CriteriaKernel kernel) {
+			this.kernel = kernel;
+		}
+
+		/**
+		 * @return the ascending zero-based indexes of the rows in the batch
+		 * that satisfy the criteria, or null if the batch should be evaluated a
+		 * row at a time
+		 */
+		public int[] select(ColumnBatch batch) {
+			int count = batch.getRowCount();
+			int[] selection = new int[count];
+			for (int i = 0; i < count; i++) {
+				selection[i] = i;
+			}
+			try {
+				count = kernel.select(batch, selection, count);
+			} catch (Fallback e) {
+				return null;
+			}
+			if (count == selection.length) {
+				return selection;
+			}
+			return Arrays.copyOf(selection, count);
+		}
+	}
+
+	/**
+	 * A compiled expression
+	 */
+	public static final class Projection {
+		private ExpressionKernel kernel;
+
+		Projection(ExpressionKernel kernel) {
+			this.kernel = kernel;
+		}
+
+		/**
+		 * @return the values for each row of the batch, or null if the batch
+		 * should be evaluated a row at a time
+		 */
+		public Object[] evaluate(ColumnBatch batch) {
+			int count = batch.getRowCount();
+			int[] selection = new int[count];
+			for (int i = 0; i < count; i++) {
+				selection[i] = i;
+			}
+			Vector v = null;
+			try {
+				v = kernel.evaluate(batch, selection, count);
+			} catch (Fallback e) {
+				return null;
+			}
+			if (v.objects != null) {
+				return v.objects;
+			}
+			Object[] result = new Object[count];
+			for (int i = 0; i < count; i++) {
+				result[i] = v.getValue(i);
+			}
+			return result;
+		}
+	}
+
+	private BatchEvaluator() {
+
+	}
+
+	/**
+	 * @return the compiled criteria or null if the criteria is not supported
+	 */
+	public static Filter compileFilter(Criteria criteria, Map<? extends Expression, Integer> elements) {
+		CriteriaKernel kernel = compile(criteria, elements);
+		if (kernel == null) {
+			return null;
+		}
+		return new Filter(kernel);
+	}
+
+	/**
+	 * @return the compiled expression or null if the expression is not supported
+	 */
+	public static Projection compileExpression(Expression expression, Map<? extends Expression, Integer> elements) {
+		ExpressionKernel kernel = compile(expression, elements);
+		if (kernel == null) {
+			return null;
+		}
+		return new Projection(kernel);
+	}
+
+	private static CriteriaKernel compile(Criteria criteria, Map<? extends Expression, Integer> elements) {
+		if (criteria instanceof CompoundCriteria) {
+			CompoundCriteria cc = (CompoundCriteria)criteria;
+			final List<CriteriaKernel> kernels = new ArrayList<CriteriaKernel>(cc.getCriteria().size());
+			for (Criteria crit : cc.getCriteria()) {
+				CriteriaKernel kernel = compile(crit, elements);
+				if (kernel == null) {
+					return null;
+				}
+				kernels.add(kernel);
+			}
+			if (cc.getOperator() == CompoundCriteria.AND) {
+				return new CriteriaKernel() {
+					@Override
+					int select(ColumnBatch batch, int[] selection, int count) {
+						for (int i = 0; i < kernels.size() && count > 0; i++) {
+							count = kernels.get(i).select(batch, selection, count);
+						}
+						return count;
+					}
+				};
+			}
+			return new CriteriaKernel() {
+				@Override
+				int select(ColumnBatch batch, int[] selection, int count) {
+					boolean[] selected = new boolean[batch.getRowCount()];
+					int[] remaining = Arrays.copyOf(selection, count);
+					int remainingCount = count;
+					for (int i = 0; i < kernels.size() && remainingCount > 0; i++) {
+						int[] matches = Arrays.copyOf(remaining, remainingCount);
+						int matchCount = kernels.get(i).select(batch, matches, remainingCount);
+						for (int j = 0; j < matchCount; j++) {
+							selected[matches[j]] = true;
+						}
+						int newCount = 0;
+						for (int j = 0; j < remainingCount; j++) {
+							if (!selected[remaining[j]]) {
+								remaining[newCount++] = remaining[j];
+							}
+						}
+						remainingCount = newCount;
+					}
+					int newCount = 0;
+					for (int i = 0; i < count; i++) {
+						if (selected[selection[i]]) {
+							selection[newCount++] = selection[i];
+						}
+					}
+					return newCount;
+				}
+			};
+		}
+		if (criteria instanceof IsNullCriteria) {
+			final IsNullCriteria inc = (IsNullCriteria)criteria;
+			final ExpressionKernel kernel = compile(inc.getExpression(), elements);
+			if (kernel == null) {
+				return null;
+			}
+			return new CriteriaKernel() {
+				@Override
+				int select(ColumnBatch batch, int[] selection, int count) {
+					Vector v = kernel.evaluate(batch, selection, count);
+					int newCount = 0;
+					for (int i = 0; i < count; i++) {
+						if (v.isNull(i) ^ inc.isNegated()) {
+							selection[newCount++] = selection[i];
+						}
+					}
+					return newCount;
+				}
+			};
+		}
+		if (criteria instanceof CompareCriteria) {
+			CompareCriteria cc = (CompareCriteria)criteria;
+			ExpressionKernel left = compile(cc.getLeftExpression(), elements);
+			if (left == null) {
+				return null;
+			}
+			ExpressionKernel right = compile(cc.getRightExpression(), elements);
+			if (right == null || right.type != left.type) {
+				return null;
+			}
+			return compare(cc.getOperator(), left, right);
+		}
+		return null;
+	}
+
+	private static CriteriaKernel compare(final int operator, final ExpressionKernel left, final ExpressionKernel right) {
+		return new CriteriaKernel() {
+			@Override
+			int select(ColumnBatch batch, int[] selection, int count) {
+				Vector l = left.evaluate(batch, selection, count);
+				Vector r = right.evaluate(batch, selection, count);
+				int newCount = 0;
+				for (int i = 0; i < count; i++) {
+					if (l.isNull(i) || r.isNull(i)) {
+						continue;
+					}
+					int compare = 0;
+					switch (left.type) {
+					case INT:
+						compare = Integer.compare(l.ints[i], r.ints[i]);
+						break;
+					case LONG:
+						compare = Long.compare(l.longs[i], r.longs[i]);
+						break;
+					case DOUBLE:
+						compare = Double.compare(l.doubles[i], r.doubles[i]);
+						break;
+					default:
+						if (!Boolean.TRUE.equals(Evaluator.compare(operator, l.objects[i], r.objects[i]))) {
+							continue;
+						}
+						selection[newCount++] = selection[i];
+						continue;
+					}
+					if (matches(operator, compare)) {
+						selection[newCount++] = selection[i];
+					}
+				}
+				return newCount;
+			}
+		};
+	}
+
+	static boolean matches(int operator, int compare) {
+		switch (operator) {
+		case CompareCriteria.EQ:
+			return compare == 0;
+		case CompareCriteria.NE:
+			return compare != 0;
+		case CompareCriteria.LT:
+			return compare < 0;
+		case CompareCriteria.LE:
+			return compare <= 0;
+		case CompareCriteria.GT:
+			return compare > 0;
+		case CompareCriteria.GE:
+			return compare >= 0;
+		default:
+			throw new AssertionError();
+		}
+	}
+
+	private static ExpressionKernel compile(Expression expression, Map<? extends Expression, Integer> elements) {
+		if (expression instanceof DerivedExpression) {
+			Integer index = elements.get(expression);
+			if (index != null) {
+				return column(index, VectorType.forClass(expression.getType()));
+			}
+			if (expression instanceof ExpressionSymbol) {
+				return compile(((ExpressionSymbol)expression).getExpression(), elements);
+			}
+			return null;
+		}
+		if (expression instanceof Constant) {
+			Constant constant = (Constant)expression;
+			if (constant.isMultiValued()) {
+				return null;
+			}
+			return constant(constant.getValue(), VectorType.forClass(constant.getType()));
+		}
+		if (expression instanceof Function) {
+			return compile((Function)expression, elements);
+		}
+		return null;
+	}
+
+	private static ExpressionKernel compile(Function function, Map<? extends Expression, Integer> elements) {
+		FunctionDescriptor fd = function.getFunctionDescriptor();
+		if (fd == null || fd.requiresContext() || fd.getPushdown() == PushDown.MUST_PUSHDOWN
+				|| fd.getProcedure() != null || fd.isNullDependent() || fd.getDeterministic() != Determinism.DETERMINISTIC || fd.getMethod() == null
+				|| !FunctionMethods.class.getName().equals(fd.getMethod().getInvocationClass())) {
+			return null;
+		}
+		Expression[] args = function.getArgs();
+		ExpressionKernel[] kernels = new ExpressionKernel[args.length];
+		for (int i = 0; i < args.length; i++) {
+			kernels[i] = compile(args[i], elements);
+			if (kernels[i] == null) {
+				return null;
+			}
+		}
+		String method = fd.getMethod().getInvocationMethod();
+		VectorType type = VectorType.forClass(fd.getReturnType());
+		if (args.length == 2 && kernels[0].type == type && kernels[1].type == type && type != VectorType.OBJECT) {
+			if ("plus".equals(method)) { //$NON-NLS-1$
+				return arithmetic('+', kernels[0], kernels[1]);
+			}
+			if ("minus".equals(method)) { //$NON-NLS-1$
+				return arithmetic('-', kernels[0], kernels[1]);
+			}
+			if ("multiply".equals(method)) { //$NON-NLS-1$
+				return arithmetic('*', kernels[0], kernels[1]);
+			}
+			if ("divide".equals(method)) { //$NON-NLS-1$
+				return arithmetic('/', kernels[0], kernels[1]);
+			}
+			return null;
+		}
+		for (Class<?> argType : fd.getTypes()) {
+			if (argType != DataTypeManager.DefaultDataClasses.STRING) {
+				return null;
+			}
+		}
+		if (args.length == 2 && "concat".equals(method) && fd.getReturnType() == DataTypeManager.DefaultDataClasses.STRING) { //$NON-NLS-1$
+			return concat(kernels[0], kernels[1]);
+		}
+		if (args.length != 1) {
+			return null;
+		}
+		if ("upperCase".equals(method) && fd.getReturnType() == DataTypeManager.DefaultDataClasses.STRING) { //$NON-NLS-1$
+			return stringFunction(kernels[0], true);
+		}
+		if ("lowerCase".equals(method) && fd.getReturnType() == DataTypeManager.DefaultDataClasses.STRING) { //$NON-NLS-1$
+			return stringFunction(kernels[0], false);
+		}
+		if ("length".equals(method) && type == VectorType.INT) { //$NON-NLS-1$
+			return length(kernels[0]);
+		}
+		return null;
+	}
+
+	private static ExpressionKernel column(final int column, VectorType type) {
+		return new ExpressionKernel(type) {
+			@Override
+			Vector evaluate(ColumnBatch batch, int[] selection, int count) {
+				Vector result = new Vector(type, count);
+				if (type == VectorType.OBJECT || VectorType.forClass(batch.getType(column)) != type) {
+					for (int i = 0; i < count; i++) {
+						Object value = batch.getValue(selection[i], column);
+						if (type == VectorType.OBJECT) {
+							result.objects[i] = value;
+						} else if (value == null) {
+							result.nulls[i] = true;
+						} else if (type == VectorType.INT) {
+							result.ints[i] = ((Number)value).intValue();
+						} else if (type == VectorType.LONG) {
+							result.longs[i] = ((Number)value).longValue();
+						} else {
+							result.doubles[i] = ((Number)value).doubleValue();
+						}
+					}
+					return result;
+				}
+				//gather directly from the primitive column
+				long[] bitmap = batch.getNullBitmap(column);
+				for (int i = 0; i < count; i++) {
+					int row = selection[i];
+					result.nulls[i] = (bitmap[row >> 6] & (1l << row)) != 0;
+				}
+				switch (type) {
+				case INT: {
+					int[] values = batch.getIntColumn(column);
+					for (int i = 0; i < count; i++) {
+						result.ints[i] = values[selection[i]];
+					}
+					break;
+				}
+				case LONG: {
+					long[] values = batch.getLongColumn(column);
+					for (int i = 0; i < count; i++) {
+						result.longs[i] = values[selection[i]];
+					}
+					break;
+				}
+				default: {
+					double[] values = batch.getDoubleColumn(column);
+					for (int i = 0; i < count; i++) {
+						result.doubles[i] = values[selection[i]];
+					}
+				}
+				}
+				return result;
+			}
+		};
+	}
+
+	private static ExpressionKernel constant(final Object value, VectorType type) {
+		return new ExpressionKernel(type) {
+			@Override
+			Vector evaluate(ColumnBatch batch, int[] selection, int count) {
+				Vector result = new Vector(type, count);
+				if (type == VectorType.OBJECT) {
+					Arrays.fill(result.objects, value);
+				} else if (value == null) {
+					Arrays.fill(result.nulls, true);
+				} else if (type == VectorType.INT) {
+					Arrays.fill(result.ints, (Integer)value);
+				} else if (type == VectorType.LONG) {
+					Arrays.fill(result.longs, (Long)value);
+				} else {
+					Arrays.fill(result.doubles, (Double)value);
+				}
+				return result;
+			}
+		};
+	}
+
+	/**
+	 * Arithmetic with the same semantics as the {@link FunctionMethods} primitive methods.
+	 * Any overflow, division by zero, or non-finite result causes a fallback to row evaluation.
+	 */
+	private static ExpressionKernel arithmetic(final char op, final ExpressionKernel left, final ExpressionKernel right) {
+		return new ExpressionKernel(left.type) {
+			@Override
+			Vector evaluate(ColumnBatch batch, int[] selection, int count) {
+				Vector l = left.evaluate(batch, selection, count);
+				Vector r = right.evaluate(batch, selection, count);
+				Vector result = new Vector(type, count);
+				try {
+					evaluate(l, r, result, count);
+				} catch (ArithmeticException e) {
+					//overflow from the exact methods
+					throw FALLBACK;
+				}
+				return result;
+			}
+
+			private void evaluate(Vector l, Vector r, Vector result, int count) {
+				for (int i = 0; i < count; i++) {
+					if (l.nulls[i] || r.nulls[i]) {
+						result.nulls[i] = true;
+						continue;
+					}
+					switch (type) {
+					case INT: {
+						int x = l.ints[i];
+						int y = r.ints[i];
+						switch (op) {
+						case '+':
+							result.ints[i] = Math.addExact(x, y);
+							break;
+						case '-':
+							result.ints[i] = Math.subtractExact(x, y);
+							break;
+						case '*':
+							result.ints[i] = Math.multiplyExact(x, y);
+							break;
+						default:
+							if (y == 0 || (x == Integer.MIN_VALUE && y == -1)) {
+								throw FALLBACK;
+							}
+							result.ints[i] = x / y;
+						}
+						break;
+					}
+					case LONG: {
+						long x = l.longs[i];
+						long y = r.longs[i];
+						switch (op) {
+						case '+':
+							result.longs[i] = Math.addExact(x, y);
+							break;
+						case '-':
+							result.longs[i] = Math.subtractExact(x, y);
+							break;
+						case '*':
+							result.longs[i] = Math.multiplyExact(x, y);
+							break;
+						default:
+							if (y == 0 || (x == Long.MIN_VALUE && y == -1)) {
+								throw FALLBACK;
+							}
+							result.longs[i] = x / y;
+						}
+						break;
+					}
+					default: {
+						double x = l.doubles[i];
+						double y = r.doubles[i];
+						double value = 0;
+						switch (op) {
+						case '+':
+							value = x + y;
+							break;
+						case '-':
+							value = x - y;
+							break;
+						case '*':
+							value = x * y;
+							break;
+						default:
+							value = x / y;
+						}
+						if (Double.isNaN(value) || Double.isInfinite(value)) {
+							throw FALLBACK;
+						}
+						result.doubles[i] = value;
+					}
+					}
+				}
+			}
+		};
+	}
+
+	private static ExpressionKernel concat(final ExpressionKernel left, final ExpressionKernel right) {
+		return new ExpressionKernel(VectorType.OBJECT) {
+			@Override
+			Vector evaluate(ColumnBatch batch, int[] selection, int count) {
+				Vector l = left.evaluate(batch, selection, count);
+				Vector r = right.evaluate(batch, selection, count);
+				for (int i = 0; i < count; i++) {
+					if (l.objects[i] == null || r.objects[i] == null) {
+						l.objects[i] = null;
+						continue;
+					}
+					String value = (String)l.objects[i] + (String)r.objects[i];
+					if (value.length() > DataTypeManager.MAX_STRING_LENGTH) {
+						throw FALLBACK;
+					}
+					l.objects[i] = value;
+				}
+				return l;
+			}
+		};
+	}
+
+	private static ExpressionKernel stringFunction(final ExpressionKernel arg, final boolean upper) {
+		return new ExpressionKernel(VectorType.OBJECT) {
+			@Override
+			Vector evaluate(ColumnBatch batch, int[] selection, int count) {
+				Vector v = arg.evaluate(batch, selection, count);
+				for (int i = 0; i < count; i++) {
+					String value = (String)v.objects[i];
+					if (value == null) {
+						continue;
+					}
+					value = upper?value.toUpperCase():value.toLowerCase();
+					if (value.length() > DataTypeManager.MAX_STRING_LENGTH) {
+						throw FALLBACK;
+					}
+					v.objects[i] = value;
+				}
+				return v;
+			}
+		};
+	}
+
+	private static ExpressionKernel length(final ExpressionKernel arg) {
+		return new ExpressionKernel(VectorType.INT) {
+			@Override
+			Vector evaluate(ColumnBatch batch, int[] selection, int count) {
+				Vector v = arg.evaluate(batch, selection, count);
+				Vector result = new Vector(type, count);
+				for (int i = 0; i < count; i++) {
+					String value = (String)v.objects[i];
+					if (value == null) {
+						result.nulls[i] = true;
+					} else {
+						result.ints[i] = value.length();
+					}
+				}
+				return result;
+			}
+		};
+	}
+
+}
@@ -65,6 +65,8 @@ import org.teiid.jdbc.TeiidSQLException;
 import org.teiid.language.Like.MatchMode;
 import org.teiid.metadata.FunctionMethod.PushDown;
 import org.teiid.query.QueryPlugin;
+import org.teiid.query.eval.ExpressionCompiler.CompiledCriteria;
+import org.teiid.query.eval.ExpressionCompiler.CompiledExpression;
 import org.teiid.query.function.FunctionDescriptor;
 import org.teiid.query.function.FunctionLibrary;
 import org.teiid.query.function.JSONFunctionMethods.JSONBuilder;
@@ -217,6 +219,15 @@ public class Evaluator {
         return Boolean.TRUE.equals(evaluateTVL(criteria, tuple));
     }
 
+    /**
+     * Evaluate a criteria compiled by the {@link ExpressionCompiler}
+     */
+    public boolean evaluate(CompiledCriteria criteria, List<?> tuple)
+        throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
+    	
+    	return Boolean.TRUE.equals(criteria.evaluateTVL(this, tuple));
+    }
+
     public Boolean evaluateTVL(Criteria criteria, List<?> tuple)
         throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
     	
@@ -725,6 +736,19 @@ public class Evaluator {
 	    }
 	}
 	
+	/**
+	 * Evaluate an expression compiled by the {@link ExpressionCompiler}
+	 */
+	public Object evaluate(CompiledExpression expression, List<?> tuple)
+		throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
+	
+	    try {
+			return expression.evaluate(this, tuple);
+	    } catch (ExpressionEvaluationException e) {
+	         throw new ExpressionEvaluationException(QueryPlugin.Event.TEIID30328, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30328, new Object[] {expression.getExpression(), e.getMessage()}));
+	    }
+	}
+	
 	protected Object internalEvaluate(Expression expression, List<?> tuple)
 	   throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
 	
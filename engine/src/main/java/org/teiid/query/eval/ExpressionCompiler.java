@@ -0,0 +1,383 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.query.eval;
+
+import java.util.List;
+import java.util.Map;
+
+import org.teiid.api.exception.query.ExpressionEvaluationException;
+import org.teiid.common.buffer.BlockedException;
+import org.teiid.core.TeiidComponentException;
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.core.util.EquivalenceUtil;
+import org.teiid.metadata.FunctionMethod.PushDown;
+import org.teiid.query.QueryPlugin;
+import org.teiid.query.function.FunctionDescriptor;
+import org.teiid.query.function.FunctionLibrary;
+import org.teiid.query.sql.lang.CompareCriteria;
+import org.teiid.query.sql.lang.CompoundCriteria;
+import org.teiid.query.sql.lang.Criteria;
+import org.teiid.query.sql.lang.IsNullCriteria;
+import org.teiid.query.sql.lang.NotCriteria;
+import org.teiid.query.sql.symbol.CaseExpression;
+import org.teiid.query.sql.symbol.Constant;
+import org.teiid.query.sql.symbol.DerivedExpression;
+import org.teiid.query.sql.symbol.Expression;
+import org.teiid.query.sql.symbol.ExpressionSymbol;
+import org.teiid.query.sql.symbol.Function;
+import org.teiid.query.sql.symbol.SearchedCaseExpression;
+
+/**
+ * Compiles resolved expressions and criteria into trees of specialized evaluation
+ * objects so that the per-row type dispatch of the {@link Evaluator} is performed
+ * only once.  Column references are resolved to tuple indexes, constants are
+ * pre-extracted, and comparisons of types with natural ordering call compareTo directly.
+ * <br>
+ * Unsupported sub-expressions are retained and interpreted with the {@link Evaluator}.
+ * The compiled forms do not hold processing state and may be shared by plan clones.
+ */
+public class ExpressionCompiler {
+
+	/**
+	 * A compiled {@link Expression}
+	 */
+	public abstract static class CompiledExpression {
+		private final Expression expression;
+
+		CompiledExpression(Expression expression) {
+			this.expression = expression;
+		}
+
+		public Expression getExpression() {
+			return expression;
+		}
+
+		abstract Object evaluate(Evaluator evaluator, List<?> tuple)
+				throws ExpressionEvaluationException, BlockedException, TeiidComponentException;
+	}
+
+	/**
+	 * A compiled {@link Criteria}
+	 */
+	public abstract static class CompiledCriteria {
+		private final Criteria criteria;
+
+		CompiledCriteria(Criteria criteria) {
+			this.criteria = criteria;
+		}
+
+		public Criteria getCriteria() {
+			return criteria;
+		}
+
+		abstract Boolean evaluateTVL(Evaluator evaluator, List<?> tuple)
+				throws ExpressionEvaluationException, BlockedException, TeiidComponentException;
+	}
+
+	private static final class Interpreted extends CompiledExpression {
+		Interpreted(Expression expression) {
+			super(expression);
+		}
+
+		@Override
+		Object evaluate(Evaluator evaluator, List<?> tuple)
+				throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
+			return evaluator.internalEvaluate(getExpression(), tuple);
+		}
+	}
+
+	private static final class InterpretedCriteria extends CompiledCriteria {
+		InterpretedCriteria(Criteria criteria) {
+			super(criteria);
+		}
+
+		@Override
+		Boolean evaluateTVL(Evaluator evaluator, List<?> tuple)
+				throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
+			return evaluator.evaluateTVL(getCriteria(), tuple);
+		}
+	}
+
+	private ExpressionCompiler() {
+
+	}
+
+	/**
+	 * @return the compiled expression, or null if the expression would only be interpreted
+	 */
+	public static CompiledExpression compile(Expression expression, Map<? extends Expression, Integer> elements) {
+		CompiledExpression result = compileExpression(expression, elements);
+		if (result instanceof Interpreted) {
+			return null;
+		}
+		return result;
+	}
+
+	/**
+	 * @return the compiled criteria, or null if the criteria would only be interpreted
+	 */
+	public static CompiledCriteria compile(Criteria criteria, Map<? extends Expression, Integer> elements) {
+		CompiledCriteria result = compileCriteria(criteria, elements);
+		if (result instanceof InterpretedCriteria) {
+			return null;
+		}
+		return result;
+	}
+
+	private static CompiledExpression compileExpression(final Expression expression, Map<? extends Expression, Integer> elements) {
+		if (expression instanceof DerivedExpression) {
+			Integer index = elements.get(expression);
+			if (index != null) {
+				final int i = index;
+				return new CompiledExpression(expression) {
+					@Override
+					Object evaluate(Evaluator evaluator, List<?> tuple) {
+						return tuple.get(i);
+					}
+				};
+			}
+			if (expression instanceof ExpressionSymbol) {
+				return compileExpression(((ExpressionSymbol)expression).getExpression(), elements);
+			}
+		} else if (expression instanceof Constant) {
+			final Constant constant = (Constant)expression;
+			if (!constant.isMultiValued()) {
+				final Object value = constant.getValue();
+				return new CompiledExpression(expression) {
+					@Override
+					Object evaluate(Evaluator evaluator, List<?> tuple) {
+						return value;
+					}
+				};
+			}
+		} else if (expression instanceof Function) {
+			return compileFunction((Function)expression, elements);
+		} else if (expression instanceof SearchedCaseExpression) {
+			return compileSearchedCase((SearchedCaseExpression)expression, elements);
+		} else if (expression instanceof CaseExpression) {
+			return compileCase((CaseExpression)expression, elements);
+		}
+		return new Interpreted(expression);
+	}
+
+	private static CompiledExpression compileFunction(Function function, Map<? extends Expression, Integer> elements) {
+		final FunctionDescriptor fd = function.getFunctionDescriptor();
+		if (fd == null || fd.getPushdown() == PushDown.MUST_PUSHDOWN || fd.getProcedure() != null
+				|| function.getName().equalsIgnoreCase(FunctionLibrary.LOOKUP)) {
+			return new Interpreted(function);
+		}
+		Expression[] args = function.getArgs();
+		final CompiledExpression[] compiledArgs = new CompiledExpression[args.length];
+		for (int i = 0; i < args.length; i++) {
+			compiledArgs[i] = compileExpression(args[i], elements);
+		}
+		final int start = fd.requiresContext()?1:0;
+		return new CompiledExpression(function) {
+			@Override
+			Object evaluate(Evaluator evaluator, List<?> tuple)
+					throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
+				Object[] values = new Object[compiledArgs.length + start];
+				if (start == 1) {
+					values[0] = evaluator.context;
+				}
+				for (int i = 0; i < compiledArgs.length; i++) {
+					values[i + start] = compiledArgs[i].evaluate(evaluator, tuple);
+				}
+				return fd.invokeFunction(values, evaluator.context, null);
+			}
+		};
+	}
+
+	private static CompiledExpression compileSearchedCase(SearchedCaseExpression expr, Map<? extends Expression, Integer> elements) {
+		final CompiledCriteria[] whens = new CompiledCriteria[expr.getWhenCount()];
+		final CompiledExpression[] thens = new CompiledExpression[expr.getWhenCount()];
+		for (int i = 0; i < whens.length; i++) {
+			whens[i] = compileCriteria(expr.getWhenCriteria(i), elements);
+			thens[i] = compileExpression(expr.getThenExpression(i), elements);
+		}
+		final CompiledExpression elseExpr = expr.getElseExpression() != null?compileExpression(expr.getElseExpression(), elements):null;
+		return new CompiledExpression(expr) {
+			@Override
+			Object evaluate(Evaluator evaluator, List<?> tuple)
+					throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
+				for (int i = 0; i < whens.length; i++) {
+					if (Boolean.TRUE.equals(whens[i].evaluateTVL(evaluator, tuple))) {
+						return thens[i].evaluate(evaluator, tuple);
+					}
+				}
+				if (elseExpr != null) {
+					return elseExpr.evaluate(evaluator, tuple);
+				}
+				return null;
+			}
+		};
+	}
+
+	private static CompiledExpression compileCase(CaseExpression expr, Map<? extends Expression, Integer> elements) {
+		final CompiledExpression caseExpr = compileExpression(expr.getExpression(), elements);
+		final CompiledExpression[] whens = new CompiledExpression[expr.getWhenCount()];
+		final CompiledExpression[] thens = new CompiledExpression[expr.getWhenCount()];
+		for (int i = 0; i < whens.length; i++) {
+			whens[i] = compileExpression(expr.getWhenExpression(i), elements);
+			thens[i] = compileExpression(expr.getThenExpression(i), elements);
+		}
+		final CompiledExpression elseExpr = expr.getElseExpression() != null?compileExpression(expr.getElseExpression(), elements):null;
+		return new CompiledExpression(expr) {
+			@Override
+			Object evaluate(Evaluator evaluator, List<?> tuple)
+					throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
+				Object value = caseExpr.evaluate(evaluator, tuple);
+				for (int i = 0; i < whens.length; i++) {
+					if (EquivalenceUtil.areEqual(value, whens[i].evaluate(evaluator, tuple))) {
+						return thens[i].evaluate(evaluator, tuple);
+					}
+				}
+				if (elseExpr != null) {
+					return elseExpr.evaluate(evaluator, tuple);
+				}
+				return null;
+			}
+		};
+	}
+
+	private static CompiledCriteria compileCriteria(final Criteria criteria, Map<? extends Expression, Integer> elements) {
+		if (criteria instanceof CompoundCriteria) {
+			CompoundCriteria cc = (CompoundCriteria)criteria;
+			List<Criteria> crits = cc.getCriteria();
+			final CompiledCriteria[] compiled = new CompiledCriteria[crits.size()];
+			for (int i = 0; i < compiled.length; i++) {
+				compiled[i] = compileCriteria(crits.get(i), elements);
+			}
+			final boolean and = cc.getOperator() == CompoundCriteria.AND;
+			return new CompiledCriteria(criteria) {
+				@Override
+				Boolean evaluateTVL(Evaluator evaluator, List<?> tuple)
+						throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
+					Boolean result = and?Boolean.TRUE:Boolean.FALSE;
+					for (int i = 0; i < compiled.length; i++) {
+						Boolean value = compiled[i].evaluateTVL(evaluator, tuple);
+						if (value == null) {
+							result = null;
+						} else if (!value.booleanValue()) {
+							if (and) {
+								return Boolean.FALSE;
+							}
+						} else if (!and) {
+							return Boolean.TRUE;
+						}
+					}
+					return result;
+				}
+			};
+		}
+		if (criteria instanceof NotCriteria) {
+			final CompiledCriteria compiled = compileCriteria(((NotCriteria)criteria).getCriteria(), elements);
+			return new CompiledCriteria(criteria) {
+				@Override
+				Boolean evaluateTVL(Evaluator evaluator, List<?> tuple)
+						throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
+					Boolean result = compiled.evaluateTVL(evaluator, tuple);
+					if (result == null) {
+						return null;
+					}
+					return !result.booleanValue();
+				}
+			};
+		}
+		if (criteria instanceof IsNullCriteria) {
+			final IsNullCriteria inc = (IsNullCriteria)criteria;
+			final CompiledExpression compiled = compileExpression(inc.getExpression(), elements);
+			return new CompiledCriteria(criteria) {
+				@Override
+				Boolean evaluateTVL(Evaluator evaluator, List<?> tuple)
+						throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
+					Object value = null;
+					try {
+						value = compiled.evaluate(evaluator, tuple);
+					} catch (ExpressionEvaluationException e) {
+						throw new ExpressionEvaluationException(QueryPlugin.Event.TEIID30323, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30323, inc));
+					}
+					return value == null ^ inc.isNegated();
+				}
+			};
+		}
+		if (criteria instanceof CompareCriteria) {
+			return compileCompare((CompareCriteria)criteria, elements);
+		}
+		return new InterpretedCriteria(criteria);
+	}
+
+	private static CompiledCriteria compileCompare(final CompareCriteria criteria, Map<? extends Expression, Integer> elements) {
+		final CompiledExpression left = compileExpression(criteria.getLeftExpression(), elements);
+		final CompiledExpression right = compileExpression(criteria.getRightExpression(), elements);
+		final int operator = criteria.getOperator();
+		Class<?> type = criteria.getLeftExpression().getType();
+		//strings and arrays use the collation aware comparison, everything else the natural ordering
+		final boolean natural = type == criteria.getRightExpression().getType() && type != null
+				&& type != DataTypeManager.DefaultDataClasses.STRING && type != DataTypeManager.DefaultDataClasses.CLOB
+				&& type != DataTypeManager.DefaultDataClasses.OBJECT && !type.isArray()
+				&& Comparable.class.isAssignableFrom(type);
+		return new CompiledCriteria(criteria) {
+			@SuppressWarnings("unchecked")
+			@Override
+			Boolean evaluateTVL(Evaluator evaluator, List<?> tuple)
+					throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
+				Object leftValue = null;
+				try {
+					leftValue = left.evaluate(evaluator, tuple);
+				} catch(ExpressionEvaluationException e) {
+					throw new ExpressionEvaluationException(QueryPlugin.Event.TEIID30312, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30312, "left", criteria)); //$NON-NLS-1$
+				}
+				if (leftValue == null) {
+					return null;
+				}
+				Object rightValue = null;
+				try {
+					rightValue = right.evaluate(evaluator, tuple);
+				} catch(ExpressionEvaluationException e) {
+					throw new ExpressionEvaluationException(QueryPlugin.Event.TEIID30312, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30312, "right", criteria)); //$NON-NLS-1$
+				}
+				if (rightValue == null) {
+					return null;
+				}
+				if (!natural) {
+					return Evaluator.compare(operator, leftValue, rightValue);
+				}
+				int compare = ((Comparable<Object>)leftValue).compareTo(rightValue);
+				switch (operator) {
+				case CompareCriteria.EQ:
+					return compare == 0;
+				case CompareCriteria.NE:
+					return compare != 0;
+				case CompareCriteria.LT:
+					return compare < 0;
+				case CompareCriteria.LE:
+					return compare <= 0;
+				case CompareCriteria.GT:
+					return compare > 0;
+				case CompareCriteria.GE:
+					return compare >= 0;
+				default:
+					throw new AssertionError();
+				}
+			}
+		};
+	}
+
+}
@@ -19,10 +19,15 @@
 package org.teiid.query.function;
 
 import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.teiid.api.exception.query.FunctionExecutionException;
 import org.teiid.common.buffer.BlockedException;
@@ -64,6 +69,11 @@ public class FunctionDescriptor implements Serializable, Cloneable {
     // a different VM.  This function descriptor can be used to look up 
     // the real VM descriptor for execution.
     private transient Method invocationMethod;
+    private transient volatile MethodHandle invocationHandle;
+    private transient volatile MethodHandle spreadHandle;
+    private transient volatile Map<Integer, MethodHandle> varArgHandles;
+    private transient boolean isStatic;
+    private transient boolean handleAccessible = true;
     
     private ClassLoader classLoader;
 
@@ -215,85 +225,159 @@ public class FunctionDescriptor implements Serializable, Cloneable {
         checkMethod();
         
         // Invoke the method and return the result
-        try {
-        	if (hasWrappedArgs) {
-        		for (int i = 0; i < values.length; i++) {
-        			Object val = values[i];
-        			if (val != null && types[i] == DataTypeManager.DefaultDataClasses.VARBINARY) {
-            			values[i] = ((BinaryType)val).getBytesDirect();
-        			}
-        		}
-        	}
-        	if (method.isVarArgs()) {
-        		if (calledWithVarArgArrayParam) {
-        			ArrayImpl av = (ArrayImpl)values[values.length -1];
-        			if (av != null) {
-        				Object[] vals = av.getValues();
+        Object result = null;
+    	if (hasWrappedArgs) {
+    		for (int i = 0; i < values.length; i++) {
+    			Object val = values[i];
+    			if (val != null && types[i] == DataTypeManager.DefaultDataClasses.VARBINARY) {
+        			values[i] = ((BinaryType)val).getBytesDirect();
+    			}
+    		}
+    	}
+    	MethodHandle handle = null;
+    	if (method.isVarArgs()) {
+    		if (calledWithVarArgArrayParam) {
+    			ArrayImpl av = (ArrayImpl)values[values.length -1];
+    			if (av != null) {
+    				Object[] vals = av.getValues();
+    				values[values.length - 1] = vals;
+    				if (hasWrappedArgs && types[types.length - 1] == DataTypeManager.DefaultDataClasses.VARBINARY) {
+    					vals = Arrays.copyOf(vals, vals.length);
+        				for (int i = 0; i < vals.length; i++) {
+        					if (vals[i] != null) {
+        						vals[i] = ((BinaryType)vals[i]).getBytesDirect();
+        					}
+        				}
         				values[values.length - 1] = vals;
-	    				if (hasWrappedArgs && types[types.length - 1] == DataTypeManager.DefaultDataClasses.VARBINARY) {
-	    					vals = Arrays.copyOf(vals, vals.length);
-	        				for (int i = 0; i < vals.length; i++) {
-	        					if (vals[i] != null) {
-	        						vals[i] = ((BinaryType)vals[i]).getBytesDirect();
-	        					}
-	        				}
-	        				values[values.length - 1] = vals;
-	        			}
-	    				Class<?> arrayType = invocationMethod.getParameterTypes()[types.length - 1];
-						if (arrayType.getComponentType() != Object.class
-	    						&& vals.getClass() != arrayType) {
-	    					Object varArgs = Array.newInstance(arrayType.getComponentType(), vals.length);
-	    					for (int i = 0; i < vals.length; i++) {
-			        			Array.set(varArgs, i, vals[i]);
-			        		}
-	        				values[values.length -1] = varArgs;
-	    				}
         			}
-        		} else {
-	        		int i = invocationMethod.getParameterTypes().length;
-	        		Object[] newValues = Arrays.copyOf(values, i);
-	        		Object varArgs = null;
-	        		if (invocationMethod.getParameterTypes()[i - 1].getComponentType() != Object.class) {
-		        		int varArgCount = values.length - i + 1;
-		        		varArgs = Array.newInstance(invocationMethod.getParameterTypes()[i - 1].getComponentType(), varArgCount);
-		        		for (int j = 0; j < varArgCount; j++) {
-		        			Array.set(varArgs, j, values[i-1+j]);
+    				Class<?> arrayType = invocationMethod.getParameterTypes()[types.length - 1];
+					if (arrayType.getComponentType() != Object.class
+    						&& vals.getClass() != arrayType) {
+    					Object varArgs = Array.newInstance(arrayType.getComponentType(), vals.length);
+    					for (int i = 0; i < vals.length; i++) {
+		        			Array.set(varArgs, i, vals[i]);
 		        		}
-	        		} else {
-	        			varArgs = Arrays.copyOfRange(values, i - 1, values.length);
-	        		}
-	        		newValues[i - 1] = varArgs;
-	        		values = newValues;
-        		}
-        	}
-        	Object result = null;
-        	ClassLoader originalCL = Thread.currentThread().getContextClassLoader();
-        	try {
-        	    if (this.classLoader != null) {
-        	        Thread.currentThread().setContextClassLoader(this.classLoader);
-        	    }
-        	    result = invocationMethod.invoke(functionTarget, values);
-        	} finally {
-        	    Thread.currentThread().setContextClassLoader(originalCL);
+        				values[values.length -1] = varArgs;
+    				}
+    			}
+    			handle = getInvocationHandle(-1);
+    		} else {
+    			handle = getInvocationHandle(values.length);
+    			if (handle == null) {
+    				values = collectVarArgs(values);
+    			}
+    		}
+    	} else {
+    		handle = getInvocationHandle(-1);
+    	}
+    	ClassLoader originalCL = Thread.currentThread().getContextClassLoader();
+    	try {
+    	    if (this.classLoader != null) {
+    	        Thread.currentThread().setContextClassLoader(this.classLoader);
+    	    }
+    	    if (handle == null) {
+    	    	result = invocationMethod.invoke(functionTarget, values);
+    	    } else if (isStatic) {
+    	    	result = (Object)handle.invokeExact(values);
+    	    } else {
+    	    	result = (Object)handle.invokeExact(functionTarget, values);
+    	    }
+    	} catch(InvocationTargetException e) {
+        	if (e.getTargetException() instanceof BlockedException) {
+        		throw (BlockedException)e.getTargetException();
         	}
-            if (context != null && getDeterministic().ordinal() <= Determinism.USER_DETERMINISTIC.ordinal()) {
-            	context.setDeterminismLevel(getDeterministic());
-            }
+            throw new FunctionExecutionException(QueryPlugin.Event.TEIID30384, e.getTargetException(), QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30384, getFullName()));
+        } catch(IllegalAccessException e) {
+            throw new FunctionExecutionException(QueryPlugin.Event.TEIID30385, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30385, method.toString()));
+        } catch (BlockedException e) {
+        	throw e;
+        } catch (Throwable e) {
+        	//same as an InvocationTargetException with reflection
+        	throw new FunctionExecutionException(QueryPlugin.Event.TEIID30384, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30384, getFullName()));
+    	} finally {
+    	    Thread.currentThread().setContextClassLoader(originalCL);
+    	}
+        if (context != null && getDeterministic().ordinal() <= Determinism.USER_DETERMINISTIC.ordinal()) {
+        	context.setDeterminismLevel(getDeterministic());
+        }
+        try {
             return importValue(result, getReturnType());
         } catch(ArithmeticException e) {
     		 throw new FunctionExecutionException(QueryPlugin.Event.TEIID30384, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30384, getFullName()));
-        } catch(InvocationTargetException e) {
-        	 if (e.getTargetException() instanceof BlockedException) {
-        		 throw (BlockedException)e.getTargetException();
-        	 }
-             throw new FunctionExecutionException(QueryPlugin.Event.TEIID30384, e.getTargetException(), QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30384, getFullName()));
-        } catch(IllegalAccessException e) {
-             throw new FunctionExecutionException(QueryPlugin.Event.TEIID30385, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30385, method.toString()));
         } catch (TransformationException e) {
         	 throw new FunctionExecutionException(e);
 		}
 	}
 
+	/**
+	 * Repack the trailing values into the vararg array for reflective invocation
+	 */
+	private Object[] collectVarArgs(Object[] values) {
+		int i = invocationMethod.getParameterTypes().length;
+		Object[] newValues = Arrays.copyOf(values, i);
+		Object varArgs = null;
+		if (invocationMethod.getParameterTypes()[i - 1].getComponentType() != Object.class) {
+			int varArgCount = values.length - i + 1;
+			varArgs = Array.newInstance(invocationMethod.getParameterTypes()[i - 1].getComponentType(), varArgCount);
+			for (int j = 0; j < varArgCount; j++) {
+				Array.set(varArgs, j, values[i-1+j]);
+			}
+		} else {
+			varArgs = Arrays.copyOfRange(values, i - 1, values.length);
+		}
+		newValues[i - 1] = varArgs;
+		return newValues;
+	}
+	
+	/**
+	 * Get the bound handle taking the values as a single Object[] (and the target 
+	 * first if not static).  Conversions and vararg collection are part of the handle.
+	 * @param argCount the number of values for a vararg call, or -1 to use the method arity
+	 * @return the handle or null if the method is not accessible as a handle
+	 */
+	private MethodHandle getInvocationHandle(int argCount) {
+		MethodHandle handle = this.invocationHandle;
+		if (handle == null) {
+			if (!this.handleAccessible) {
+				return null;
+			}
+			try {
+				handle = MethodHandles.publicLookup().unreflect(invocationMethod).asFixedArity();
+			} catch (IllegalAccessException e) {
+				this.handleAccessible = false;
+				return null;
+			}
+			this.isStatic = Modifier.isStatic(invocationMethod.getModifiers());
+			this.invocationHandle = handle;
+		}
+		if (argCount == -1) {
+			MethodHandle spread = this.spreadHandle;
+			if (spread == null) {
+				spread = spread(handle);
+				this.spreadHandle = spread;
+			}
+			return spread;
+		}
+		Map<Integer, MethodHandle> handles = this.varArgHandles;
+		if (handles == null) {
+			handles = new ConcurrentHashMap<Integer, MethodHandle>(4);
+			this.varArgHandles = handles;
+		}
+		MethodHandle spread = handles.get(argCount);
+		if (spread == null) {
+			Class<?>[] params = invocationMethod.getParameterTypes();
+			MethodHandle collector = handle.asCollector(params[params.length - 1], argCount - params.length + 1);
+			spread = spread(collector);
+			handles.put(argCount, spread);
+		}
+		return spread;
+	}
+
+	private MethodHandle spread(MethodHandle handle) {
+		int count = handle.type().parameterCount() - (isStatic?0:1);
+		return handle.asType(handle.type().generic()).asSpreader(Object[].class, count);
+	}
+
     private void checkMethod() throws FunctionExecutionException {
         // If descriptor is missing invokable method, find this VM's descriptor
         // give name and types from fd
@@ -20,6 +20,9 @@ package org.teiid.query.metadata;
 import static org.teiid.query.metadata.MaterializationMetadataRepository.*;
 
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.teiid.adminapi.impl.ModelMetaData;
 import org.teiid.adminapi.impl.ModelMetaData.Message.Severity;
@@ -28,6 +31,7 @@ import org.teiid.api.exception.query.QueryParserException;
 import org.teiid.api.exception.query.QueryResolverException;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidException;
+import org.teiid.core.TeiidRuntimeException;
 import org.teiid.core.types.DataTypeManager;
 import org.teiid.language.SQLConstants;
 import org.teiid.logging.LogConstants;
@@ -74,6 +78,8 @@ public class MetadataValidator {
 	
 	private Map<String, Datatype> typeMap;
 	private QueryParser parser;
+	private Executor executor;
+	private int maxParallelism = 1;
 	
 	interface MetadataRule {
 		void execute(VDBMetaData vdb, MetadataStore vdbStore, ValidatorReport report, MetadataValidator metadataValidator);
@@ -89,6 +95,16 @@ public class MetadataValidator {
 		this.parser = QueryParser.getQueryParser();
 	}
 
+	/**
+	 * Set the executor used to resolve the schemas in parallel
+	 * @param executor
+	 * @param maxParallelism the maximum number of executor threads to use
+	 */
+	public void setExecutor(Executor executor, int maxParallelism) {
+		this.executor = executor;
+		this.maxParallelism = maxParallelism;
+	}
+
 	public ValidatorReport validate(VDBMetaData vdb, MetadataStore store) {
 		ValidatorReport report = new ValidatorReport();
 		if (store != null && !store.getSchemaList().isEmpty()) {
@@ -229,67 +245,147 @@ public class MetadataValidator {
 		@Override
 		public void execute(VDBMetaData vdb, MetadataStore store, ValidatorReport report, MetadataValidator metadataValidator) {
 			QueryMetadataInterface metadata = vdb.getAttachment(QueryMetadataInterface.class);
-	    	metadata = new TempMetadataAdapter(metadata, new TempMetadataStore());
+			List<Schema> independent = new ArrayList<Schema>();
 			for (Schema schema:store.getSchemaList()) {
 				if (vdb.getImportedModels().contains(schema.getName())) {
 					continue;
 				}
-				ModelMetaData model = vdb.getModel(schema.getName());
-				MetadataFactory mf = new MetadataFactory(vdb.getName(), vdb.getVersion(), metadataValidator.typeMap, model) {
-					@Override
-					protected void setUUID(AbstractMetadataRecord record) {
-						if (count >= 0) {
-							count = Integer.MIN_VALUE;
+				if (metadataValidator.executor != null && metadataValidator.maxParallelism > 1 && isIndependent(schema)) {
+					independent.add(schema);
+					continue;
+				}
+				resolve(vdb, schema, report, metadataValidator, metadata);
+			}
+			if (independent.size() == 1) {
+				resolve(vdb, independent.get(0), report, metadataValidator, metadata);
+			} else if (!independent.isEmpty()) {
+				resolveInParallel(vdb, independent, report, metadataValidator, metadata);
+			}
+		}
+		
+		/**
+		 * A schema may be resolved concurrently with other schemas if the resolving does not
+		 * modify metadata that other schemas may depend upon - views that need their
+		 * columns determined and materialized views that may have their properties set.
+		 */
+		static boolean isIndependent(Schema schema) {
+			for (Table t : schema.getTables().values()) {
+				if (t.isVirtual() && (t.isMaterialized() || t.getColumns() == null || t.getColumns().isEmpty())) {
+					return false;
+				}
+			}
+			return true;
+		}
+		
+		/**
+		 * Resolve each schema with its own parser and report.  The calling thread participates
+		 * so that progress is made even if the executor is saturated. 
+		 */
+		private void resolveInParallel(final VDBMetaData vdb, final List<Schema> schemas, ValidatorReport report, 
+				final MetadataValidator metadataValidator, final QueryMetadataInterface metadata) {
+			final ValidatorReport[] reports = new ValidatorReport[schemas.size()];
+			final AtomicInteger next = new AtomicInteger();
+			final CountDownLatch done = new CountDownLatch(schemas.size());
+			final Throwable[] failure = new Throwable[1];
+			Runnable worker = new Runnable() {
+				@Override
+				public void run() {
+					MetadataValidator validator = new MetadataValidator(metadataValidator.typeMap, new QueryParser());
+					int i = 0;
+					while ((i = next.getAndIncrement()) < reports.length) {
+						try {
+							ValidatorReport schemaReport = new ValidatorReport();
+							resolve(vdb, schemas.get(i), schemaReport, validator, metadata);
+							reports[i] = schemaReport;
+						} catch (Throwable e) {
+							synchronized (failure) {
+								failure[0] = e;
+							}
+						} finally {
+							done.countDown();
 						}
-						super.setUUID(record);
 					}
-				};
-				for (AbstractMetadataRecord record : schema.getResolvingOrder()) {
-					if (record instanceof Table) {
-						Table t = (Table)record;
-						// no need to verify the transformation of the xml mapping document, 
-						// as this is very specific and designer already validates it.
-						if (t.getTableType() == Table.Type.Document
-								|| t.getTableType() == Table.Type.XmlMappingClass
-								|| t.getTableType() == Table.Type.XmlStagingTable) {
-							continue;
+				}
+			};
+			for (int i = 1; i < Math.min(metadataValidator.maxParallelism, reports.length); i++) {
+				metadataValidator.executor.execute(worker);
+			}
+			worker.run();
+			try {
+				done.await();
+			} catch (InterruptedException e) {
+				throw new TeiidRuntimeException(e);
+			}
+			synchronized (failure) {
+				if (failure[0] instanceof RuntimeException) {
+					throw (RuntimeException)failure[0];
+				}
+				if (failure[0] != null) {
+					throw new TeiidRuntimeException(failure[0]);
+				}
+			}
+			for (ValidatorReport schemaReport : reports) {
+				report.addItems(schemaReport.getItems());
+			}
+		}
+
+		private void resolve(VDBMetaData vdb, Schema schema, ValidatorReport report, MetadataValidator metadataValidator, QueryMetadataInterface metadata) {
+			metadata = new TempMetadataAdapter(metadata, new TempMetadataStore());
+			ModelMetaData model = vdb.getModel(schema.getName());
+			MetadataFactory mf = new MetadataFactory(vdb.getName(), vdb.getVersion(), metadataValidator.typeMap, model) {
+				@Override
+				protected void setUUID(AbstractMetadataRecord record) {
+					if (count >= 0) {
+						count = Integer.MIN_VALUE;
+					}
+					super.setUUID(record);
+				}
+			};
+			for (AbstractMetadataRecord record : schema.getResolvingOrder()) {
+				if (record instanceof Table) {
+					Table t = (Table)record;
+					// no need to verify the transformation of the xml mapping document, 
+					// as this is very specific and designer already validates it.
+					if (t.getTableType() == Table.Type.Document
+							|| t.getTableType() == Table.Type.XmlMappingClass
+							|| t.getTableType() == Table.Type.XmlStagingTable) {
+						continue;
+					}
+					if (t.getTableType() == Table.Type.TemporaryTable) {
+					    continue;
+					}
+					if (t.isVirtual()) {
+						if (t.getSelectTransformation() == null) {
+							metadataValidator.log(report, model, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID31079, t.getFullName(), model.getName()));
 						}
-						if (t.getTableType() == Table.Type.TemporaryTable) {
-						    continue;
+						else {
+							metadataValidator.validate(vdb, model, t, report, metadata, mf);
 						}
-						if (t.isVirtual()) {
-							if (t.getSelectTransformation() == null) {
-								metadataValidator.log(report, model, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID31079, t.getFullName(), model.getName()));
-							}
-							else {
-								metadataValidator.validate(vdb, model, t, report, metadata, mf);
-							}
-						} else {
-						    for (Trigger tr : t.getTriggers().values()) {
-		                        int commandType = Command.TYPE_INSERT;
-		                        if (tr.getEvent() == TriggerEvent.DELETE) {
-		                            commandType = Command.TYPE_DELETE;
-		                        } else if (tr.getEvent() == TriggerEvent.UPDATE) {
-		                            commandType = Command.TYPE_UPDATE;
-		                        }
-		                        try {
-		                            metadataValidator.validateUpdatePlan(model, report, metadata, t, tr.getPlan(), commandType);
+					} else {
+					    for (Trigger tr : t.getTriggers().values()) {
+	                        int commandType = Command.TYPE_INSERT;
+	                        if (tr.getEvent() == TriggerEvent.DELETE) {
+	                            commandType = Command.TYPE_DELETE;
+	                        } else if (tr.getEvent() == TriggerEvent.UPDATE) {
+	                            commandType = Command.TYPE_UPDATE;
+	                        }
+	                        try {
+	                            metadataValidator.validateUpdatePlan(model, report, metadata, t, tr.getPlan(), commandType);
     						    } catch (TeiidException e) {
     						        metadataValidator.log(report, model, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID31080, record.getFullName(), e.getMessage()));
     					        }
-		                    }
-						}
-					} else if (record instanceof Procedure) {
-						Procedure p = (Procedure)record;
-						if (p.isVirtual()) {
-							if (p.getQueryPlan() == null) {
-								metadataValidator.log(report, model, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID31081, p.getFullName(), model.getName()));
-							}
-							else {
-								metadataValidator.validate(vdb, model, p, report, metadata, mf);
-							}
-						}						
+	                    }
 					}
+				} else if (record instanceof Procedure) {
+					Procedure p = (Procedure)record;
+					if (p.isVirtual()) {
+						if (p.getQueryPlan() == null) {
+							metadataValidator.log(report, model, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID31081, p.getFullName(), model.getName()));
+						}
+						else {
+							metadataValidator.validate(vdb, model, p, report, metadata, mf);
+						}
+					}						
 				}
 			}
 		}
@@ -31,6 +31,7 @@ import org.teiid.core.TeiidComponentException;
 import org.teiid.core.types.DataTypeManager;
 import org.teiid.core.util.StringUtil;
 import org.teiid.metadata.Column;
+import org.teiid.metadata.ColumnStats;
 import org.teiid.metadata.Procedure;
 import org.teiid.metadata.Table;
 import org.teiid.query.QueryPlugin;
@@ -267,6 +268,10 @@ public class TempMetadataAdapter extends BasicQueryMetadataWrapper {
     public Object getMaximumValue(Object elementID) throws TeiidComponentException, QueryMetadataException {
         if (elementID instanceof TempMetadataID) {
             TempMetadataID id = (TempMetadataID)elementID;
+            ColumnStats stats = id.getColumnStats();
+            if (stats != null && stats.getMaximumValue() != null) {
+            	return stats.getMaximumValue();
+            }
             elementID = id.getOriginalMetadataID();
             if (elementID == null) {
                 return null;
@@ -278,6 +283,10 @@ public class TempMetadataAdapter extends BasicQueryMetadataWrapper {
     public Object getMinimumValue(Object elementID) throws TeiidComponentException, QueryMetadataException {
         if (elementID instanceof TempMetadataID) {
             TempMetadataID id = (TempMetadataID)elementID;
+            ColumnStats stats = id.getColumnStats();
+            if (stats != null && stats.getMinimumValue() != null) {
+            	return stats.getMinimumValue();
+            }
             elementID = id.getOriginalMetadataID();
             if (elementID == null) {
                 return null;
@@ -291,6 +300,10 @@ public class TempMetadataAdapter extends BasicQueryMetadataWrapper {
      */
     public float getDistinctValues(Object elementID) throws TeiidComponentException, QueryMetadataException {
         if(elementID instanceof TempMetadataID) {
+        	ColumnStats stats = ((TempMetadataID)elementID).getColumnStats();
+        	if (stats != null && stats.getDistinctValues() != null) {
+        		return stats.getDistinctValues().floatValue();
+        	}
             return -1;
         }         
         return this.actualMetadata.getDistinctValues(elementID);
@@ -302,6 +315,10 @@ public class TempMetadataAdapter extends BasicQueryMetadataWrapper {
     public float getNullValues(Object elementID) throws TeiidComponentException, QueryMetadataException {
         if (elementID instanceof TempMetadataID) {
             TempMetadataID id = (TempMetadataID)elementID;
+            ColumnStats stats = id.getColumnStats();
+            if (stats != null && stats.getNullValues() != null) {
+            	return stats.getNullValues().floatValue();
+            }
             elementID = id.getOriginalMetadataID();
             if (elementID == null) {
                 return -1;
@@ -29,6 +29,7 @@ import java.util.Map;
 import org.teiid.core.util.LRUCache;
 import org.teiid.metadata.AbstractMetadataRecord.DataModifiable;
 import org.teiid.metadata.AbstractMetadataRecord.Modifiable;
+import org.teiid.metadata.ColumnStats;
 import org.teiid.query.mapping.relational.QueryNode;
 import org.teiid.query.sql.lang.CacheHint;
 import org.teiid.query.sql.symbol.Expression;
@@ -143,6 +144,8 @@ public class TempMetadataID implements Serializable, Modifiable, DataModifiable
     private boolean notNull;
     private boolean updatable;
     private boolean accessed;
+    private ColumnStats columnStats;
+    private Object[] histogram;
     
     /**
      * Constructor for group form of metadata ID.
@@ -457,4 +460,21 @@ public class TempMetadataID implements Serializable, Modifiable, DataModifiable
 		return accessed;
 	}
 	
+	/**
+	 * Set the gathered statistics for an element.
+	 * @param histogram sorted equi-depth bucket boundaries, may be null
+	 */
+	public synchronized void setColumnStats(ColumnStats columnStats, Object[] histogram) {
+		this.columnStats = columnStats;
+		this.histogram = histogram;
+	}
+	
+	public synchronized ColumnStats getColumnStats() {
+		return columnStats;
+	}
+	
+	public synchronized Object[] getHistogram() {
+		return histogram;
+	}
+	
 }
@@ -123,6 +123,9 @@ public class PlanToProcessConverter {
 				}
 				throw new QueryPlannerException(e);
 			}
+	        if (context != null && context.getOptions().getMaxParallelism() > 1 && !context.isInTransaction()) {
+	        	addExchanges(processNode);
+	        }
 	        if(debug) {
 	            analysisRecord.println("\nPROCESS PLAN = \n" + processNode); //$NON-NLS-1$
 	            analysisRecord.println("============================================================================"); //$NON-NLS-1$
@@ -135,6 +138,31 @@ public class PlanToProcessConverter {
     	}
     }
 
+	/**
+	 * Wrap the independent inputs of unions and joins with {@link ExchangeNode}s
+	 * so that they may be processed in parallel.  Plain access nodes are not wrapped
+	 * as their source queries are already executed asynchronously.
+	 * <br>
+	 * Exchanges are not added during a transaction, and cached plans reused under a
+	 * transaction will process the exchange inline as no worker will be reserved.
+	 */
+	private void addExchanges(RelationalNode node) {
+		RelationalNode[] children = node.getChildren();
+		boolean exchange = (node instanceof UnionAllNode && node.getChildCount() > 1)
+				|| (node instanceof JoinNode && ExchangeNode.isIndependent(node));
+		for (int i = 0; i < children.length && children[i] != null; i++) {
+			RelationalNode child = children[i];
+			addExchanges(child);
+			if (exchange && !(child instanceof AccessNode) && ExchangeNode.isIndependent(child)) {
+				ExchangeNode exchangeNode = new ExchangeNode(getID());
+				exchangeNode.setElements(child.getElements());
+				exchangeNode.addChild(child);
+				exchangeNode.setParent(node);
+				children[i] = exchangeNode;
+			}
+		}
+	}
+
 	private RelationalNode convertPlan(PlanNode planNode)
 		throws TeiidComponentException, TeiidProcessingException {
 
@@ -275,16 +303,18 @@ public class PlanToProcessConverter {
                 List joinCrits = (List) node.getProperty(NodeConstants.Info.JOIN_CRITERIA);
                 String depValueSource = (String) node.getProperty(NodeConstants.Info.DEPENDENT_VALUE_SOURCE);
                 SortOption leftSort = (SortOption)node.getProperty(NodeConstants.Info.SORT_LEFT);
-                if(stype == JoinStrategyType.MERGE || stype == JoinStrategyType.ENHANCED_SORT) {
-                	MergeJoinStrategy mjStrategy = null;
+                if(stype == JoinStrategyType.MERGE || stype == JoinStrategyType.ENHANCED_SORT || stype == JoinStrategyType.HASH) {
+                	JoinStrategy strategy = null;
                 	if (stype.equals(JoinStrategyType.ENHANCED_SORT)) { 
                 		EnhancedSortMergeJoinStrategy esmjStrategy = new EnhancedSortMergeJoinStrategy(leftSort, (SortOption)node.getProperty(NodeConstants.Info.SORT_RIGHT));
                 		esmjStrategy.setSemiDep(node.hasBooleanProperty(Info.IS_SEMI_DEP));
-                		mjStrategy = esmjStrategy;
+                		strategy = esmjStrategy;
+                	} else if (stype.equals(JoinStrategyType.HASH)) {
+                		strategy = new HashJoinStrategy();
                 	} else {
-                		mjStrategy = new MergeJoinStrategy(leftSort, (SortOption)node.getProperty(NodeConstants.Info.SORT_RIGHT), false);
+                		strategy = new MergeJoinStrategy(leftSort, (SortOption)node.getProperty(NodeConstants.Info.SORT_RIGHT), false);
                 	}
-                    jnode.setJoinStrategy(mjStrategy);
+                    jnode.setJoinStrategy(strategy);
                     List leftExpressions = (List) node.getProperty(NodeConstants.Info.LEFT_EXPRESSIONS);
                     List rightExpressions = (List) node.getProperty(NodeConstants.Info.RIGHT_EXPRESSIONS);
                     jnode.setJoinExpressions(leftExpressions, rightExpressions);
@@ -545,6 +575,7 @@ public class PlanToProcessConverter {
 				SymbolMap groupingMap = (SymbolMap)node.getProperty(NodeConstants.Info.SYMBOL_MAP);
 				gnode.setOutputMapping(groupingMap);
 				gnode.setRemoveDuplicates(node.hasBooleanProperty(NodeConstants.Info.IS_DUP_REMOVAL));
+				gnode.setHashAggregate(node.hasBooleanProperty(NodeConstants.Info.IS_HASH_AGGREGATE));
 				List<Expression> gCols = (List) node.getProperty(NodeConstants.Info.GROUP_COLS);
 				OrderBy orderBy = (OrderBy) node.getProperty(Info.SORT_ORDER);
 				if (orderBy == null) {
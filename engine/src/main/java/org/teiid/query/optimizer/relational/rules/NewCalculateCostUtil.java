@@ -35,6 +35,7 @@ import org.teiid.logging.LogManager;
 import org.teiid.query.QueryPlugin;
 import org.teiid.query.metadata.QueryMetadataInterface;
 import org.teiid.query.metadata.TempMetadataAdapter;
+import org.teiid.query.metadata.TempMetadataID;
 import org.teiid.query.optimizer.capabilities.CapabilitiesFinder;
 import org.teiid.query.optimizer.relational.RelationalPlanner;
 import org.teiid.query.optimizer.relational.plantree.NodeConstants;
@@ -1196,6 +1197,15 @@ public class NewCalculateCostUtil {
         }
         ElementSymbol element = (ElementSymbol)compCrit.getLeftExpression();
         Class<?> dataType = compCrit.getRightExpression().getType();
+        
+        if (element.getMetadataID() instanceof TempMetadataID) {
+        	//gathered statistics for materialized tables
+        	Object[] histogram = ((TempMetadataID)element.getMetadataID()).getHistogram();
+        	Object value = ((Constant)compCrit.getRightExpression()).getValue();
+        	if (histogram != null && value != null && histogram[0].getClass() == value.getClass()) {
+        		return childCost * getHistogramSelectivity(histogram, value, compCrit.getOperator());
+        	}
+        }
     
         String max = (String)metadata.getMaximumValue(element.getMetadataID());
         String min = (String)metadata.getMinimumValue(element.getMetadataID());
@@ -1261,6 +1271,31 @@ public class NewCalculateCostUtil {
         return cost;
     }
     
+    /**
+     * Estimate the fraction of rows matching a range comparison from equi-depth bucket boundaries.
+     */
+    static float getHistogramSelectivity(Object[] histogram, Object value, int operator) {
+    	int buckets = histogram.length - 1;
+    	int index = Arrays.binarySearch(histogram, value, Constant.COMPARATOR);
+    	float below = 0;
+    	if (index >= 0) {
+    		below = (float)index / buckets;
+    	} else {
+    		int insertion = -index - 1;
+    		if (insertion > buckets) {
+    			below = 1;
+    		} else if (insertion > 0) {
+    			//assume the middle of the bucket
+    			below = (insertion - .5f) / buckets;
+    		}
+    	}
+    	float result = below;
+    	if (operator == CompareCriteria.GT || operator == CompareCriteria.GE) {
+    		result = 1 - below;
+    	}
+    	return Math.max(0, Math.min(1, result));
+    }
+    
     static boolean usesKey(PlanNode planNode, Collection<? extends Expression> allElements, QueryMetadataInterface metadata) throws QueryMetadataException, TeiidComponentException {
     	//TODO: key preserved joins should be marked
     	return isSingleTable(planNode)
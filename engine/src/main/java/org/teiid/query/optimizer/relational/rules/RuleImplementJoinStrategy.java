@@ -41,6 +41,7 @@ import org.teiid.query.optimizer.relational.plantree.NodeConstants.Info;
 import org.teiid.query.optimizer.relational.plantree.NodeEditor;
 import org.teiid.query.optimizer.relational.plantree.NodeFactory;
 import org.teiid.query.optimizer.relational.plantree.PlanNode;
+import org.teiid.query.processor.relational.HashJoinStrategy;
 import org.teiid.query.processor.relational.JoinNode.JoinStrategyType;
 import org.teiid.query.processor.relational.MergeJoinStrategy.SortOption;
 import org.teiid.query.processor.relational.RelationalNode;
@@ -126,6 +127,10 @@ public class RuleImplementJoinStrategy implements OptimizerRule {
             	right = false;
             }
             JoinType joinType = (JoinType) joinNode.getProperty(NodeConstants.Info.JOIN_TYPE);
+            if (key == null && useHashJoin(joinNode, joinType, leftExpressions, rightExpressions, metadata, context)) {
+            	joinNode.setProperty(NodeConstants.Info.JOIN_STRATEGY, JoinStrategyType.HASH);
+            	continue;
+            }
             /**
              * Don't push sorts for unbalanced inner joins, we prefer to use a processing time cost based decision 
              */
@@ -219,6 +224,29 @@ public class RuleImplementJoinStrategy implements OptimizerRule {
         return plan;
     }
 
+    /**
+     * Determine if a hash join should be used rather than sorting.  Requires that hash joins are enabled,
+     * that both sides have known cardinalities with at least one side exceeding a single batch, 
+     * and that the join expressions are hashable.
+     */
+    static boolean useHashJoin(PlanNode joinNode, JoinType joinType, List<Expression> leftExpressions, 
+    		List<Expression> rightExpressions, QueryMetadataInterface metadata, CommandContext context) throws QueryMetadataException, TeiidComponentException {
+    	if (context == null || !context.getOptions().isHashJoin()) {
+    		return false;
+    	}
+    	if ((joinType != JoinType.JOIN_INNER && joinType != JoinType.JOIN_LEFT_OUTER) 
+    			|| joinNode.getProperty(NodeConstants.Info.DEPENDENT_VALUE_SOURCE) != null
+    			|| !HashJoinStrategy.canHash(leftExpressions) || !HashJoinStrategy.canHash(rightExpressions)) {
+    		return false;
+    	}
+    	float leftCost = NewCalculateCostUtil.computeCostForTree(joinNode.getFirstChild(), metadata);
+    	float rightCost = NewCalculateCostUtil.computeCostForTree(joinNode.getLastChild(), metadata);
+    	if (leftCost == NewCalculateCostUtil.UNKNOWN_VALUE || rightCost == NewCalculateCostUtil.UNKNOWN_VALUE) {
+    		return false;
+    	}
+    	return Math.max(leftCost, rightCost) > context.getProcessorBatchSize();
+    }
+
     /**
      * Insert a sort node under the merge join node.  If necessary, also insert a project
      * node to handle function evaluation.  
@@ -25,6 +25,7 @@ import java.util.List;
 import org.teiid.api.exception.query.QueryMetadataException;
 import org.teiid.api.exception.query.QueryPlannerException;
 import org.teiid.core.TeiidComponentException;
+import org.teiid.core.types.DataTypeManager;
 import org.teiid.query.analysis.AnalysisRecord;
 import org.teiid.query.metadata.QueryMetadataInterface;
 import org.teiid.query.optimizer.capabilities.CapabilitiesFinder;
@@ -56,6 +57,11 @@ import org.teiid.query.util.CommandContext;
  */
 public class RulePlanSorts implements OptimizerRule {
 	
+	/**
+	 * The minimum ratio of input rows to groups for hash aggregation to be considered
+	 */
+	private static final int HASH_AGGREGATE_RATIO = 8;
+	
 	@Override
 	public PlanNode execute(PlanNode plan, QueryMetadataInterface metadata,
 			CapabilitiesFinder capabilitiesFinder, RuleStack rules,
@@ -166,12 +172,16 @@ public class RulePlanSorts implements OptimizerRule {
 					}
 				}
 			}
+			if (useHashAggregate(node, context)) {
+				node.setProperty(NodeConstants.Info.IS_HASH_AGGREGATE, true);
+			}
 			//TODO: check the join interesting order
 			parentBlocking = true;
 			break;
 		case NodeConstants.Types.JOIN:
 			if (node.getProperty(NodeConstants.Info.JOIN_STRATEGY) == JoinStrategyType.NESTED_LOOP 
-					|| node.getProperty(NodeConstants.Info.JOIN_STRATEGY) == JoinStrategyType.NESTED_TABLE) {
+					|| node.getProperty(NodeConstants.Info.JOIN_STRATEGY) == JoinStrategyType.NESTED_TABLE
+					|| node.getProperty(NodeConstants.Info.JOIN_STRATEGY) == JoinStrategyType.HASH) {
 				break;
 			}
 			/*
@@ -213,6 +223,31 @@ public class RulePlanSorts implements OptimizerRule {
 		return root;
 	}
 
+	/**
+	 * Hash aggregation is used when enabled, the output does not need to be ordered, and
+	 * the estimated number of groups is small relative to the input.
+	 */
+	static boolean useHashAggregate(PlanNode node, CommandContext context) {
+		if (context == null || !context.getOptions().isHashAggregate()
+				|| node.hasBooleanProperty(NodeConstants.Info.IS_DUP_REMOVAL) 
+				|| node.hasBooleanProperty(NodeConstants.Info.ROLLUP)
+				|| node.getProperty(NodeConstants.Info.SORT_ORDER) != null) {
+			return false;
+		}
+		List<Expression> groupCols = (List<Expression>)node.getProperty(NodeConstants.Info.GROUP_COLS);
+		for (Expression ex : groupCols) {
+			if (!DataTypeManager.isHashable(ex.getType())) {
+				return false;
+			}
+		}
+		float groups = node.getCardinality();
+		float input = node.getFirstChild().getCardinality();
+		if (groups == NewCalculateCostUtil.UNKNOWN_VALUE || input == NewCalculateCostUtil.UNKNOWN_VALUE) {
+			return false;
+		}
+		return groups * HASH_AGGREGATE_RATIO <= input;
+	}
+
 	static PlanNode checkForProjectOptimization(PlanNode node, PlanNode root, 
 			QueryMetadataInterface metadata, CapabilitiesFinder capFinder, AnalysisRecord record, CommandContext context) throws QueryMetadataException, TeiidComponentException, QueryPlannerException {
 		PlanNode projectNode = node.getFirstChild();
@@ -0,0 +1,282 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.query.processor.relational;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+
+import org.teiid.client.plan.PlanNode;
+import org.teiid.common.buffer.BlockedException;
+import org.teiid.common.buffer.TupleBatch;
+import org.teiid.core.TeiidComponentException;
+import org.teiid.core.TeiidProcessingException;
+import org.teiid.core.TeiidRuntimeException;
+import org.teiid.dqp.internal.process.RequestWorkItem;
+import org.teiid.query.sql.LanguageObject;
+import org.teiid.query.sql.visitor.ValueIteratorProviderCollectorVisitor;
+import org.teiid.query.util.CommandContext;
+
+/**
+ * Processes its child subtree on a separate worker from the context executor
+ * and hands off the resulting batches through a bounded buffer.
+ * <br>
+ * A worker is only used if one can be reserved against the request parallelism
+ * limit when the node is opened, otherwise the child is processed directly.
+ * No worker is reserved while a transaction is active.
+ * Once a worker has been started the child subtree is only accessed by the worker
+ * until the node is closed.
+ */
+public class ExchangeNode extends RelationalNode {
+
+	public static final int DEFAULT_BUFFER_BATCHES = 2;
+
+	private int bufferBatches = DEFAULT_BUFFER_BATCHES;
+
+	private boolean parallel;
+
+	//state shared with the worker, guarded by this
+	private ArrayDeque<TupleBatch> batches = new ArrayDeque<TupleBatch>();
+	private boolean running;
+	private boolean pending;
+	private boolean done;
+	private boolean closed;
+	private volatile TeiidRuntimeException asynchException;
+
+	public ExchangeNode(int nodeID) {
+		super(nodeID);
+	}
+
+	public void setBufferBatches(int bufferBatches) {
+		this.bufferBatches = Math.max(1, bufferBatches);
+	}
+
+	@Override
+	public synchronized void reset() {
+		super.reset();
+		this.parallel = false;
+		this.batches.clear();
+		this.running = false;
+		this.pending = false;
+		this.done = false;
+		this.closed = false;
+		this.asynchException = null;
+	}
+
+	@Override
+	public void open() throws TeiidComponentException,
+			TeiidProcessingException {
+		super.open();
+		this.parallel = getContext().reserveParallelWorker();
+		if (this.parallel) {
+			synchronized (this) {
+				//start producing immediately so that the sibling subtrees run concurrently
+				schedule();
+			}
+		}
+	}
+
+	@Override
+	protected TupleBatch nextBatchDirect() throws BlockedException,
+			TeiidComponentException, TeiidProcessingException {
+		if (!this.parallel) {
+			return getChildren()[0].nextBatch();
+		}
+		synchronized (this) {
+			while (true) {
+				unwrapException(asynchException);
+				TupleBatch batch = this.batches.poll();
+				if (batch != null) {
+					schedule(); //read ahead
+					return batch;
+				}
+				schedule();
+				if (this.getContext().getWorkItem() != null || !this.running) {
+					break;
+				}
+				//this is for compatibility with engine tests that are below the level of using the work item
+				try {
+					this.wait();
+				} catch (InterruptedException e) {
+					throw new TeiidRuntimeException(e);
+				}
+			}
+		}
+		throw BlockedException.block(getContext().getRequestId(), "Blocking on exchange results.", getID()); //$NON-NLS-1$
+	}
+
+	/**
+	 * Start the worker if there is room in the buffer.  If the worker
+	 * is already running, it will check again prior to exiting.
+	 * Must be called holding the lock on this.
+	 */
+	private void schedule() {
+		if (this.done || this.closed || this.asynchException != null) {
+			return;
+		}
+		if (this.running) {
+			this.pending = true;
+			return;
+		}
+		if (this.batches.size() >= this.bufferBatches) {
+			return;
+		}
+		this.running = true;
+		this.pending = false;
+		getContext().getExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				produce();
+			}
+		});
+	}
+
+	private void produce() {
+		boolean notify = true;
+		CommandContext.pushThreadLocalContext(getContext());
+		try {
+			RelationalNode child = getChildren()[0];
+			while (true) {
+				synchronized (this) {
+					this.pending = false;
+					if (this.closed || this.batches.size() >= this.bufferBatches) {
+						break;
+					}
+				}
+				TupleBatch batch = null;
+				try {
+					batch = child.nextBatch();
+				} catch (BlockedException e) {
+					//sources will notify the work item when more results are available
+					//memory blocks however need the consumer to requeue
+					notify = e == BlockedException.BLOCKED_ON_MEMORY_EXCEPTION;
+					break;
+				}
+				synchronized (this) {
+					this.batches.add(batch);
+					if (batch.getTerminationFlag()) {
+						this.done = true;
+						break;
+					}
+				}
+				notifyConsumer();
+			}
+		} catch (TeiidRuntimeException e) {
+			asynchException = e;
+		} catch (Throwable e) {
+			asynchException = new TeiidRuntimeException(e);
+		} finally {
+			CommandContext.popThreadLocalContext();
+			synchronized (this) {
+				this.running = false;
+				if (this.pending) {
+					//the consumer has polled while we were processing
+					schedule();
+				}
+				this.notifyAll();
+			}
+			if (notify) {
+				notifyConsumer();
+			}
+		}
+	}
+
+	private void notifyConsumer() {
+		RequestWorkItem workItem = this.getContext().getWorkItem();
+		if (workItem != null) {
+			workItem.moreWork();
+		}
+	}
+
+	@Override
+	public void closeDirect() {
+		synchronized (this) {
+			this.closed = true;
+			//the child is closed after this method, so wait for the worker to exit
+			while (this.running) {
+				try {
+					this.wait();
+				} catch (InterruptedException e) {
+					throw new TeiidRuntimeException(e);
+				}
+			}
+			this.batches.clear();
+		}
+		if (this.parallel) {
+			getContext().releaseParallelWorker();
+			this.parallel = false;
+		}
+	}
+
+	@Override
+	public PlanNode getDescriptionProperties() {
+		PlanNode props = super.getDescriptionProperties();
+		props.addProperty("Buffer Batches", String.valueOf(this.bufferBatches)); //$NON-NLS-1$
+		return props;
+	}
+
+	@Override
+	public Object clone() {
+		ExchangeNode clone = new ExchangeNode(getID());
+		clone.bufferBatches = this.bufferBatches;
+		copyTo(clone);
+		return clone;
+	}
+
+	/**
+	 * Determine if the subtree can be processed independently from the rest of the plan.
+	 * <br>
+	 * Only simple relational operations are allowed.  Subtrees with dependent
+	 * or correlated processing, subqueries, or procedure logic rely upon state
+	 * that is not safe to share across threads.
+	 */
+	public static boolean isIndependent(RelationalNode node) {
+		if (node instanceof AccessNode) {
+			if (node instanceof DependentAccessNode || node instanceof DependentProcedureAccessNode) {
+				return false;
+			}
+			return ((AccessNode)node).getObjects().isEmpty();
+		}
+		if (node instanceof JoinNode) {
+			JoinNode joinNode = (JoinNode)node;
+			if (joinNode.getJoinStrategy() instanceof NestedTableJoinStrategy || joinNode.getDependentValueSourceName() != null) {
+				return false;
+			}
+		} else if (!(node instanceof ProjectNode || node instanceof SelectNode || node instanceof GroupingNode
+				|| node instanceof SortNode || node instanceof DupRemoveNode || node instanceof LimitNode
+				|| node instanceof UnionAllNode || node instanceof NullNode || node instanceof ExchangeNode)) {
+			return false;
+		}
+		if (node instanceof SubqueryAwareRelationalNode) {
+			Collection<? extends LanguageObject> objects = ((SubqueryAwareRelationalNode)node).getObjects();
+			if (objects != null && !ValueIteratorProviderCollectorVisitor.getValueIteratorProviders(objects).isEmpty()) {
+				return false;
+			}
+		}
+		for (RelationalNode child : node.getChildren()) {
+			if (child == null) {
+				break;
+			}
+			if (!isIndependent(child)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ListIterator;
@@ -34,6 +35,7 @@ import org.teiid.api.exception.query.FunctionExecutionException;
 import org.teiid.client.plan.PlanNode;
 import org.teiid.common.buffer.BlockedException;
 import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.BufferManager.BufferReserveMode;
 import org.teiid.common.buffer.STree;
 import org.teiid.common.buffer.STree.InsertMode;
 import org.teiid.common.buffer.TupleBatch;
@@ -44,6 +46,9 @@ import org.teiid.core.TeiidProcessingException;
 import org.teiid.core.TeiidRuntimeException;
 import org.teiid.core.types.DataTypeManager;
 import org.teiid.language.SortSpecification.NullOrdering;
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+import org.teiid.logging.MessageLevel;
 import org.teiid.query.eval.Evaluator;
 import org.teiid.query.function.aggregate.*;
 import org.teiid.query.processor.BatchCollector;
@@ -132,12 +137,22 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
     private int[] accumulatorStateCount;
     private TupleSource groupSortTupleSource;
     private int[] projection;
+    private List<Expression> groupSortSchema;
+    private List<NullOrdering> nullOrdering;
+    private List<Boolean> sortTypes;
+    
+    // Group hash
+    private boolean hashAggregate;
+    private HashMap<List<?>, List<?>> hashTable;
+    private int hashReserved;
+    private int hashSpillCount;
 
     private static final int COLLECTION = 1;
     private static final int SORT = 2;
     private static final int GROUP = 3;
     private static final int GROUP_SORT = 4;
     private static final int GROUP_SORT_OUTPUT = 5;
+    private static final int GROUP_HASH = 6;
 	private int[] indexes;
 	private boolean rollup;
 	private HashMap<Integer, Integer> indexMap;
@@ -373,6 +388,10 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
             return groupPhase();
         }
         
+        if (this.phase == GROUP_HASH) {
+        	groupHashPhase();
+        }
+        
         if (this.phase == GROUP_SORT) {
         	groupSortPhase();
         }
@@ -474,12 +493,16 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
 			    		schema.add(es);
 		    		}
 		    		
-		    		tree = this.getBufferManager().createSTree(schema, this.getConnectionID(), orderBy.size());
-		    		//non-default order needs to update the comparator
-		    		tree.getComparator().setNullOrdering(nullOrdering);
-		    		tree.getComparator().setOrderTypes(sortTypes);
-		    				
+		    		this.groupSortSchema = schema;
+		    		this.nullOrdering = nullOrdering;
+		    		this.sortTypes = sortTypes;
 		    		this.groupSortTupleSource = this.getGroupSortTupleSource();
+		    		if (this.hashAggregate) {
+		    			this.hashTable = new HashMap<List<?>, List<?>>();
+		    			this.phase = GROUP_HASH;
+		    			return;
+		    		}
+		    		createGroupSortTree();
 		    		this.phase = GROUP_SORT;
 		    		return;
         		}
@@ -491,6 +514,13 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
         }
     }
     
+	private void createGroupSortTree() throws TeiidComponentException {
+		tree = this.getBufferManager().createSTree(this.groupSortSchema, this.getConnectionID(), orderBy.size());
+		//non-default order needs to update the comparator
+		tree.getComparator().setNullOrdering(this.nullOrdering);
+		tree.getComparator().setOrderTypes(this.sortTypes);
+	}
+    
     /**
      * Process the input and store the partial accumulator values
      * @throws TeiidComponentException
@@ -500,35 +530,111 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
 		List<?> tuple = null;
 		while ((tuple = groupSortTupleSource.nextTuple()) != null) {
 			List<?> current = tree.find(tuple);
-			
-			boolean update = false;
-			List<Object> accumulated = new ArrayList<Object>();
-			//not all collected expressions are needed for the key
-			for (int i = 0; i < orderBy.size(); i++) {
-				accumulated.add(tuple.get(i));
+			List<Object> accumulated = accumulate(tuple, current);
+			tree.insert(accumulated, current != null?InsertMode.UPDATE:InsertMode.NEW, -1);
+		}
+		this.groupSortTupleSource.closeSource();
+		this.groupSortTupleSource = tree.getTupleSource(true);
+		this.phase = GROUP_SORT_OUTPUT;
+	}
+
+	/**
+	 * Create the new accumulated values for the group of the given tuple
+	 * @param current the existing accumulated values or null if this is a new group
+	 */
+	private List<Object> accumulate(List<?> tuple, List<?> current)
+			throws TeiidComponentException, TeiidProcessingException {
+		List<Object> accumulated = new ArrayList<Object>();
+		//not all collected expressions are needed for the key
+		for (int i = 0; i < orderBy.size(); i++) {
+			accumulated.add(tuple.get(i));
+		}
+		int index = orderBy.size();
+		for (int i = 0; i < this.groupSortfunctions.length; i++) {
+			AggregateFunction aggregateFunction = this.groupSortfunctions[i];
+			if (current != null) {
+				aggregateFunction.setState(current, index);
+			} else {
+				aggregateFunction.reset();
 			}
+			index+=this.accumulatorStateCount[i];
+			aggregateFunction.addInput(tuple, getContext());
+			aggregateFunction.getState(accumulated);
+		}
+		return accumulated;
+	}
+	
+	/**
+	 * Process the input into a hash table of the partial accumulator values.
+	 * If the buffer manager will not allow the table to grow, the table is moved into
+	 * the group sort tree and the rest of the input is processed as a group sort.
+	 * @throws TeiidComponentException
+	 * @throws TeiidProcessingException
+	 */
+	private void groupHashPhase() throws TeiidComponentException, TeiidProcessingException {
+		List<?> tuple = null;
+		int keyLength = orderBy.size();
+		int batchSize = this.getBufferManager().getProcessorBatchSize(this.groupSortSchema);
+		while ((tuple = groupSortTupleSource.nextTuple()) != null) {
+			List<?> key = tuple.subList(0, keyLength);
+			List<?> current = this.hashTable.get(key);
+			List<Object> accumulated = accumulate(tuple, current);
 			if (current != null) {
-				update = true;
+				this.hashTable.put(key, accumulated);
+				continue;
 			}
-			int index = orderBy.size();
-			for (int i = 0; i < this.groupSortfunctions.length; i++) {
-				AggregateFunction aggregateFunction = this.groupSortfunctions[i];
-				if (update) {
-					aggregateFunction.setState(current, index);
-				} else {
-					aggregateFunction.reset();
+			this.hashTable.put(new ArrayList<Object>(key), accumulated);
+			if (this.hashTable.size() % batchSize == 0) {
+				int toReserve = this.getBufferManager().getSchemaSize(this.groupSortSchema);
+				int reserved = this.getBufferManager().reserveBuffers(toReserve, BufferReserveMode.NO_WAIT);
+				this.hashReserved += reserved;
+				if (reserved < toReserve) {
+					spillHashTable();
+					return;
 				}
-				index+=this.accumulatorStateCount[i];
-				aggregateFunction.addInput(tuple, getContext());
-				aggregateFunction.getState(accumulated);
 			}
-			tree.insert(accumulated, update?InsertMode.UPDATE:InsertMode.NEW, -1);
 		}
 		this.groupSortTupleSource.closeSource();
-		this.groupSortTupleSource = tree.getTupleSource(true);
+		final Iterator<List<?>> values = this.hashTable.values().iterator();
+		this.groupSortTupleSource = new TupleSource() {
+			
+			@Override
+			public List<?> nextTuple() {
+				if (values.hasNext()) {
+					return values.next();
+				}
+				return null;
+			}
+			
+			@Override
+			public void closeSource() {
+				
+			}
+		};
 		this.phase = GROUP_SORT_OUTPUT;
 	}
 
+	private void spillHashTable() throws TeiidComponentException {
+		if (LogManager.isMessageToBeRecorded(LogConstants.CTX_DQP, MessageLevel.DETAIL)) {
+			LogManager.logDetail(LogConstants.CTX_DQP, "hash aggregation exceeded the available memory with", this.hashTable.size(), "groups, switching to a group sort", this.getID()); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		this.hashSpillCount++;
+		createGroupSortTree();
+		for (List<?> accumulated : this.hashTable.values()) {
+			tree.insert(accumulated, InsertMode.NEW, -1);
+		}
+		clearHashTable();
+		this.phase = GROUP_SORT;
+	}
+
+	private void clearHashTable() {
+		this.hashTable = null;
+		if (this.hashReserved > 0) {
+			this.getBufferManager().releaseBuffers(this.hashReserved);
+			this.hashReserved = 0;
+		}
+	}
+
 	/**
 	 * Walk the tree to produce the results
 	 * @return
@@ -685,6 +791,7 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
     		this.tree.remove();
     		this.tree = null;
     	}
+    	clearHashTable();
     }
 
 	protected void getNodeString(StringBuffer str) {
@@ -702,6 +809,7 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
 		clonedNode.outputMapping = outputMapping;
 		clonedNode.orderBy = orderBy;
 		clonedNode.rollup = rollup;
+		clonedNode.hashAggregate = hashAggregate;
 		return clonedNode;
 	}
 
@@ -728,11 +836,25 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
         if (rollup) {
         	props.addProperty(PROP_ROLLUP, Boolean.TRUE.toString());
         }
+        if (hashAggregate) {
+        	props.addProperty(PROP_HASH_AGGREGATE, Boolean.TRUE.toString());
+        }
         return props;
     }
 
 	public void setRollup(boolean rollup) {
 		this.rollup = rollup;
 	}
+	
+	/**
+	 * @return the number of times the hash table was moved into the group sort tree
+	 */
+	int getHashSpillCount() {
+		return hashSpillCount;
+	}
+	
+	public void setHashAggregate(boolean hashAggregate) {
+		this.hashAggregate = hashAggregate;
+	}
 
 }
\ No newline at end of file
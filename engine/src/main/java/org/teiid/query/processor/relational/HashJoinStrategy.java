@@ -0,0 +1,382 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.query.processor.relational;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.BufferManager.BufferReserveMode;
+import org.teiid.common.buffer.BufferManager.TupleSourceType;
+import org.teiid.common.buffer.TupleBuffer;
+import org.teiid.common.buffer.TupleSource;
+import org.teiid.core.TeiidComponentException;
+import org.teiid.core.TeiidProcessingException;
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+import org.teiid.logging.MessageLevel;
+import org.teiid.query.sql.lang.JoinType;
+import org.teiid.query.sql.symbol.Expression;
+
+
+/**
+ * A hybrid grace hash join for inner and left outer equi-joins.
+ * <br>
+ * Both sides are buffered.  A hash table is built over the smaller side
+ * (always the right side for a left outer join) if the buffer manager allows
+ * the reservation.  Otherwise both sides are partitioned by the hash of the join
+ * expressions into {@link TupleBuffer}s and each partition pair is joined in turn.
+ * Partitions that are still too large are recursively partitioned with a
+ * different hash until {@link #MAX_PARTITION_LEVEL} is reached, at which point the
+ * reservation is forced.
+ * <br>
+ * The join expressions must be of hashable types, see {@link DataTypeManager#isHashable(Class)}.
+ * Output is not ordered.
+ */
+public class HashJoinStrategy extends JoinStrategy {
+
+	static final int MAX_PARTITION_LEVEL = 3;
+	static final int MAX_PARTITIONS = 64;
+
+	private static class Partition {
+		TupleBuffer build;
+		TupleBuffer probe;
+		int level;
+		boolean owned;
+
+		Partition(TupleBuffer build, TupleBuffer probe, int level, boolean owned) {
+			this.build = build;
+			this.probe = probe;
+			this.level = level;
+			this.owned = owned;
+		}
+
+		void remove() {
+			if (owned) {
+				build.remove();
+				probe.remove();
+			}
+		}
+	}
+
+	private SourceState buildSource;
+	private SourceState probeSource;
+	private boolean buildRight;
+
+	private ArrayDeque<Partition> partitions;
+	private Partition current;
+	private Map<List<?>, List<List<?>>> table;
+	private int tableReserved;
+
+	//probe state
+	private TupleSource probeTuples;
+	private List<?> probeTuple;
+	private List<List<?>> matches;
+	private int matchIndex;
+	private boolean matched;
+
+	private int partitionCount;
+
+	@Override
+	public void initialize(JoinNode joinNode) {
+		super.initialize(joinNode);
+		this.partitions = null;
+		this.partitionCount = 0;
+	}
+
+	@Override
+	public void close() {
+		if (joinNode == null) {
+			return;
+		}
+		try {
+			clearTable();
+			if (this.current != null) {
+				this.current.remove();
+				this.current = null;
+			}
+			if (this.partitions != null) {
+				for (Partition p : this.partitions) {
+					p.remove();
+				}
+				this.partitions = null;
+			}
+		} finally {
+			super.close();
+		}
+	}
+
+	private void clearTable() {
+		if (this.probeTuples != null) {
+			this.probeTuples.closeSource();
+			this.probeTuples = null;
+		}
+		this.table = null;
+		this.probeTuple = null;
+		this.matches = null;
+		if (this.tableReserved > 0) {
+			this.joinNode.getBufferManager().releaseBuffers(this.tableReserved);
+			this.tableReserved = 0;
+		}
+	}
+
+	@Override
+	protected void loadLeft() throws TeiidComponentException,
+			TeiidProcessingException {
+		this.leftSource.getTupleBuffer();
+	}
+
+	@Override
+	protected void loadRight() throws TeiidComponentException,
+			TeiidProcessingException {
+		this.rightSource.getTupleBuffer();
+	}
+
+	@Override
+	protected void process() throws TeiidComponentException,
+			TeiidProcessingException {
+		if (this.partitions == null) {
+			this.buildRight = this.joinNode.getJoinType() == JoinType.JOIN_LEFT_OUTER
+					|| this.rightSource.getRowCount() <= this.leftSource.getRowCount();
+			if (buildRight) {
+				this.buildSource = this.rightSource;
+				this.probeSource = this.leftSource;
+			} else {
+				this.buildSource = this.leftSource;
+				this.probeSource = this.rightSource;
+			}
+			this.partitions = new ArrayDeque<Partition>();
+			if (this.buildSource.getRowCount() == 0 && this.joinNode.getJoinType() != JoinType.JOIN_LEFT_OUTER) {
+				return;
+			}
+			this.partitions.add(new Partition(this.buildSource.getTupleBuffer(), this.probeSource.getTupleBuffer(), 0, false));
+		}
+		while (true) {
+			if (this.table == null) {
+				if (this.current != null) {
+					this.current.remove();
+				}
+				this.current = this.partitions.poll();
+				if (this.current == null) {
+					return;
+				}
+				if (!buildTable(this.current)) {
+					partition(this.current);
+					this.current = null;
+					continue;
+				}
+			}
+			probe();
+			clearTable();
+		}
+	}
+
+	/**
+	 * Build the hash table for the partition if the reservation succeeds
+	 * @return false if the partition should be split
+	 */
+	private boolean buildTable(Partition partition) throws TeiidComponentException, TeiidProcessingException {
+		BufferManager bm = this.joinNode.getBufferManager();
+		int batchSize = Math.max(1, this.buildSource.getSource().getBatchSize());
+		long estimate = (long)bm.getSchemaSize(this.buildSource.getSource().getOutputElements()) * partition.build.getRowCount() / batchSize;
+		int needed = (int)Math.min(Integer.MAX_VALUE, estimate);
+		if (partition.level < MAX_PARTITION_LEVEL && partition.build.getRowCount() > batchSize) {
+			this.tableReserved = bm.reserveBuffers(needed, BufferReserveMode.NO_WAIT);
+			if (this.tableReserved < needed) {
+				bm.releaseBuffers(this.tableReserved);
+				this.tableReserved = 0;
+				return false;
+			}
+		} else {
+			this.tableReserved = bm.reserveBuffers(needed, BufferReserveMode.FORCE);
+		}
+		int[] indexes = this.buildSource.getExpressionIndexes();
+		this.table = new HashMap<List<?>, List<List<?>>>();
+		TupleSource ts = partition.build.createIndexedTupleSource();
+		try {
+			List<?> tuple = null;
+			while ((tuple = ts.nextTuple()) != null) {
+				List<?> key = getKey(tuple, indexes);
+				if (key == null) {
+					continue; //nulls never match
+				}
+				List<List<?>> values = this.table.get(key);
+				if (values == null) {
+					values = new ArrayList<List<?>>(2);
+					this.table.put(key, values);
+				}
+				values.add(tuple);
+			}
+		} finally {
+			ts.closeSource();
+		}
+		this.probeTuples = partition.probe.createIndexedTupleSource();
+		return true;
+	}
+
+	/**
+	 * Split the partition into new partitions using a level specific hash.
+	 * Rows with null keys from the probe side are kept so that outer results are preserved.
+	 */
+	private void partition(Partition partition) throws TeiidComponentException, TeiidProcessingException {
+		BufferManager bm = this.joinNode.getBufferManager();
+		int count = (int)Math.min(MAX_PARTITIONS, Math.max(2, partition.build.getRowCount() / Math.max(1, this.buildSource.getSource().getBatchSize())));
+		int level = partition.level + 1;
+		TupleBuffer[] build = new TupleBuffer[count];
+		TupleBuffer[] probe = new TupleBuffer[count];
+		for (int i = 0; i < count; i++) {
+			build[i] = bm.createTupleBuffer(this.buildSource.getSource().getOutputElements(), this.joinNode.getConnectionID(), TupleSourceType.PROCESSOR);
+			build[i].setForwardOnly(true);
+			probe[i] = bm.createTupleBuffer(this.probeSource.getSource().getOutputElements(), this.joinNode.getConnectionID(), TupleSourceType.PROCESSOR);
+			probe[i].setForwardOnly(true);
+		}
+		splitInto(partition.build, build, this.buildSource.getExpressionIndexes(), level, false);
+		splitInto(partition.probe, probe, this.probeSource.getExpressionIndexes(), level, true);
+		for (int i = 0; i < count; i++) {
+			build[i].close();
+			probe[i].close();
+			if (build[i].getRowCount() == 0 && this.joinNode.getJoinType() != JoinType.JOIN_LEFT_OUTER) {
+				build[i].remove();
+				probe[i].remove();
+				continue;
+			}
+			int childLevel = level;
+			if (build[i].getRowCount() == partition.build.getRowCount()) {
+				//skewed, further splitting won't help
+				childLevel = MAX_PARTITION_LEVEL;
+			}
+			this.partitions.add(new Partition(build[i], probe[i], childLevel, true));
+		}
+		this.partitionCount += count;
+		if (LogManager.isMessageToBeRecorded(LogConstants.CTX_DQP, MessageLevel.DETAIL)) {
+			LogManager.logDetail(LogConstants.CTX_DQP, "hash join partitioned", partition.build.getRowCount(), "build rows into", count, "partitions at level", level, this.joinNode.getID()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+		partition.remove();
+	}
+
+	private void splitInto(TupleBuffer source, TupleBuffer[] targets, int[] indexes, int level, boolean keepNulls)
+			throws TeiidComponentException, TeiidProcessingException {
+		TupleSource ts = source.createIndexedTupleSource();
+		try {
+			List<?> tuple = null;
+			while ((tuple = ts.nextTuple()) != null) {
+				List<?> key = getKey(tuple, indexes);
+				if (key == null) {
+					if (keepNulls) {
+						targets[0].addTuple(tuple);
+					}
+					continue;
+				}
+				targets[partitionIndex(key, level, targets.length)].addTuple(tuple);
+			}
+		} finally {
+			ts.closeSource();
+		}
+	}
+
+	static int partitionIndex(List<?> key, int level, int count) {
+		int h = key.hashCode() ^ (level * 0x9E3779B9);
+		h ^= (h >>> 16);
+		h *= 0x85EBCA6B;
+		h ^= (h >>> 13);
+		return (h & Integer.MAX_VALUE) % count;
+	}
+
+	/**
+	 * @return the key values or null if any key value is null
+	 */
+	static List<?> getKey(List<?> tuple, int[] indexes) {
+		List<Object> key = new ArrayList<Object>(indexes.length);
+		for (int index : indexes) {
+			Object value = tuple.get(index);
+			if (value == null) {
+				return null;
+			}
+			key.add(value);
+		}
+		return key;
+	}
+
+	private void probe() throws TeiidComponentException, TeiidProcessingException {
+		int[] indexes = this.probeSource.getExpressionIndexes();
+		while (true) {
+			if (this.probeTuple == null) {
+				this.probeTuple = this.probeTuples.nextTuple();
+				if (this.probeTuple == null) {
+					return;
+				}
+				this.matched = false;
+				this.matchIndex = 0;
+				List<?> key = getKey(this.probeTuple, indexes);
+				this.matches = key == null?null:this.table.get(key);
+			}
+			if (this.matches == null || this.matchIndex >= this.matches.size()) {
+				List<?> tuple = this.probeTuple;
+				this.probeTuple = null;
+				if (!this.matched && this.joinNode.getJoinType() == JoinType.JOIN_LEFT_OUTER) {
+					this.joinNode.addBatchRow(outputTuple(tuple, this.rightSource.getOuterVals()));
+				}
+				continue;
+			}
+			List<?> buildTuple = this.matches.get(this.matchIndex);
+			List outputTuple = buildRight?outputTuple(this.probeTuple, buildTuple):outputTuple(buildTuple, this.probeTuple);
+			boolean matches = this.joinNode.matchesCriteria(outputTuple);
+			this.matchIndex++;
+			if (matches) {
+				this.matched = true;
+				this.joinNode.addBatchRow(outputTuple);
+			}
+		}
+	}
+
+	/**
+	 * @return true if the hash join may be used for the given join expressions
+	 */
+	public static boolean canHash(List<? extends Expression> expressions) {
+		for (Expression ex : expressions) {
+			if (!DataTypeManager.isHashable(ex.getType())) {
+				return false;
+			}
+		}
+		return !expressions.isEmpty();
+	}
+
+	@Override
+	public HashJoinStrategy clone() {
+		return new HashJoinStrategy();
+	}
+
+	public String getName() {
+		return "HASH JOIN"; //$NON-NLS-1$
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder(getName());
+		if (this.partitionCount > 0) {
+			result.append(" RAN WITH ").append(this.partitionCount).append(" PARTITIONS"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return result.toString();
+	}
+
+}
@@ -145,24 +145,7 @@ public class ListNestedSortComparator<T extends Comparable<? super T>> implement
      */
     
     public int compare(java.util.List<T> list1, java.util.List<T> list2) {
-    	if (!init) {
-    		if (nullOrdering == null) {
-    			nullOrdering = Collections.nCopies(sortParameters.length, null);
-    		}
-    		for (int i = 0; i < sortParameters.length; i++) {
-    			if (nullOrdering.get(i) == null) {
-    				if (defaultNullOrder == NullOrder.FIRST) {
-    					nullOrdering.set(i, NullOrdering.FIRST);
-    				} else if (defaultNullOrder == NullOrder.LAST) {
-    					nullOrdering.set(i, NullOrdering.LAST);
-    				}
-    			}
-    		}
-    		if (defaultNullOrder == NullOrder.HIGH) {
-    			nullValue = 1;
-    		}
-    		init = true;
-    	}
+    	initialize();
         int compare = 0;
         for (int k = 0; k < sortParameters.length; k++) {
         	if (list1.size() <= sortParameters[k]) {
@@ -212,6 +195,31 @@ public class ListNestedSortComparator<T extends Comparable<? super T>> implement
     	return 0;
     }
     
+    /**
+     * Lazily resolve the null ordering.  Should be called prior to
+     * using the comparator from multiple threads.
+     */
+    void initialize() {
+    	if (!init) {
+    		if (nullOrdering == null) {
+    			nullOrdering = Collections.nCopies(sortParameters.length, null);
+    		}
+    		for (int i = 0; i < sortParameters.length; i++) {
+    			if (nullOrdering.get(i) == null) {
+    				if (defaultNullOrder == NullOrder.FIRST) {
+    					nullOrdering.set(i, NullOrdering.FIRST);
+    				} else if (defaultNullOrder == NullOrder.LAST) {
+    					nullOrdering.set(i, NullOrdering.LAST);
+    				}
+    			}
+    		}
+    		if (defaultNullOrder == NullOrder.HIGH) {
+    			nullValue = 1;
+    		}
+    		init = true;
+    	}
+    }
+    
     private NullOrdering getNullOrdering(int index) {
 		return nullOrdering.get(index);
     }
@@ -30,15 +30,22 @@ import java.util.Map;
 import org.teiid.api.exception.query.ExpressionEvaluationException;
 import org.teiid.client.plan.PlanNode;
 import org.teiid.common.buffer.BlockedException;
+import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.ColumnBatch;
 import org.teiid.common.buffer.TupleBatch;
 import org.teiid.common.buffer.TupleBuffer;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.query.analysis.AnalysisRecord;
+import org.teiid.query.eval.BatchEvaluator;
+import org.teiid.query.eval.ExpressionCompiler;
+import org.teiid.query.eval.ExpressionCompiler.CompiledExpression;
+import org.teiid.query.processor.ProcessorDataManager;
 import org.teiid.query.sql.LanguageObject;
 import org.teiid.query.sql.symbol.AliasSymbol;
 import org.teiid.query.sql.symbol.Expression;
 import org.teiid.query.sql.util.SymbolMap;
+import org.teiid.query.util.CommandContext;
 
 
 public class ProjectNode extends SubqueryAwareRelationalNode {
@@ -52,10 +59,15 @@ public class ProjectNode extends SubqueryAwareRelationalNode {
     private boolean needsProject = true;
     private List<Expression> expressions;
     private int[] projectionIndexes;
+    private BatchEvaluator.Projection[] projections;
+    private Class<?>[] columnTypes;
+    private Compiled<CompiledExpression[]> compiledExpressions = new Compiled<CompiledExpression[]>();
+    private CompiledExpression[] compiled;
 
     // Saved state when blocked on evaluating a row - must be reset
     private TupleBatch currentBatch;
     private int currentRow = 1;
+    private Object[][] currentColumns;
     
     protected ProjectNode() {
     	super();
@@ -70,6 +82,7 @@ public class ProjectNode extends SubqueryAwareRelationalNode {
 
         currentBatch = null;
         currentRow = 1;
+        currentColumns = null;
     }
 
     /**
@@ -82,6 +95,7 @@ public class ProjectNode extends SubqueryAwareRelationalNode {
 
 	public void setSelectSymbols(List<? extends Expression> symbols) {
 		this.selectSymbols = symbols;
+		this.compiledExpressions = new Compiled<CompiledExpression[]>();
 		elementMap = Collections.emptyMap();
 		this.projectionIndexes = new int[this.selectSymbols.size()];
     	Arrays.fill(this.projectionIndexes, -1);
@@ -132,6 +146,42 @@ public class ProjectNode extends SubqueryAwareRelationalNode {
         }
 	}
 	
+	@Override
+	public void initialize(CommandContext context, BufferManager bufferManager,
+			ProcessorDataManager dataMgr) {
+		super.initialize(context, bufferManager, dataMgr);
+		if (needsProject && context.getOptions().isVectorizedEvaluation()) {
+			this.projections = new BatchEvaluator.Projection[expressions.size()];
+			boolean compiled = false;
+			for (int i = 0; i < expressions.size(); i++) {
+				if (this.projectionIndexes[i] == -1) {
+					this.projections[i] = BatchEvaluator.compileExpression(expressions.get(i), this.elementMap);
+					compiled |= this.projections[i] != null;
+				}
+			}
+			if (!compiled) {
+				this.projections = null;
+			} else if (this.getChildren()[0] != null) {
+				this.columnTypes = ColumnBatch.getTypes(this.getChildren()[0].getElements());
+			} else {
+				this.columnTypes = new Class<?>[0];
+			}
+		}
+		this.compiled = null;
+		if (needsProject && context.getOptions().isCompiledExpressions()) {
+			if (!this.compiledExpressions.isCompiled()) {
+				CompiledExpression[] result = new CompiledExpression[expressions.size()];
+				for (int i = 0; i < expressions.size(); i++) {
+					if (this.projectionIndexes[i] == -1) {
+						result[i] = ExpressionCompiler.compile(expressions.get(i), this.elementMap);
+					}
+				}
+				this.compiledExpressions.setValue(result);
+			}
+			this.compiled = this.compiledExpressions.getValue();
+		}
+	}
+	
 	public TupleBatch nextBatchDirect()
 		throws BlockedException, TeiidComponentException, TeiidProcessingException {
 		
@@ -152,6 +202,16 @@ public class ProjectNode extends SubqueryAwareRelationalNode {
             	currentBatch = null;
                 return result;
             }
+            
+            if (this.projections != null && currentBatch.getRowCount() > 0) {
+            	currentColumns = new Object[this.projections.length][];
+            	ColumnBatch columnBatch = ColumnBatch.fromTupleBatch(currentBatch, this.columnTypes);
+            	for (int i = 0; i < this.projections.length; i++) {
+            		if (this.projections[i] != null) {
+            			currentColumns[i] = this.projections[i].evaluate(columnBatch);
+            		}
+				}
+            }
         }
 
         while (currentRow <= currentBatch.getEndRow() && !isBatchFull()) {
@@ -175,6 +235,7 @@ public class ProjectNode extends SubqueryAwareRelationalNode {
 	            terminateBatches();
 	        }
 	        currentBatch = null;
+	        currentColumns = null;
         }
         
     	return pullBatch();
@@ -186,6 +247,10 @@ public class ProjectNode extends SubqueryAwareRelationalNode {
         int index = this.projectionIndexes[projectionIndex];
         if(index != -1) {
 			tuple.add(values.get(index));
+        } else if (currentColumns != null && currentColumns[projectionIndex] != null) {
+        	tuple.add(currentColumns[projectionIndex][(int)(currentRow - currentBatch.getBeginRow())]);
+        } else if (compiled != null && compiled[projectionIndex] != null) {
+        	tuple.add(getEvaluator(this.elementMap).evaluate(compiled[projectionIndex], values));
         } else { 
 			tuple.add(getEvaluator(this.elementMap).evaluate(symbol, values));
 		}
@@ -209,6 +274,7 @@ public class ProjectNode extends SubqueryAwareRelationalNode {
         target.elementMap = elementMap;
         target.expressions = expressions;
         target.projectionIndexes = projectionIndexes;
+        target.compiledExpressions = compiledExpressions;
     }
 
     public PlanNode getDescriptionProperties() {
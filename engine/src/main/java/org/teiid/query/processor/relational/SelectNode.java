@@ -25,13 +25,18 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
+import org.teiid.api.exception.query.ExpressionEvaluationException;
 import org.teiid.client.plan.PlanNode;
 import org.teiid.common.buffer.BlockedException;
 import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.ColumnBatch;
 import org.teiid.common.buffer.TupleBatch;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.query.analysis.AnalysisRecord;
+import org.teiid.query.eval.BatchEvaluator;
+import org.teiid.query.eval.ExpressionCompiler;
+import org.teiid.query.eval.ExpressionCompiler.CompiledCriteria;
 import org.teiid.query.processor.ProcessorDataManager;
 import org.teiid.query.sql.LanguageObject;
 import org.teiid.query.sql.lang.Criteria;
@@ -47,10 +52,16 @@ public class SelectNode extends SubqueryAwareRelationalNode {
     // Derived element lookup map
     private Map<Expression, Integer> elementMap; 
     private int[] projectionIndexes;
+    private BatchEvaluator.Filter filter;
+    private Class<?>[] columnTypes;
+    private Compiled<CompiledCriteria> compiledCriteria = new Compiled<CompiledCriteria>();
+    private CompiledCriteria compiled;
 	
     // State if blocked on evaluating a criteria
     private TupleBatch currentBatch;
     private int currentRow = 1;
+    private int[] currentSelection;
+    private int selectionIndex;
 
 	protected SelectNode() {
 		super();
@@ -65,10 +76,13 @@ public class SelectNode extends SubqueryAwareRelationalNode {
         
         currentBatch = null;
         currentRow = 1;
+        currentSelection = null;
+        selectionIndex = 0;
     }
 
 	public void setCriteria(Criteria criteria) { 
 		this.criteria = criteria;
+		this.compiledCriteria = new Compiled<CompiledCriteria>();
 	}
 
 	public Criteria getCriteria() { // made public to support change in ProcedurePlanner
@@ -88,6 +102,17 @@ public class SelectNode extends SubqueryAwareRelationalNode {
             this.elementMap = createLookupMap(this.getChildren()[0].getElements());
             this.projectionIndexes = getProjectionIndexes(this.elementMap, projectedExpressions!=null?projectedExpressions:getElements());
         }
+        if (context.getOptions().isVectorizedEvaluation()) {
+        	this.filter = BatchEvaluator.compileFilter(this.criteria, this.elementMap);
+        	this.columnTypes = ColumnBatch.getTypes(this.getChildren()[0].getElements());
+        }
+        this.compiled = null;
+        if (context.getOptions().isCompiledExpressions()) {
+        	if (!this.compiledCriteria.isCompiled()) {
+        		this.compiledCriteria.setValue(ExpressionCompiler.compile(this.criteria, this.elementMap));
+        	}
+        	this.compiled = this.compiledCriteria.getValue();
+        }
 	}
 	
     /**
@@ -98,12 +123,26 @@ public class SelectNode extends SubqueryAwareRelationalNode {
 		
         if(currentBatch == null) {
         	currentBatch = this.getChildren()[0].nextBatch();
+        	if (this.filter != null && currentBatch.getRowCount() > 0) {
+        		currentSelection = this.filter.select(ColumnBatch.fromTupleBatch(currentBatch, this.columnTypes));
+        		selectionIndex = 0;
+        	}
+        }
+        
+        if (currentSelection != null) {
+        	while (selectionIndex < currentSelection.length && !isBatchFull()) {
+        		addBatchRow(projectTuple(this.projectionIndexes, currentBatch.getTuples().get(currentSelection[selectionIndex++])));
+        	}
+        	if (selectionIndex == currentSelection.length) {
+        		currentRow = (int)currentBatch.getEndRow() + 1;
+        		currentSelection = null;
+        	}
         }
 
         while (currentRow <= currentBatch.getEndRow() && !isBatchFull()) {
     		List<?> tuple = currentBatch.getTuple(currentRow);
 
-            if(getEvaluator(this.elementMap).evaluate(this.criteria, tuple)) {
+            if(evaluate(tuple)) {
                 addBatchRow(projectTuple(this.projectionIndexes, tuple));
             }
             currentRow++;
@@ -118,6 +157,14 @@ public class SelectNode extends SubqueryAwareRelationalNode {
         
     	return pullBatch();
 	}
+
+	private boolean evaluate(List<?> tuple) throws BlockedException,
+			TeiidComponentException, ExpressionEvaluationException {
+		if (this.compiled != null) {
+			return getEvaluator(this.elementMap).evaluate(this.compiled, tuple);
+		}
+		return getEvaluator(this.elementMap).evaluate(this.criteria, tuple);
+	}
     
 	protected void getNodeString(StringBuffer str) {
 		super.getNodeString(str);
@@ -136,6 +183,7 @@ public class SelectNode extends SubqueryAwareRelationalNode {
 		target.elementMap = elementMap;
 		target.projectionIndexes = projectionIndexes;
 		target.projectedExpressions = projectedExpressions;
+		target.compiledCriteria = compiledCriteria;
 	}
     
     public PlanNode getDescriptionProperties() {   
@@ -47,6 +47,11 @@ public class SortNode extends RelationalNode {
     private boolean usingOutput;
     
     private int rowLimit = -1;
+    
+    //sort statistics
+    private int sortRuns;
+    private int sortMerges;
+    private long sortBytesSpilled;
 
     private static final int SORT = 2;
     private static final int OUTPUT = 3;
@@ -63,6 +68,9 @@ public class SortNode extends RelationalNode {
         outputTs = null;
         usingOutput = false;
         rowLimit = -1;
+        sortRuns = 0;
+        sortMerges = 0;
+        sortBytesSpilled = 0;
     }
 
 	public void setSortElements(List<OrderByItem> items) {
@@ -148,6 +156,9 @@ public class SortNode extends RelationalNode {
         	this.output = null;
         }
         if (this.sortUtility != null) {
+        	this.sortRuns += this.sortUtility.getRunsCreated();
+        	this.sortMerges += this.sortUtility.getMerges();
+        	this.sortBytesSpilled += this.sortUtility.getBytesSpilled();
         	this.sortUtility.remove();
         	this.sortUtility = null;
         }
@@ -182,6 +193,12 @@ public class SortNode extends RelationalNode {
         
         props.addProperty(PROP_SORT_MODE, this.mode.toString());
         
+        if (this.getContext() != null && this.getContext().getCollectNodeStatistics()) {
+        	props.addProperty(PROP_SORT_RUNS, String.valueOf(this.sortRuns));
+        	props.addProperty(PROP_SORT_MERGES, String.valueOf(this.sortMerges));
+        	props.addProperty(PROP_SORT_BYTES_SPILLED, String.valueOf(this.sortBytesSpilled));
+        }
+        
         return props;
     }
     
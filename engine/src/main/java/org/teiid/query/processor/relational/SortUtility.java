@@ -19,11 +19,18 @@
 package org.teiid.query.processor.relational;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Iterator;
 import java.util.ListIterator;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.teiid.common.buffer.BlockedException;
 import org.teiid.common.buffer.BufferManager;
@@ -65,22 +72,91 @@ public class SortUtility {
 	}
 	
 	/**
-	 * state holder for the merge algorithm
+	 * A tournament tree of losers for the k-way merge.  Each replacement
+	 * of the winner requires only log(k) comparisons along the path to the root.
+	 * Ties are broken by the sublist index, so that the merge is stable.
 	 */
-	private class SortedSublist implements Comparable<SortedSublist> {
-		List<?> tuple;
-		int index;
-		TupleBufferTupleSource its;
+	private class LoserTree {
+		private TupleBufferTupleSource[] sources;
+		private List<?>[] heads;
+		//tree[0] holds the winner, tree[1..k-1] hold the losers of each match
+		private int[] tree;
+		private int k;
 		
-		@Override
-		public int compareTo(SortedSublist o) {
-			//reverse the comparison, so that removal of the lowest is a low cost operation
-			return -comparator.compare(this.tuple, o.tuple);
+		LoserTree(TupleBufferTupleSource[] sources) throws TeiidComponentException, TeiidProcessingException {
+			this.sources = sources;
+			this.k = sources.length;
+			this.heads = new List<?>[k];
+			for (int i = 0; i < k; i++) {
+				heads[i] = sources[i].nextTuple();
+			}
+			this.tree = new int[k];
+			tree[0] = play(1);
 		}
 		
-		@Override
-		public String toString() {
-			return index + " " + tuple; //$NON-NLS-1$
+		private int play(int node) {
+			if (node >= k) {
+				return node - k;
+			}
+			int left = play(2*node);
+			int right = play(2*node + 1);
+			if (beats(left, right)) {
+				tree[node] = right;
+				return left;
+			}
+			tree[node] = left;
+			return right;
+		}
+		
+		private boolean beats(int a, int b) {
+			if (heads[a] == null) {
+				return heads[b] == null && a < b;
+			}
+			if (heads[b] == null) {
+				return true;
+			}
+			int compare = comparator.compare(heads[a], heads[b]);
+			if (compare != 0) {
+				return compare < 0;
+			}
+			return a < b;
+		}
+		
+		/**
+		 * @return the lowest tuple or null if all sublists are exhausted
+		 */
+		List<?> peek() {
+			return heads[tree[0]];
+		}
+		
+		/**
+		 * Advance the sublist of the current winner and replay its path
+		 */
+		void next() throws TeiidComponentException, TeiidProcessingException {
+			int winner = tree[0];
+			heads[winner] = sources[winner].nextTuple();
+			for (int node = (winner + k) >> 1; node > 0; node >>= 1) {
+				int loser = tree[node];
+				if (beats(loser, winner)) {
+					tree[node] = winner;
+					winner = loser;
+				}
+			}
+			tree[0] = winner;
+		}
+	}
+
+	/**
+	 * Holds a tuple for the top-n sort.  The sequence allows the sort
+	 * to retain the input order of ties. 
+	 */
+	private static class TopNEntry {
+		List<?> tuple;
+		long seq;
+		
+		TopNEntry(List<?> tuple, long seq) {
+			this.tuple = tuple;
+			this.seq = seq;
 		}
 	}
 
@@ -109,6 +185,22 @@ public class SortUtility {
 	private static boolean STABLE_SORT = PropertiesUtils.getBooleanProperty(System.getProperties(), "org.teiid.requireStableSort", false); //$NON-NLS-1$
 	
 	private boolean stableSort = STABLE_SORT;
+	
+	/**
+	 * The minimum number of tuples in a sublist for parallel sorting.
+	 */
+	static int PARALLEL_SORT_THRESHOLD = 1 << 13;
+	
+	//top-n state
+	private TreeSet<TopNEntry> topN;
+	private TupleSource topNSource;
+	private long topNSeq;
+	private int topNReserved;
+	
+	//metrics
+	private int runsCreated;
+	private int merges;
+	private long bytesSpilled;
     
     public SortUtility(TupleSource sourceID, List<OrderByItem> items, Mode mode, BufferManager bufferMgr,
                         String groupName, List<? extends Expression> schema) {
@@ -193,7 +285,11 @@ public class SortUtility {
     	boolean success = false;
     	try {
 	        if(this.phase == INITIAL_SORT) {
-	            initialSort(false, false, rowLimit);
+	        	if (useTopN(rowLimit)) {
+	        		topNSort(rowLimit);
+	        	} else {
+	        		initialSort(false, false, rowLimit);
+	        	}
 	        }
 	        
 	        if(this.phase == MERGE) {
@@ -237,6 +333,86 @@ public class SortUtility {
     	}
     }
     
+	/**
+	 * A bounded top-n sort is used if the limited rows will fit in a single memory sort.
+	 */
+	private boolean useTopN(int rowLimit) {
+		if (this.topN != null) {
+			return true;
+		}
+		return rowLimit > 0 && rowLimit <= this.targetRowCount && (this.source != null || this.workingBuffer != null);
+	}
+	
+	/**
+	 * Perform a sort with a row limit by retaining only the lowest rowLimit
+	 * tuples, so that no intermediate sublists are created.
+	 */
+	protected void topNSort(int rowLimit) throws TeiidComponentException, TeiidProcessingException {
+		if (this.topN == null) {
+			final boolean distinct = this.mode != Mode.SORT;
+			this.topN = new TreeSet<TopNEntry>(new Comparator<TopNEntry>() {
+				@Override
+				public int compare(TopNEntry o1, TopNEntry o2) {
+					int result = comparator.compare(o1.tuple, o2.tuple);
+					if (result != 0 || distinct) {
+						return result;
+					}
+					return Long.compare(o1.seq, o2.seq);
+				}
+			});
+			if (this.source != null) {
+				this.topNSource = this.source;
+			} else {
+				this.topNSource = this.workingBuffer.createIndexedTupleSource();
+			}
+			this.topNReserved = bufferManager.reserveBuffers((int)Math.min(Integer.MAX_VALUE, (long)rowLimit * schemaSize / batchSize), BufferReserveMode.FORCE);
+		}
+		long end = Long.MAX_VALUE;
+        if (!nonBlocking) {
+            //obey the timeslice
+            CommandContext cc = CommandContext.getThreadLocalContext();
+            if (cc != null) {
+                end = System.nanoTime() + (cc.getTimeSliceEnd()-System.currentTimeMillis())*1000000;
+            }
+        }
+		List<?> tuple = null;
+		while ((tuple = this.topNSource.nextTuple()) != null) {
+			TopNEntry entry = new TopNEntry(tuple, topNSeq++);
+			if (this.topN.size() < rowLimit) {
+				this.topN.add(entry);
+			} else if (this.topN.comparator().compare(entry, this.topN.last()) < 0 && this.topN.add(entry)) {
+				this.topN.pollLast();
+			}
+			if (end != Long.MAX_VALUE && (topNSeq%32)==1 && System.nanoTime() > end) {
+        	    CommandContext.getThreadLocalContext().getWorkItem().moreWork();
+        	    throw BlockedException.block("Blocking on large sort"); //$NON-NLS-1$
+        	}
+		}
+		this.doneReading = true;
+		TupleBuffer result = createTupleBuffer();
+		for (Iterator<TopNEntry> iter = this.topN.iterator(); iter.hasNext();) {
+			result.addTuple(iter.next().tuple);
+			iter.remove();
+		}
+		result.saveBatch();
+		this.activeTupleBuffers.add(result);
+		releaseTopN();
+		this.phase = MERGE;
+	}
+
+	private void releaseTopN() {
+		if (this.topN == null) {
+			return;
+		}
+		this.topN.clear();
+		this.topNSource = null;
+		if (this.source == null) {
+			this.workingBuffer = null;
+		}
+		bufferManager.releaseBuffers(this.topNReserved);
+		this.topNReserved = 0;
+	}
+	
 	private TupleBuffer createTupleBuffer() throws TeiidComponentException {
 		TupleBuffer tb = bufferManager.createTupleBuffer(this.schema, this.groupName, TupleSourceType.PROCESSOR);
 		if (LogManager.isMessageToBeRecorded(LogConstants.CTX_DQP, MessageLevel.DETAIL)) {
@@ -362,9 +538,9 @@ public class SortUtility {
 		
 		        TupleBuffer sublist = createTupleBuffer();
 		        activeTupleBuffers.add(sublist);
+		        runsCreated++;
 		        if (this.mode == Mode.SORT) {
-		        	//perform a stable sort
-		    		Collections.sort((List<List<?>>)workingTuples, comparator);
+		        	sortSublist((List<List<?>>)workingTuples);
 		        }
 		        for (List<?> list : workingTuples) {
 					sublist.addTuple(list);
@@ -391,9 +567,88 @@ public class SortUtility {
     	
     	if (this.activeTupleBuffers.isEmpty()) {
             activeTupleBuffers.add(createTupleBuffer());
-        }  
+        } else if (this.activeTupleBuffers.size() > 1) {
+        	for (TupleBuffer tb : this.activeTupleBuffers) {
+        		bytesSpilled += getSizeEstimate(tb);
+        	}
+        }
         this.phase = MERGE;
     }
+    
+    /**
+     * Perform a stable sort of the sublist.  If a worker can be reserved against the 
+     * request parallelism limit, half of a large sublist is sorted on the context executor
+     * while this thread sorts the other half, then the halves are merged.
+     */
+    private void sortSublist(List<List<?>> tuples) throws TeiidComponentException {
+    	CommandContext cc = null;
+    	if (tuples.size() >= PARALLEL_SORT_THRESHOLD) {
+    		cc = CommandContext.getThreadLocalContext();
+    	}
+    	if (cc == null || cc.getExecutor() == null || !cc.reserveParallelWorker()) {
+    		Collections.sort(tuples, comparator);
+    		return;
+    	}
+    	try {
+    		final List<?>[] array = tuples.toArray(new List<?>[tuples.size()]);
+    		final int mid = array.length >>> 1;
+    		comparator.initialize();
+    		//whichever thread claims the upper half sorts it, so that we never wait on a queued task
+    		final AtomicBoolean claimed = new AtomicBoolean();
+    		FutureTask<Void> task = new FutureTask<Void>(new Runnable() {
+    			@Override
+    			public void run() {
+    				if (claimed.compareAndSet(false, true)) {
+    					Arrays.sort(array, mid, array.length, comparator);
+    				}
+    			}
+    		}, null);
+    		try {
+    			cc.getExecutor().execute(task);
+    		} catch (RejectedExecutionException e) {
+    			LogManager.logDetail(LogConstants.CTX_DQP, e, "Could not use the executor for sorting, continuing on the processing thread"); //$NON-NLS-1$
+    		}
+    		Arrays.sort(array, 0, mid, comparator);
+    		if (claimed.compareAndSet(false, true)) {
+    			Arrays.sort(array, mid, array.length, comparator);
+    		} else {
+    			try {
+    				task.get();
+    			} catch (InterruptedException e) {
+    				Thread.currentThread().interrupt();
+    				throw new TeiidComponentException(e);
+    			} catch (ExecutionException e) {
+    				if (e.getCause() instanceof RuntimeException) {
+    					throw (RuntimeException)e.getCause();
+    				}
+    				throw new TeiidComponentException(e.getCause());
+    			}
+    		}
+    		//merge the halves, preferring the lower half on ties to remain stable
+    		int i = 0;
+    		int j = mid;
+    		int k = 0;
+    		while (i < mid && j < array.length) {
+    			if (comparator.compare(array[i], array[j]) <= 0) {
+    				tuples.set(k++, array[i++]);
+    			} else {
+    				tuples.set(k++, array[j++]);
+    			}
+    		}
+    		while (i < mid) {
+    			tuples.set(k++, array[i++]);
+    		}
+    		while (j < array.length) {
+    			tuples.set(k++, array[j++]);
+    		}
+    	} finally {
+    		cc.releaseParallelWorker();
+    	}
+    }
+    
+    private static long getSizeEstimate(TupleBuffer tb) {
+    	return (long)tb.getRowCount() * tb.getRowSizeEstimate();
+    }
 
     public void setWorkingBuffer(TupleBuffer workingBuffer) {
 		this.workingBuffer = workingBuffer;
@@ -409,6 +664,9 @@ public class SortUtility {
     	activeTupleBuffers.get(0).close();
     	activeTupleBuffers.get(0).setForwardOnly(false);
         this.phase = DONE;
+        if (LogManager.isMessageToBeRecorded(LogConstants.CTX_DQP, MessageLevel.DETAIL)) {
+        	LogManager.logDetail(LogConstants.CTX_DQP, "Sort complete with", runsCreated, "runs,", merges, "merges, and", bytesSpilled, "estimated bytes in intermediate runs"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
         return;
     }
     
@@ -455,8 +713,6 @@ public class SortUtility {
         
         try {
         	while(this.activeTupleBuffers.size() > 1) {    		
-	    		ArrayList<SortedSublist> sublists = new ArrayList<SortedSublist>(activeTupleBuffers.size());
-	            
 	            TupleBuffer merged = createTupleBuffer();
 
 	            desiredSpace = activeTupleBuffers.size() * (long)schemaSize;
@@ -470,22 +726,26 @@ public class SortUtility {
 	            	LogManager.logTrace(org.teiid.logging.LogConstants.CTX_DQP, "Merging", maxSortIndex, "sublists out of", activeTupleBuffers.size()); //$NON-NLS-1$ //$NON-NLS-2$
 	            }
 	        	// initialize the sublists with the min value
+	            TupleBufferTupleSource[] sources = new TupleBufferTupleSource[maxSortIndex];
 	            for(int i = 0; i<maxSortIndex; i++) { 
-	             	TupleBuffer activeID = activeTupleBuffers.get(i);
-	             	SortedSublist sortedSublist = new SortedSublist();
-	            	sortedSublist.its = activeID.createIndexedTupleSource();
-	            	sortedSublist.its.setNoBlocking(true);
-	            	sortedSublist.index = i;
-	            	incrementWorkingTuple(sublists, sortedSublist);
+	            	sources[i] = activeTupleBuffers.get(i).createIndexedTupleSource();
+	            	sources[i].setNoBlocking(true);
 	            }
+	            LoserTree tree = new LoserTree(sources);
+	            merges++;
 	            
 	            boolean checkLimit = maxSortIndex == activeTupleBuffers.size() && rowLimit > -1;
 	            
 	            // iteratively process the lowest tuple
-	            while (sublists.size() > 0) {
-	            	SortedSublist sortedSublist = sublists.remove(sublists.size() - 1);
-	        		merged.addTuple(sortedSublist.tuple);
-	            	incrementWorkingTuple(sublists, sortedSublist);
+	            List<?> previous = null;
+	            List<?> tuple = null;
+	            while ((tuple = tree.peek()) != null) {
+	            	//duplicates across sublists will be adjacent
+	            	if (mode == Mode.SORT || previous == null || comparator.compare(previous, tuple) != 0) {
+	            		merged.addTuple(tuple);
+	            		previous = tuple;
+	            	}
+	            	tree.next();
 	            	
 	            	if (checkLimit && merged.getRowCount() == rowLimit) {
 	            		//early exit for row limit
@@ -499,37 +759,23 @@ public class SortUtility {
             		id.remove();
 	            }
 	            merged.saveBatch();
-	            this.activeTupleBuffers.add(merged);           
+	            this.activeTupleBuffers.add(merged);
+	            if (this.activeTupleBuffers.size() > 1) {
+	            	bytesSpilled += getSizeEstimate(merged);
+	            }
     		}
         } finally {
         	this.bufferManager.releaseBuffers(reserved);
         }
     }
 
-	private void incrementWorkingTuple(ArrayList<SortedSublist> subLists, SortedSublist sortedSublist) throws TeiidComponentException, TeiidProcessingException {
-		while (true) {
-			sortedSublist.tuple = null;
-			sortedSublist.tuple = sortedSublist.its.nextTuple();
-	        if (sortedSublist.tuple == null) {
-	        	return; // done with this sublist
-	        }
-			int index = Collections.binarySearch(subLists, sortedSublist);
-			if (index < 0) {
-				subLists.add(-index - 1, sortedSublist);
-				return;
-			}
-			if (mode == Mode.SORT) {
-				subLists.add(index, sortedSublist);
-				return;
-			} 
-		}
-	} 
-
     public boolean isDistinct() {
     	return this.comparator.isDistinct();
     }
 
 	public void remove() {
+		releaseTopN();
+		this.topN = null;
 		if (workingBuffer != null && source != null) {
 			workingBuffer.remove();
 			workingBuffer = null;
@@ -563,5 +809,27 @@ public class SortUtility {
 	public boolean isDoneReading() {
 		return doneReading;
 	}
+	
+	/**
+	 * @return the number of initial sorted runs created
+	 */
+	public int getRunsCreated() {
+		return runsCreated;
+	}
+	
+	/**
+	 * @return the number of k-way merges performed
+	 */
+	public int getMerges() {
+		return merges;
+	}
+	
+	/**
+	 * @return the estimated bytes of intermediate sorted runs, which
+	 * are subject to spilling to storage by the buffer manager
+	 */
+	public long getBytesSpilled() {
+		return bytesSpilled;
+	}
     
 }
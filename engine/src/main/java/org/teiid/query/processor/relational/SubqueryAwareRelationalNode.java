@@ -36,6 +36,28 @@ import org.teiid.query.sql.symbol.Expression;
 import org.teiid.query.sql.visitor.ValueIteratorProviderCollectorVisitor;
 
 public abstract class SubqueryAwareRelationalNode extends RelationalNode {
+	
+	/**
+	 * Holds the compiled form of node expressions.  The same instance is
+	 * shared by clones so that the compilation is retained with cached plans.
+	 */
+	static final class Compiled<T> {
+		private volatile boolean compiled;
+		private volatile T value;
+		
+		boolean isCompiled() {
+			return compiled;
+		}
+		
+		T getValue() {
+			return value;
+		}
+		
+		void setValue(T value) {
+			this.value = value;
+			this.compiled = true;
+		}
+	}
 
 	private SubqueryAwareEvaluator evaluator;
 
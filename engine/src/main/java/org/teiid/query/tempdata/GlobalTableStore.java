@@ -27,6 +27,7 @@ import org.teiid.api.exception.query.QueryMetadataException;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.query.metadata.TempMetadataID;
+import org.teiid.query.sql.symbol.ElementSymbol;
 import org.teiid.query.sql.symbol.GroupSymbol;
 import org.teiid.query.tempdata.GlobalTableStoreImpl.MatTableInfo;
 
@@ -49,6 +50,18 @@ public interface GlobalTableStore {
 	
 	List<?> updateMatViewRow(String matTableName, List<?> tuple, boolean delete) throws TeiidComponentException;
 
+	/**
+	 * Insert or update the given rows as a single change to the materialized table.
+	 * @return the number of rows applied
+	 */
+	int updateMatViewRows(String matTableName, List<? extends List<?>> tuples) throws TeiidComponentException;
+	
+	/**
+	 * Add a secondary index to the materialized table.  The index is also
+	 * created on subsequent loads.
+	 */
+	void addMatViewIndex(String matTableName, List<ElementSymbol> indexColumns, List<ElementSymbol> includeColumns) throws TeiidComponentException, TeiidProcessingException;
+
 	TempTable createMatTable(String tableName, GroupSymbol group)
 	throws TeiidComponentException, QueryMetadataException, TeiidProcessingException;
 	
@@ -28,6 +28,7 @@ import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -97,6 +98,9 @@ public class GlobalTableStoreImpl implements GlobalTableStore, ReplicatedObject<
 		private long ttl = -1;
 		private boolean valid;
 		private boolean asynch; //sub state of loading
+		private Object incrementalMark; //the high water mark of the last incremental refresh
+		private boolean incrementalRefresh;
+		private Map<List<ElementSymbol>, List<ElementSymbol>> addedIndexes = new LinkedHashMap<List<ElementSymbol>, List<ElementSymbol>>(2);
 		private Map<RequestID, WeakReference<RequestWorkItem>> waiters = new HashMap<RequestID, WeakReference<RequestWorkItem>>(2);
 		
 		protected MatTableInfo() {}
@@ -193,6 +197,45 @@ public class GlobalTableStoreImpl implements GlobalTableStore, ReplicatedObject<
 			waiters.put(waiter.getRequestID(), new WeakReference<RequestWorkItem>(waiter));
 		}
 
+		/**
+		 * Mark the start of an incremental refresh.
+		 * @return false if the table is not loaded or another incremental refresh is in progress
+		 */
+		public synchronized boolean startIncrementalRefresh() {
+			if (state != MatState.LOADED || !valid || incrementalRefresh) {
+				return false;
+			}
+			incrementalRefresh = true;
+			return true;
+		}
+		
+		public synchronized void endIncrementalRefresh(boolean success) {
+			incrementalRefresh = false;
+			if (success) {
+				//the contents are now current with respect to the ttl
+				this.updateTime = System.currentTimeMillis();
+			}
+		}
+		
+		public synchronized Object getIncrementalMark() {
+			return incrementalMark;
+		}
+		
+		public synchronized void setIncrementalMark(Object incrementalMark) {
+			this.incrementalMark = incrementalMark;
+		}
+		
+		synchronized void addIndex(List<ElementSymbol> indexColumns, List<ElementSymbol> includeColumns) {
+			addedIndexes.put(indexColumns, includeColumns);
+		}
+		
+		/**
+		 * @return the indexes added after load, mapped to their include columns
+		 */
+		public synchronized Map<List<ElementSymbol>, List<ElementSymbol>> getAddedIndexes() {
+			return new LinkedHashMap<List<ElementSymbol>, List<ElementSymbol>>(addedIndexes);
+		}
+		
         public synchronized boolean getAndClearAsynch() {
             boolean result = asynch;
             asynch = false;
@@ -419,7 +462,10 @@ public class GlobalTableStoreImpl implements GlobalTableStore, ReplicatedObject<
 	@Override
 	public void loaded(String matTableName, TempTable table) {
 		swapTempTable(matTableName, table);
-		this.getMatTableInfo(matTableName).setState(MatState.LOADED, true);
+		MatTableInfo info = this.getMatTableInfo(matTableName);
+		//the mark is recomputed from the new contents
+		info.setIncrementalMark(null);
+		info.setState(MatState.LOADED, true);
 	}
 	
 	private void swapTempTable(String tempTableName, TempTable tempTable) {
@@ -433,19 +479,58 @@ public class GlobalTableStoreImpl implements GlobalTableStore, ReplicatedObject<
 		if (tempTable != null) {
 			TempMetadataID id = tableStore.getMetadataStore().getTempGroupID(matTableName);
 			synchronized (id) {
-				boolean clone = tempTable.getActive().get() != 0;
-				if (clone) {
-					tempTable = tempTable.clone();
+				//the current version may have been swapped by a concurrent writer
+				tempTable = tableStore.getTempTable(matTableName);
+				List<List<?>> results = new ArrayList<List<?>>(1);
+				TempTable version = tempTable.updateTuples(Collections.<List<?>>singletonList(tuple), delete, results);
+				if (version != tempTable) {
+					swapTempTable(matTableName, version);
 				}
-				List<?> result = tempTable.updateTuple(tuple, delete);
-				if (clone) {
-					swapTempTable(matTableName, tempTable);
-				}
-				return result;
+				return results.get(0);
 			}
 		}
 		return null;
 	}
+	
+	@Override
+	public int updateMatViewRows(String matTableName,
+			List<? extends List<?>> tuples) throws TeiidComponentException {
+		TempTable tempTable = tableStore.getTempTable(matTableName);
+		if (tempTable == null || tuples.isEmpty()) {
+			return 0;
+		}
+		TempMetadataID id = tableStore.getMetadataStore().getTempGroupID(matTableName);
+		synchronized (id) {
+			tempTable = tableStore.getTempTable(matTableName);
+			//at most one new version for the whole batch
+			TempTable version = tempTable.updateTuples(tuples, false, null);
+			if (version != tempTable) {
+				swapTempTable(matTableName, version);
+			}
+			return tuples.size();
+		}
+	}
+
+	@Override
+	public void addMatViewIndex(String matTableName,
+			List<ElementSymbol> indexColumns, List<ElementSymbol> includeColumns)
+			throws TeiidComponentException, TeiidProcessingException {
+		TempMetadataID id = tableStore.getMetadataStore().getTempGroupID(matTableName);
+		if (id == null) {
+			return;
+		}
+		synchronized (id) {
+			TempTable tempTable = tableStore.getTempTable(matTableName);
+			if (tempTable == null) {
+				return;
+			}
+			//build on a clone so that active readers are not affected
+			tempTable = tempTable.clone();
+			tempTable.addIndex(indexColumns, includeColumns, false);
+			swapTempTable(matTableName, tempTable);
+		}
+		getMatTableInfo(matTableName).addIndex(indexColumns, includeColumns);
+	}
 
 	public TempTableStore getTempTableStore() {
 		return this.tableStore;
@@ -457,6 +542,7 @@ public class GlobalTableStoreImpl implements GlobalTableStore, ReplicatedObject<
 		Create create = getCreateCommand(group, true, metadata);
 		TempTable table = tableStore.addTempTable(tableName, create, bufferManager, false, null);
 		table.setUpdatable(false);
+		table.setSnapshotReads(true);
 		CacheHint hint = table.getCacheHint();
 		if (hint != null) {
 			table.setPreferMemory(hint.isPrefersMemory());
@@ -30,7 +30,9 @@ import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -46,8 +48,10 @@ import org.teiid.core.TeiidException;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.core.TeiidRuntimeException;
 import org.teiid.core.types.DataTypeManager;
+import org.teiid.core.types.TransformationException;
 import org.teiid.logging.LogConstants;
 import org.teiid.logging.LogManager;
+import org.teiid.metadata.ColumnStats;
 import org.teiid.query.QueryPlugin;
 import org.teiid.query.eval.Evaluator;
 import org.teiid.query.metadata.TempMetadataID;
@@ -56,11 +60,16 @@ import org.teiid.query.processor.relational.RelationalNode;
 import org.teiid.query.processor.relational.SortUtility;
 import org.teiid.query.processor.relational.SortUtility.Mode;
 import org.teiid.query.sql.lang.CacheHint;
+import org.teiid.query.sql.lang.CompareCriteria;
 import org.teiid.query.sql.lang.Criteria;
+import org.teiid.query.sql.lang.IsNullCriteria;
+import org.teiid.query.sql.lang.MatchCriteria;
 import org.teiid.query.sql.lang.OrderBy;
 import org.teiid.query.sql.lang.SetClauseList;
+import org.teiid.query.sql.lang.SetCriteria;
 import org.teiid.query.sql.symbol.AggregateSymbol;
 import org.teiid.query.sql.symbol.Array;
+import org.teiid.query.sql.symbol.Constant;
 import org.teiid.query.sql.symbol.ElementSymbol;
 import org.teiid.query.sql.symbol.Expression;
 import org.teiid.query.sql.symbol.ExpressionSymbol;
@@ -222,7 +231,7 @@ public class TempTable implements Cloneable, SearchableTable {
 			this.condition = condition;
 			this.project = shouldProject();
 			this.reserved = reserveBuffers();
-			if (updatable) {
+			if (updatable && !snapshotReads) {
 				lock.readLock().lock();
 			}
 		}
@@ -249,7 +258,7 @@ public class TempTable implements Cloneable, SearchableTable {
 		
 		@Override
 		public void closeSource() {
-			if (updatable) {
+			if (updatable && !snapshotReads) {
 				lock.readLock().unlock();
 			}
 			bm.releaseBuffers(reserved);
@@ -380,6 +389,12 @@ public class TempTable implements Cloneable, SearchableTable {
 	private int uniqueColIndex;
 	
 	private AtomicInteger activeReaders = new AtomicInteger();
+	private boolean snapshotReads;
+	
+	//scan tracking is shared by clones
+	private int autoIndexThreshold;
+	private ConcurrentHashMap<ElementSymbol, AtomicInteger> scanCounts = new ConcurrentHashMap<ElementSymbol, AtomicInteger>();
+	private volatile IndexCandidate indexCandidate;
 
 	TempTable(TempMetadataID tid, BufferManager bm, List<ElementSymbol> columns, int primaryKeyLength, String sessionID) {
 		this.tid = tid;
@@ -452,6 +467,11 @@ public class TempTable implements Cloneable, SearchableTable {
 			}
 			clone.tree = tree.clone();
 			clone.activeReaders = new AtomicInteger();
+			if (clone.indexTables != null) {
+				for (TempTable indexClone : clone.indexTables.values()) {
+					indexClone.activeReaders = clone.activeReaders;
+				}
+			}
 			return clone;
 		} catch (CloneNotSupportedException e) {
 			 throw new TeiidRuntimeException(e);
@@ -464,12 +484,77 @@ public class TempTable implements Cloneable, SearchableTable {
 		return activeReaders;
 	}
 	
+	/**
+	 * Use snapshot reads.  Readers pin the version of the table that they start with
+	 * and writers must use {@link #updateTuples(List, boolean, List)} so that pinned
+	 * versions are not modified.
+	 */
+	void setSnapshotReads(boolean snapshotReads) {
+		this.snapshotReads = snapshotReads;
+		if (this.indexTables != null) {
+			for (TempTable index : this.indexTables.values()) {
+				index.snapshotReads = snapshotReads;
+			}
+		}
+	}
+	
+	/**
+	 * Pin this version so that it will not be modified.  The read lock ensures
+	 * that an in progress modification of this version completes first.
+	 */
+	void pin() {
+		lock.readLock().lock();
+		try {
+			activeReaders.incrementAndGet();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	void unpin() {
+		activeReaders.decrementAndGet();
+	}
+	
+	/**
+	 * Apply the updates to this version if it is not pinned, otherwise to a new version
+	 * that shares the unmodified pages.  Writers must be serialized by the caller and
+	 * should make the returned version the current one.
+	 * @param results if not null, the results of {@link #updateTuple(List, boolean)} are added
+	 * @return the version that contains the updates
+	 */
+	TempTable updateTuples(List<? extends List<?>> tuples, boolean remove, List<List<?>> results) throws TeiidComponentException {
+		lock.writeLock().lock();
+		try {
+			if (activeReaders.get() == 0) {
+				for (List<?> tuple : tuples) {
+					List<?> result = updateTuple(tuple, remove);
+					if (results != null) {
+						results.add(result);
+					}
+				}
+				return this;
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+		//the new version is not yet visible, so it will be updated in place
+		return clone().updateTuples(tuples, remove, results);
+	}
+	
 	void addIndex(List<ElementSymbol> indexColumns, boolean unique) throws TeiidComponentException, TeiidProcessingException {
+		addIndex(indexColumns, null, unique);
+	}
+	
+	/**
+	 * Add a secondary index.  The include columns are stored in the index, but are not part of the key,
+	 * so that queries projecting only index, key, and include columns are covered by the index.
+	 */
+	void addIndex(List<ElementSymbol> indexColumns, List<ElementSymbol> includeColumns, boolean unique) throws TeiidComponentException, TeiidProcessingException {
 		List<ElementSymbol> keyColumns = columns.subList(0, tree.getKeyLength());
 		if (keyColumns.equals(indexColumns) || (indexTables != null && indexTables.containsKey(indexColumns))) {
 			return;
 		}
-		TempTable indexTable = createIndexTable(indexColumns, unique);
+		TempTable indexTable = createIndexTable(indexColumns, includeColumns, unique);
 		//TODO: ordered insert optimization
 		TupleSource ts = createTupleSource(indexTable.getColumns(), null, null);
 		indexTable.insert(ts, indexTable.getColumns(), false, false, null);
@@ -477,32 +562,279 @@ public class TempTable implements Cloneable, SearchableTable {
 	}
 
 	private TempTable createIndexTable(List<ElementSymbol> indexColumns,
-			boolean unique) {
+			List<ElementSymbol> includeColumns, boolean unique) {
 		List<ElementSymbol> allColumns = new ArrayList<ElementSymbol>(indexColumns);
 		for (ElementSymbol elementSymbol : columns.subList(0, tree.getKeyLength())) {
 			if (allColumns.indexOf(elementSymbol) < 0) {
 				allColumns.add(elementSymbol);
 			}
 		}
-		TempTable indexTable = new TempTable(new TempMetadataID("idx", Collections.EMPTY_LIST), this.bm, allColumns, allColumns.size(), this.sessionID); //$NON-NLS-1$
+		int keyLength = allColumns.size();
+		if (includeColumns != null) {
+			for (ElementSymbol elementSymbol : includeColumns) {
+				if (allColumns.indexOf(elementSymbol) < 0) {
+					allColumns.add(elementSymbol);
+				}
+			}
+		}
+		TempTable indexTable = new TempTable(new TempMetadataID("idx", Collections.EMPTY_LIST), this.bm, allColumns, keyLength, this.sessionID); //$NON-NLS-1$
 		indexTable.setPreferMemory(this.tree.isPreferMemory());
 		indexTable.lock = this.lock;
+		indexTable.activeReaders = this.activeReaders;
+		indexTable.snapshotReads = this.snapshotReads;
 		if (unique) {
 			indexTable.uniqueColIndex = indexColumns.size();
 		}
 		if (indexTables == null) {
 			indexTables = new LinkedHashMap<List<ElementSymbol>, TempTable>();
-			indexTables.put(indexColumns, indexTable);
 		}
+		indexTables.put(indexColumns, indexTable);
 		indexTable.setUpdatable(this.updatable);
 		return indexTable;
 	}
 	
+	/**
+	 * Record a predicate column that could not use the primary key.  Once the same column
+	 * has been seen for the threshold number of scans it becomes an index candidate.
+	 */
+	private void observeScan(List<? extends Expression> projectedCols, Criteria condition) {
+		if (this.tree.getRowCount() <= 2*this.tree.getPageSize(true)) {
+			return;
+		}
+		ElementSymbol column = null;
+		for (Criteria crit : Criteria.separateCriteriaByAnd(condition)) {
+			Expression ex = null;
+			if (crit instanceof CompareCriteria) {
+				ex = ((CompareCriteria)crit).getLeftExpression();
+			} else if (crit instanceof SetCriteria) {
+				ex = ((SetCriteria)crit).getExpression();
+			} else if (crit instanceof MatchCriteria) {
+				ex = ((MatchCriteria)crit).getLeftExpression();
+			} else if (crit instanceof IsNullCriteria) {
+				ex = ((IsNullCriteria)crit).getExpression();
+			}
+			if (ex instanceof ElementSymbol && this.columnMap.containsKey(ex) && !ex.equals(this.columns.get(0))) {
+				column = (ElementSymbol)ex;
+				break;
+			}
+		}
+		if (column == null) {
+			return;
+		}
+		List<ElementSymbol> indexColumns = Arrays.asList(column);
+		lock.readLock().lock();
+		try {
+			if (this.indexTables != null && this.indexTables.containsKey(indexColumns)) {
+				//the index exists, but was not chosen
+				return;
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		AtomicInteger count = this.scanCounts.get(column);
+		if (count == null) {
+			count = new AtomicInteger();
+			AtomicInteger existing = this.scanCounts.putIfAbsent(column, count);
+			if (existing != null) {
+				count = existing;
+			}
+		}
+		if (count.incrementAndGet() != this.autoIndexThreshold) {
+			return;
+		}
+		List<ElementSymbol> include = null;
+		if (projectedCols.size() <= this.columns.size()/2 && this.columnMap.keySet().containsAll(projectedCols)) {
+			//small projections are made covering
+			include = new ArrayList<ElementSymbol>(projectedCols.size());
+			for (Expression ex : projectedCols) {
+				include.add((ElementSymbol)ex);
+			}
+		}
+		LogManager.logDetail(LogConstants.CTX_DQP, "Scans of", this, "suggest an index on", column, "include", include); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		this.indexCandidate = new IndexCandidate(indexColumns, include);
+	}
+	
+	/**
+	 * Enable the tracking of full scans with predicates so that secondary indexes may be added.
+	 * @param threshold the number of scans with the same predicate column before an index is suggested, or 0 to disable
+	 */
+	void setAutoIndexThreshold(int threshold) {
+		this.autoIndexThreshold = threshold;
+	}
+	
+	/**
+	 * @return the index suggested by scans since the last call, or null
+	 */
+	IndexCandidate pollIndexCandidate() {
+		IndexCandidate result = this.indexCandidate;
+		this.indexCandidate = null;
+		return result;
+	}
+	
+	List<ElementSymbol> getIncludeColumns() {
+		return this.columns.subList(this.tree.getKeyLength(), this.columns.size());
+	}
+	
+	/**
+	 * Gather per column statistics from a sample of the rows and set them on the column metadata
+	 * so that the planner may cost predicates against this table.
+	 * <br>
+	 * The number of distinct values is estimated from the sample with the Duj1 estimator, and
+	 * an equi-depth histogram is computed from the sorted non-null sample values.
+	 */
+	void gatherStatistics(int sampleSize, int buckets) throws TeiidComponentException, TeiidProcessingException {
+		long rowCount = this.tree.getRowCount();
+		if (rowCount == 0 || rowId != null && columns.size() == 1) {
+			return;
+		}
+		int start = rowId != null?1:0;
+		List<ElementSymbol> cols = columns.subList(start, columns.size());
+		//reservoir sample
+		List<List<?>> sample = new ArrayList<List<?>>((int)Math.min(sampleSize, rowCount));
+		Random random = new Random(rowCount);
+		TupleSource ts = createTupleSource(cols, null, null);
+		long seen = 0;
+		try {
+			List<?> tuple = null;
+			while ((tuple = ts.nextTuple()) != null) {
+				if (sample.size() < sampleSize) {
+					sample.add(tuple);
+				} else {
+					long index = (long)(random.nextDouble() * (seen + 1));
+					if (index < sampleSize) {
+						sample.set((int)index, tuple);
+					}
+				}
+				seen++;
+			}
+		} finally {
+			ts.closeSource();
+		}
+		int n = sample.size();
+		for (int i = 0; i < cols.size(); i++) {
+			Object id = cols.get(i).getMetadataID();
+			if (!(id instanceof TempMetadataID)) {
+				continue;
+			}
+			TempMetadataID columnId = (TempMetadataID)id;
+			List<Object> values = new ArrayList<Object>(n);
+			int nulls = 0;
+			for (List<?> tuple : sample) {
+				Object value = tuple.get(i);
+				if (value == null) {
+					nulls++;
+				} else {
+					values.add(value);
+				}
+			}
+			ColumnStats stats = new ColumnStats();
+			stats.setNullValues((long)Math.ceil((double)nulls * rowCount / n));
+			Object[] histogram = null;
+			if (!values.isEmpty() && DataTypeManager.isNonComparable(DataTypeManager.getDataTypeName(columnId.getType()))) {
+				values.clear();
+			}
+			if (!values.isEmpty()) {
+				Collections.sort(values, Constant.COMPARATOR);
+				int distinct = 1;
+				int singletons = 0;
+				int run = 1;
+				for (int j = 1; j <= values.size(); j++) {
+					if (j < values.size() && Constant.COMPARATOR.compare(values.get(j - 1), values.get(j)) == 0) {
+						run++;
+						continue;
+					}
+					if (run == 1) {
+						singletons++;
+					}
+					if (j < values.size()) {
+						distinct++;
+					}
+					run = 1;
+				}
+				long nonNull = rowCount - stats.getNullValues().longValue();
+				double ndv = distinct;
+				if (n < rowCount) {
+					double q = (double)n / rowCount;
+					ndv = n * distinct / (n - singletons + singletons * q);
+				}
+				stats.setDistinctValues((long)Math.max(1, Math.min(nonNull, Math.round(ndv))));
+				int bucketCount = Math.min(buckets, values.size());
+				histogram = new Object[bucketCount + 1];
+				for (int j = 0; j < bucketCount; j++) {
+					histogram[j] = values.get(j * values.size() / bucketCount);
+				}
+				histogram[bucketCount] = values.get(values.size() - 1);
+				try {
+					stats.setMinimumValue((String) DataTypeManager.transformValue(histogram[0], DataTypeManager.DefaultDataClasses.STRING));
+					stats.setMaximumValue((String) DataTypeManager.transformValue(histogram[bucketCount], DataTypeManager.DefaultDataClasses.STRING));
+				} catch (TransformationException e) {
+					//not expected, just leave the range unset
+				}
+			}
+			columnId.setColumnStats(stats, histogram);
+		}
+		LogManager.logDetail(LogConstants.CTX_DQP, "Gathered statistics for", this, "from a sample of", n, "rows"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+	
+	static class IndexCandidate {
+		final List<ElementSymbol> columns;
+		final List<ElementSymbol> include;
+		
+		IndexCandidate(List<ElementSymbol> columns, List<ElementSymbol> include) {
+			this.columns = columns;
+			this.include = include;
+		}
+		
+		@Override
+		public int hashCode() {
+			return columns.hashCode();
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof IndexCandidate && ((IndexCandidate)obj).columns.equals(columns);
+		}
+	}
+	
 	private int reserveBuffers() {
 		return bm.reserveBuffers(leafBatchSize + (tree.getHeight() - 1)*keyBatchSize, BufferReserveMode.FORCE);
 	}
 
 	public TupleSource createTupleSource(final List<? extends Expression> projectedCols, final Criteria condition, OrderBy orderBy) throws TeiidComponentException, TeiidProcessingException {
+		if (!snapshotReads) {
+			return createTupleSourceDirect(projectedCols, condition, orderBy);
+		}
+		pin();
+		boolean success = false;
+		try {
+			final TupleSource ts = createTupleSourceDirect(projectedCols, condition, orderBy);
+			success = true;
+			return new TupleSource() {
+				private boolean closed;
+				
+				@Override
+				public List<?> nextTuple() throws TeiidComponentException,
+						TeiidProcessingException {
+					return ts.nextTuple();
+				}
+				
+				@Override
+				public void closeSource() {
+					ts.closeSource();
+					if (!closed) {
+						closed = true;
+						unpin();
+					}
+				}
+			};
+		} finally {
+			if (!success) {
+				unpin();
+			}
+		}
+	}
+	
+	private TupleSource createTupleSourceDirect(final List<? extends Expression> projectedCols, final Criteria condition, OrderBy orderBy) throws TeiidComponentException, TeiidProcessingException {
 		//special handling for count(*)
 		boolean agg = false;
 		for (Expression singleElementSymbol : projectedCols) {
@@ -519,6 +851,9 @@ public class TempTable implements Cloneable, SearchableTable {
 			orderBy = null;
 		}
 		IndexInfo primary = new IndexInfo(this, projectedCols, condition, orderBy, true);
+		if (this.autoIndexThreshold > 0 && condition != null && primary.valueSet.isEmpty() && primary.lower == null && primary.upper == null) {
+			observeScan(projectedCols, condition);
+		}
 		IndexInfo ii = primary;
 		if (indexTables != null && (condition != null || orderBy != null) && ii.valueSet.size() != 1) {
 			LogManager.logDetail(LogConstants.CTX_DQP, "Considering indexes on table", this, "for query", projectedCols, condition, orderBy); //$NON-NLS-1$ //$NON-NLS-2$
@@ -873,6 +1208,11 @@ public class TempTable implements Cloneable, SearchableTable {
 					for (ElementSymbol es : entry.getKey()) {
 						oos.writeInt(this.columnMap.get(es));
 					}
+					List<ElementSymbol> include = entry.getValue().getIncludeColumns();
+					oos.writeInt(include.size());
+					for (ElementSymbol es : include) {
+						oos.writeInt(this.columnMap.get(es));
+					}
 					entry.getValue().writeTo(oos);
 				}
 			}
@@ -892,7 +1232,12 @@ public class TempTable implements Cloneable, SearchableTable {
 				int colIndex = ois.readInt();
 				indexColumns.add(this.columns.get(colIndex));
 			}
-			TempTable tt = this.createIndexTable(indexColumns, unique);
+			int numInclude = ois.readInt();
+			ArrayList<ElementSymbol> includeColumns = new ArrayList<ElementSymbol>(numInclude);
+			for (int j = 0; j < numInclude; j++) {
+				includeColumns.add(this.columns.get(ois.readInt()));
+			}
+			TempTable tt = this.createIndexTable(indexColumns, includeColumns, unique);
 			tt.readFrom(ois);
 		}
 	}
@@ -917,8 +1262,12 @@ public class TempTable implements Cloneable, SearchableTable {
 			List<?> result = tree.insert(tuple, InsertMode.UPDATE, -1);
 			if (indexTables != null) {
 				for (TempTable index : this.indexTables.values()) {
-					tuple = RelationalNode.projectTuple(RelationalNode.getProjectionIndexes(index.getColumnMap(), index.columns), tuple);
-					index.tree.insert(tuple, InsertMode.UPDATE, -1);
+					int[] projection = RelationalNode.getProjectionIndexes(index.getColumnMap(), index.columns);
+					if (result != null) {
+						//the indexed values may have changed
+						index.tree.remove(RelationalNode.projectTuple(projection, result));
+					}
+					index.tree.insert(RelationalNode.projectTuple(projection, tuple), InsertMode.UPDATE, -1);
 				}
 			}
 			tid.getTableData().dataModified(1);
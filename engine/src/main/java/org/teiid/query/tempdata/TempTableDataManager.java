@@ -24,6 +24,7 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
@@ -41,6 +42,7 @@ import org.teiid.common.buffer.BufferManager;
 import org.teiid.common.buffer.TupleBuffer;
 import org.teiid.common.buffer.TupleSource;
 import org.teiid.core.CoreConstants;
+import org.teiid.core.TeiidException;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.core.TeiidRuntimeException;
@@ -57,12 +59,14 @@ import org.teiid.dqp.internal.process.SessionAwareCache.CacheID;
 import org.teiid.dqp.internal.process.TupleSourceCache;
 import org.teiid.events.EventDistributor;
 import org.teiid.language.SQLConstants;
+import org.teiid.language.SQLConstants.NonReserved;
 import org.teiid.language.SQLConstants.Reserved;
 import org.teiid.logging.LogConstants;
 import org.teiid.logging.LogManager;
 import org.teiid.metadata.FunctionMethod.Determinism;
 import org.teiid.query.QueryPlugin;
 import org.teiid.query.eval.Evaluator;
+import org.teiid.query.metadata.MaterializationMetadataRepository;
 import org.teiid.query.metadata.QueryMetadataInterface;
 import org.teiid.query.metadata.TempMetadataAdapter;
 import org.teiid.query.metadata.TempMetadataID;
@@ -121,6 +125,7 @@ public class TempTableDataManager implements ProcessorDataManager {
 		
 	}
 	
+	private static final int STATISTICS_BUCKETS = 32;
 	private static final String REFRESHMATVIEWROW = ".refreshmatviewrow"; //$NON-NLS-1$
 	private static final String REFRESHMATVIEWROWS = ".refreshmatviewrows"; //$NON-NLS-1$
 	private static final String REFRESHMATVIEW = ".refreshmatview"; //$NON-NLS-1$
@@ -358,6 +363,15 @@ public class TempTableDataManager implements ProcessorDataManager {
 			String matTableName = metadata.getFullName(matTableId);
 			LogManager.logDetail(LogConstants.CTX_MATVIEWS, "processing refreshmatview for", matViewName); //$NON-NLS-1$
 			boolean invalidate = Boolean.TRUE.equals(((Constant)proc.getParameter(3).getExpression()).getValue());
+			if (!invalidate) {
+				String incrementalColumn = metadata.getExtensionProperty(groupID, MaterializationMetadataRepository.MATVIEW_INCREMENTAL_COLUMN, false);
+				if (incrementalColumn != null) {
+					TupleSource ts = refreshMatViewIncremental(context, metadata, groupID, globalStore, matViewName, matTableName, incrementalColumn);
+					if (ts != null) {
+						return ts;
+					}
+				}
+			}
 			boolean needsLoading = globalStore.getMatTableInfo(matTableName).getAndClearAsynch(); 
 			if (!needsLoading) {
 			    needsLoading = globalStore.needsLoading(matTableName, globalStore.getAddress(), true, true, invalidate);
@@ -522,6 +536,136 @@ public class TempTableDataManager implements ProcessorDataManager {
 		};
 	}
 
+	/**
+	 * Apply the rows changed since the last refresh based upon a monotonically increasing
+	 * timestamp or version column of the view.
+	 * <br>
+	 * Rows at or above the high water mark are re-queried from the sources and upserted in batches.
+	 * Deletes are not detected, they require a full refresh or refreshMatViewRow(s).
+	 * @return null if the incremental refresh is not possible and a full load should be used instead
+	 */
+	private TupleSource refreshMatViewIncremental(final CommandContext context,
+			final QueryMetadataInterface metadata, final Object groupID,
+			final GlobalTableStore globalStore, final String matViewName, final String matTableName,
+			String incrementalColumn) throws TeiidComponentException, QueryMetadataException {
+		TempTable tempTable = globalStore.getTempTable(matTableName);
+		if (tempTable == null || !tempTable.isUpdatable()) {
+			return null;
+		}
+		Object columnId = null;
+		try {
+			columnId = metadata.getElementID(matViewName + '.' + incrementalColumn);
+		} catch (QueryMetadataException e) {
+			LogManager.logWarning(LogConstants.CTX_MATVIEWS, e, e.getMessage());
+			return null;
+		}
+		final int columnIndex = metadata.getElementIDsInGroupID(groupID).indexOf(columnId);
+		if (columnIndex < 0) {
+			return null;
+		}
+		final MatTableInfo info = globalStore.getMatTableInfo(matTableName);
+		if (!info.startIncrementalRefresh()) {
+			return null;
+		}
+		String columnName = new ElementSymbol(metadata.getFullName(columnId)).toString();
+		final String markQuery = Reserved.SELECT + ' ' + NonReserved.MAX + '(' + columnName + ") " + Reserved.FROM + ' ' + matViewName; //$NON-NLS-1$
+		//use >= as rows with the same value as the mark may have been committed after the last refresh
+		final String deltaQuery = Reserved.SELECT + " * " + Reserved.FROM + ' ' + matViewName + ' ' + Reserved.WHERE + ' ' + //$NON-NLS-1$
+			columnName + " >= ? " + Reserved.OPTION + ' ' + Reserved.NOCACHE; //$NON-NLS-1$
+		final String fullQuery = Reserved.SELECT + " * " + Reserved.FROM + ' ' + matViewName + ' ' + Reserved.OPTION + ' ' + Reserved.NOCACHE; //$NON-NLS-1$
+		final int batchSize = context.getBufferManager().getProcessorBatchSize();
+		
+		return new ProxyTupleSource() {
+			private QueryProcessor qp;
+			private TupleSource ts;
+			private boolean markDetermined;
+			private Object mark = info.getIncrementalMark();
+			private Object newMark;
+			private List<List<?>> pending = new ArrayList<List<?>>(batchSize);
+			private int count;
+			private boolean success;
+			
+			@Override
+			protected TupleSource createTupleSource()
+					throws TeiidComponentException,
+					TeiidProcessingException {
+				if (mark == null && !markDetermined) {
+					//read the mark from the current materialized contents, so no recursion group is used
+					if (qp == null) {
+						qp = context.getQueryProcessorFactory().createQueryProcessor(markQuery, null, context);
+						ts = new BatchCollector.BatchProducerTupleSource(qp);
+					}
+					List<?> tuple = ts.nextTuple();
+					if (tuple != null) {
+						mark = tuple.get(0);
+					}
+					close();
+					markDetermined = true;
+				}
+				if (qp == null) {
+					LogManager.logInfo(LogConstants.CTX_MATVIEWS, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID31263, matViewName, mark));
+					if (mark == null) {
+						qp = context.getQueryProcessorFactory().createQueryProcessor(fullQuery, matViewName.toUpperCase(), context);
+					} else {
+						qp = context.getQueryProcessorFactory().createQueryProcessor(deltaQuery, matViewName.toUpperCase(), context, mark);
+					}
+					ts = new BatchCollector.BatchProducerTupleSource(qp);
+					newMark = mark;
+				}
+				while (true) {
+					List<?> tuple = ts.nextTuple();
+					if (tuple == null) {
+						break;
+					}
+					Object value = tuple.get(columnIndex);
+					if (value != null && (newMark == null || Constant.COMPARATOR.compare(value, newMark) > 0)) {
+						newMark = value;
+					}
+					pending.add(new ArrayList<Object>(tuple)); //ensure the list is serializable
+					if (pending.size() >= batchSize) {
+						apply();
+					}
+				}
+				apply();
+				close();
+				info.setIncrementalMark(newMark);
+				success = true;
+				LogManager.logDetail(LogConstants.CTX_MATVIEWS, "incrementally refreshed", count, "rows for", matViewName, "new mark", newMark); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				return CollectionTupleSource.createUpdateCountTupleSource(count);
+			}
+			
+			private void apply() throws TeiidComponentException {
+				if (pending.isEmpty()) {
+					return;
+				}
+				count += globalStore.updateMatViewRows(matTableName, pending);
+				if (eventDistributor != null) {
+					String schema = metadata.getName(metadata.getModelID(groupID));
+					String name = metadata.getName(groupID);
+					for (List<?> tuple : pending) {
+						eventDistributor.updateMatViewRow(context.getVdbName(), context.getVdbVersion(), schema, name, tuple, false);
+					}
+				}
+				pending = new ArrayList<List<?>>(batchSize);
+			}
+			
+			private void close() {
+				if (qp != null) {
+					qp.closeProcessing();
+				}
+				qp = null;
+				ts = null;
+			}
+			
+			@Override
+			public void closeSource() {
+				super.closeSource();
+				close();
+				info.endIncrementalRefresh(success);
+			}
+		};
+	}
+
 	private Object validateMatView(QueryMetadataInterface metadata,	String viewName) throws TeiidComponentException,
 			TeiidProcessingException {
 		try {
@@ -601,6 +745,10 @@ public class TempTableDataManager implements ProcessorDataManager {
 					TempTable table = globalStore.getTempTable(tableName);
 					context.accessedDataObject(group.getMetadataID());
 					TupleSource result = table.createTupleSource(query.getProjectedSymbols(), query.getCriteria(), query.getOrderBy());
+					TempTable.IndexCandidate candidate = table.pollIndexCandidate();
+					if (candidate != null) {
+						addIndex(context, globalStore, tableName, candidate);
+					}
 					cancelMoreWork();
 					return result;
 				}
@@ -697,6 +845,32 @@ public class TempTableDataManager implements ProcessorDataManager {
 		return workContext;
 	}
 
+	/**
+	 * Add an index suggested by observed scans.  The index is built off of the request thread if possible.
+	 */
+	private void addIndex(CommandContext context, final GlobalTableStore globalStore, final String tableName, final TempTable.IndexCandidate candidate) {
+		LogManager.logInfo(LogConstants.CTX_MATVIEWS, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID31264, tableName, candidate.columns, candidate.include));
+		Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					globalStore.addMatViewIndex(tableName, candidate.columns, candidate.include);
+				} catch (TeiidException e) {
+					LogManager.logWarning(LogConstants.CTX_MATVIEWS, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID31265, tableName));
+				}
+			}
+		};
+		if (context.getExecutor() == null) {
+			task.run();
+			return;
+		}
+		try {
+			context.getExecutor().execute(task);
+		} catch (RejectedExecutionException e) {
+			LogManager.logDetail(LogConstants.CTX_MATVIEWS, e, "could not schedule index creation for", tableName); //$NON-NLS-1$
+		}
+	}
+
 	private TupleSource loadGlobalTable(final CommandContext context,
 			final GroupSymbol group, final String tableName, final GlobalTableStore globalStore)
 			throws TeiidComponentException, TeiidProcessingException {
@@ -737,6 +911,15 @@ public class TempTableDataManager implements ProcessorDataManager {
 						List<ElementSymbol> columns = GlobalTableStoreImpl.resolveIndex(metadata, allColumns, key);
 						table.addIndex(columns, true);
 					}
+					//recreate the indexes added from observed scans
+					for (Map.Entry<List<ElementSymbol>, List<ElementSymbol>> entry : globalStore.getMatTableInfo(tableName).getAddedIndexes().entrySet()) {
+						table.addIndex(entry.getKey(), entry.getValue(), false);
+					}
+					table.setAutoIndexThreshold(context.getOptions().getMatViewAutoIndexThreshold());
+					int sampleSize = context.getOptions().getMatViewStatisticsSampleSize();
+					if (sampleSize > 0) {
+						table.gatherStatistics(sampleSize, STATISTICS_BUCKETS);
+					}
 					CacheHint hint = table.getCacheHint();
 					if (hint != null && table.getPkLength() > 0) {
 						table.setUpdatable(hint.isUpdatable(false));
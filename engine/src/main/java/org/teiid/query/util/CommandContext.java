@@ -31,6 +31,7 @@ import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
@@ -59,6 +60,7 @@ import org.teiid.dqp.internal.process.SessionAwareCache.CacheID;
 import org.teiid.dqp.internal.process.TupleSourceCache;
 import org.teiid.dqp.message.RequestID;
 import org.teiid.dqp.service.TransactionContext;
+import org.teiid.dqp.service.TransactionContext.Scope;
 import org.teiid.dqp.service.TransactionService;
 import org.teiid.jdbc.ConnectionImpl;
 import org.teiid.jdbc.LocalProfile;
@@ -172,6 +174,7 @@ public class CommandContext implements Cloneable, org.teiid.CommandContext {
 		private TransactionContext transactionContext;
 		private TransactionService transactionService;
 		private Executor executor = ExecutorUtils.getDirectExecutor();
+		private AtomicInteger parallelWorkers = new AtomicInteger();
 		Map<Object, List<ReusableExecution<?>>> reusableExecutions;
 	    Set<CommandListener> commandListeners = null;
 	    private LRUCache<String, DecimalFormat> decimalFormatCache;
@@ -263,8 +266,11 @@ public class CommandContext implements Cloneable, org.teiid.CommandContext {
     }
     
     public void setDeterminismLevel(Determinism level) {
-    	if (determinismLevel[0] == null || level.compareTo(determinismLevel[0]) < 0) {
-    		determinismLevel[0] = level;
+    	//may be updated concurrently by exchange workers
+    	synchronized (determinismLevel) {
+	    	if (determinismLevel[0] == null || level.compareTo(determinismLevel[0]) < 0) {
+	    		determinismLevel[0] = level;
+	    	}
     	}
     }
     
@@ -722,6 +728,42 @@ public class CommandContext implements Cloneable, org.teiid.CommandContext {
 		this.globalState.executor = e;
 	}
 	
+	/**
+	 * Reserve a worker for processing part of the plan on the executor.
+	 * The request thread counts against the {@link Options#getMaxParallelism()} limit.
+	 * <br>
+	 * No worker is reserved while a transaction is active as the transaction
+	 * is only associated with the request thread.
+	 * @return true if the worker was reserved and should be released with {@link #releaseParallelWorker()}
+	 */
+	public boolean reserveParallelWorker() {
+		if (isInTransaction()) {
+			return false;
+		}
+		int max = getOptions().getMaxParallelism() - 1;
+		while (true) {
+			int current = this.globalState.parallelWorkers.get();
+			if (current >= max) {
+				return false;
+			}
+			if (this.globalState.parallelWorkers.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+	
+	public void releaseParallelWorker() {
+		this.globalState.parallelWorkers.decrementAndGet();
+	}
+	
+	/**
+	 * @return true if there is an active user, local, or request scoped transaction
+	 */
+	public boolean isInTransaction() {
+		TransactionContext tc = getTransactionContext();
+		return tc != null && tc.getTransactionType() != Scope.NONE;
+	}
+	
 	public ReusableExecution<?> getReusableExecution(Object key) {
 		synchronized (this.globalState) {
 			if (this.globalState.reusableExecutions == null) {
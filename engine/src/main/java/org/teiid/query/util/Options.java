@@ -37,6 +37,17 @@ public class Options {
 	public static final String ASSUME_MATCHING_COLLATION = "org.teiid.assumeMatchingCollation"; //$NON-NLS-1$
 	public static final String AGGRESSIVE_JOIN_GROUPING = "org.teiid.aggressiveJoinGrouping"; //$NON-NLS-1$
 	public static final String MAX_SESSION_BUFFER_SIZE_ESTIMATE = "org.teiid.maxSessionBufferSizeEstimate"; //$NON-NLS-1$
+	public static final String HASH_JOIN = "org.teiid.hashJoin"; //$NON-NLS-1$
+	public static final String HASH_AGGREGATE = "org.teiid.hashAggregate"; //$NON-NLS-1$
+	public static final String VECTORIZED_EVALUATION = "org.teiid.vectorizedEvaluation"; //$NON-NLS-1$
+	public static final String COMPILED_EXPRESSIONS = "org.teiid.compiledExpressions"; //$NON-NLS-1$
+	public static final String MAX_PARALLELISM = "org.teiid.maxParallelism"; //$NON-NLS-1$
+	public static final String MAT_VIEW_AUTO_INDEX_THRESHOLD = "org.teiid.matViewAutoIndexThreshold"; //$NON-NLS-1$
+	public static final String MAT_VIEW_STATISTICS_SAMPLE_SIZE = "org.teiid.matViewStatisticsSampleSize"; //$NON-NLS-1$
+	public static final String SEMANTIC_RESULT_CACHE = "org.teiid.semanticResultCache"; //$NON-NLS-1$
+	public static final String AUTO_RESULT_CACHE = "org.teiid.autoResultCache"; //$NON-NLS-1$
+	public static final String AUTO_RESULT_CACHE_MAX_BYTES = "org.teiid.autoResultCacheMaxBytes"; //$NON-NLS-1$
+	public static final String AUTO_PARAMETERIZE = "org.teiid.autoParameterize"; //$NON-NLS-1$
 
 	private Properties properties;
 	private boolean subqueryUnnestDefault = false;
@@ -49,6 +60,17 @@ public class Options {
 	private boolean assumeMatchingCollation = true;
 	private boolean aggressiveJoinGrouping = true;
 	private long maxSessionBufferSizeEstimate = Long.MAX_VALUE;
+	private boolean hashJoin;
+	private boolean hashAggregate;
+	private boolean vectorizedEvaluation;
+	private boolean compiledExpressions;
+	private int maxParallelism = 1;
+	private int matViewAutoIndexThreshold = 0;
+	private int matViewStatisticsSampleSize = 0;
+	private boolean semanticResultCache;
+	private boolean autoResultCache;
+	private long autoResultCacheMaxBytes = 1 << 26;
+	private boolean autoParameterize;
 	
 	public Properties getProperties() {
 		return properties;
@@ -189,4 +211,147 @@ public class Options {
 	public long getMaxSessionBufferSizeEstimate() {
         return maxSessionBufferSizeEstimate;
     }
+	
+	public boolean isHashJoin() {
+		return hashJoin;
+	}
+	
+	public void setHashJoin(boolean hashJoin) {
+		this.hashJoin = hashJoin;
+	}
+	
+	public Options hashJoin(boolean b) {
+		this.hashJoin = b;
+		return this;
+	}
+	
+	public boolean isHashAggregate() {
+		return hashAggregate;
+	}
+	
+	public void setHashAggregate(boolean hashAggregate) {
+		this.hashAggregate = hashAggregate;
+	}
+	
+	public Options hashAggregate(boolean b) {
+		this.hashAggregate = b;
+		return this;
+	}
+	
+	public boolean isVectorizedEvaluation() {
+		return vectorizedEvaluation;
+	}
+	
+	public void setVectorizedEvaluation(boolean vectorizedEvaluation) {
+		this.vectorizedEvaluation = vectorizedEvaluation;
+	}
+	
+	public Options vectorizedEvaluation(boolean b) {
+		this.vectorizedEvaluation = b;
+		return this;
+	}
+	
+	public boolean isCompiledExpressions() {
+		return compiledExpressions;
+	}
+	
+	public void setCompiledExpressions(boolean compiledExpressions) {
+		this.compiledExpressions = compiledExpressions;
+	}
+	
+	public Options compiledExpressions(boolean b) {
+		this.compiledExpressions = b;
+		return this;
+	}
+	
+	public int getMaxParallelism() {
+		return maxParallelism;
+	}
+	
+	public void setMaxParallelism(int maxParallelism) {
+		this.maxParallelism = maxParallelism;
+	}
+	
+	public Options maxParallelism(int i) {
+		this.maxParallelism = i;
+		return this;
+	}
+	
+	public int getMatViewAutoIndexThreshold() {
+		return matViewAutoIndexThreshold;
+	}
+	
+	public void setMatViewAutoIndexThreshold(int matViewAutoIndexThreshold) {
+		this.matViewAutoIndexThreshold = matViewAutoIndexThreshold;
+	}
+	
+	public Options matViewAutoIndexThreshold(int i) {
+		this.matViewAutoIndexThreshold = i;
+		return this;
+	}
+	
+	public int getMatViewStatisticsSampleSize() {
+		return matViewStatisticsSampleSize;
+	}
+	
+	public void setMatViewStatisticsSampleSize(int matViewStatisticsSampleSize) {
+		this.matViewStatisticsSampleSize = matViewStatisticsSampleSize;
+	}
+	
+	public Options matViewStatisticsSampleSize(int i) {
+		this.matViewStatisticsSampleSize = i;
+		return this;
+	}
+	
+	public boolean isSemanticResultCache() {
+		return semanticResultCache;
+	}
+	
+	public void setSemanticResultCache(boolean semanticResultCache) {
+		this.semanticResultCache = semanticResultCache;
+	}
+	
+	public Options semanticResultCache(boolean b) {
+		this.semanticResultCache = b;
+		return this;
+	}
+	
+	public boolean isAutoResultCache() {
+		return autoResultCache;
+	}
+	
+	public void setAutoResultCache(boolean autoResultCache) {
+		this.autoResultCache = autoResultCache;
+	}
+	
+	public Options autoResultCache(boolean b) {
+		this.autoResultCache = b;
+		return this;
+	}
+	
+	public long getAutoResultCacheMaxBytes() {
+		return autoResultCacheMaxBytes;
+	}
+	
+	public void setAutoResultCacheMaxBytes(long autoResultCacheMaxBytes) {
+		this.autoResultCacheMaxBytes = autoResultCacheMaxBytes;
+	}
+	
+	public Options autoResultCacheMaxBytes(long b) {
+		this.autoResultCacheMaxBytes = b;
+		return this;
+	}
+	
+	public boolean isAutoParameterize() {
+		return autoParameterize;
+	}
+	
+	public void setAutoParameterize(boolean autoParameterize) {
+		this.autoParameterize = autoParameterize;
+	}
+	
+	public Options autoParameterize(boolean b) {
+		this.autoParameterize = b;
+		return this;
+	}
 }
@@ -0,0 +1,87 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.common.buffer;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.teiid.core.types.DataTypeManager;
+
+@SuppressWarnings("nls")
+public class TestColumnBatch {
+
+	private static final Class<?>[] TYPES = new Class<?>[] {DataTypeManager.DefaultDataClasses.INTEGER,
+		DataTypeManager.DefaultDataClasses.LONG, DataTypeManager.DefaultDataClasses.DOUBLE, DataTypeManager.DefaultDataClasses.STRING};
+
+	@Test public void testRoundTrip() {
+		List<List<?>> rows = new ArrayList<List<?>>();
+		for (int i = 0; i < 150; i++) {
+			rows.add(Arrays.asList(i%5==0?null:i, i%7==0?null:(long)i*1000, i%11==0?null:i/3.0, i%2==0?null:"a" + i));
+		}
+		TupleBatch batch = new TupleBatch(11, rows);
+		batch.setTerminationFlag(true);
+		ColumnBatch cb = ColumnBatch.fromTupleBatch(batch, TYPES);
+		assertEquals(150, cb.getRowCount());
+		assertEquals(11, cb.getBeginRow());
+		assertTrue(cb.isPrimitive(0));
+		assertTrue(cb.isPrimitive(2));
+		assertFalse(cb.isPrimitive(3));
+
+		for (int i = 0; i < 150; i++) {
+			assertEquals(i%5==0, cb.isNull(i, 0));
+			assertEquals(i%7==0, cb.isNull(i, 1));
+			assertEquals(i%11==0, cb.isNull(i, 2));
+			assertEquals(i%2==0, cb.isNull(i, 3));
+			if (i%5 != 0) {
+				assertEquals(i, cb.getInt(i, 0));
+				assertEquals(i, cb.getIntColumn(0)[i]);
+			}
+			if (i%7 != 0) {
+				assertEquals(i*1000l, cb.getLong(i, 1));
+			}
+			if (i%11 != 0) {
+				assertEquals(i/3.0, cb.getDouble(i, 2), 0);
+			}
+			assertEquals(rows.get(i), cb.getTuple(i));
+		}
+
+		TupleBatch result = cb.toTupleBatch();
+		assertEquals(rows, result.getTuples());
+		assertEquals(11, result.getBeginRow());
+		assertTrue(result.getTerminationFlag());
+	}
+
+	@Test public void testSetValue() {
+		ColumnBatch cb = new ColumnBatch(1, TYPES, 70);
+		assertTrue(cb.isNull(65, 0));
+		cb.setValue(65, 0, 3);
+		assertFalse(cb.isNull(65, 0));
+		assertEquals(3, cb.getValue(65, 0));
+		assertTrue(cb.isNull(64, 0));
+		cb.setNull(65, 0);
+		assertNull(cb.getValue(65, 0));
+		cb.setValue(0, 3, "x");
+		assertEquals("x", cb.getObjectColumn(3)[0]);
+	}
+
+}
@@ -64,6 +64,31 @@ public class TestBufferManagerImpl {
         assertEquals(24576, bufferManager.reserveBuffers(1024000, BufferReserveMode.NO_WAIT));
     }
     
+    @Test public void testAdaptiveReserve() throws Exception {
+        BufferManagerImpl bufferManager = new BufferManagerImpl();
+        bufferManager.setCache(new MemoryStorageManager());
+        bufferManager.setMaxReserveKB(1024);
+        bufferManager.initialize();
+        bufferManager.setAdaptiveReserve(true);
+        
+        bufferManager.adaptReserve(.9);
+        assertEquals(960, bufferManager.getMaxReserveKB());
+        assertEquals(960<<10, bufferManager.reserveBatchBytes.get());
+        for (int i = 0; i < 20; i++) {
+            bufferManager.adaptReserve(.9);
+        }
+        //bounded by 1/4 of the initial value
+        assertEquals(256, bufferManager.getMaxReserveKB());
+        //no change
+        bufferManager.adaptReserve(.7);
+        assertEquals(256, bufferManager.getMaxReserveKB());
+        for (int i = 0; i < 20; i++) {
+            bufferManager.adaptReserve(.1);
+        }
+        assertEquals(1024, bufferManager.getMaxReserveKB());
+        assertEquals(1024<<10, bufferManager.reserveBatchBytes.get());
+    }
+    
     @Test public void testLargeReserve() throws Exception {
         BufferManagerImpl bufferManager = new BufferManagerImpl();
         bufferManager.setCache(new MemoryStorageManager());
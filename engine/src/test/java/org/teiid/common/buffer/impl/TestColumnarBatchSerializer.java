@@ -0,0 +1,104 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.common.buffer.impl;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.teiid.core.types.DataTypeManager;
+
+@SuppressWarnings("nls")
+public class TestColumnarBatchSerializer {
+
+	private List<List<Object>> helpRoundTrip(ColumnarBatchSerializer serializer, String[] types, List<List<?>> batch) throws Exception {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(baos);
+		serializer.writeBatch(oos, types, batch);
+		oos.close();
+		ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
+		List<List<Object>> result = serializer.readBatch(ois, types);
+		assertEquals(batch, result);
+		return result;
+	}
+
+	@Test public void testRoundTrip() throws Exception {
+		String[] types = new String[] {DataTypeManager.DefaultDataTypes.INTEGER, DataTypeManager.DefaultDataTypes.STRING,
+				DataTypeManager.DefaultDataTypes.LONG, DataTypeManager.DefaultDataTypes.BIG_DECIMAL, DataTypeManager.DefaultDataTypes.TIMESTAMP,
+				DataTypeManager.DefaultDataTypes.BOOLEAN, DataTypeManager.DefaultDataTypes.DOUBLE, DataTypeManager.DefaultDataTypes.DATE,
+				DataTypeManager.DefaultDataTypes.STRING, DataTypeManager.DefaultDataTypes.CHAR};
+		List<List<?>> batch = new ArrayList<List<?>>();
+		for (int i = 0; i < 100; i++) {
+			Timestamp ts = new Timestamp(1000000000000L + i * 1000);
+			ts.setNanos(i);
+			batch.add(Arrays.asList(i%7==0?null:i*3, "value" + (i%5), i%2==0?Long.MIN_VALUE:Long.MAX_VALUE,
+					new BigDecimal(i), ts, i%3==0, i/3.0, new Date(86400000L * i), i%11==0?null:"unique\u0000\u00e9\u20ac" + i, (char)('a' + i%26)));
+		}
+		helpRoundTrip(new ColumnarBatchSerializer(), types, batch);
+	}
+
+	@Test public void testAllNulls() throws Exception {
+		String[] types = new String[] {DataTypeManager.DefaultDataTypes.INTEGER, DataTypeManager.DefaultDataTypes.OBJECT};
+		List<List<?>> batch = new ArrayList<List<?>>();
+		for (int i = 0; i < 10; i++) {
+			batch.add(Arrays.asList(null, null));
+		}
+		helpRoundTrip(new ColumnarBatchSerializer(), types, batch);
+	}
+
+	@Test public void testCompression() throws Exception {
+		String[] types = new String[] {DataTypeManager.DefaultDataTypes.INTEGER, DataTypeManager.DefaultDataTypes.STRING};
+		List<List<?>> batch = new ArrayList<List<?>>();
+		for (int i = 0; i < 1000; i++) {
+			batch.add(Arrays.asList(i, "a somewhat long repeated value " + (i%2)));
+		}
+		ColumnarBatchSerializer serializer = new ColumnarBatchSerializer();
+		helpRoundTrip(serializer, types, batch);
+		assertTrue(serializer.getBytesCompressed() < serializer.getBytesEncoded());
+		//sorted ints should be delta encoded with 0 bits
+		assertTrue(serializer.getBytesEncoded() < 300);
+	}
+
+	@Test public void testCompressRandom() throws Exception {
+		Random r = new Random(1);
+		for (int length : new int[] {0, 3, 100, 70000}) {
+			byte[] bytes = new byte[length];
+			for (int i = 0; i < length; i++) {
+				bytes[i] = (byte)(r.nextInt(4));
+			}
+			byte[] compressed = new byte[length + length/255 + 16];
+			int compressedLength = ColumnarBatchSerializer.compress(bytes, length, compressed);
+			byte[] result = new byte[length];
+			ColumnarBatchSerializer.decompress(compressed, compressedLength, result);
+			assertArrayEquals(bytes, result);
+		}
+	}
+
+}
@@ -120,6 +120,39 @@ public class TestFileStorageManager {
         assertEquals(1000, sm.getUsedBufferSpace());
     }
     
+    @Test public void testMappedReadWrite() throws Exception {
+    	FileStorageManager sm = getStorageManager(null, null);
+    	sm.setMappedWindowSize(1000);
+        FileStore store = sm.createFileStore("0");
+        assertEquals(-1, store.read(0, new byte[1], 0, 1));
+        //spans multiple windows
+        byte[] expectedBytes = writeBytes(store, 500);
+        assertEquals(2548, sm.getUsedBufferSpace());
+        assertEquals(3, sm.getMappedWindows());
+        byte[] bytesRead = new byte[2048];
+        store.readFully(500, bytesRead, 0, bytesRead.length);
+        assertArrayEquals(expectedBytes, bytesRead);
+        //the tail window is remapped
+        byte[] moreBytes = writeBytes(store);
+        bytesRead = new byte[2048];
+        store.readFully(2548, bytesRead, 0, bytesRead.length);
+        assertArrayEquals(moreBytes, bytesRead);
+        assertEquals(-1, store.read(4596, new byte[1], 0, 1));
+        
+        store.setLength(200);
+        assertEquals(200, store.getLength());
+        assertEquals(200, sm.getUsedBufferSpace());
+        assertEquals(0, sm.getMappedWindows());
+        //the unmapped windows are mapped again
+        writeBytes(store, 200);
+        assertEquals(2248, store.getLength());
+        assertEquals(3, sm.getMappedWindows());
+        store.remove();
+        assertEquals(0, store.getLength());
+        assertEquals(0, sm.getUsedBufferSpace());
+        assertEquals(0, sm.getMappedWindows());
+    }
+    
     @Test public void testFlush() throws Exception {
     	FileStorageManager sm = getStorageManager(null, null);
     	FileStore store = sm.createFileStore("0");
@@ -0,0 +1,132 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.common.buffer.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.teiid.common.buffer.BaseCacheEntry;
+import org.teiid.common.buffer.CacheKey;
+
+public class TestTinyLfuEvictionQueue {
+	
+	private static BaseCacheEntry entry(long id) {
+		return new BaseCacheEntry(new CacheKey(id, 0, 0));
+	}
+	
+	@Test public void testScanResistance() {
+		AtomicLong clock = new AtomicLong();
+		TinyLfuEvictionQueue<BaseCacheEntry> q = new TinyLfuEvictionQueue<BaseCacheEntry>(clock);
+		List<BaseCacheEntry> hot = new ArrayList<BaseCacheEntry>();
+		for (int i = 0; i < 100; i++) {
+			BaseCacheEntry entry = entry(i);
+			hot.add(entry);
+			assertTrue(q.add(entry));
+		}
+		for (int j = 0; j < 5; j++) {
+			for (BaseCacheEntry entry : hot) {
+				clock.incrementAndGet();
+				q.touch(entry);
+			}
+			q.firstEntry(false);
+		}
+		//scan through many entries that are only used once
+		for (int i = 100; i < 1100; i++) {
+			q.add(entry(i));
+			while (q.getSize() > 100) {
+				assertNotNull(q.firstEntry(true));
+			}
+		}
+		int retained = 0;
+		for (BaseCacheEntry entry : hot) {
+			if (q.remove(entry)) {
+				retained++;
+			}
+		}
+		assertTrue(String.valueOf(retained), retained > 90);
+	}
+	
+	@Test public void testKeyOrdering() {
+		AtomicLong clock = new AtomicLong();
+		TinyLfuEvictionQueue<BaseCacheEntry> q = new TinyLfuEvictionQueue<BaseCacheEntry>(clock);
+		BaseCacheEntry entry = entry(1);
+		q.add(entry);
+		clock.set(1000);
+		q.touch(entry);
+		assertEquals(1000, entry.getKey().getLastAccess());
+		assertEquals(1000, entry.getKey().getOrderingValue());
+		clock.set(2000);
+		q.touch(entry);
+		//the lrfu ordering value reflects the prior use
+		assertEquals(2000, entry.getKey().getLastAccess());
+		assertEquals(4000, entry.getKey().getOrderingValue());
+	}
+	
+	@Test public void testOldestEntry() {
+		AtomicLong clock = new AtomicLong();
+		TinyLfuEvictionQueue<BaseCacheEntry> q = new TinyLfuEvictionQueue<BaseCacheEntry>(clock);
+		List<BaseCacheEntry> values = new ArrayList<BaseCacheEntry>();
+		for (int i = 0; i < 100; i++) {
+			BaseCacheEntry entry = new BaseCacheEntry(new CacheKey(i, i, 0));
+			values.add(entry);
+			q.add(entry);
+		}
+		assertSame(values.get(0), q.oldestEntry());
+		clock.set(1000);
+		for (int i = 0; i < 99; i++) {
+			clock.incrementAndGet();
+			q.touch(values.get(i));
+		}
+		//the remaining window entry is the oldest
+		assertSame(values.get(99), q.oldestEntry());
+		assertEquals(100, q.getSize());
+	}
+	
+	@Test public void testSketchGrowth() {
+		TinyLfuEvictionQueue.FrequencySketch sketch = new TinyLfuEvictionQueue.FrequencySketch(16);
+		for (int i = 0; i < 3; i++) {
+			sketch.increment(5L);
+		}
+		sketch.increment(7L);
+		sketch.ensureCapacity(1000);
+		assertEquals(3, sketch.frequency(5L));
+		assertEquals(1, sketch.frequency(7L));
+	}
+	
+	@Test public void testAddRemove() {
+		TinyLfuEvictionQueue<BaseCacheEntry> q = new TinyLfuEvictionQueue<BaseCacheEntry>(new AtomicLong());
+		BaseCacheEntry entry = entry(1);
+		assertTrue(q.add(entry));
+		assertFalse(q.add(entry));
+		assertEquals(1, q.getSize());
+		assertSame(entry, q.firstEntry(false));
+		assertSame(entry, q.firstEntry(true));
+		assertEquals(0, q.getSize());
+		assertFalse(q.remove(entry));
+		//touch adds if not present
+		q.touch(entry);
+		assertEquals(1, q.getSize());
+		q.clear();
+		assertNull(q.firstEntry(true));
+	}
+	
+}
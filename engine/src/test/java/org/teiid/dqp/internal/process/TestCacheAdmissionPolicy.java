@@ -0,0 +1,147 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.dqp.internal.process;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.teiid.cache.DefaultCacheFactory;
+import org.teiid.dqp.internal.process.SessionAwareCache.CacheID;
+import org.teiid.metadata.FunctionMethod.Determinism;
+import org.teiid.query.parser.ParseInfo;
+import org.teiid.vdb.runtime.VDBKey;
+
+@SuppressWarnings("nls")
+public class TestCacheAdmissionPolicy {
+	
+	private SessionAwareCache<Object> cache = new SessionAwareCache<Object>("resultset", DefaultCacheFactory.INSTANCE, SessionAwareCache.Type.RESULTSET, 0);
+	private CacheAdmissionPolicy policy = new CacheAdmissionPolicy();
+	
+	private static List<Object> getKey(String sql) {
+		return CacheAdmissionPolicy.getKey(new VDBKey("vdb-name", 1), false, sql, null);
+	}
+	
+	private static CacheID getId(String sql) {
+		return new CacheID(TestSessionAwareCache.buildWorkContext(), new ParseInfo(), sql);
+	}
+	
+	private CacheID cache(String sql, long size, long maxBytes) {
+		return cache(getId(sql), Determinism.SESSION_DETERMINISTIC, sql, size, maxBytes);
+	}
+	
+	private CacheID cache(CacheID id, Determinism determinism, String sql, long size, long maxBytes) {
+		cache.put(id, determinism, sql, null);
+		policy.admit(getKey(sql), id, determinism, size, maxBytes, cache);
+		return id;
+	}
+	
+	@Test public void testMinExecutions() {
+		List<Object> key = getKey("select * from x");
+		assertFalse(policy.shouldCache(key, getId("select * from x"), 10000, cache));
+		policy.executed(key, 100, 1000);
+		assertTrue(policy.shouldCache(key, getId("select * from x"), 10000, cache));
+		assertFalse(policy.shouldCache(key, getId("select * from x"), 999, cache));
+	}
+	
+	@Test public void testBudget() {
+		policy.executed(getKey("select cheap"), 10, 600);
+		CacheID cheap = cache("select cheap", 600, 1000);
+		assertEquals(600, policy.getAdmittedBytes());
+		
+		policy.executed(getKey("select expensive"), 1000, 600);
+		assertTrue(policy.shouldCache(getKey("select expensive"), getId("select expensive"), 1000, cache));
+		CacheID expensive = cache("select expensive", 600, 1000);
+		
+		//the lower benefit entry should have been removed to stay within budget
+		assertEquals(600, policy.getAdmittedBytes());
+		assertNull(cache.get(cheap));
+		assertNotNull(cache.get(expensive));
+		
+		policy.executed(getKey("select other"), 1, 600);
+		assertFalse(policy.shouldCache(getKey("select other"), getId("select other"), 1000, cache));
+	}
+	
+	@Test public void testHits() {
+		List<Object> key = getKey("select * from x");
+		policy.executed(key, 10, 100);
+		policy.hit(key);
+		policy.hit(key);
+		policy.executed(getKey("select * from y"), 10, 100);
+		cache("select * from x", 100, 100);
+		//y is less beneficial given the hits on x
+		assertFalse(policy.shouldCache(getKey("select * from y"), getId("select * from y"), 100, cache));
+	}
+	
+	@Test public void testRemovedFromCache() {
+		policy.executed(getKey("select x"), 1000, 600);
+		CacheID x = cache("select x", 600, 1000);
+		assertTrue(policy.isAdmitted(getKey("select x"), getId("select x")));
+		
+		//simulate a ttl expiration or invalidation
+		cache.remove(x, Determinism.SESSION_DETERMINISTIC);
+		
+		policy.executed(getKey("select y"), 10, 600);
+		assertTrue(policy.shouldCache(getKey("select y"), getId("select y"), 1000, cache));
+		assertEquals(0, policy.getAdmittedBytes());
+		assertFalse(policy.isAdmitted(getKey("select x"), getId("select x")));
+	}
+	
+	@Test public void testRelease() {
+		policy.executed(getKey("select x"), 1000, 600);
+		CacheID x = cache("select x", 600, 1000);
+		policy.release(getKey("select x"), x, Determinism.SESSION_DETERMINISTIC);
+		assertFalse(policy.isAdmitted(getKey("select x"), getId("select x")));
+		assertEquals(0, policy.getAdmittedBytes());
+	}
+	
+	@Test public void testScopes() {
+		String sql = "select x";
+		policy.executed(getKey(sql), 1000, 600);
+		CacheID session1 = cache(getId(sql), Determinism.SESSION_DETERMINISTIC, sql, 600, 2000);
+		CacheID session2 = new CacheID(new ParseInfo(), sql, "vdb-name", "1", "2", "bar");
+		assertFalse(policy.isAdmitted(getKey(sql), session2));
+		
+		//the results for another session are tracked separately
+		cache(session2, Determinism.SESSION_DETERMINISTIC, sql, 600, 2000);
+		assertEquals(1200, policy.getAdmittedBytes());
+		assertTrue(policy.isAdmitted(getKey(sql), getId(sql)));
+		
+		//replacing the results for a session does not orphan the other entry
+		cache(new CacheID(new ParseInfo(), sql, "vdb-name", "1", "2", "bar"), Determinism.SESSION_DETERMINISTIC, sql, 700, 2000);
+		assertEquals(1300, policy.getAdmittedBytes());
+		
+		//the budget is enforced over all of the entries
+		CacheID user = new CacheID(new ParseInfo(), sql, "vdb-name", "1", "3", "baz");
+		cache(user, Determinism.USER_DETERMINISTIC, sql, 800, 2000);
+		assertTrue(policy.getAdmittedBytes() <= 2000);
+		assertNull(cache.get(session1));
+		assertNotNull(cache.get(user));
+		assertTrue(policy.isAdmitted(getKey(sql), new CacheID(new ParseInfo(), sql, "vdb-name", "1", "4", "baz")));
+		
+		policy.release(getKey(sql), user, Determinism.USER_DETERMINISTIC);
+		assertEquals(700, policy.getAdmittedBytes());
+	}
+	
+	@Test public void testNormalize() {
+		assertEquals("select a from t where x = 'a  b'", CacheAdmissionPolicy.normalize(" select  a\n\tfrom t where x = 'a  b' "));
+		assertEquals(getKey("select 1"), getKey("select  1"));
+	}
+
+}
@@ -21,7 +21,10 @@ package org.teiid.dqp.internal.process;
 import static org.junit.Assert.*;
 
 import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -37,6 +40,7 @@ import org.teiid.adminapi.impl.DataPolicyMetadata;
 import org.teiid.api.exception.query.QueryResolverException;
 import org.teiid.cache.CacheConfiguration;
 import org.teiid.cache.DefaultCacheFactory;
+import org.teiid.client.DQP;
 import org.teiid.client.RequestMessage;
 import org.teiid.client.RequestMessage.ResultsMode;
 import org.teiid.client.RequestMessage.StatementType;
@@ -441,6 +445,70 @@ public class TestDQPCore {
         assertEquals(11, rm.getFinalRow());
     }
     
+    @Test public void testNextBatchCredits() throws Exception {
+    	//the sql should return 100 rows
+        String sql = "SELECT A.IntKey FROM BQT1.SmallA as A, BQT1.SmallA as B"; //$NON-NLS-1$
+        String userName = "1"; //$NON-NLS-1$
+        String sessionid = "1"; //$NON-NLS-1$
+        
+        RequestMessage reqMsg = exampleRequestMessage(sql);
+        reqMsg.setCursorType(ResultSet.TYPE_FORWARD_ONLY);
+        DQPWorkContext.getWorkContext().getSession().setSessionId(sessionid);
+        DQPWorkContext.getWorkContext().getSession().setUserName(userName);
+        ((BufferManagerImpl)core.getBufferManager()).setProcessorBatchSize(1);
+        Future<ResultsMessage> message = core.executeRequest(reqMsg.getExecutionId(), reqMsg);
+        //issue more credits than are needed before reading any of them
+        List<Future<ResultsMessage>> credits = new ArrayList<Future<ResultsMessage>>();
+        for (int i = 0; i < 20; i++) {
+        	credits.add(core.processCursorRequest(reqMsg.getExecutionId(), DQP.NEXT_BATCH, 10));
+        }
+        ResultsMessage rm = message.get(5000, TimeUnit.MILLISECONDS);
+        assertNull(rm.getException());
+        assertEquals(1, rm.getFirstRow());
+        int lastRow = rm.getLastRow();
+        for (Future<ResultsMessage> credit : credits) {
+        	rm = credit.get(5000, TimeUnit.MILLISECONDS);
+        	assertNull(rm.getException());
+        	if (lastRow == 100) {
+        		//past the end the credits are answered with empty batches
+        		assertEquals(0, rm.getResultsList().size());
+        		assertEquals(100, rm.getLastRow());
+        		assertEquals(100, rm.getFinalRow());
+        		continue;
+        	}
+        	assertEquals(lastRow + 1, rm.getFirstRow());
+        	assertEquals(rm.getLastRow() - rm.getFirstRow() + 1, rm.getResultsList().size());
+        	assertTrue(rm.getResultsList().size() <= 10);
+        	lastRow = rm.getLastRow();
+        }
+        assertEquals(100, lastRow);
+    }
+    
+    @Test public void testNextBatchCreditsCancel() throws Exception {
+        String sql = "SELECT A.IntKey FROM BQT1.SmallA as A"; //$NON-NLS-1$
+        String userName = "1"; //$NON-NLS-1$
+        String sessionid = "1"; //$NON-NLS-1$
+        //hold the source so that the credits are queued behind the initial request
+        agds.dataNotAvailable = 100000;
+        
+        RequestMessage reqMsg = exampleRequestMessage(sql);
+        reqMsg.setCursorType(ResultSet.TYPE_FORWARD_ONLY);
+        DQPWorkContext.getWorkContext().getSession().setSessionId(sessionid);
+        DQPWorkContext.getWorkContext().getSession().setUserName(userName);
+        Future<ResultsMessage> message = core.executeRequest(reqMsg.getExecutionId(), reqMsg);
+        List<Future<ResultsMessage>> credits = new ArrayList<Future<ResultsMessage>>();
+        for (int i = 0; i < 3; i++) {
+        	credits.add(core.processCursorRequest(reqMsg.getExecutionId(), DQP.NEXT_BATCH, 10));
+        }
+        assertTrue(core.cancelRequest(reqMsg.getExecutionId()));
+        ResultsMessage rm = message.get(5000, TimeUnit.MILLISECONDS);
+        assertNotNull(rm.getException());
+        for (Future<ResultsMessage> credit : credits) {
+        	ResultsMessage queued = credit.get(5000, TimeUnit.MILLISECONDS);
+        	assertSame(rm.getException(), queued.getException());
+        }
+    }
+    
     @Test public void testSourceConcurrency() throws Exception {
     	//setup default of 2
     	agds.setSleep(100);
@@ -561,6 +629,41 @@ public class TestDQPCore {
         assertEquals(2, rm.getResultsList().size());
     }
 
+    @Test public void testAutoParameterize() throws Exception {
+    	core.getOptions().setAutoParameterize(true);
+        String userName = "1"; //$NON-NLS-1$
+        int sessionid = 1;
+        RequestMessage reqMsg = exampleRequestMessage("select intkey from bqt1.smalla where intkey = 1"); //$NON-NLS-1$
+        ResultsMessage rm = execute(userName, sessionid, reqMsg);
+        assertNull(rm.getException());
+        assertEquals(1, this.core.getPrepPlanCache().getCachePutCount());
+        
+        //differs only by the literal value
+        reqMsg = exampleRequestMessage("select intkey from bqt1.smalla where intkey = 2"); //$NON-NLS-1$
+        rm = execute(userName, sessionid, reqMsg);
+        assertNull(rm.getException());
+        assertEquals(1, this.core.getPrepPlanCache().getCacheHitCount());
+        assertEquals(1, this.core.getPrepPlanCache().getCachePutCount());
+        
+        //the string literal is not implicitly convertible to the parameter type, so the original statement is planned
+        reqMsg = exampleRequestMessage("select intkey from bqt1.smalla where intkey = '3'"); //$NON-NLS-1$
+        rm = execute(userName, sessionid, reqMsg);
+        assertNull(rm.getException());
+        assertEquals(10, rm.getResultsList().size());
+        assertEquals(1, this.core.getPrepPlanCache().getCachePutCount());
+    }
+    
+    @Test public void testAutoParameterizePartitioned() throws Exception {
+    	core.getOptions().setAutoParameterize(true);
+    	String sql = "select x.a from (select 1 as p, intkey as a from bqt1.smalla union all select 2 as p, intkey as a from bqt1.smallb) as x where x.p = 1"; //$NON-NLS-1$
+        RequestMessage reqMsg = exampleRequestMessage(sql);
+        ResultsMessage rm = execute("1", 1, reqMsg); //$NON-NLS-1$
+        assertNull(rm.getException());
+        //the literal is used to remove the union branch, so the plan is not cached
+        assertEquals(0, this.core.getPrepPlanCache().getCachePutCount());
+        assertEquals(10, rm.getResultsList().size());
+    }
+
     @Test public void testPreparedPlanInvalidation() throws Exception {
         helpTestPlanInvalidation("select * from #temp a, #temp b limit 10");
         
@@ -659,6 +762,34 @@ public class TestDQPCore {
         assertEquals(1, this.core.getRsCache().getCacheHitCount());
     }
     
+    @Test public void testSemanticRsCache() throws Exception {
+    	core.getOptions().setSemanticResultCache(true);
+    	agds.setUseIntCounter(true);
+        String userName = "1"; //$NON-NLS-1$
+        int sessionid = 1; //$NON-NLS-1$
+        RequestMessage reqMsg = exampleRequestMessage("select IntKey, StringKey FROM BQT1.SmallA where IntKey >= 0");
+        reqMsg.setUseResultSetCache(true);
+        ResultsMessage rm = execute(userName, sessionid, reqMsg);
+        assertEquals(10, rm.getResultsList().size()); //$NON-NLS-1$
+        assertEquals(1, agds.getExecuteCount().get());
+        
+        //answered by filtering the cached results
+        reqMsg = exampleRequestMessage("select IntKey FROM BQT1.SmallA where IntKey > 5");
+        reqMsg.setUseResultSetCache(true);
+        rm = execute(userName, sessionid, reqMsg);
+        assertEquals(Arrays.asList(Arrays.asList(6), Arrays.asList(7), Arrays.asList(8), Arrays.asList(9)), rm.getResultsList());
+        assertEquals(1, this.core.getRsCache().getCacheHitCount());
+        assertEquals(1, agds.getExecuteCount().get());
+        
+        //the source collation may differ, so the string predicate is not evaluated against the cached results
+        reqMsg = exampleRequestMessage("select IntKey FROM BQT1.SmallA where IntKey >= 0 and StringKey = 'ABCDEFG'");
+        reqMsg.setUseResultSetCache(true);
+        rm = execute(userName, sessionid, reqMsg);
+        assertEquals(10, rm.getResultsList().size()); //$NON-NLS-1$
+        assertEquals(1, this.core.getRsCache().getCacheHitCount());
+        assertEquals(2, agds.getExecuteCount().get());
+    }
+    
     @Test public void testLobConcurrency() throws Exception {
     	RequestMessage reqMsg = exampleRequestMessage("select to_bytes(stringkey, 'utf-8') FROM BQT1.SmallA"); 
         reqMsg.setTxnAutoWrapMode(RequestMessage.TXN_WRAP_OFF);
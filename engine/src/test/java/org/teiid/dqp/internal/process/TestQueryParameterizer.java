@@ -0,0 +1,64 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.dqp.internal.process;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.query.sql.symbol.Reference;
+
+@SuppressWarnings("nls")
+public class TestQueryParameterizer {
+	
+	private void helpTest(String sql, String expected, Object... values) {
+		List<Object> actualValues = new ArrayList<Object>();
+		assertEquals(expected, QueryParameterizer.parameterize(sql, actualValues));
+		assertEquals(Arrays.asList(values), actualValues);
+	}
+	
+	@Test public void testComparisons() {
+		helpTest("SELECT e1 FROM pm1.g1 WHERE e1 = 'a''b' and e2 >= 10 or e3 <> 1.5", "SELECT e1 FROM pm1.g1 WHERE e1 = ? and e2 >= ? or e3 <> ?", "a'b", 10, new BigDecimal("1.5"));
+		helpTest("select e1 from pm1.g1 where (e2!=3000000000)", "select e1 from pm1.g1 where (e2!=?)", 3000000000L);
+		helpTest("select e1 from pm1.g1 where e4 < 1e2 order by e1", "select e1 from pm1.g1 where e4 < ? order by e1", 100d);
+	}
+	
+	@Test public void testNotParameterized() {
+		helpTest("select e1 from pm1.g1 where e2 in (1, 2) and e1 like 'a%' limit 10", null);
+		helpTest("select e1 from pm1.g1 where e2 = 1 + e2 and e2 = -1", null);
+		helpTest("select e1 from pm1.g1 where e2 = ?", null);
+		helpTest("select e1 from pm1.g1 where e1 = \"x = 1\" /* e2 = 1 */ -- e2 = 2", null);
+		helpTest("insert into pm1.g1 (e2) values (1)", null);
+		helpTest("select e1 from pm1.g1 where e1 = {d '2001-01-01'} and e2 = concat('a', 'b')", null);
+	}
+	
+	@Test public void testCompatible() {
+		Reference ref = new Reference(0);
+		ref.setType(DataTypeManager.DefaultDataClasses.LONG);
+		assertTrue(QueryParameterizer.isCompatible(Arrays.asList(ref), Arrays.asList(1)));
+		ref.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+		assertFalse(QueryParameterizer.isCompatible(Arrays.asList(ref), Arrays.asList(new BigDecimal("1.5"))));
+		assertFalse(QueryParameterizer.isCompatible(Arrays.asList(ref), Arrays.asList("1")));
+	}
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.dqp.internal.process;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.BufferManager.TupleSourceType;
+import org.teiid.common.buffer.BufferManagerFactory;
+import org.teiid.common.buffer.TupleBuffer;
+import org.teiid.query.metadata.TransformationMetadata;
+import org.teiid.query.parser.QueryParser;
+import org.teiid.query.resolver.QueryResolver;
+import org.teiid.query.sql.lang.Command;
+import org.teiid.query.sql.lang.Query;
+import org.teiid.query.unittest.RealMetadataFactory;
+import org.teiid.query.util.Options;
+import org.teiid.vdb.runtime.VDBKey;
+
+@SuppressWarnings("nls")
+public class TestSemanticCacheIndex {
+	
+	private static final VDBKey VDB = new VDBKey("x", 1);
+	
+	private static Command helpResolve(String sql) throws Exception {
+		Command command = QueryParser.getQueryParser().parseCommand(sql);
+		QueryResolver.resolveCommand(command, RealMetadataFactory.example1Cached());
+		return command;
+	}
+	
+	private static SemanticCacheIndex.Match helpMatch(String cached, String sql) throws Exception {
+		return helpMatch(cached, sql, true);
+	}
+	
+	private static SemanticCacheIndex.Match helpMatch(String cached, String sql, boolean teiidCollation) throws Exception {
+		SemanticCacheIndex index = new SemanticCacheIndex();
+		index.add(VDB, cached, false, helpResolve(cached));
+		Command command = helpResolve(sql);
+		List<SemanticCacheIndex.Entry> entries = index.getCandidates(VDB, command, false);
+		if (entries.isEmpty()) {
+			return null;
+		}
+		assertEquals(1, entries.size());
+		return entries.get(0).match((Query)command, teiidCollation);
+	}
+	
+	@Test public void testSubsumedRange() throws Exception {
+		assertNotNull(helpMatch("select e1, e2 from pm1.g1 where e2 > 5", "select e2 from pm1.g1 where e2 >= 10 and e1 = 'a'"));
+		assertNotNull(helpMatch("select e1, e2 from pm1.g1 where e2 between 1 and 10", "select e1 from pm1.g1 where e2 in (2, 3)"));
+		assertNotNull(helpMatch("select e1, e2 from pm1.g1 where e1 in ('a', 'b')", "select e1 from pm1.g1 where e1 = 'a'"));
+		assertNull(helpMatch("select e1, e2 from pm1.g1 where e2 > 5", "select e2 from pm1.g1 where e2 >= 5"));
+		assertNull(helpMatch("select e1, e2 from pm1.g1 where e2 > 5", "select e2 from pm1.g1"));
+	}
+	
+	@Test public void testSourceCollation() throws Exception {
+		assertNotNull(helpMatch("select e1, e2 from pm1.g1 where e2 > 5", "select e2 from pm1.g1 where e2 >= 10", false));
+		//the string predicates would be evaluated with the Teiid collation
+		assertNull(helpMatch("select e1, e2 from pm1.g1 where e2 > 5", "select e2 from pm1.g1 where e2 >= 10 and e1 = 'a'", false));
+		assertNull(helpMatch("select e1, e2 from pm1.g1 where e1 in ('a', 'b')", "select e1 from pm1.g1 where e1 = 'a'", false));
+		assertNull(helpMatch("select e1, e2 from pm1.g1 where e1 > 'a'", "select e1 from pm1.g1 where e1 > 'b'", false));
+		//the same predicate was already applied by the source
+		assertNotNull(helpMatch("select e1, e2 from pm1.g1 where e1 = 'a'", "select e2 from pm1.g1 where e1 = 'a' and e2 < 3", false));
+		assertNotNull(helpMatch("select e1, e2 from pm1.g1", "select e2 from pm1.g1 where e1 is null", false));
+	}
+	
+	@Test public void testTeiidCollation() throws Exception {
+		Options options = new Options();
+		assertFalse(SemanticCacheIndex.isTeiidCollation(helpResolve("select e1 from pm1.g1"), RealMetadataFactory.example1Cached(), options));
+		TransformationMetadata metadata = RealMetadataFactory.exampleMaterializedView();
+		Command command = QueryParser.getQueryParser().parseCommand("select x from MatView.VGroup3");
+		QueryResolver.resolveCommand(command, metadata);
+		assertTrue(SemanticCacheIndex.isTeiidCollation(command, metadata, options));
+		command = QueryParser.getQueryParser().parseCommand("select x from MatView.VGroup3 option nocache");
+		QueryResolver.resolveCommand(command, metadata);
+		assertFalse(SemanticCacheIndex.isTeiidCollation(command, metadata, options));
+		options.setRequireTeiidCollation(true);
+		assertTrue(SemanticCacheIndex.isTeiidCollation(helpResolve("select e1 from pm1.g1"), RealMetadataFactory.example1Cached(), options));
+	}
+	
+	@Test public void testProjection() throws Exception {
+		assertNotNull(helpMatch("select * from pm1.g1", "select e3, e1 from pm1.g1"));
+		//the residual criteria must be evaluated against cached columns
+		assertNull(helpMatch("select e1 from pm1.g1", "select e1 from pm1.g1 where e2 = 1"));
+		assertNull(helpMatch("select e1 from pm1.g1", "select e1, e2 from pm1.g1"));
+	}
+	
+	@Test public void testNotIndexed() throws Exception {
+		assertNull(helpMatch("select e1 from pm1.g1", "select distinct e1 from pm1.g1"));
+		assertNull(helpMatch("select e1 from pm1.g1", "select e1 from pm1.g1 where lcase(e1) = 'a'"));
+		assertNull(helpMatch("select e1 from pm1.g1", "select e1 from pm1.g2"));
+	}
+	
+	@Test public void testOrderAndLimit() throws Exception {
+		assertNotNull(helpMatch("select e1, e2 from pm1.g1 order by e2", "select e1 from pm1.g1 where e2 < 3 order by e2 limit 1"));
+		assertNull(helpMatch("select e1, e2 from pm1.g1", "select e1 from pm1.g1 order by e2"));
+		assertNotNull(helpMatch("select e1, e2 from pm1.g1 order by e2 limit 10", "select e1 from pm1.g1 order by e2 limit 5, 5"));
+		assertNull(helpMatch("select e1, e2 from pm1.g1 order by e2 limit 10", "select e1 from pm1.g1 order by e2 limit 5, 6"));
+		assertNull(helpMatch("select e1, e2 from pm1.g1 order by e2 limit 10", "select e1 from pm1.g1 where e2 > 1 order by e2 limit 5"));
+	}
+	
+	@Test public void testCreateResults() throws Exception {
+		Command cached = helpResolve("select e1, e2 from pm1.g1 where e2 > 0");
+		BufferManager bm = BufferManagerFactory.getStandaloneBufferManager();
+		TupleBuffer tb = bm.createTupleBuffer(cached.getProjectedSymbols(), "test", TupleSourceType.FINAL);
+		for (int i = 1; i <= 20; i++) {
+			tb.addTuple(Arrays.asList(String.valueOf(i%3), i));
+		}
+		tb.close();
+		Command command = helpResolve("select e2 from pm1.g1 where e2 > 5 and e1 = '1' limit 1, 3");
+		SemanticCacheIndex.Match match = helpMatch("select e1, e2 from pm1.g1 where e2 > 0", "select e2 from pm1.g1 where e2 > 5 and e1 = '1' limit 1, 3");
+		TupleBuffer result = match.createResults(tb, command.getProjectedSymbols(), bm, "test", 0);
+		assertEquals(3, result.getRowCount());
+		assertEquals(Arrays.asList(10), result.getBatch(1).getTuple(1));
+		assertEquals(Arrays.asList(16), result.getBatch(1).getTuple(3));
+		result = match.createResults(tb, command.getProjectedSymbols(), bm, "test", 2);
+		assertEquals(2, result.getRowCount());
+	}
+	
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.query.eval;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.teiid.common.buffer.ColumnBatch;
+import org.teiid.common.buffer.TupleBatch;
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.query.function.FunctionDescriptor;
+import org.teiid.query.sql.lang.CompareCriteria;
+import org.teiid.query.sql.lang.CompoundCriteria;
+import org.teiid.query.sql.lang.Criteria;
+import org.teiid.query.sql.lang.IsNullCriteria;
+import org.teiid.query.sql.symbol.Constant;
+import org.teiid.query.sql.symbol.ElementSymbol;
+import org.teiid.query.sql.symbol.Expression;
+import org.teiid.query.sql.symbol.Function;
+import org.teiid.query.unittest.RealMetadataFactory;
+
+@SuppressWarnings("nls")
+public class TestBatchEvaluator {
+
+	private static final Class<?>[] TYPES = new Class<?>[] {DataTypeManager.DefaultDataClasses.INTEGER,
+		DataTypeManager.DefaultDataClasses.STRING, DataTypeManager.DefaultDataClasses.LONG, DataTypeManager.DefaultDataClasses.DOUBLE};
+
+	private ElementSymbol e1 = element("e1", 0);
+	private ElementSymbol e2 = element("e2", 1);
+	private ElementSymbol e3 = element("e3", 2);
+	private ElementSymbol e4 = element("e4", 3);
+	private Map<ElementSymbol, Integer> elements = new HashMap<ElementSymbol, Integer>();
+
+	{
+		elements.put(e1, 0);
+		elements.put(e2, 1);
+		elements.put(e3, 2);
+		elements.put(e4, 3);
+	}
+
+	private static ElementSymbol element(String name, int index) {
+		ElementSymbol es = new ElementSymbol(name);
+		es.setType(TYPES[index]);
+		return es;
+	}
+
+	private static Function function(String name, Expression... args) {
+		Class<?>[] types = new Class<?>[args.length];
+		for (int i = 0; i < args.length; i++) {
+			types[i] = args[i].getType();
+		}
+		Function f = new Function(name, args);
+		FunctionDescriptor fd = RealMetadataFactory.SFM.getSystemFunctionLibrary().findFunction(name, types);
+		f.setFunctionDescriptor(fd);
+		f.setType(fd.getReturnType());
+		return f;
+	}
+
+	private List<List<?>> exampleRows(int count) {
+		List<List<?>> rows = new ArrayList<List<?>>();
+		for (int i = 0; i < count; i++) {
+			rows.add(Arrays.asList(i%10==0?null:i, i%7==0?null:"a" + (i%13), (long)i*3, i%3==0?null:i/2.0));
+		}
+		return rows;
+	}
+
+	private void helpTestFilter(Criteria crit) throws Exception {
+		List<List<?>> rows = exampleRows(200);
+		Evaluator eval = new Evaluator(elements, null, null);
+		List<Integer> expected = new ArrayList<Integer>();
+		for (int i = 0; i < rows.size(); i++) {
+			if (eval.evaluate(crit, rows.get(i))) {
+				expected.add(i);
+			}
+		}
+		BatchEvaluator.Filter filter = BatchEvaluator.compileFilter(crit, elements);
+		assertNotNull(filter);
+		int[] selection = filter.select(ColumnBatch.fromTupleBatch(new TupleBatch(1, rows), TYPES));
+		List<Integer> actual = new ArrayList<Integer>();
+		for (int index : selection) {
+			actual.add(index);
+		}
+		assertEquals(expected, actual);
+	}
+
+	private Object[] helpTestProjection(Expression expr) throws Exception {
+		List<List<?>> rows = exampleRows(200);
+		Evaluator eval = new Evaluator(elements, null, null);
+		BatchEvaluator.Projection projection = BatchEvaluator.compileExpression(expr, elements);
+		assertNotNull(projection);
+		Object[] result = projection.evaluate(ColumnBatch.fromTupleBatch(new TupleBatch(1, rows), TYPES));
+		if (result == null) {
+			return null;
+		}
+		for (int i = 0; i < rows.size(); i++) {
+			assertEquals(eval.evaluate(expr, rows.get(i)), result[i]);
+		}
+		return result;
+	}
+
+	@Test public void testCompare() throws Exception {
+		helpTestFilter(new CompareCriteria(e1, CompareCriteria.GT, new Constant(50)));
+		helpTestFilter(new CompareCriteria(e4, CompareCriteria.LE, new Constant(20.5)));
+		helpTestFilter(new CompareCriteria(e2, CompareCriteria.NE, new Constant("a3")));
+		helpTestFilter(new CompareCriteria(e3, CompareCriteria.EQ, new Constant(null, DataTypeManager.DefaultDataClasses.LONG)));
+	}
+
+	@Test public void testCompound() throws Exception {
+		Criteria c1 = new CompareCriteria(e1, CompareCriteria.LT, new Constant(100));
+		Criteria c2 = new IsNullCriteria(e4);
+		Criteria c3 = new CompareCriteria(function("lcase", e2), CompareCriteria.GE, new Constant("a5"));
+		helpTestFilter(new CompoundCriteria(CompoundCriteria.AND, c1, c2));
+		helpTestFilter(new CompoundCriteria(CompoundCriteria.OR, c1, c2));
+		helpTestFilter(new CompoundCriteria(CompoundCriteria.OR, new CompoundCriteria(CompoundCriteria.AND, c1, c3), c2));
+	}
+
+	@Test public void testArithmetic() throws Exception {
+		helpTestFilter(new CompareCriteria(function("+", e1, new Constant(5)), CompareCriteria.GT, function("*", e1, new Constant(2))));
+		assertNotNull(helpTestProjection(function("/", e4, new Constant(2.0))));
+		assertNotNull(helpTestProjection(function("-", e3, new Constant(1L))));
+		assertNotNull(helpTestProjection(function("length", function("concat", e2, new Constant("xyz")))));
+		assertNotNull(helpTestProjection(function("ucase", e2)));
+	}
+
+	@Test public void testFallback() throws Exception {
+		assertNull(helpTestProjection(function("/", e1, new Constant(0))));
+		assertNull(helpTestProjection(function("*", e1, new Constant(Integer.MAX_VALUE))));
+	}
+
+	@Test public void testUnsupported() throws Exception {
+		assertNull(BatchEvaluator.compileExpression(function("concat2", e2, e2), elements));
+		assertNull(BatchEvaluator.compileExpression(new ElementSymbol("x"), elements));
+	}
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.query.eval;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.teiid.api.exception.query.ExpressionEvaluationException;
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.query.eval.ExpressionCompiler.CompiledCriteria;
+import org.teiid.query.eval.ExpressionCompiler.CompiledExpression;
+import org.teiid.query.function.FunctionDescriptor;
+import org.teiid.query.sql.lang.CompareCriteria;
+import org.teiid.query.sql.lang.CompoundCriteria;
+import org.teiid.query.sql.lang.Criteria;
+import org.teiid.query.sql.lang.IsNullCriteria;
+import org.teiid.query.sql.lang.MatchCriteria;
+import org.teiid.query.sql.lang.NotCriteria;
+import org.teiid.query.sql.symbol.Constant;
+import org.teiid.query.sql.symbol.ElementSymbol;
+import org.teiid.query.sql.symbol.Expression;
+import org.teiid.query.sql.symbol.Function;
+import org.teiid.query.sql.symbol.SearchedCaseExpression;
+import org.teiid.query.unittest.RealMetadataFactory;
+
+@SuppressWarnings("nls")
+public class TestExpressionCompiler {
+
+	private ElementSymbol e1 = new ElementSymbol("e1");
+	private ElementSymbol e2 = new ElementSymbol("e2");
+	private Map<ElementSymbol, Integer> elements = new HashMap<ElementSymbol, Integer>();
+	private List<?>[] rows = new List<?>[] {Arrays.asList(1, "a"), Arrays.asList(null, "b "), Arrays.asList(3, null), Arrays.asList(Integer.MAX_VALUE, "c")};
+
+	{
+		e1.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+		e2.setType(DataTypeManager.DefaultDataClasses.STRING);
+		elements.put(e1, 0);
+		elements.put(e2, 1);
+	}
+
+	private static Function function(String name, Expression... args) {
+		Class<?>[] types = new Class<?>[args.length];
+		for (int i = 0; i < args.length; i++) {
+			types[i] = args[i].getType();
+		}
+		Function f = new Function(name, args);
+		FunctionDescriptor fd = RealMetadataFactory.SFM.getSystemFunctionLibrary().findFunction(name, types);
+		f.setFunctionDescriptor(fd);
+		f.setType(fd.getReturnType());
+		return f;
+	}
+
+	private void helpTest(Criteria crit) throws Exception {
+		Evaluator eval = new Evaluator(elements, null, null);
+		CompiledCriteria compiled = ExpressionCompiler.compile(crit, elements);
+		assertNotNull(compiled);
+		for (List<?> row : rows) {
+			assertEquals(eval.evaluate(crit, row), eval.evaluate(compiled, row));
+		}
+	}
+
+	private void helpTest(Expression expr) throws Exception {
+		Evaluator eval = new Evaluator(elements, null, null);
+		CompiledExpression compiled = ExpressionCompiler.compile(expr, elements);
+		assertNotNull(compiled);
+		for (List<?> row : rows) {
+			Object expected = null;
+			try {
+				expected = eval.evaluate(expr, row);
+			} catch (ExpressionEvaluationException e) {
+				try {
+					eval.evaluate(compiled, row);
+					fail();
+				} catch (ExpressionEvaluationException e1) {
+					assertEquals(e.getMessage(), e1.getMessage());
+				}
+				continue;
+			}
+			assertEquals(expected, eval.evaluate(compiled, row));
+		}
+	}
+
+	@Test public void testCriteria() throws Exception {
+		Criteria c1 = new CompareCriteria(e1, CompareCriteria.GE, new Constant(3));
+		Criteria c2 = new CompareCriteria(e2, CompareCriteria.EQ, new Constant("b"));
+		helpTest(c1);
+		helpTest(c2);
+		helpTest(new CompoundCriteria(CompoundCriteria.OR, c1, new NotCriteria(c2)));
+		helpTest(new CompoundCriteria(CompoundCriteria.AND, new IsNullCriteria(e1), c2));
+		//the match criteria is interpreted
+		helpTest(new CompoundCriteria(CompoundCriteria.AND, c1, new MatchCriteria(e2, new Constant("c%"))));
+	}
+
+	@Test public void testExpressions() throws Exception {
+		helpTest(function("+", e1, new Constant(1)));
+		helpTest(function("concat", function("ucase", e2), new Constant("x")));
+		SearchedCaseExpression sce = new SearchedCaseExpression(Arrays.asList(new CompareCriteria(e1, CompareCriteria.LT, new Constant(2))), Arrays.asList(e2));
+		sce.setElseExpression(new Constant("other"));
+		sce.setType(DataTypeManager.DefaultDataClasses.STRING);
+		helpTest(sce);
+	}
+
+	@Test public void testInterpretedOnly() {
+		assertNull(ExpressionCompiler.compile(new MatchCriteria(e2, new Constant("c%")), elements));
+	}
+
+}
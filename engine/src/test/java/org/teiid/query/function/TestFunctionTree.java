@@ -172,6 +172,26 @@ public class TestFunctionTree {
     	assertEquals(hello, fd.invokeFunction(new Object[] {new BinaryType(hello.getBytes())}, null, null));
     }
     
+    public static String varArgs(String prefix, String... values) {
+    	return prefix + Arrays.toString(values);
+    }
+    
+    @Test public void testVarArgs() throws Exception {
+    	FunctionParameter varArg = new FunctionParameter("in", DataTypeManager.DefaultDataTypes.STRING); //$NON-NLS-1$
+    	varArg.setVarArg(true);
+    	FunctionMethod method = new FunctionMethod(
+    			"dummy", null, null, PushDown.CANNOT_PUSHDOWN, TestFunctionTree.class.getName(), "varArgs",  //$NON-NLS-1$ //$NON-NLS-2$ 
+	 	    	Arrays.asList(new FunctionParameter("prefix", DataTypeManager.DefaultDataTypes.STRING), varArg), //$NON-NLS-1$ 
+	 	    	new FunctionParameter("output", DataTypeManager.DefaultDataTypes.STRING), //$NON-NLS-1$
+	 	    	true, Determinism.DETERMINISTIC);
+    	FunctionTree sys = RealMetadataFactory.SFM.getSystemFunctions();
+    	FunctionLibrary fl = new FunctionLibrary(sys, new FunctionTree("foo", new UDFSource(Arrays.asList(method)), true));
+    	FunctionDescriptor fd = fl.findFunction("dummy", new Class<?>[] {DataTypeManager.DefaultDataClasses.STRING, DataTypeManager.DefaultDataClasses.STRING, DataTypeManager.DefaultDataClasses.STRING});
+    	assertEquals("a[b, c]", fd.invokeFunction(new Object[] {"a", "b", "c"}, null, null)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+    	assertEquals("a[]", fd.invokeFunction(new Object[] {"a"}, null, null)); //$NON-NLS-1$ //$NON-NLS-2$
+    	assertEquals("a[b]", fd.invokeFunction(new Object[] {"a", "b"}, null, null)); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+    
     @Test public void testMultiPartName() throws Exception {
     	FunctionMethod method = new FunctionMethod(
     			"x.y.dummy", null, null, PushDown.CANNOT_PUSHDOWN, TestFunctionTree.class.getName(), "toString",  //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ 
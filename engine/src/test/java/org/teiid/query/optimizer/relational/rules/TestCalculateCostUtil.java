@@ -41,6 +41,7 @@ import org.teiid.query.processor.TestVirtualDepJoin;
 import org.teiid.query.processor.relational.RelationalPlan;
 import org.teiid.query.resolver.QueryResolver;
 import org.teiid.query.rewriter.QueryRewriter;
+import org.teiid.query.sql.lang.CompareCriteria;
 import org.teiid.query.sql.lang.Criteria;
 import org.teiid.query.sql.lang.JoinType;
 import org.teiid.query.unittest.RealMetadataFactory;
@@ -295,6 +296,15 @@ public class TestCalculateCostUtil {
         helpTestEstimateCost(critString, 200, 198, metadata);
     }
     
+    @Test public void testHistogramSelectivity() {
+        Object[] histogram = new Object[] {0, 10, 20, 30, 100};
+        assertEquals(.625, NewCalculateCostUtil.getHistogramSelectivity(histogram, 15, CompareCriteria.GT), .01);
+        assertEquals(.375, NewCalculateCostUtil.getHistogramSelectivity(histogram, 15, CompareCriteria.LT), .01);
+        assertEquals(0, NewCalculateCostUtil.getHistogramSelectivity(histogram, 200, CompareCriteria.GE), .01);
+        assertEquals(0, NewCalculateCostUtil.getHistogramSelectivity(histogram, -1, CompareCriteria.LE), .01);
+        assertEquals(.5, NewCalculateCostUtil.getHistogramSelectivity(histogram, 20, CompareCriteria.LT), .01);
+    }
+    
     @Test public void testEstimateJoinNodeCost() throws Exception {
         QueryMetadataInterface metadata = RealMetadataFactory.example4();
         PlanNode joinNode = helpGetJoinNode(NewCalculateCostUtil.UNKNOWN_VALUE, NewCalculateCostUtil.UNKNOWN_VALUE, JoinType.JOIN_CROSS);
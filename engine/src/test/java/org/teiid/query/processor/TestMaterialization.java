@@ -22,6 +22,7 @@ import static org.junit.Assert.*;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -30,10 +31,16 @@ import org.junit.Test;
 import org.teiid.cache.DefaultCacheFactory;
 import org.teiid.common.buffer.BufferManager;
 import org.teiid.common.buffer.BufferManagerFactory;
+import org.teiid.common.buffer.TupleSource;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.dqp.internal.process.CachedResults;
 import org.teiid.dqp.internal.process.QueryProcessorFactoryImpl;
 import org.teiid.dqp.internal.process.SessionAwareCache;
+import org.teiid.logging.JavaLogger;
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+import org.teiid.logging.MessageLevel;
+import org.teiid.metadata.ColumnStats;
 import org.teiid.query.metadata.TempMetadataAdapter;
 import org.teiid.query.metadata.TempMetadataID;
 import org.teiid.query.metadata.TransformationMetadata;
@@ -42,11 +49,13 @@ import org.teiid.query.optimizer.capabilities.DefaultCapabilitiesFinder;
 import org.teiid.query.optimizer.relational.RelationalPlanner;
 import org.teiid.query.tempdata.GlobalTableStoreImpl;
 import org.teiid.query.tempdata.GlobalTableStoreImpl.MatTableInfo;
+import org.teiid.query.tempdata.TempTable;
 import org.teiid.query.tempdata.TempTableDataManager;
 import org.teiid.query.tempdata.TempTableStore;
 import org.teiid.query.tempdata.TempTableStore.TransactionMode;
 import org.teiid.query.unittest.RealMetadataFactory;
 import org.teiid.query.util.CommandContext;
+import org.teiid.query.util.Options;
 
 @SuppressWarnings({"nls", "unchecked"})
 public class TestMaterialization {
@@ -57,6 +66,7 @@ public class TestMaterialization {
 	private GlobalTableStoreImpl globalStore;
 	private ProcessorPlan previousPlan;
 	private HardcodedDataManager hdm;
+	private Options options;
 	
 	@Before public void setUp() {
 		tempStore = new TempTableStore("1", TransactionMode.ISOLATE_WRITES); //$NON-NLS-1$
@@ -79,6 +89,9 @@ public class TestMaterialization {
 		cc.setTempTableStore(tempStore);
 		cc.setGlobalTableStore(globalStore);
 		cc.setMetadata(metadata);
+		if (options != null) {
+			cc.setOptions(options);
+		}
 		CapabilitiesFinder finder = new DefaultCapabilitiesFinder();
 		previousPlan = TestProcessor.helpGetPlan(TestProcessor.helpParse(sql), metadata, finder, cc);
 		cc.setQueryProcessorFactory(new QueryProcessorFactoryImpl(BufferManagerFactory.getStandaloneBufferManager(), dataManager, finder, null, metadata));
@@ -128,6 +141,79 @@ public class TestMaterialization {
         execute("select lookup('mattable.info', 'e1', 'VALUE', '5')", Arrays.asList("a"));
     }
     
+	@Test public void testStatistics() throws Exception {
+		options = new Options().matViewStatisticsSampleSize(10000);
+		execute("SELECT * from vgroup3 where x = 'one'", Arrays.asList("one", "zne"));
+		String matTableName = RelationalPlanner.MAT_PREFIX + "MATVIEW.VGROUP3";
+		TempMetadataID id = this.globalStore.getTempTableStore().getMetadataStore().getTempGroupID(matTableName);
+		ColumnStats stats = id.getElements().get(0).getColumnStats();
+		assertEquals(3, stats.getDistinctValues().intValue());
+		assertEquals(1, stats.getNullValues().intValue());
+		assertEquals("one", stats.getMinimumValue());
+		assertEquals("two", stats.getMaximumValue());
+		assertNotNull(id.getElements().get(0).getHistogram());
+	}
+	
+	@Test public void testAutoIndex() throws Exception {
+		List<?>[] rows = new List<?>[10000];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = Arrays.asList(String.valueOf(i));
+		}
+		hdm.addData("SELECT MatSrc.MatSrc.x FROM MatSrc.MatSrc", rows);
+		options = new Options().matViewAutoIndexThreshold(2);
+		execute("SELECT x from vgroup6 where x = '5'", Arrays.asList("5"));
+		String matTableName = RelationalPlanner.MAT_PREFIX + "MATVIEW.VGROUP6";
+		MatTableInfo info = this.globalStore.getMatTableInfo(matTableName);
+		assertTrue(info.getAddedIndexes().isEmpty());
+		execute("SELECT x from vgroup6 where x = '6'", Arrays.asList("6"));
+		assertEquals(1, info.getAddedIndexes().size());
+		final List<TempTable> chosen = new ArrayList<TempTable>();
+		LogManager.setLogListener(new JavaLogger() {
+			@Override
+			public boolean isEnabled(String context, int msgLevel) {
+				return LogConstants.CTX_DQP.equals(context) && msgLevel == MessageLevel.DETAIL;
+			}
+			
+			@Override
+			public void log(int level, String context, Object... msg) {
+				if (msg.length > 1 && "Choose index".equals(msg[0])) {
+					chosen.add((TempTable)msg[1]);
+				}
+			}
+		});
+		try {
+			execute("SELECT x from vgroup6 where x = '7'", Arrays.asList("7"));
+		} finally {
+			LogManager.setLogListener(null);
+		}
+		assertFalse(chosen.isEmpty());
+		//the scan should be replaced by the added index, which is keyed on x
+		assertEquals("x", chosen.get(0).getColumns().get(0).getShortName());
+		assertEquals(1, hdm.getCommandHistory().size());
+	}
+	
+	@Test public void testSnapshotReads() throws Exception {
+		execute("SELECT * from vgroup3 where x = 'one'", Arrays.asList("one", "zne"));
+		String matTableName = RelationalPlanner.MAT_PREFIX + "MATVIEW.VGROUP3";
+		TempTable table = this.globalStore.getTempTable(matTableName);
+		TupleSource ts = table.createTupleSource(table.getColumns(), null, null);
+		assertNotNull(ts.nextTuple());
+		//the reader pins the version, so a new one is created
+		this.globalStore.updateMatViewRow(matTableName, Arrays.asList("one", "x"), false);
+		TempTable current = this.globalStore.getTempTable(matTableName);
+		assertNotSame(table, current);
+		int count = 1;
+		while (ts.nextTuple() != null) {
+			count++;
+		}
+		assertEquals(4, count);
+		ts.closeSource();
+		//no readers, so the update is in place
+		this.globalStore.updateMatViewRow(matTableName, Arrays.asList("two", "y"), false);
+		assertSame(current, this.globalStore.getTempTable(matTableName));
+		execute("SELECT * from vgroup3 where x = 'one'", Arrays.asList("one", "x"));
+	}
+	
 	@Test public void testTtl() throws Exception {
 		execute("SELECT * from vgroup4 where x = 'one'", Arrays.asList("one"));
 		assertEquals(1, hdm.getCommandHistory().size());
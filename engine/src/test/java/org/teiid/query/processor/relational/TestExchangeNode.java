@@ -0,0 +1,144 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.query.processor.relational;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.teiid.common.buffer.BlockedException;
+import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.BufferManagerFactory;
+import org.teiid.common.buffer.TupleBatch;
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.dqp.service.TransactionContext;
+import org.teiid.dqp.service.TransactionContext.Scope;
+import org.teiid.query.processor.FakeDataManager;
+import org.teiid.query.sql.symbol.ElementSymbol;
+import org.teiid.query.util.CommandContext;
+import org.teiid.query.util.Options;
+
+@SuppressWarnings({"nls", "unchecked"})
+public class TestExchangeNode {
+
+	private ExecutorService executor;
+
+	@Before public void setUp() {
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@After public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	private int process(int sources, int rowsPerSource, int maxParallelism, boolean blocking) throws Exception {
+		ElementSymbol es1 = new ElementSymbol("e1");
+		es1.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+		List<ElementSymbol> elements = Arrays.asList(es1);
+
+		BufferManager mgr = BufferManagerFactory.getStandaloneBufferManager();
+		CommandContext context = new CommandContext("pid", "test", null, null, 1);
+		context.setOptions(new Options().maxParallelism(maxParallelism));
+		context.setExecutor(executor);
+		FakeDataManager fdm = new FakeDataManager();
+
+		UnionAllNode union = new UnionAllNode(1);
+		union.setElements(elements);
+		for (int i = 0; i < sources; i++) {
+			List<?>[] tuples = new List<?>[rowsPerSource];
+			for (int r = 0; r < rowsPerSource; r++) {
+				tuples[r] = Arrays.asList(i);
+			}
+			RelationalNode source = blocking?new BlockingFakeRelationalNode(i + 10, tuples, 3):new FakeRelationalNode(i + 10, tuples, 3);
+			source.setElements(elements);
+			ExchangeNode exchange = new ExchangeNode(i + 100);
+			exchange.setElements(elements);
+			exchange.addChild(source);
+			union.addChild(exchange);
+			source.initialize(context, mgr, fdm);
+			exchange.initialize(context, mgr, fdm);
+		}
+		union.initialize(context, mgr, fdm);
+		union.open();
+
+		int[] counts = new int[sources];
+		int rows = 0;
+		while (true) {
+			try {
+				TupleBatch batch = union.nextBatch();
+				for (List<?> tuple : batch.getTuples()) {
+					counts[(Integer)tuple.get(0)]++;
+				}
+				rows += batch.getRowCount();
+				if (batch.getTerminationFlag()) {
+					break;
+				}
+			} catch (BlockedException e) {
+				//retry
+			}
+		}
+		union.close();
+		for (int count : counts) {
+			assertEquals(rowsPerSource, count);
+		}
+		//all workers should have been released
+		assertTrue(context.reserveParallelWorker() || maxParallelism <= 1);
+		return rows;
+	}
+
+	@Test public void testParallelUnion() throws Exception {
+		assertEquals(100, process(4, 25, 3, false));
+	}
+
+	@Test public void testBlockingSources() throws Exception {
+		assertEquals(80, process(4, 20, 8, true));
+	}
+
+	@Test public void testNoParallelism() throws Exception {
+		assertEquals(30, process(3, 10, 1, false));
+	}
+
+	@Test public void testNoWorkerInTransaction() {
+		CommandContext context = new CommandContext("pid", "test", null, null, 1);
+		context.setOptions(new Options().maxParallelism(4));
+		TransactionContext tc = new TransactionContext();
+		context.setTransactionContext(tc);
+		assertTrue(context.reserveParallelWorker());
+		context.releaseParallelWorker();
+		tc.setTransactionType(Scope.LOCAL);
+		assertFalse(context.reserveParallelWorker());
+	}
+
+	@Test public void testIndependent() {
+		ProjectNode project = new ProjectNode(1);
+		project.addChild(new AccessNode(2));
+		assertTrue(ExchangeNode.isIndependent(project));
+		ProjectNode project1 = new ProjectNode(3);
+		project1.addChild(new DependentAccessNode(4));
+		assertFalse(ExchangeNode.isIndependent(project1));
+		assertFalse(ExchangeNode.isIndependent(new FakeRelationalNode(5, new List[0])));
+	}
+
+}
@@ -24,6 +24,7 @@ import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -418,6 +419,74 @@ public class TestGroupingNode {
         helpProcess(mgr, node, context, expected, null);
     }
 
+    @Test public void testHashAggregate() throws Exception {
+    	GroupingNode node = helpTestHashAggregate(BufferManagerFactory.getStandaloneBufferManager());
+    	assertEquals(0, node.getHashSpillCount());
+    }
+    
+    @Test public void testHashAggregateSpill() throws Exception {
+    	//no reserve and single row batches, so the first reservation check is refused
+    	BufferManagerImpl mgr = BufferManagerFactory.getTestBufferManager(0, 1);
+    	mgr.setTargetBytesPerRow(1);
+    	long batches = mgr.getBatchesAdded();
+    	GroupingNode node = helpTestHashAggregate(mgr);
+    	assertEquals(1, node.getHashSpillCount());
+    	assertTrue(mgr.getBatchesAdded() > batches);
+    }
+
+	private GroupingNode helpTestHashAggregate(BufferManager mgr) throws TeiidComponentException, TeiidProcessingException {
+		GroupingNode node = new GroupingNode(1);
+        List outputElements = new ArrayList();
+        ElementSymbol col1 = new ElementSymbol("col1"); //$NON-NLS-1$
+        col1.setType(Integer.class);
+        ElementSymbol col2 = new ElementSymbol("col2"); //$NON-NLS-1$
+        col2.setType(Integer.class);
+        outputElements.add(col1);
+        outputElements.add(new AggregateSymbol("COUNT", false, col2)); //$NON-NLS-1$ 
+        outputElements.add(new AggregateSymbol("SUM", false, col2)); //$NON-NLS-1$ 
+        node.setElements(outputElements);
+        List groupingElements = new ArrayList();
+        groupingElements.add(col1); 
+        node.setOrderBy(new OrderBy(groupingElements).getOrderByItems());
+        node.setHashAggregate(true);
+        CommandContext context = new CommandContext("pid", "test", null, null,  1);               //$NON-NLS-1$ //$NON-NLS-2$
+        
+        List[] expected = new List[] {
+            Arrays.asList(new Object[] { null, 1, 3L }),
+            Arrays.asList(new Object[] { 0, 1, 4L }),
+            Arrays.asList(new Object[] { 1, 1, 2L }),
+            Arrays.asList(new Object[] { 2, 4, 5L }),
+            Arrays.asList(new Object[] { 3, 1, 0L }),
+            Arrays.asList(new Object[] { 4, 2, 5L }),
+            Arrays.asList(new Object[] { 5, 1, 3L }),
+            Arrays.asList(new Object[] { 6, 2, 7L })
+        };
+        
+        FakeTupleSource dataSource = createTupleSource1();
+        RelationalNode dataNode = new FakeRelationalNode(0, dataSource, mgr.getProcessorBatchSize());
+        dataNode.setElements(dataSource.getSchema());            
+        node.addChild(dataNode);    
+        node.initialize(context, mgr, null);
+        node.open();
+        
+        //the hash output is not ordered
+        List<List<?>> actual = new ArrayList<List<?>>();
+        while(true) {
+            try {
+                TupleBatch batch = node.nextBatch();
+                actual.addAll(batch.getTuples());
+                if(batch.getTerminationFlag()) {
+                    break;
+                }
+            } catch (BlockedException e) {
+                //ignore
+            }
+        }
+        assertEquals(expected.length, actual.size());
+        assertEquals(new HashSet<List<?>>(Arrays.asList(expected)), new HashSet<List<?>>(actual));
+        return node;
+	}
+
 	private GroupingNode getExampleGroupingNode() {
 		GroupingNode node = new GroupingNode(1);
         List outputElements = new ArrayList();
@@ -22,6 +22,8 @@ import static org.junit.Assert.*;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -76,6 +78,15 @@ public class TestJoinNode {
     private BlockingFakeRelationalNode rightNode;
     
     private FakeDataManager dataMgr;
+    
+    private boolean unordered;
+    
+    private static final Comparator<List> ROW_COMPARATOR = new Comparator<List>() {
+    	@Override
+    	public int compare(List o1, List o2) {
+    		return String.valueOf(o1).compareTo(String.valueOf(o2));
+    	}
+    };
 
     @Before public void setup() {
     	leftTuples = createTuples1();
@@ -269,11 +280,16 @@ public class TestJoinNode {
 		join.open();
         
         int currentRow = 1;
+        List<List> actual = new ArrayList<List>();
         while(true) {
             try {
                 TupleBatch batch = join.nextBatch();
                 for(;currentRow <= batch.getEndRow(); currentRow++) {
                     List tuple = batch.getTuple(currentRow);
+                    if (unordered) {
+                    	actual.add(tuple);
+                    	continue;
+                    }
                     assertEquals("Rows don't match at " + currentRow, expectedResults[currentRow-1], tuple); //$NON-NLS-1$
                 }
                 if(batch.getTerminationFlag()) {
@@ -284,6 +300,12 @@ public class TestJoinNode {
             }
         }
         assertEquals(expectedResults.length, currentRow - 1);
+        if (unordered) {
+        	List<List> expectedList = new ArrayList<List>(Arrays.asList(expectedResults));
+        	Collections.sort(expectedList, ROW_COMPARATOR);
+        	Collections.sort(actual, ROW_COMPARATOR);
+        	assertEquals(expectedList, actual);
+        }
         join.close();
 	}
     
@@ -1152,6 +1174,74 @@ public class TestJoinNode {
         TestProcessor.helpProcess(plan, context, hdm, rows);
     }
     
+    @Test public void testHashJoin() throws Exception {
+    	helpTestHashJoin(100000);
+    }
+    
+    /**
+     * With minimal processing memory both sides will be partitioned
+     */
+    @Test public void testHashJoinPartitioned() throws Exception {
+    	helpTestHashJoin(1);
+    	assertTrue(join.getJoinStrategy().toString().contains("PARTITIONS"));
+    }
+
+	private void helpTestHashJoin(int processingBytes) throws TeiidComponentException, TeiidProcessingException {
+		this.joinType = JoinType.JOIN_INNER;
+        int rows = 100;
+        List[] data = new List[rows];
+        List[] data1 = new List[rows];
+        for(int i=0; i<rows; i++) { 
+            data[i] = new ArrayList();
+            data[i].add((i*17) % 47);
+            data1[i] = new ArrayList();
+            data1[i].add((i*13) % 53);
+        }
+        this.leftTuples = data;
+        this.rightTuples = data1;
+        List<List> results = new ArrayList<List>();
+        for (List left : leftTuples) {
+        	for (List right : rightTuples) {
+        		if (left.get(0).equals(right.get(0))) {
+        			results.add(Arrays.asList(left.get(0), right.get(0)));
+        		}
+        	}
+        }
+        expected = results.toArray(new List[results.size()]);
+        unordered = true;
+        helpCreateJoin();               
+        this.joinStrategy = new HashJoinStrategy();
+        this.join.setJoinStrategy(joinStrategy);
+        helpTestJoinDirect(expected, 5, processingBytes);
+	}
+    
+    @Test public void testHashJoinLeftOuter() throws Exception {
+    	this.joinType = JoinType.JOIN_LEFT_OUTER;
+        expected = new List[] {
+            Arrays.asList(new Object[] { new Integer(5), null }),    
+            Arrays.asList(new Object[] { new Integer(3), null }),    
+            Arrays.asList(new Object[] { new Integer(2), new Integer(2) }),    
+            Arrays.asList(new Object[] { new Integer(2), new Integer(2) }),    
+            Arrays.asList(new Object[] { new Integer(4), new Integer(4) }),    
+            Arrays.asList(new Object[] { new Integer(4), new Integer(4) }),    
+            Arrays.asList(new Object[] { new Integer(1), new Integer(1) }),    
+            Arrays.asList(new Object[] { new Integer(4), new Integer(4) }),    
+            Arrays.asList(new Object[] { new Integer(4), new Integer(4) }),            
+            Arrays.asList(new Object[] { new Integer(10), null }),            
+            Arrays.asList(new Object[] { new Integer(11), null }),    
+            Arrays.asList(new Object[] { new Integer(11), null })            
+        };
+        helpCreateJoin();
+        this.joinStrategy = new HashJoinStrategy();
+        this.join.setJoinStrategy(joinStrategy);
+        helpTestJoinDirect(expected, 100, 100000);
+        unordered = true;
+        helpCreateJoin();
+        this.joinStrategy = new HashJoinStrategy();
+        this.join.setJoinStrategy(joinStrategy);
+        helpTestJoinDirect(expected, 1, 1);
+    }
+    
     @Test public void testDupRemoveUnderJoin() throws Exception {
     	String sql = "select a.e1, b.e2 from pm1.g1 as a, (select distinct e1, e2 from pm2.g2) as b"; //$NON-NLS-1$
 
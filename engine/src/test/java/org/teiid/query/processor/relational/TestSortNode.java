@@ -26,6 +26,10 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.teiid.common.buffer.BlockedException;
@@ -376,5 +380,114 @@ public class TestSortNode {
     	assertEquals(Arrays.asList(2), ts.nextTuple());
     	assertNull(ts.nextTuple());
     }
+    
+    @Test public void testMultiPassMetrics() throws Exception {
+    	ElementSymbol es1 = new ElementSymbol("e1"); //$NON-NLS-1$
+        es1.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+        BufferManager bm = BufferManagerFactory.getTestBufferManager(0, 2);
+        TupleBuffer tsid = bm.createTupleBuffer(Arrays.asList(es1, es1), "test", TupleSourceType.PROCESSOR); //$NON-NLS-1$
+        for (int i = 0; i < 100; i++) {
+        	tsid.addTuple(Arrays.asList(i%7, i));
+        }
+    	tsid.close();
+    	SortUtility su = new SortUtility(tsid.createIndexedTupleSource(), Arrays.asList(es1), Arrays.asList(Boolean.TRUE), Mode.SORT, bm, "test", tsid.getSchema()); //$NON-NLS-1$
+    	su.setBatchSize(2);
+    	su.setStableSort(true);
+    	TupleBuffer out = su.sort();
+    	assertTrue(su.getRunsCreated() > 1);
+    	assertTrue(su.getMerges() > 0);
+    	assertTrue(su.getBytesSpilled() > 0);
+    	TupleSource ts = out.createIndexedTupleSource();
+    	List<?> previous = null;
+    	for (int i = 0; i < 100; i++) {
+    		List<?> tuple = ts.nextTuple();
+    		if (previous != null && previous.get(0).equals(tuple.get(0))) {
+    			//stable with respect to the input order
+    			assertTrue((Integer)previous.get(1) < (Integer)tuple.get(1));
+    		}
+    		previous = tuple;
+    	}
+    	assertNull(ts.nextTuple());
+    }
+    
+    @Test public void testParallelSublistSort() throws Exception {
+    	ElementSymbol es1 = new ElementSymbol("e1"); //$NON-NLS-1$
+        es1.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+        BufferManager bm = BufferManagerFactory.getStandaloneBufferManager();
+        TupleBuffer tsid = bm.createTupleBuffer(Arrays.asList(es1, es1), "test", TupleSourceType.PROCESSOR); //$NON-NLS-1$
+        for (int i = 0; i < 1000; i++) {
+        	tsid.addTuple(Arrays.asList((1000 - i)%10, i));
+        }
+    	tsid.close();
+    	final AtomicInteger executions = new AtomicInteger();
+    	final ExecutorService executor = Executors.newSingleThreadExecutor();
+    	CommandContext cc = new CommandContext();
+    	cc.getOptions().setMaxParallelism(2);
+    	cc.setExecutor(new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				executions.incrementAndGet();
+				executor.execute(command);
+			}
+		});
+    	int threshold = SortUtility.PARALLEL_SORT_THRESHOLD;
+    	SortUtility.PARALLEL_SORT_THRESHOLD = 16;
+    	CommandContext.pushThreadLocalContext(cc);
+    	try {
+	    	SortUtility su = new SortUtility(tsid.createIndexedTupleSource(), Arrays.asList(es1), Arrays.asList(Boolean.TRUE), Mode.SORT, bm, "test", tsid.getSchema()); //$NON-NLS-1$
+	    	su.setStableSort(true);
+	    	su.setNonBlocking(true);
+	    	TupleBuffer out = su.sort();
+	    	assertTrue(executions.get() > 0);
+	    	//the worker is released
+	    	assertTrue(cc.reserveParallelWorker());
+	    	cc.releaseParallelWorker();
+	    	TupleSource ts = out.createIndexedTupleSource();
+	    	List<?> previous = null;
+	    	for (int i = 0; i < 1000; i++) {
+	    		List<?> tuple = ts.nextTuple();
+	    		if (previous != null) {
+	    			assertTrue((Integer)previous.get(0) <= (Integer)tuple.get(0));
+	    			if (previous.get(0).equals(tuple.get(0))) {
+	    				//stable with respect to the input order
+	    				assertTrue((Integer)previous.get(1) < (Integer)tuple.get(1));
+	    			}
+	    		}
+	    		previous = tuple;
+	    	}
+	    	assertNull(ts.nextTuple());
+    	} finally {
+    		CommandContext.popThreadLocalContext();
+    		SortUtility.PARALLEL_SORT_THRESHOLD = threshold;
+    		executor.shutdownNow();
+    	}
+    }
+    
+    @Test public void testTopN() throws Exception {
+    	ElementSymbol es1 = new ElementSymbol("e1"); //$NON-NLS-1$
+        es1.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+        BufferManager bm = BufferManagerFactory.getStandaloneBufferManager();
+        TupleBuffer tsid = bm.createTupleBuffer(Arrays.asList(es1, es1), "test", TupleSourceType.PROCESSOR); //$NON-NLS-1$
+        for (int i = 0; i < 1000; i++) {
+        	tsid.addTuple(Arrays.asList((1000 - i)%10, i));
+        }
+    	tsid.close();
+    	SortUtility su = new SortUtility(tsid.createIndexedTupleSource(), Arrays.asList(es1), Arrays.asList(Boolean.TRUE), Mode.SORT, bm, "test", tsid.getSchema()); //$NON-NLS-1$
+    	TupleBuffer out = su.sort(3);
+    	assertEquals(0, su.getRunsCreated());
+    	TupleSource ts = out.createIndexedTupleSource();
+    	assertEquals(Arrays.asList(0, 0), ts.nextTuple());
+    	assertEquals(Arrays.asList(0, 10), ts.nextTuple());
+    	assertEquals(Arrays.asList(0, 20), ts.nextTuple());
+    	assertNull(ts.nextTuple());
+    	
+    	su = new SortUtility(tsid.createIndexedTupleSource(), Arrays.asList(es1), Arrays.asList(Boolean.TRUE), Mode.DUP_REMOVE, bm, "test", tsid.getSchema()); //$NON-NLS-1$
+    	out = su.sort(3);
+    	ts = out.createIndexedTupleSource();
+    	assertEquals(0, ts.nextTuple().get(0));
+    	assertEquals(1, ts.nextTuple().get(0));
+    	assertEquals(2, ts.nextTuple().get(0));
+    	assertNull(ts.nextTuple());
+    }
 
 }
@@ -1164,6 +1164,8 @@ public class VDBMetadataMapper implements MetadataMapper<VDBMetaData> {
 		private static final String CACHE_WRITE_COUNT = "buffermgr-cache-write-count"; //$NON-NLS-1$
 		private static final String CACHE_READ_COUNT = "buffermgr-cache-read-count"; //$NON-NLS-1$
 		private static final String DISK_SPACE_USED = "buffermgr-diskspace-used-mb"; //$NON-NLS-1$
+		private static final String EVICTION_COUNT = "buffermgr-eviction-count"; //$NON-NLS-1$
+		private static final String HIT_RATIO = "buffermgr-hit-ratio"; //$NON-NLS-1$
 		private static final String ACTIVE_PLAN_COUNT = "active-plans-count"; //$NON-NLS-1$
 		private static final String WAITING_PLAN_COUNT = "waiting-plans-count"; //$NON-NLS-1$
 		private static final String MAX_WAIT_PLAN_COUNT = "max-waitplan-watermark"; //$NON-NLS-1$
@@ -1182,6 +1184,8 @@ public class VDBMetadataMapper implements MetadataMapper<VDBMetaData> {
 			node.get(CACHE_WRITE_COUNT).set(object.getCacheWriteCount());	
 			node.get(CACHE_READ_COUNT).set(object.getCacheReadCount());
 			node.get(DISK_SPACE_USED).set(object.getDiskSpaceUsedInMB());
+			node.get(EVICTION_COUNT).set(object.getEvictionCount());
+			node.get(HIT_RATIO).set(object.getHitRatio());
 			node.get(ACTIVE_PLAN_COUNT).set(object.getActivePlanCount());
 			node.get(WAITING_PLAN_COUNT).set(object.getWaitPlanCount());
 			node.get(MAX_WAIT_PLAN_COUNT).set(object.getMaxWaitPlanWaterMark());
@@ -1203,6 +1207,12 @@ public class VDBMetadataMapper implements MetadataMapper<VDBMetaData> {
 			stats.setCacheReadCount(node.get(CACHE_READ_COUNT).asLong());
 			stats.setCacheWriteCount(node.get(CACHE_WRITE_COUNT).asLong());
 			stats.setDiskSpaceUsedInMB(node.get(DISK_SPACE_USED).asLong());
+			if (node.has(EVICTION_COUNT)) {
+				stats.setEvictionCount(node.get(EVICTION_COUNT).asLong());
+			}
+			if (node.has(HIT_RATIO)) {
+				stats.setHitRatio(node.get(HIT_RATIO).asDouble());
+			}
 			stats.setActivePlanCount(node.get(ACTIVE_PLAN_COUNT).asInt());
 			stats.setWaitPlanCount(node.get(WAITING_PLAN_COUNT).asInt());
 			stats.setMaxWaitPlanWaterMark(node.get(MAX_WAIT_PLAN_COUNT).asInt());
@@ -1220,6 +1230,8 @@ public class VDBMetadataMapper implements MetadataMapper<VDBMetaData> {
 			addAttribute(node, CACHE_READ_COUNT, ModelType.LONG, true);
 			addAttribute(node, CACHE_WRITE_COUNT, ModelType.LONG, true);
 			addAttribute(node, DISK_SPACE_USED, ModelType.LONG, true);
+			addAttribute(node, EVICTION_COUNT, ModelType.LONG, true);
+			addAttribute(node, HIT_RATIO, ModelType.DOUBLE, true);
 			addAttribute(node, ACTIVE_PLAN_COUNT, ModelType.INT, true);
 			addAttribute(node, WAITING_PLAN_COUNT, ModelType.INT, true);
 			addAttribute(node, MAX_WAIT_PLAN_COUNT, ModelType.INT, true);
@@ -1236,6 +1248,8 @@ public class VDBMetadataMapper implements MetadataMapper<VDBMetaData> {
 					new SimpleAttributeDefinition(CACHE_READ_COUNT, ModelType.LONG, false),
 					new SimpleAttributeDefinition(CACHE_WRITE_COUNT, ModelType.LONG, false),
 					new SimpleAttributeDefinition(DISK_SPACE_USED, ModelType.LONG, false),
+					new SimpleAttributeDefinition(EVICTION_COUNT, ModelType.LONG, false),
+					new SimpleAttributeDefinition(HIT_RATIO, ModelType.DOUBLE, false),
 					new SimpleAttributeDefinition(ACTIVE_PLAN_COUNT, ModelType.INT, false),
 					new SimpleAttributeDefinition(WAITING_PLAN_COUNT, ModelType.INT, false),
 					new SimpleAttributeDefinition(MAX_WAIT_PLAN_COUNT, ModelType.INT, false)
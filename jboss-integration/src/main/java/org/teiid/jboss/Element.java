@@ -64,6 +64,10 @@ enum Element {
 	MAX_STORAGE_OBJECT_SIZE_ATTRIBUTE("max-storage-object-size", "buffer-service-max-storage-object-size"),
 	INLINE_LOBS("inline-lobs", "buffer-service-inline-lobs"),
 	ENCRYPT_FILES_ATTRIBUTE("encrypt-files", "buffer-service-encrypt-files"),
+	COLUMNAR_SPILL_ATTRIBUTE("columnar-spill", "buffer-service-columnar-spill"),
+	ADAPTIVE_RESERVE_ATTRIBUTE("adaptive-reserve", "buffer-service-adaptive-reserve"),
+	MEMORY_MAPPED_WINDOW_SIZE_ATTRIBUTE("memory-mapped-window-size", "buffer-service-memory-mapped-window-size"),
+	EVICTION_POLICY_ATTRIBUTE("eviction-policy", "buffer-service-eviction-policy"),
 	
 	//prepared-plan-cache-config
 	PREPAREDPLAN_CACHE_ELEMENT("preparedplan-cache"),
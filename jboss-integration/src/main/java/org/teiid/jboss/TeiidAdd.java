@@ -152,6 +152,10 @@ class TeiidAdd extends AbstractAddStepHandler {
 		TeiidConstants.MEMORY_BUFFER_OFFHEAP_ATTRIBUTE,
 		TeiidConstants.MAX_STORAGE_OBJECT_SIZE_ATTRIBUTE,
 		TeiidConstants.ENCRYPT_FILES_ATTRIBUTE,
+		TeiidConstants.COLUMNAR_SPILL_ATTRIBUTE,
+		TeiidConstants.ADAPTIVE_RESERVE_ATTRIBUTE,
+		TeiidConstants.MEMORY_MAPPED_WINDOW_SIZE_ATTRIBUTE,
+		TeiidConstants.EVICTION_POLICY_ATTRIBUTE,
 		
 		// prepared plan cache
 		TeiidConstants.PPC_NAME_ATTRIBUTE,
@@ -717,6 +721,18 @@ class TeiidAdd extends AbstractAddStepHandler {
     	if (isDefined(ENCRYPT_FILES_ATTRIBUTE, node, context)) {
     		bufferManger.setEncryptFiles(asBoolean(ENCRYPT_FILES_ATTRIBUTE, node, context));
     	}
+    	if (isDefined(COLUMNAR_SPILL_ATTRIBUTE, node, context)) {
+    		bufferManger.setColumnarSpill(asBoolean(COLUMNAR_SPILL_ATTRIBUTE, node, context));
+    	}
+    	if (isDefined(ADAPTIVE_RESERVE_ATTRIBUTE, node, context)) {
+    		bufferManger.setAdaptiveReserve(asBoolean(ADAPTIVE_RESERVE_ATTRIBUTE, node, context));
+    	}
+    	if (isDefined(MEMORY_MAPPED_WINDOW_SIZE_ATTRIBUTE, node, context)) {
+    		bufferManger.setMemoryMappedWindowSize(asInt(MEMORY_MAPPED_WINDOW_SIZE_ATTRIBUTE, node, context));
+    	}
+    	if (isDefined(EVICTION_POLICY_ATTRIBUTE, node, context)) {
+    		bufferManger.setEvictionPolicy(asString(EVICTION_POLICY_ATTRIBUTE, node, context));
+    	}
     	return bufferManger;
     }	
     
@@ -24,6 +24,7 @@ import org.jboss.as.controller.SimpleAttributeDefinitionBuilder;
 import org.jboss.as.controller.client.helpers.MeasurementUnit;
 import org.jboss.dmr.ModelNode;
 import org.jboss.dmr.ModelType;
+import org.teiid.common.buffer.impl.BufferManagerImpl.EvictionPolicy;
 import org.teiid.dqp.internal.process.DQPConfiguration;
 import org.teiid.net.socket.AuthenticationType;
 import org.teiid.net.socket.SocketUtil;
@@ -267,6 +268,36 @@ public class TeiidConstants {
         .setDefaultValue(new ModelNode(false))
         .build();   
 	
+	public static SimpleAttributeDefinition COLUMNAR_SPILL_ATTRIBUTE = new SimpleAttributeDefinitionBuilder(Element.COLUMNAR_SPILL_ATTRIBUTE.getModelName(), ModelType.BOOLEAN)
+        .setXmlName(Element.COLUMNAR_SPILL_ATTRIBUTE.getXMLName())
+        .setAllowNull(true)
+        .setAllowExpression(false)
+        .setDefaultValue(new ModelNode(false))
+        .build();   
+	
+	public static SimpleAttributeDefinition ADAPTIVE_RESERVE_ATTRIBUTE = new SimpleAttributeDefinitionBuilder(Element.ADAPTIVE_RESERVE_ATTRIBUTE.getModelName(), ModelType.BOOLEAN)
+        .setXmlName(Element.ADAPTIVE_RESERVE_ATTRIBUTE.getXMLName())
+        .setAllowNull(true)
+        .setAllowExpression(false)
+        .setDefaultValue(new ModelNode(false))
+        .build();   
+	
+	public static SimpleAttributeDefinition MEMORY_MAPPED_WINDOW_SIZE_ATTRIBUTE = new SimpleAttributeDefinitionBuilder(Element.MEMORY_MAPPED_WINDOW_SIZE_ATTRIBUTE.getModelName(), ModelType.INT)
+        .setXmlName(Element.MEMORY_MAPPED_WINDOW_SIZE_ATTRIBUTE.getXMLName())
+        .setAllowNull(true)
+        .setAllowExpression(false)
+        .setDefaultValue(new ModelNode(0))
+        .setMeasurementUnit(MeasurementUnit.MEGABYTES)
+        .build();   
+	
+	public static SimpleAttributeDefinition EVICTION_POLICY_ATTRIBUTE = new SimpleAttributeDefinitionBuilder(Element.EVICTION_POLICY_ATTRIBUTE.getModelName(), ModelType.STRING)
+        .setXmlName(Element.EVICTION_POLICY_ATTRIBUTE.getXMLName())
+        .setAllowNull(true)
+        .setAllowExpression(false)
+        .setDefaultValue(new ModelNode(EvictionPolicy.LRFU.name()))
+        .setAllowedValues(new ModelNode(EvictionPolicy.LRFU.name()), new ModelNode(EvictionPolicy.TINYLFU.name()))
+        .build();   
+	
 	// prepared-plan-cache-config
 	// PREPAREDPLAN_CACHE_ELEMENT("preparedplan-cache",true, false, MeasurementUnit.NONE);
 	public static SimpleAttributeDefinition PPC_ENABLE_ATTRIBUTE = new SimpleAttributeDefinitionBuilder(Element.PPC_ENABLE_ATTRIBUTE.getModelName(), ModelType.BOOLEAN)
@@ -209,6 +209,10 @@ class TeiidSubsystemParser implements XMLStreamConstants, XMLElementReader<List<
 		MEMORY_BUFFER_OFFHEAP_ATTRIBUTE.marshallAsAttribute(node, false, writer);
 		MAX_STORAGE_OBJECT_SIZE_ATTRIBUTE.marshallAsAttribute(node, false, writer);
 		ENCRYPT_FILES_ATTRIBUTE.marshallAsAttribute(node, false, writer);
+		COLUMNAR_SPILL_ATTRIBUTE.marshallAsAttribute(node, false, writer);
+		ADAPTIVE_RESERVE_ATTRIBUTE.marshallAsAttribute(node, false, writer);
+		MEMORY_MAPPED_WINDOW_SIZE_ATTRIBUTE.marshallAsAttribute(node, false, writer);
+		EVICTION_POLICY_ATTRIBUTE.marshallAsAttribute(node, false, writer);
 	}
 
 	private void writeResultsetCacheConfiguration(XMLExtendedStreamWriter writer, ModelNode node) throws XMLStreamException {
@@ -656,6 +660,18 @@ class TeiidSubsystemParser implements XMLStreamConstants, XMLElementReader<List<
     			case ENCRYPT_FILES_ATTRIBUTE:
     				node.get(element.getModelName()).set(Boolean.parseBoolean(attrValue));
     				break;
+    			case COLUMNAR_SPILL_ATTRIBUTE:
+    				node.get(element.getModelName()).set(Boolean.parseBoolean(attrValue));
+    				break;
+    			case ADAPTIVE_RESERVE_ATTRIBUTE:
+    				node.get(element.getModelName()).set(Boolean.parseBoolean(attrValue));
+    				break;
+    			case MEMORY_MAPPED_WINDOW_SIZE_ATTRIBUTE:
+    				node.get(element.getModelName()).set(Integer.parseInt(attrValue));
+    				break;
+    			case EVICTION_POLICY_ATTRIBUTE:
+    				node.get(element.getModelName()).set(attrValue);
+    				break;
     			default:
     				throw ParseUtils.unexpectedAttribute(reader, i);    			
     			}
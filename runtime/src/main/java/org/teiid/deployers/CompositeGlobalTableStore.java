@@ -35,6 +35,7 @@ import org.teiid.query.metadata.QueryMetadataInterface;
 import org.teiid.query.metadata.TempMetadataID;
 import org.teiid.query.metadata.TransformationMetadata;
 import org.teiid.query.optimizer.relational.RelationalPlanner;
+import org.teiid.query.sql.symbol.ElementSymbol;
 import org.teiid.query.sql.symbol.GroupSymbol;
 import org.teiid.query.tempdata.GlobalTableStore;
 import org.teiid.query.tempdata.GlobalTableStoreImpl;
@@ -131,6 +132,19 @@ public class CompositeGlobalTableStore implements GlobalTableStore {
 		return getStoreForTable(matTableName).updateMatViewRow(matTableName, tuple, delete);
 	}
 
+	@Override
+	public int updateMatViewRows(String matTableName,
+			List<? extends List<?>> tuples) throws TeiidComponentException {
+		return getStoreForTable(matTableName).updateMatViewRows(matTableName, tuples);
+	}
+	
+	@Override
+	public void addMatViewIndex(String matTableName,
+			List<ElementSymbol> indexColumns, List<ElementSymbol> includeColumns)
+			throws TeiidComponentException, TeiidProcessingException {
+		getStoreForTable(matTableName).addMatViewIndex(matTableName, indexColumns, includeColumns);
+	}
+
 	@Override
 	public TempTable createMatTable(String matTableName, GroupSymbol group)
 			throws TeiidComponentException, QueryMetadataException,
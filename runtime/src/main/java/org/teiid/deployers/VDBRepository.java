@@ -28,6 +28,7 @@ import java.util.NavigableMap;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
@@ -89,6 +90,8 @@ public class VDBRepository implements Serializable{
     private BufferManager bufferManager;
     private ObjectReplicator objectReplictor;
     private DatabaseStore databaseStore;
+    private Executor metadataExecutor;
+    private int metadataParallelism = 1;
 	
     public void addVDB(VDBMetaData vdb, MetadataStore metadataStore,
             LinkedHashMap<String, VDBResources.Resource> visibilityMap, UDFMetaData udf, ConnectorManagerRepository cmr)
@@ -340,7 +343,9 @@ public class VDBRepository implements Serializable{
 					}
 				}
 				MetadataStore store = metadataAwareVDB.removeAttachment(MetadataStore.class);
-                ValidatorReport report = new MetadataValidator(store.getDatatypes(), QueryParser.getQueryParser()).validate(metadataAwareVDB, store);
+                MetadataValidator validator = new MetadataValidator(store.getDatatypes(), QueryParser.getQueryParser());
+                validator.setExecutor(this.metadataExecutor, this.metadataParallelism);
+                ValidatorReport report = validator.validate(metadataAwareVDB, store);
 	
 				if (report.hasItems()) {
 					LogManager.logWarning(LogConstants.CTX_RUNTIME, RuntimePlugin.Util.gs(RuntimePlugin.Event.TEIID40073, name, version, report.getItems().iterator().next()));
@@ -486,6 +491,16 @@ public class VDBRepository implements Serializable{
         this.objectReplictor = value;
     }
 
+    /**
+     * Set the executor used to resolve independent schemas concurrently during validation.
+     * @param executor may be null to validate on the deploying thread
+     * @param maxParallelism the maximum number of schemas resolved at once
+     */
+    public void setMetadataExecutor(Executor executor, int maxParallelism) {
+        this.metadataExecutor = executor;
+        this.metadataParallelism = maxParallelism;
+    }
+
 	NavigableMap<VDBKey, CompositeVDB> getVdbRepo() {
         return vdbRepo;
     }
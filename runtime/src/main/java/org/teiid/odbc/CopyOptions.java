@@ -0,0 +1,388 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.odbc;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.teiid.runtime.RuntimePlugin;
+
+/**
+ * The format of COPY TO STDOUT / COPY FROM STDIN data.
+ * <br>
+ * Only the text and csv formats are supported.  Both the legacy option syntax, e.g.
+ * WITH CSV HEADER DELIMITER ';', and the parenthesized list, e.g. (FORMAT csv, HEADER true),
+ * are accepted.
+ */
+public class CopyOptions {
+
+	/**
+	 * Returned by {@link #parseRow(String)} for the end of data marker
+	 */
+	public static final List<String> END_OF_DATA = Collections.emptyList();
+
+	private static Pattern tokenPattern = Pattern.compile("\\s*(?:(E?'(?:[^']|'')*')|([(),])|([^\\s(),']+))", Pattern.CASE_INSENSITIVE); //$NON-NLS-1$
+
+	private boolean csv;
+	private boolean header;
+	private Character delimiter;
+	private String nullString;
+	private char quote = '"';
+	private Character escape;
+
+	public static CopyOptions parse(String options) throws SQLException {
+		CopyOptions result = new CopyOptions();
+		List<String> tokens = tokenize(options);
+		int i = 0;
+		if (i < tokens.size() && tokens.get(i).equalsIgnoreCase("WITH")) { //$NON-NLS-1$
+			i++;
+		}
+		if (i < tokens.size() && tokens.get(i).equals("(")) { //$NON-NLS-1$
+			i++;
+			while (i < tokens.size() && !tokens.get(i).equals(")")) { //$NON-NLS-1$
+				String name = tokens.get(i++);
+				String value = null;
+				if (i < tokens.size() && !tokens.get(i).equals(",") && !tokens.get(i).equals(")")) { //$NON-NLS-1$ //$NON-NLS-2$
+					value = tokens.get(i++);
+				}
+				result.setOption(name, value);
+				if (i < tokens.size() && tokens.get(i).equals(",")) { //$NON-NLS-1$
+					i++;
+				}
+			}
+			i++;
+		} else {
+			while (i < tokens.size()) {
+				String name = tokens.get(i++);
+				String value = null;
+				if (name.equalsIgnoreCase("DELIMITER") || name.equalsIgnoreCase("NULL") //$NON-NLS-1$ //$NON-NLS-2$
+						|| name.equalsIgnoreCase("QUOTE") || name.equalsIgnoreCase("ESCAPE")) { //$NON-NLS-1$ //$NON-NLS-2$
+					if (i < tokens.size() && tokens.get(i).equalsIgnoreCase("AS")) { //$NON-NLS-1$
+						i++;
+					}
+					if (i < tokens.size()) {
+						value = tokens.get(i++);
+					}
+				} else if (name.equalsIgnoreCase("CSV")) { //$NON-NLS-1$
+					name = "FORMAT"; //$NON-NLS-1$
+					value = "csv"; //$NON-NLS-1$
+				}
+				result.setOption(name, value);
+			}
+		}
+		if (i < tokens.size()) {
+			throw new SQLException(RuntimePlugin.Util.gs(RuntimePlugin.Event.TEIID40168, tokens.get(i)));
+		}
+		return result;
+	}
+
+	private static List<String> tokenize(String options) throws SQLException {
+		List<String> tokens = new ArrayList<String>();
+		if (options == null) {
+			return tokens;
+		}
+		Matcher m = tokenPattern.matcher(options);
+		int end = 0;
+		while (m.find() && m.start() == end) {
+			end = m.end();
+			if (m.group(1) != null) {
+				tokens.add(m.group(1));
+			} else if (m.group(2) != null) {
+				tokens.add(m.group(2));
+			} else {
+				tokens.add(m.group(3));
+			}
+		}
+		if (options.substring(end).trim().length() > 0) {
+			throw new SQLException(RuntimePlugin.Util.gs(RuntimePlugin.Event.TEIID40168, options.substring(end).trim()));
+		}
+		return tokens;
+	}
+
+	private void setOption(String name, String value) throws SQLException {
+		if (name.equalsIgnoreCase("FORMAT") && value != null && (value.equalsIgnoreCase("csv") || value.equalsIgnoreCase("text"))) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			this.csv = value.equalsIgnoreCase("csv"); //$NON-NLS-1$
+		} else if (name.equalsIgnoreCase("HEADER")) { //$NON-NLS-1$
+			if (value == null || value.equalsIgnoreCase("true") || value.equalsIgnoreCase("on") || value.equals("1")) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				this.header = true;
+			} else if (value.equalsIgnoreCase("false") || value.equalsIgnoreCase("off") || value.equals("0")) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				this.header = false;
+			} else {
+				throw new SQLException(RuntimePlugin.Util.gs(RuntimePlugin.Event.TEIID40168, name + " " + value)); //$NON-NLS-1$
+			}
+		} else if (name.equalsIgnoreCase("NULL") && isLiteral(value)) { //$NON-NLS-1$
+			this.nullString = unquote(value);
+		} else if ((name.equalsIgnoreCase("DELIMITER") || name.equalsIgnoreCase("QUOTE") || name.equalsIgnoreCase("ESCAPE")) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				&& isLiteral(value) && unquote(value).length() == 1) {
+			char c = unquote(value).charAt(0);
+			if (name.equalsIgnoreCase("DELIMITER")) { //$NON-NLS-1$
+				this.delimiter = c;
+			} else if (name.equalsIgnoreCase("QUOTE")) { //$NON-NLS-1$
+				this.quote = c;
+			} else {
+				this.escape = c;
+			}
+		} else {
+			throw new SQLException(RuntimePlugin.Util.gs(RuntimePlugin.Event.TEIID40168, value == null?name:name + " " + value)); //$NON-NLS-1$
+		}
+	}
+
+	private static boolean isLiteral(String value) {
+		return value != null && value.endsWith("'") && value.length() > 1; //$NON-NLS-1$
+	}
+
+	private static String unquote(String value) {
+		boolean escaped = value.charAt(0) != '\'';
+		value = value.substring(escaped?2:1, value.length() - 1).replace("''", "'"); //$NON-NLS-1$ //$NON-NLS-2$
+		if (escaped) {
+			StringBuilder sb = new StringBuilder(value.length());
+			unescape(value, 0, value.length(), sb);
+			value = sb.toString();
+		}
+		return value;
+	}
+
+	public boolean isCsv() {
+		return csv;
+	}
+
+	public boolean isHeader() {
+		return header;
+	}
+
+	public char getDelimiter() {
+		if (delimiter == null) {
+			return csv?',':'\t';
+		}
+		return delimiter;
+	}
+
+	public String getNullString() {
+		if (nullString == null) {
+			return csv?"":"\\N"; //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return nullString;
+	}
+
+	private char getEscape() {
+		if (escape == null) {
+			return quote;
+		}
+		return escape;
+	}
+
+	/**
+	 * Append the escaped or quoted form of the non-null value
+	 */
+	public void appendValue(StringBuilder sb, String value) {
+		char delim = getDelimiter();
+		if (!csv) {
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				switch (c) {
+				case '\\':
+					sb.append("\\\\"); //$NON-NLS-1$
+					break;
+				case '\n':
+					sb.append("\\n"); //$NON-NLS-1$
+					break;
+				case '\r':
+					sb.append("\\r"); //$NON-NLS-1$
+					break;
+				case '\t':
+					sb.append("\\t"); //$NON-NLS-1$
+					break;
+				case '\b':
+					sb.append("\\b"); //$NON-NLS-1$
+					break;
+				case '\f':
+					sb.append("\\f"); //$NON-NLS-1$
+					break;
+				case 11:
+					sb.append("\\v"); //$NON-NLS-1$
+					break;
+				default:
+					if (c == delim) {
+						sb.append('\\');
+					}
+					sb.append(c);
+				}
+			}
+			return;
+		}
+		char esc = getEscape();
+		boolean quoted = value.equals(getNullString()) || value.equals("\\."); //$NON-NLS-1$
+		for (int i = 0; !quoted && i < value.length(); i++) {
+			char c = value.charAt(i);
+			quoted = c == delim || c == quote || c == esc || c == '\n' || c == '\r';
+		}
+		if (!quoted) {
+			sb.append(value);
+			return;
+		}
+		sb.append(quote);
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == quote || c == esc) {
+				sb.append(esc);
+			}
+			sb.append(c);
+		}
+		sb.append(quote);
+	}
+
+	/**
+	 * Parse a single record without the trailing newline.
+	 * @return the values with null for null values, {@link #END_OF_DATA},
+	 * or null if the record is a csv record that continues on the next line
+	 */
+	public List<String> parseRow(String record) {
+		if (record.endsWith("\r")) { //$NON-NLS-1$
+			record = record.substring(0, record.length() - 1);
+		}
+		if (record.equals("\\.")) { //$NON-NLS-1$
+			return END_OF_DATA;
+		}
+		char delim = getDelimiter();
+		String nullValue = getNullString();
+		List<String> values = new ArrayList<String>();
+		StringBuilder sb = new StringBuilder();
+		if (!csv) {
+			int start = 0;
+			for (int i = 0; i <= record.length(); i++) {
+				if (i < record.length()) {
+					char c = record.charAt(i);
+					if (c == '\\') {
+						i++;
+						continue;
+					}
+					if (c != delim) {
+						continue;
+					}
+				}
+				if (record.regionMatches(start, nullValue, 0, nullValue.length()) && i - start == nullValue.length()) {
+					values.add(null);
+				} else {
+					sb.setLength(0);
+					unescape(record, start, Math.min(i, record.length()), sb);
+					values.add(sb.toString());
+				}
+				start = i + 1;
+			}
+			return values;
+		}
+		char esc = getEscape();
+		boolean inQuotes = false;
+		boolean wasQuoted = false;
+		for (int i = 0; i <= record.length(); i++) {
+			if (i == record.length()) {
+				if (inQuotes) {
+					return null;
+				}
+			} else {
+				char c = record.charAt(i);
+				if (inQuotes) {
+					if (c == esc && i + 1 < record.length() && (record.charAt(i + 1) == quote || record.charAt(i + 1) == esc)) {
+						sb.append(record.charAt(++i));
+					} else if (c == quote) {
+						inQuotes = false;
+					} else {
+						sb.append(c);
+					}
+					continue;
+				}
+				if (c == quote) {
+					inQuotes = true;
+					wasQuoted = true;
+					continue;
+				}
+				if (c != delim) {
+					sb.append(c);
+					continue;
+				}
+			}
+			if (!wasQuoted && sb.toString().equals(nullValue)) {
+				values.add(null);
+			} else {
+				values.add(sb.toString());
+			}
+			sb.setLength(0);
+			wasQuoted = false;
+		}
+		return values;
+	}
+
+	private static void unescape(String value, int start, int end, StringBuilder sb) {
+		for (int i = start; i < end; i++) {
+			char c = value.charAt(i);
+			if (c != '\\' || i + 1 >= end) {
+				sb.append(c);
+				continue;
+			}
+			c = value.charAt(++i);
+			switch (c) {
+			case 'b':
+				sb.append('\b');
+				break;
+			case 'f':
+				sb.append('\f');
+				break;
+			case 'n':
+				sb.append('\n');
+				break;
+			case 'r':
+				sb.append('\r');
+				break;
+			case 't':
+				sb.append('\t');
+				break;
+			case 'v':
+				sb.append((char)11);
+				break;
+			case 'x':
+				int hexEnd = i + 1;
+				while (hexEnd < end && hexEnd < i + 3 && Character.digit(value.charAt(hexEnd), 16) >= 0) {
+					hexEnd++;
+				}
+				if (hexEnd == i + 1) {
+					sb.append(c);
+				} else {
+					sb.append((char)Integer.parseInt(value.substring(i + 1, hexEnd), 16));
+					i = hexEnd - 1;
+				}
+				break;
+			default:
+				if (c >= '0' && c <= '7') {
+					int octEnd = i + 1;
+					while (octEnd < end && octEnd < i + 3 && value.charAt(octEnd) >= '0' && value.charAt(octEnd) <= '7') {
+						octEnd++;
+					}
+					sb.append((char)Integer.parseInt(value.substring(i, octEnd), 8));
+					i = octEnd - 1;
+				} else {
+					sb.append(c);
+				}
+			}
+		}
+	}
+
+}
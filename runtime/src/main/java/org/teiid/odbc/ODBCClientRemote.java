@@ -98,6 +98,21 @@ public interface ODBCClientRemote {
 	
 	void sendSslResponse();
 	
+	//	CopyOutResponse (B)
+	//	CopyData (F & B)
+	//	CopyDone (F & B)
+	//	CommandComplete (B)
+	void sendCopyOut(ResultSetImpl rs, List<PgColInfo> cols, CopyOptions options, ResultsFuture<Integer> result);
+	
+	//	CopyInResponse (B)
+	void sendCopyIn(int columns);
+	
+	/**
+	 * Pause or resume reading client messages.  Used to limit the copy data
+	 * buffered while a batch is executing.
+	 */
+	void setAutoRead(boolean autoRead);
+	
 	// unimplemented backend messages
 	
 	//	AuthenticationKerberosV5 (B)
@@ -107,11 +122,6 @@ public interface ODBCClientRemote {
 	
 	//	CloseComplete (B)
 
-	//	CopyData (F & B)
-	//	CopyDone (F & B)
-	//	CopyInResponse (B)
-	//	CopyOutResponse (B)
-	
 	//	NoticeResponse (B)
 	//	NotificationResponse (B)
 	
@@ -59,10 +59,14 @@ public interface ODBCServerRemote {
 	
 	void sslRequest();
 	
-	//  unimplemented frontend messages
 	//	CopyData (F & B)
+	void copyData(byte[] data, Charset encoding);
+	
 	//	CopyDone (F & B)
+	void copyDone();
+	
 	//	CopyFail (F)
+	void copyFail(String msg);
 }
 
 
@@ -27,6 +27,7 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -179,6 +180,10 @@ public class ODBCServerRemoteImpl implements ODBCServerRemote {
 	
 	private static Pattern txnPattern = Pattern.compile("(BEGIN(?:\\s+READ\\s+ONLY)?|COMMIT|ROLLBACK)(\\s+(WORK|TRANSACTION))?", Pattern.DOTALL|Pattern.CASE_INSENSITIVE); //$NON-NLS-1$
 	
+	private static Pattern copyPattern = Pattern.compile("COPY\\s+(?:\\((.*)\\)|((?:\"(?:[^\"]|\"\")*\"|[^\\s(\"])+)(?:\\s*\\(([^)]*)\\))?)\\s+(TO\\s+STDOUT|FROM\\s+STDIN)(?:\\s+(.*))?", Pattern.DOTALL|Pattern.CASE_INSENSITIVE); //$NON-NLS-1$
+	private static final int COPY_BATCH_SIZE = 1024;
+	private static final int COPY_MAX_PENDING_ROWS = 2*COPY_BATCH_SIZE;
+	
 	private TeiidDriver driver;
 	private ODBCClientRemote client;
 	private Properties props;
@@ -187,6 +192,7 @@ public class ODBCServerRemoteImpl implements ODBCServerRemote {
 	private boolean errorOccurred;
 	
 	private volatile ResultsFuture<Boolean> executionFuture;
+	private volatile CopyIn copyIn;
 	
 	// TODO: this is unbounded map; need to define some boundaries as to how many stmts each session can have
 	private Map<String, Prepared> preparedMap = Collections.synchronizedMap(new HashMap<String, Prepared>());
@@ -496,6 +502,106 @@ public class ODBCServerRemoteImpl implements ODBCServerRemote {
 		});    	
     }	
 	
+    private void copyOut(String sql, CopyOptions options, final ResultsFuture<Integer> completion) throws SQLException {
+    	final PreparedStatementImpl stmt = this.connection.prepareStatement(sql);
+    	executionFuture = stmt.submitExecute(ResultsMode.RESULTSET, null);
+        completion.addCompletionListener(new ResultsFuture.CompletionListener<Integer>() {
+        	public void onCompletion(ResultsFuture<Integer> future) {
+        		try {
+					stmt.close();
+				} catch (SQLException e) {
+					LogManager.logDetail(LogConstants.CTX_ODBC, e, "Error closing statement"); //$NON-NLS-1$
+				}
+        	}
+        });
+    	final CopyOptions copyOptions = options;
+        executionFuture.addCompletionListener(new ResultsFuture.CompletionListener<Boolean>() {
+    		@Override
+    		public void onCompletion(ResultsFuture<Boolean> future) {
+    			executionFuture = null;
+    			try {
+    				future.get();
+    				List<PgColInfo> cols = getPgColInfo(stmt.getResultSet().getMetaData());
+    				client.sendCopyOut(stmt.getResultSet(), cols, copyOptions, completion);
+    			} catch (Throwable e) {
+    				if (!completion.isDone()) {
+    					completion.getResultsReceiver().exceptionOccurred(e);
+    				}
+    			}
+    		}
+		});
+    }
+    
+    private void copyIn(String table, String columns, CopyOptions options, final ResultsFuture<Integer> completion) throws SQLException {
+    	String projection = columns == null?"*":columns; //$NON-NLS-1$
+    	int columnCount = 0;
+    	PreparedStatementImpl stmt = this.connection.prepareStatement("SELECT " + projection + " FROM " + table); //$NON-NLS-1$ //$NON-NLS-2$
+    	try {
+    		columnCount = stmt.getMetaData().getColumnCount();
+    	} finally {
+    		stmt.close();
+    	}
+    	StringBuilder insert = new StringBuilder("INSERT INTO ").append(table); //$NON-NLS-1$
+    	if (columns != null) {
+    		insert.append(" (").append(columns).append(')'); //$NON-NLS-1$
+    	}
+    	insert.append(" VALUES ("); //$NON-NLS-1$
+    	for (int i = 0; i < columnCount; i++) {
+    		if (i > 0) {
+    			insert.append(", "); //$NON-NLS-1$
+    		}
+    		insert.append('?');
+    	}
+    	insert.append(')');
+    	final PreparedStatementImpl insertStmt = this.connection.prepareStatement(insert.toString());
+        completion.addCompletionListener(new ResultsFuture.CompletionListener<Integer>() {
+        	public void onCompletion(ResultsFuture<Integer> future) {
+        		try {
+        			insertStmt.close();
+				} catch (SQLException e) {
+					LogManager.logDetail(LogConstants.CTX_ODBC, e, "Error closing statement"); //$NON-NLS-1$
+				}
+        	}
+        });
+    	this.copyIn = new CopyIn(insertStmt, options, columnCount, completion);
+    	this.client.sendCopyIn(columnCount);
+    }
+    
+    @Override
+    public void copyData(byte[] data, Charset encoding) {
+    	CopyIn copy = this.copyIn;
+    	if (copy == null) {
+    		//discard data after a failure
+    		return;
+    	}
+    	try {
+    		copy.process(data, encoding);
+    	} catch (SQLException e) {
+    		copy.fail(e);
+    	}
+    }
+    
+    @Override
+    public void copyDone() {
+    	CopyIn copy = this.copyIn;
+    	if (copy == null) {
+    		return;
+    	}
+    	try {
+    		copy.finish();
+    	} catch (SQLException e) {
+    		copy.fail(e);
+    	}
+    }
+    
+    @Override
+    public void copyFail(String msg) {
+    	CopyIn copy = this.copyIn;
+    	if (copy != null) {
+    		copy.fail(new SQLException(RuntimePlugin.Util.gs(RuntimePlugin.Event.TEIID40169, msg)));
+    	}
+    }
+	
 	@Override
 	public void prepare(String prepareName, String sql, int[] paramType) {
 		if (prepareName == null || prepareName.length() == 0) {
@@ -920,6 +1026,10 @@ public class ODBCServerRemoteImpl implements ODBCServerRemote {
 
 	@Override
 	public void sync() {
+		if (this.copyIn != null) {
+			//ignored during copy in
+			return;
+		}
 		ready();
 	}
 	
@@ -1177,6 +1287,20 @@ public class ODBCServerRemoteImpl implements ODBCServerRemote {
 		    				client.sendCommandComplete("DEALLOCATE", null); //$NON-NLS-1$
 		    				results.getResultsReceiver().receiveResults(1);
 		    			}
+		    			else if ((m = copyPattern.matcher(sql)).matches()) {
+		    				CopyOptions options = CopyOptions.parse(m.group(5));
+		    				if (m.group(4).toUpperCase().startsWith("TO")) { //$NON-NLS-1$
+		    					String query = m.group(1);
+		    					if (query == null) {
+		    						query = "SELECT " + (m.group(3) == null?"*":m.group(3)) + " FROM " + m.group(2); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		    					}
+		    					copyOut(fixSQL(query), options, results);
+		    				} else if (m.group(1) != null) {
+		    					throw new SQLException(RuntimePlugin.Util.gs(RuntimePlugin.Event.TEIID40168, m.group(4)));
+		    				} else {
+		    					copyIn(m.group(2), m.group(3), options, results);
+		    				}
+		    			}
 		    			else {
 		    				sqlExecute(sql, results);
 		    			}
@@ -1198,6 +1322,169 @@ public class ODBCServerRemoteImpl implements ODBCServerRemote {
 		}
 	}
 
+    /**
+     * The state of a COPY FROM STDIN.  Each line of copy data is added as a parameter batch
+     * to the insert, which is executed without blocking with at most one batch executing at a time.
+     */
+    private final class CopyIn {
+    	private final PreparedStatementImpl stmt;
+    	private final CopyOptions options;
+    	private final int columns;
+    	private final ResultsFuture<Integer> completion;
+    	private Charset encoding;
+    	private byte[] partial;
+    	private String record;
+    	private boolean skipHeader;
+    	private boolean endOfData;
+    	private boolean done;
+    	private int line;
+    	private int rows;
+    	private int batchRows;
+    	private boolean paused;
+    	private ResultsFuture<Boolean> executing;
+    	
+    	private CopyIn(PreparedStatementImpl stmt, CopyOptions options, int columns, ResultsFuture<Integer> completion) {
+    		this.stmt = stmt;
+    		this.options = options;
+    		this.columns = columns;
+    		this.completion = completion;
+    		this.skipHeader = options.isHeader();
+		}
+    	
+    	synchronized void process(byte[] data, Charset charset) throws SQLException {
+    		this.encoding = charset;
+    		int start = 0;
+    		for (int i = 0; i < data.length; i++) {
+    			if (data[i] != '\n') {
+    				continue;
+    			}
+    			String text = null;
+    			if (partial != null) {
+    				byte[] bytes = Arrays.copyOf(partial, partial.length + i - start);
+    				System.arraycopy(data, start, bytes, partial.length, i - start);
+    				partial = null;
+    				text = new String(bytes, encoding);
+    			} else {
+    				text = new String(data, start, i - start, encoding);
+    			}
+    			start = i + 1;
+    			processRecord(text);
+    		}
+    		if (start < data.length) {
+    			int length = partial == null?0:partial.length;
+    			partial = partial == null?new byte[data.length - start]:Arrays.copyOf(partial, length + data.length - start);
+    			System.arraycopy(data, start, partial, length, data.length - start);
+    		}
+    		submitBatch();
+    		if (!paused && batchRows >= COPY_MAX_PENDING_ROWS) {
+    			//stop reading until the executing batch completes
+    			paused = true;
+    			client.setAutoRead(false);
+    		}
+    	}
+    	
+    	private void resume() {
+    		if (paused) {
+    			paused = false;
+    			client.setAutoRead(true);
+    		}
+    	}
+    	
+    	private void processRecord(String text) throws SQLException {
+    		line++;
+    		if (endOfData) {
+    			return;
+    		}
+    		if (record != null) {
+    			text = record + '\n' + text;
+    			record = null;
+    		}
+    		List<String> values = options.parseRow(text);
+    		if (values == null) {
+    			record = text;
+    			return;
+    		}
+    		if (values == CopyOptions.END_OF_DATA) {
+    			endOfData = true;
+    			return;
+    		}
+    		if (skipHeader) {
+    			skipHeader = false;
+    			return;
+    		}
+    		if (values.size() != columns) {
+    			throw new SQLException(RuntimePlugin.Util.gs(RuntimePlugin.Event.TEIID40170, line, columns, values.size()));
+    		}
+    		for (int i = 0; i < columns; i++) {
+    			stmt.setObject(i + 1, values.get(i));
+    		}
+    		stmt.addBatch();
+    		batchRows++;
+    	}
+    	
+    	synchronized void finish() throws SQLException {
+    		if (partial != null) {
+    			processRecord(new String(partial, encoding));
+    			partial = null;
+    		}
+    		if (record != null) {
+    			throw new SQLException(RuntimePlugin.Util.gs(RuntimePlugin.Event.TEIID40171, line));
+    		}
+    		done = true;
+    		submitBatch();
+    	}
+    	
+    	/**
+    	 * Submit the added rows if no batch is executing and there are enough rows
+    	 * or the copy data is complete. 
+    	 */
+    	private void submitBatch() throws SQLException {
+    		if (executing != null || completion.isDone() || (!done && batchRows < COPY_BATCH_SIZE)) {
+    			return;
+    		}
+    		if (batchRows == 0) {
+    			if (copyIn == this) {
+    				copyIn = null;
+    			}
+    			client.sendCommandComplete("COPY", rows); //$NON-NLS-1$
+    			completion.getResultsReceiver().receiveResults(rows);
+    			return;
+    		}
+    		final int count = batchRows;
+    		batchRows = 0;
+    		executing = stmt.submitExecuteBatch();
+    		executing.addCompletionListener(new ResultsFuture.CompletionListener<Boolean>() {
+    			@Override
+    			public void onCompletion(ResultsFuture<Boolean> future) {
+    				synchronized (CopyIn.this) {
+    					executing = null;
+    					try {
+    						future.get();
+    						rows += count;
+    						submitBatch();
+    						if (batchRows < COPY_MAX_PENDING_ROWS) {
+    							resume();
+    						}
+    					} catch (Throwable e) {
+    						fail(e);
+    					}
+    				}
+    			}
+    		});
+    	}
+    	
+    	synchronized void fail(Throwable e) {
+    		if (copyIn == this) {
+    			copyIn = null;
+    		}
+    		//the remaining copy data will be discarded
+    		resume();
+    		if (!completion.isDone()) {
+    			completion.getResultsReceiver().exceptionOccurred(e);
+    		}
+    	}
+    }
+
 	/**
 	 * @see PgCatalogMetadataStore add_pg_attribute for mod calculation
 	 */
@@ -42,6 +42,8 @@ public class EmbeddedAdminFactory {
 		stats.setCacheReadCount(bufferService.getCacheReadCount());
 		stats.setCacheWriteCount(bufferService.getCacheWriteCount());
 		stats.setDiskSpaceUsedInMB(bufferService.getUsedDiskBufferSpaceMB());
+		stats.setEvictionCount(bufferService.getEvictionCount());
+		stats.setHitRatio(bufferService.getHitRatio());
 		stats.setActivePlanCount(dqp.getActivePlanCount());
 		stats.setWaitPlanCount(dqp.getWaitingPlanCount());
 		stats.setMaxWaitPlanWaterMark(dqp.getMaxWaitingPlanWatermark());
@@ -57,6 +57,8 @@ public class EmbeddedConfiguration extends DQPConfiguration {
 	private List<SocketConfiguration> transports;
 	private int maxODBCLobSizeAllowed = 5*1024*1024; // 5 MB
 	private int maxAsyncThreads = DEFAULT_MAX_ASYNC_WORKERS;
+	private int maxMetadataLoadThreads = 1;
+	private String metadataCacheDirectory;
 	
 	private int processorBatchSize ;
 	private int maxReserveKb ;
@@ -67,6 +69,10 @@ public class EmbeddedConfiguration extends DQPConfiguration {
 	private long maxBufferSpace ;
 	private long maxFileSize ;
 	private boolean encryptFiles = false;
+	private boolean columnarSpill = false;
+	private boolean adaptiveReserve = false;
+	private int memoryMappedWindowSize = 0;
+	private String evictionPolicy;
 	private int maxStorageObjectSize ;
 	private boolean memoryBufferOffHeap = false;
 	private int memoryBufferSpace ;
@@ -247,6 +253,33 @@ public class EmbeddedConfiguration extends DQPConfiguration {
     public void setMaxAsyncThreads(int maxAsyncThreads) {
         this.maxAsyncThreads = maxAsyncThreads;
     }
+    
+    public int getMaxMetadataLoadThreads() {
+		return maxMetadataLoadThreads;
+	}
+    
+    /**
+     * Set the number of threads used to load model metadata and to resolve
+     * views during vdb deployment.  The default of 1 loads sequentially.
+     * @param maxMetadataLoadThreads
+     */
+    public void setMaxMetadataLoadThreads(int maxMetadataLoadThreads) {
+		this.maxMetadataLoadThreads = maxMetadataLoadThreads;
+	}
+    
+    public String getMetadataCacheDirectory() {
+		return metadataCacheDirectory;
+	}
+    
+    /**
+     * Set the directory used to save the metadata of each model so that a redeploy
+     * with an unchanged model definition does not re-import the metadata.
+     * If null, the default, metadata is not cached.
+     * @param metadataCacheDirectory
+     */
+    public void setMetadataCacheDirectory(String metadataCacheDirectory) {
+		this.metadataCacheDirectory = metadataCacheDirectory;
+	}
 
 	public int getProcessorBatchSize() {
 		return processorBatchSize;
@@ -312,6 +345,44 @@ public class EmbeddedConfiguration extends DQPConfiguration {
 		this.encryptFiles = encryptFiles;
 	}
 
+	public boolean isColumnarSpill() {
+		return columnarSpill;
+	}
+
+	public void setColumnarSpill(boolean columnarSpill) {
+		this.columnarSpill = columnarSpill;
+	}
+
+	public boolean isAdaptiveReserve() {
+		return adaptiveReserve;
+	}
+
+	public void setAdaptiveReserve(boolean adaptiveReserve) {
+		this.adaptiveReserve = adaptiveReserve;
+	}
+
+	public int getMemoryMappedWindowSize() {
+		return memoryMappedWindowSize;
+	}
+
+	/**
+	 * @param memoryMappedWindowSize in MB, 0 disables memory mapped buffer files
+	 */
+	public void setMemoryMappedWindowSize(int memoryMappedWindowSize) {
+		this.memoryMappedWindowSize = memoryMappedWindowSize;
+	}
+
+	public String getEvictionPolicy() {
+		return evictionPolicy;
+	}
+
+	/**
+	 * @param evictionPolicy LRFU or TINYLFU
+	 */
+	public void setEvictionPolicy(String evictionPolicy) {
+		this.evictionPolicy = evictionPolicy;
+	}
+
 	public int getMaxStorageObjectSize() {
 		return maxStorageObjectSize;
 	}
@@ -19,9 +19,16 @@
 package org.teiid.runtime;
 
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
@@ -35,16 +42,23 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
 
 import javax.transaction.TransactionManager;
 import javax.xml.stream.XMLStreamException;
@@ -52,9 +66,11 @@ import javax.xml.stream.XMLStreamException;
 import org.jboss.vfs.VirtualFile;
 import org.teiid.PreParser;
 import org.teiid.adminapi.Admin;
+import org.teiid.adminapi.Model;
 import org.teiid.adminapi.VDB.Status;
 import org.teiid.adminapi.impl.ModelMetaData;
 import org.teiid.adminapi.impl.SessionMetadata;
+import org.teiid.adminapi.impl.SourceMappingMetadata;
 import org.teiid.adminapi.impl.VDBMetaData;
 import org.teiid.adminapi.impl.VDBMetadataParser;
 import org.teiid.adminapi.impl.VDBTranslatorMetaData;
@@ -66,6 +82,8 @@ import org.teiid.common.buffer.TupleBufferCache;
 import org.teiid.core.BundleUtil.Event;
 import org.teiid.core.TeiidException;
 import org.teiid.core.TeiidRuntimeException;
+import org.teiid.core.util.ExecutorUtils;
+import org.teiid.core.util.FileUtils;
 import org.teiid.core.util.NamedThreadFactory;
 import org.teiid.core.util.ObjectConverterUtil;
 import org.teiid.core.util.ReflectionHelper;
@@ -104,6 +122,7 @@ import org.teiid.metadata.MetadataFactory;
 import org.teiid.metadata.MetadataRepository;
 import org.teiid.metadata.MetadataStore;
 import org.teiid.metadata.Schema;
+import org.teiid.metadata.VDBResource;
 import org.teiid.metadata.index.IndexMetadataRepository;
 import org.teiid.metadatastore.DeploymentBasedDatabaseStore;
 import org.teiid.net.ConnectionException;
@@ -115,6 +134,7 @@ import org.teiid.query.metadata.DDLStringVisitor;
 import org.teiid.query.metadata.PureZipFileSystem;
 import org.teiid.query.metadata.TransformationMetadata;
 import org.teiid.query.metadata.VDBResources;
+import org.teiid.query.parser.QueryParser;
 import org.teiid.query.sql.lang.Command;
 import org.teiid.query.tempdata.GlobalTableStore;
 import org.teiid.query.validator.ValidatorFailure;
@@ -322,6 +342,7 @@ public class EmbeddedServer extends AbstractVDBDeployer implements EventDistribu
 	private SessionAwareCache<PreparedPlan> ppc;
 	protected ArrayList<SocketListener> transports = new ArrayList<SocketListener>();
 	private ScheduledExecutorService scheduler;
+	private ExecutorService metadataExecutor;
 	private MaterializationManager materializationMgr = null;
 	private ShutDownListener shutdownListener = new ShutDownListener();
 	private SimpleChannelFactory channelFactory;
@@ -364,6 +385,10 @@ public class EmbeddedServer extends AbstractVDBDeployer implements EventDistribu
 		this.eventDistributorFactoryService.start();
 		this.dqp.setEventDistributor(this.eventDistributorFactoryService.getReplicatedEventDistributor());
 		this.scheduler = Executors.newScheduledThreadPool(config.getMaxAsyncThreads(), new NamedThreadFactory("Asynch Worker")); //$NON-NLS-1$
+		if (config.getMaxMetadataLoadThreads() > 1) {
+			this.metadataExecutor = ExecutorUtils.newFixedThreadPool(config.getMaxMetadataLoadThreads(), "Metadata Loader"); //$NON-NLS-1$
+			this.repo.setMetadataExecutor(this.metadataExecutor, config.getMaxMetadataLoadThreads());
+		}
 		this.replicator = config.getObjectReplicator();
 		if (this.replicator == null && config.getJgroupsConfigFile() != null) {
 			channelFactory = new SimpleChannelFactory(config);
@@ -486,6 +511,12 @@ public class EmbeddedServer extends AbstractVDBDeployer implements EventDistribu
 		if(config.getMaxFileSize() != -1) 
 			this.bufferService.setMaxFileSize(config.getMaxFileSize());
 		this.bufferService.setEncryptFiles(config.isEncryptFiles());
+		this.bufferService.setColumnarSpill(config.isColumnarSpill());
+		this.bufferService.setAdaptiveReserve(config.isAdaptiveReserve());
+		this.bufferService.setMemoryMappedWindowSize(config.getMemoryMappedWindowSize());
+		if (config.getEvictionPolicy() != null) {
+			this.bufferService.setEvictionPolicy(config.getEvictionPolicy());
+		}
 		if(config.getMaxStorageObjectSize() != -1) {
 			this.bufferService.setMaxStorageObjectSize(config.getMaxStorageObjectSize());
 		}
@@ -851,6 +882,113 @@ public class EmbeddedServer extends AbstractVDBDeployer implements EventDistribu
 			ConnectorManagerRepository cmr,
 			MetadataRepository metadataRepository, MetadataStore store,
 			AtomicInteger loadCount, VDBResources vdbResources) throws TranslatorException {
+		MetadataLoads loads = vdb.getAttachment(MetadataLoads.class);
+		if (loads == null && this.metadataExecutor != null && loadCount.get() > 1) {
+			loads = startMetadataLoads(vdb, cmr, store, vdbResources);
+		}
+		MetadataFactory factory = null;
+		if (loads != null) {
+			factory = loads.get(vdb, model.getName());
+		} else {
+			factory = getMetadataFactory(vdb, model, cmr, metadataRepository, store, vdbResources);
+		}
+		metadataLoaded(vdb, model, store, loadCount, factory, true, cmr, vdbResources);
+	}
+	
+	/**
+	 * Submit the loads for all of the models so that source metadata imports run concurrently.
+	 * The results are still merged on the deploying thread in model order.
+	 */
+	private MetadataLoads startMetadataLoads(final VDBMetaData vdb,
+			final ConnectorManagerRepository cmr, final MetadataStore store,
+			final VDBResources vdbResources) {
+		MetadataLoads loads = new MetadataLoads();
+		final ClassLoader classLoader = vdb.getAttachment(ClassLoader.class);
+		for (final ModelMetaData model : vdb.getModelMetaDatas().values()) {
+			if (model.getModelType() != Model.Type.PHYSICAL && model.getModelType() != Model.Type.VIRTUAL) {
+				continue;
+			}
+			final MetadataRepository<?, ?> metadataRepository = model.getAttachment(MetadataRepository.class);
+			loads.futures.put(model.getName(), this.metadataExecutor.submit(new Callable<MetadataFactory>() {
+				@Override
+				public MetadataFactory call() throws Exception {
+					ClassLoader originalCL = Thread.currentThread().getContextClassLoader();
+					try {
+						if (classLoader != null) {
+							Thread.currentThread().setContextClassLoader(classLoader);
+						}
+						return getMetadataFactory(vdb, model, cmr, metadataRepository, store, vdbResources);
+					} finally {
+						Thread.currentThread().setContextClassLoader(originalCL);
+					}
+				}
+			}));
+		}
+		vdb.addAttchment(MetadataLoads.class, loads);
+		return loads;
+	}
+	
+	private static class MetadataLoads {
+		Map<String, Future<MetadataFactory>> futures = new HashMap<String, Future<MetadataFactory>>();
+		
+		MetadataFactory get(VDBMetaData vdb, String modelName) throws TranslatorException {
+			Future<MetadataFactory> future = futures.remove(modelName);
+			if (futures.isEmpty()) {
+				vdb.removeAttachment(MetadataLoads.class);
+			}
+			try {
+				return future.get();
+			} catch (InterruptedException e) {
+				cancel(vdb);
+				Thread.currentThread().interrupt();
+				throw new TeiidRuntimeException(e);
+			} catch (ExecutionException e) {
+				cancel(vdb);
+				Throwable cause = e.getCause();
+				if (cause instanceof TranslatorException) {
+					throw (TranslatorException)cause;
+				}
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException)cause;
+				}
+				throw new TranslatorException(cause);
+			}
+		}
+		
+		void cancel(VDBMetaData vdb) {
+			for (Future<MetadataFactory> future : futures.values()) {
+				future.cancel(true);
+			}
+			futures.clear();
+			vdb.removeAttachment(MetadataLoads.class);
+		}
+	}
+	
+	private MetadataFactory getMetadataFactory(VDBMetaData vdb, ModelMetaData model,
+			ConnectorManagerRepository cmr,
+			MetadataRepository metadataRepository, MetadataStore store,
+			VDBResources vdbResources) throws TranslatorException {
+		File cacheFile = getMetadataCacheFile(vdb, model);
+		String descriptor = null;
+		if (cacheFile != null) {
+			try {
+				descriptor = getMetadataDescriptor(model, vdbResources==null?null:vdbResources.getEntriesPlusVisibilities());
+			} catch (IOException e) {
+				LogManager.logDetail(LogConstants.CTX_RUNTIME, e, "Could not read the metadata resources, not using cached metadata for model", model.getName()); //$NON-NLS-1$
+				cacheFile = null;
+			}
+		}
+		if (cacheFile != null) {
+			MetadataFactory factory = loadCachedMetadata(cacheFile, descriptor);
+			if (factory != null) {
+				factory.correctDatatypes(store.getDatatypes());
+				factory.setModel(model);
+				factory.setParser(new QueryParser());
+				factory.setVdbResources(vdbResources==null?Collections.EMPTY_MAP:vdbResources.getEntriesPlusVisibilities());
+				LogManager.logDetail(LogConstants.CTX_RUNTIME, "Model ", model.getName(), "in VDB ", vdb.getName(), " was loaded from cached metadata"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				return factory;
+			}
+		}
 		MetadataFactory factory = createMetadataFactory(vdb, store, model, vdbResources==null?Collections.EMPTY_MAP:vdbResources.getEntriesPlusVisibilities());
 		
 		ExecutionFactory ef = null;
@@ -892,12 +1030,118 @@ public class EmbeddedServer extends AbstractVDBDeployer implements EventDistribu
 			}
 			throw new TranslatorException(te);
 		}
-		metadataLoaded(vdb, model, store, loadCount, factory, true, cmr, vdbResources);
+		if (cacheFile != null) {
+			saveCachedMetadata(cacheFile, descriptor, factory);
+		}
+		return factory;
+	}
+	
+	/**
+	 * @return the snapshot file for the model or null if metadata caching is not in use
+	 */
+	private File getMetadataCacheFile(VDBMetaData vdb, ModelMetaData model) {
+		if (config.getMetadataCacheDirectory() == null) {
+			return null;
+		}
+		String prop = model.getPropertyValue("cache-metadata"); //$NON-NLS-1$
+		if (prop == null) {
+			prop = vdb.getPropertyValue("cache-metadata"); //$NON-NLS-1$
+		}
+		if (prop != null && !Boolean.valueOf(prop)) {
+			return null;
+		}
+		return new File(getMetadataCacheDirectory(vdb), model.getName() + ".ser"); //$NON-NLS-1$
+	}
+	
+	private File getMetadataCacheDirectory(VDBMetaData vdb) {
+		return new File(config.getMetadataCacheDirectory(), vdb.getName() + "_" + vdb.getVersion()); //$NON-NLS-1$
+	}
+	
+	/**
+	 * The descriptor captures everything that determines the loaded metadata
+	 * so that a snapshot is only reused if the model definition is unchanged.
+	 * Metadata sources that reference a vdb resource, such as a DDL-FILE, 
+	 * contribute a checksum of the resource contents.
+	 */
+	static String getMetadataDescriptor(ModelMetaData model, Map<String, ? extends VDBResource> resources) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		sb.append(model.getModelType()).append('\n');
+		sb.append(model.getSourceMetadataType()).append('\n');
+		sb.append(model.getSourceMetadataText()).append('\n');
+		sb.append(new TreeMap<String, String>(model.getPropertiesMap())).append('\n');
+		for (SourceMappingMetadata smm : model.getSourceMappings()) {
+			sb.append(smm.getName()).append(' ').append(smm.getTranslatorName()).append(' ').append(smm.getConnectionJndiName()).append('\n');
+		}
+		if (resources != null) {
+			List<String> names = new ArrayList<String>(model.getSourceMetadataText());
+			String ddlFile = model.getPropertyValue("ddl-file"); //$NON-NLS-1$
+			if (ddlFile != null) {
+				names.add(ddlFile);
+			}
+			for (String name : names) {
+				VDBResource resource = resources.get(name);
+				if (resource == null) {
+					continue;
+				}
+				CRC32 crc = new CRC32();
+				crc.update(ObjectConverterUtil.convertToByteArray(resource.openStream()));
+				sb.append(name).append(' ').append(crc.getValue()).append('\n');
+			}
+		}
+		return sb.toString();
+	}
+	
+	private MetadataFactory loadCachedMetadata(File cacheFile, String descriptor) {
+		if (!cacheFile.exists()) {
+			return null;
+		}
+		ObjectInputStream ois = null;
+		try {
+			ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+			if (!descriptor.equals(ois.readObject())) {
+				return null;
+			}
+			return (MetadataFactory)ois.readObject();
+		} catch (Exception e) {
+			LogManager.logDetail(LogConstants.CTX_RUNTIME, e, "Ignoring invalid cached metadata", cacheFile); //$NON-NLS-1$
+			return null;
+		} finally {
+			if (ois != null) {
+				try {
+					ois.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+	
+	private void saveCachedMetadata(File cacheFile, String descriptor, MetadataFactory factory) {
+		cacheFile.getParentFile().mkdirs();
+		ObjectOutputStream oos = null;
+		try {
+			oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile)));
+			oos.writeObject(descriptor);
+			oos.writeObject(factory);
+		} catch (IOException e) {
+			LogManager.logDetail(LogConstants.CTX_RUNTIME, e, "Could not cache metadata", cacheFile); //$NON-NLS-1$
+			cacheFile.delete();
+		} finally {
+			if (oos != null) {
+				try {
+					oos.close();
+				} catch (IOException e) {
+				}
+			}
+		}
 	}
 	
 	public void undeployVDB(String vdbName) {
 		checkStarted();
-		this.repo.removeVDB(vdbName, "1"); //$NON-NLS-1$
+		VDBMetaData vdb = this.repo.removeVDB(vdbName, "1"); //$NON-NLS-1$
+		if (vdb != null && config.getMetadataCacheDirectory() != null) {
+			//the snapshots are not invalidated by source changes, so a redeploy should reload
+			FileUtils.removeDirectoryAndChildren(getMetadataCacheDirectory(vdb));
+		}
 	}
 
 	EmbeddedConfiguration getConfiguration() {
@@ -917,6 +1161,10 @@ public class EmbeddedServer extends AbstractVDBDeployer implements EventDistribu
         this.shutdownListener.setShutdownInProgress(true);
         this.repo.removeListener(this.materializationMgr);
         this.scheduler.shutdownNow();
+        if (this.metadataExecutor != null) {
+        	this.metadataExecutor.shutdownNow();
+        	this.metadataExecutor = null;
+        }
 		for (SocketListener socket:this.transports) {
 			socket.stop();
 		}
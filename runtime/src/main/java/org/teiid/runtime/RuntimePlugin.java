@@ -169,6 +169,10 @@ public class RuntimePlugin {
         TEIID40164,
         TEIID40165, 
         TEIID40166, 
-        TEIID40167
+        TEIID40167,
+        TEIID40168,
+        TEIID40169,
+        TEIID40170,
+        TEIID40171
     }
 }
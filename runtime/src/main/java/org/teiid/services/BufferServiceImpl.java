@@ -27,6 +27,7 @@ import org.teiid.common.buffer.StorageManager;
 import org.teiid.common.buffer.TupleBufferCache;
 import org.teiid.common.buffer.impl.BufferFrontedFileStoreCache;
 import org.teiid.common.buffer.impl.BufferManagerImpl;
+import org.teiid.common.buffer.impl.BufferManagerImpl.EvictionPolicy;
 import org.teiid.common.buffer.impl.EncryptedStorageManager;
 import org.teiid.common.buffer.impl.FileStorageManager;
 import org.teiid.common.buffer.impl.MemoryStorageManager;
@@ -55,6 +56,10 @@ public class BufferServiceImpl implements BufferService, Serializable {
 	private File bufferDir;
 	private boolean useDisk = true;
 	private boolean encryptFiles = false;
+	private boolean columnarSpill = false;
+	private boolean adaptiveReserve = false;
+	private int memoryMappedWindowSize = 0;
+	private EvictionPolicy evictionPolicy = EvictionPolicy.LRFU;
 	private int processorBatchSize = BufferManager.DEFAULT_PROCESSOR_BATCH_SIZE;
     private int maxOpenFiles = FileStorageManager.DEFAULT_MAX_OPEN_FILES;
     private long maxFileSize = SplittableStorageManager.DEFAULT_MAX_FILESIZE; // 2GB
@@ -86,6 +91,8 @@ public class BufferServiceImpl implements BufferService, Serializable {
             this.bufferMgr.setMaxReserveKB(this.maxReserveKb);
             this.bufferMgr.setMaxProcessingKB(this.maxProcessingKb);
             this.bufferMgr.setInlineLobs(inlineLobs);
+            this.bufferMgr.setColumnarSpill(columnarSpill);
+            this.bufferMgr.setEvictionPolicy(evictionPolicy);
             this.bufferMgr.initialize();
             
             // If necessary, add disk storage manager
@@ -102,6 +109,7 @@ public class BufferServiceImpl implements BufferService, Serializable {
                 fsm.setStorageDirectory(bufferDir.getCanonicalPath());
                 fsm.setMaxOpenFiles(maxOpenFiles);
                 fsm.setMaxBufferSpace(maxBufferSpace*MB);
+                fsm.setMappedWindowSize(memoryMappedWindowSize*MB);
                 SplittableStorageManager ssm = new SplittableStorageManager(fsm);
                 ssm.setMaxFileSize(maxFileSize);
                 StorageManager sm = ssm;
@@ -135,6 +143,7 @@ public class BufferServiceImpl implements BufferService, Serializable {
                 fsc.setStorageManager(sm);
                 fsc.initialize();
                 this.bufferMgr.setCache(fsc);
+                this.bufferMgr.setAdaptiveReserve(adaptiveReserve);
                 this.workingMaxReserveKb = this.bufferMgr.getMaxReserveKB();
             } else {
             	MemoryStorageManager msm = new MemoryStorageManager();
@@ -297,10 +306,26 @@ public class BufferServiceImpl implements BufferService, Serializable {
     public long getCacheWriteCount() {
     	return bufferMgr.getWriteCount();
     }    
+    
+    public long getColumnarBytesEncoded() {
+    	return bufferMgr.getColumnarBytesEncoded();
+    }
+    
+    public long getColumnarBytesCompressed() {
+    	return bufferMgr.getColumnarBytesCompressed();
+    }
 	
 	public long getReadAttempts() {
 		return bufferMgr.getReadAttempts();
 	}
+	
+	public long getEvictionCount() {
+		return bufferMgr.getEvictionCount();
+	}
+	
+	public double getHitRatio() {
+		return bufferMgr.getHitRatio();
+	}
 
     public int getMemoryBufferSpace() {
 		return (int)memoryBufferSpace;
@@ -321,4 +346,42 @@ public class BufferServiceImpl implements BufferService, Serializable {
     public void setEncryptFiles(boolean encryptFiles) {
 		this.encryptFiles = encryptFiles;
 	}
+    
+    public boolean isColumnarSpill() {
+		return columnarSpill;
+	}
+    
+    public void setColumnarSpill(boolean columnarSpill) {
+		this.columnarSpill = columnarSpill;
+	}
+    
+    public boolean isAdaptiveReserve() {
+		return adaptiveReserve;
+	}
+    
+    public void setAdaptiveReserve(boolean adaptiveReserve) {
+		this.adaptiveReserve = adaptiveReserve;
+	}
+    
+    public int getMemoryMappedWindowSize() {
+		return memoryMappedWindowSize;
+	}
+    
+    /**
+     * @param memoryMappedWindowSize in MB, 0 disables memory mapped buffer files
+     */
+    public void setMemoryMappedWindowSize(int memoryMappedWindowSize) {
+		this.memoryMappedWindowSize = memoryMappedWindowSize;
+	}
+    
+    public String getEvictionPolicy() {
+		return evictionPolicy.name();
+	}
+    
+    /**
+     * @param evictionPolicy LRFU or TINYLFU
+     */
+    public void setEvictionPolicy(String evictionPolicy) {
+		this.evictionPolicy = EvictionPolicy.valueOf(evictionPolicy.toUpperCase());
+	}
 }
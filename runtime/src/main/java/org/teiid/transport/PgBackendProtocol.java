@@ -21,6 +21,7 @@ package org.teiid.transport;
 import static org.teiid.odbc.PGUtil.*;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
@@ -33,6 +34,7 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.StreamCorruptedException;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -64,6 +66,7 @@ import org.teiid.logging.LogConstants;
 import org.teiid.logging.LogManager;
 import org.teiid.logging.MessageLevel;
 import org.teiid.net.socket.ServiceInvocationStruct;
+import org.teiid.odbc.CopyOptions;
 import org.teiid.odbc.ODBCClientRemote;
 import org.teiid.odbc.PGUtil.PgColInfo;
 import org.teiid.query.function.GeometryUtils;
@@ -104,18 +107,35 @@ public class PgBackendProtocol extends ChannelOutboundHandlerAdapter implements
 		private final ResultSetImpl rs;
 		private final ResultsFuture<Integer> result;
 		private final short[] resultColumnFormat;
+		private final boolean directStrings;
+		private final CopyOptions copy;
+		private final StringBuilder copyRow;
 		private int rows2Send;
 		private int rowsSent = 0;
 		private int rowsInBuffer = 0;
 		String sql;
 
-		private ResultsWorkItem(List<PgColInfo> cols, ResultSetImpl rs, ResultsFuture<Integer> result, int rows2Send, short[] resultColumnFormat) {
+		private ResultsWorkItem(List<PgColInfo> cols, ResultSetImpl rs, ResultsFuture<Integer> result, int rows2Send, short[] resultColumnFormat, CopyOptions copy) {
 			this.cols = cols;
 			this.rs = rs;
 			this.result = result;
 			this.rows2Send = rows2Send;
 			this.resultColumnFormat = resultColumnFormat;
-			initBuffer(maxBufferSize / 8);
+			this.directStrings = rs.getMaxFieldSize() == 0;
+			this.copy = copy;
+			this.copyRow = copy != null?new StringBuilder():null;
+			initBuffer();
+		}
+		
+		/**
+		 * Copy out rows are accumulated into a single CopyData message per buffer
+		 */
+		private void initBuffer() {
+			if (copy != null) {
+				startMessage('d', maxBufferSize / 8);
+			} else {
+				PgBackendProtocol.this.initBuffer(maxBufferSize / 8);
+			}
 		}
 
 		@Override
@@ -152,24 +172,26 @@ public class PgBackendProtocol extends ChannelOutboundHandlerAdapter implements
 			boolean processNext = true;
 			try {
     			if (future.get()) {
-    				sendDataRow(rs, cols, resultColumnFormat);
+    				if (copy != null) {
+    					sendCopyRow();
+    				} else {
+    					sendDataRow(rs, cols, resultColumnFormat, directStrings);
+    				}
     				rowsSent++;
     				rowsInBuffer++;
     				boolean done = rowsSent == rows2Send;
     				flushResults(done);
     				processNext = !done;
     				if (done) {
-    					if (sql != null) {
-    						sendCommandComplete(sql, rowsSent);
-    					}
-    					result.getResultsReceiver().receiveResults(rowsSent);
+    					complete();
     				}
     			} else {
-    				sendContents();
-    				if (sql != null) {
-		    			sendCommandComplete(sql, rowsSent);
-		    		}
-    				result.getResultsReceiver().receiveResults(rowsSent);
+    				if (copy == null) {
+    					sendContents();
+    				} else if (rowsInBuffer > 0) {
+    					sendMessage();
+    				}
+    				complete();
     				processNext = false;
     			}
 			} catch (Throwable t) {
@@ -179,14 +201,84 @@ public class PgBackendProtocol extends ChannelOutboundHandlerAdapter implements
 			return processNext;
 		}
 		
+		private void complete() {
+			if (copy != null) {
+				startMessage('c');
+				sendMessage();
+			}
+			if (sql != null) {
+				sendCommandComplete(sql, rowsSent);
+			}
+			result.getResultsReceiver().receiveResults(rowsSent);
+		}
+		
 		private void flushResults(boolean force) {
 			int avgRowsize = dataOut.writerIndex()/rowsInBuffer;
 			if (force || (maxBufferSize - dataOut.writerIndex()) < (avgRowsize*2)) {
-				sendContents();
-				initBuffer(maxBufferSize / 8);
+				if (copy != null) {
+					sendMessage();
+				} else {
+					sendContents();
+				}
+				initBuffer();
 				rowsInBuffer = 0;
 			}			
 		}
+		
+		/**
+		 * Write the current row as a line of copy data.  Integral and string values are 
+		 * taken directly from the batch, other types use the same text form as a DataRow.
+		 */
+		private void sendCopyRow() throws SQLException, IOException {
+			copyRow.setLength(0);
+			List<?> row = rs.getCurrentRecord();
+			for (int i = 0; i < cols.size(); i++) {
+				if (i > 0) {
+					copyRow.append(copy.getDelimiter());
+				}
+				Object value = row.get(i);
+				if (value == null) {
+					copyRow.append(copy.getNullString());
+					continue;
+				}
+				PgColInfo col = cols.get(i);
+				if ((col.type == PG_TYPE_INT2 || col.type == PG_TYPE_INT4 || col.type == PG_TYPE_INT8) 
+						&& (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte)) {
+					copyRow.append(((Number)value).longValue());
+					continue;
+				}
+				String text = null;
+				if (directStrings && value instanceof String && (col.type == PG_TYPE_VARCHAR || col.type == PG_TYPE_BPCHAR)) {
+					text = (String)value;
+				} else {
+					StringWriter sw = new StringWriter();
+					getContent(rs, col, i+1, sw);
+					text = sw.toString();
+				}
+				copy.appendValue(copyRow, text);
+			}
+			writeCopyRow();
+		}
+		
+		private void sendCopyHeader() {
+			for (int i = 0; i < cols.size(); i++) {
+				if (i > 0) {
+					copyRow.append(copy.getDelimiter());
+				}
+				copy.appendValue(copyRow, cols.get(i).name);
+			}
+			writeCopyRow();
+			rowsInBuffer++;
+		}
+		
+		private void writeCopyRow() {
+			copyRow.append('\n');
+			if (utf8) {
+				ByteBufUtil.writeUtf8(dataOut, copyRow);
+			} else {
+				write(copyRow.toString().getBytes(encoding));
+			}
+		}
 	}
 
 	public static final String DEFAULT_ENCODING = "UTF8";
@@ -197,6 +289,7 @@ public class PgBackendProtocol extends ChannelOutboundHandlerAdapter implements
 
     private Properties props;    
     private Charset encoding = Charset.forName("UTF-8");
+    private boolean utf8 = true;
     private String clientEncoding = DEFAULT_ENCODING;
     private ReflectionHelper clientProxy = new ReflectionHelper(ODBCClientRemote.class);
     private ChannelHandlerContext ctx;
@@ -319,6 +412,7 @@ public class PgBackendProtocol extends ChannelOutboundHandlerAdapter implements
 		Charset cs = PGCharsetConverter.getCharset(value);
 		if (cs != null) {
 			this.encoding = cs;
+			this.utf8 = "UTF-8".equals(cs.name());
 			if (!init) {
 				sendParameterStatus(CLIENT_ENCODING, value);
 			}
@@ -383,7 +477,7 @@ public class PgBackendProtocol extends ChannelOutboundHandlerAdapter implements
 				}
 				rowCount = 1;
 			}
-			r = new ResultsWorkItem(cols, rs, result, rowCount, resultColumnFormat);
+			r = new ResultsWorkItem(cols, rs, result, rowCount, resultColumnFormat, null);
 	    	r.sql = sql;
 	    	if (singleResult != null) {
 	    		ResultsFuture<Boolean> resultsFuture = new ResultsFuture<Boolean>();
@@ -397,6 +491,43 @@ public class PgBackendProtocol extends ChannelOutboundHandlerAdapter implements
 		}
 	}
 
+	@Override
+	public void sendCopyOut(ResultSetImpl rs, List<PgColInfo> cols,
+			CopyOptions options, ResultsFuture<Integer> result) {
+		if (nextFuture != null) {
+			sendErrorResponse(new IllegalStateException("Pending results have not been sent")); //$NON-NLS-1$
+		}
+		startMessage('H', 5 + 2*cols.size());
+		write(0); //text
+		writeShort(cols.size());
+		for (int i = 0; i < cols.size(); i++) {
+			writeShort(0);
+		}
+		sendMessage();
+		ResultsWorkItem r = new ResultsWorkItem(cols, rs, result, -1, null, options);
+		r.sql = "COPY"; //$NON-NLS-1$
+		if (options.isHeader()) {
+			r.sendCopyHeader();
+		}
+		r.run();
+	}
+	
+	@Override
+	public void sendCopyIn(int columns) {
+		startMessage('G', 5 + 2*columns);
+		write(0); //text
+		writeShort(columns);
+		for (int i = 0; i < columns; i++) {
+			writeShort(0);
+		}
+		sendMessage();
+	}
+
+	@Override
+	public void setAutoRead(boolean autoRead) {
+		this.ctx.channel().config().setAutoRead(autoRead);
+	}
+
 	@Override
 	public void sendUpdateCount(String sql, int updateCount) {
 		sendCommandComplete(sql, updateCount);
@@ -417,6 +548,9 @@ public class PgBackendProtocol extends ChannelOutboundHandlerAdapter implements
 	
 	@Override
 	public void flush() {
+		if (this.dataOut != null) {
+			this.dataOut.release();
+		}
 		this.dataOut = null;
 		this.writer = null;
 		this.ctx.writeAndFlush(null);
@@ -469,28 +603,126 @@ public class PgBackendProtocol extends ChannelOutboundHandlerAdapter implements
 		return tag;
 	}
 
-	private void sendDataRow(ResultSet rs, List<PgColInfo> cols, short[] resultColumnFormat) throws SQLException, IOException {
+	/**
+	 * Write the current row.  Common types are encoded directly from the row values
+	 * of the current batch, other types are retrieved through the {@link ResultSet} methods.
+	 */
+	private void sendDataRow(ResultSetImpl rs, List<PgColInfo> cols, short[] resultColumnFormat, boolean directStrings) throws SQLException, IOException {
 		startMessage('D', -1);
 		int lengthIndex = this.dataOut.writerIndex() - 4;
+		List<?> row = rs.getCurrentRecord();
 		writeShort(cols.size());
 		for (int i = 0; i < cols.size(); i++) {
 			int dataBytesIndex = this.dataOut.writerIndex();
 			writeInt(-1);
-			if (!isBinary(cols.get(i).type)
-			        || (resultColumnFormat==null || (resultColumnFormat.length==1?resultColumnFormat[0]==0:resultColumnFormat[i]==0))) {
-	            getContent(rs, cols.get(i), i+1);
-			} else {
-                getBinaryContent(rs, cols.get(i), i+1);
+			Object value = row.get(i);
+			if (value == null) {
+				continue;
 			}
-			writer.flush();
-			if (!rs.wasNull()) {
-				int bytes = this.dataOut.writerIndex() - dataBytesIndex - 4;
-				this.dataOut.setInt(dataBytesIndex, bytes);
+			PgColInfo col = cols.get(i);
+			boolean text = !isBinary(col.type)
+			        || (resultColumnFormat==null || (resultColumnFormat.length==1?resultColumnFormat[0]==0:resultColumnFormat[i]==0));
+			if (text?!writeTextDirect(value, col.type, directStrings):!writeBinaryDirect(value, col.type)) {
+				if (text) {
+		            getContent(rs, col, i+1, writer);
+				} else {
+	                getBinaryContent(rs, col, i+1);
+				}
+				writer.flush();
+				if (rs.wasNull()) {
+					continue;
+				}
 			}
+			int bytes = this.dataOut.writerIndex() - dataBytesIndex - 4;
+			this.dataOut.setInt(dataBytesIndex, bytes);
 		}
 		this.dataOut.setInt(lengthIndex, this.dataOut.writerIndex() - lengthIndex);
 	}
 	
+	/**
+	 * Write the text form of integral and string values without the conversion to a String
+	 * or encoding through the writer.
+	 * @return false if the value must be written by {@link #getContent(ResultSet, PgColInfo, int, Writer)}
+	 */
+	private boolean writeTextDirect(Object value, int type, boolean directStrings) {
+		switch (type) {
+		case PG_TYPE_INT2:
+		case PG_TYPE_INT4:
+		case PG_TYPE_INT8:
+			if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+				writeAscii(((Number)value).longValue());
+				return true;
+			}
+			break;
+		case PG_TYPE_VARCHAR:
+		case PG_TYPE_BPCHAR:
+			if (directStrings && value instanceof String) {
+				if (this.utf8) {
+					ByteBufUtil.writeUtf8(this.dataOut, (String)value);
+				} else {
+					write(((String)value).getBytes(this.encoding));
+				}
+				return true;
+			}
+			break;
+		}
+		return false;
+	}
+	
+	/**
+	 * Write the binary form of numeric values.
+	 * @return false if the value must be written by {@link #getBinaryContent(ResultSet, PgColInfo, int)}
+	 */
+	private boolean writeBinaryDirect(Object value, int type) {
+		if (!(value instanceof Number)) {
+			return false;
+		}
+		Number val = (Number)value;
+		switch (type) {
+		case PG_TYPE_INT2:
+			dataOut.writeShort(val.shortValue());
+			return true;
+		case PG_TYPE_INT4:
+			dataOut.writeInt(val.intValue());
+			return true;
+		case PG_TYPE_INT8:
+			dataOut.writeLong(val.longValue());
+			return true;
+		case PG_TYPE_FLOAT4:
+			dataOut.writeInt(Float.floatToIntBits(val.floatValue()));
+			return true;
+		case PG_TYPE_FLOAT8:
+			dataOut.writeLong(Double.doubleToLongBits(val.doubleValue()));
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Write the decimal digits of the value directly to the buffer
+	 */
+	private void writeAscii(long val) {
+		if (val == Long.MIN_VALUE) {
+			ByteBufUtil.writeAscii(this.dataOut, String.valueOf(val));
+			return;
+		}
+		if (val < 0) {
+			this.dataOut.writeByte('-');
+			val = -val;
+		}
+		int digits = 1;
+		for (long remaining = val; remaining >= 10; remaining /= 10) {
+			digits++;
+		}
+		this.dataOut.ensureWritable(digits);
+		int index = this.dataOut.writerIndex();
+		for (int i = index + digits - 1; i >= index; i--) {
+			this.dataOut.setByte(i, '0' + (int)(val % 10));
+			val /= 10;
+		}
+		this.dataOut.writerIndex(index + digits);
+	}
+	
     private void getBinaryContent(ResultSet rs, PgColInfo col, int column) throws SQLException, TeiidSQLException, IOException {
 	    switch (col.type) {
 	    case PG_TYPE_INT2:
@@ -548,7 +780,7 @@ public class PgBackendProtocol extends ChannelOutboundHandlerAdapter implements
 	    }
 	}
 	
-	private void getContent(ResultSet rs, PgColInfo col, int column) throws SQLException, TeiidSQLException, IOException {
+	private void getContent(ResultSet rs, PgColInfo col, int column, Writer writer) throws SQLException, TeiidSQLException, IOException {
 		switch (col.type) {
 			case PG_TYPE_BOOL:
 			case PG_TYPE_BPCHAR:
@@ -938,7 +1170,11 @@ public class PgBackendProtocol extends ChannelOutboundHandlerAdapter implements
 	}
 
 	private void initBuffer(int estimatedLength) {
-		this.dataOut = Unpooled.buffer(estimatedLength).order(ByteOrder.BIG_ENDIAN);
+		if (this.dataOut != null) {
+			//discard an unsent message
+			this.dataOut.release();
+		}
+		this.dataOut = this.ctx.alloc().buffer(estimatedLength).order(ByteOrder.BIG_ENDIAN);
 		ByteBufOutputStream cbos = new ByteBufOutputStream(this.dataOut);
 		this.writer = new OutputStreamWriter(cbos, this.encoding);
 	}
@@ -25,6 +25,7 @@ import java.net.SocketAddress;
 import java.net.SocketException;
 import java.nio.channels.ClosedChannelException;
 
+import org.teiid.client.BatchSerializer;
 import org.teiid.client.security.ILogon;
 import org.teiid.client.util.ExceptionHolder;
 import org.teiid.client.util.ExceptionUtil;
@@ -149,6 +150,7 @@ public class SocketClientInstance implements ChannelListener, ClientInstance {
 	public void onConnection() throws CommunicationException {
         Handshake handshake = new Handshake();
         handshake.setAuthType(csr.getAuthenticationType());
+        handshake.setSerializationVersion(BatchSerializer.CURRENT_VERSION);
         if (usingEncryption) {
             keyGen = new DhKeyGenerator();
             byte[] publicKey;
@@ -186,6 +188,11 @@ public class SocketClientInstance implements ChannelListener, ClientInstance {
 	private void receivedHahdshake(Handshake handshake) throws CommunicationException {
 		String clientVersion = handshake.getVersion();
 		this.workContext.setClientVersion(Version.getVersion(clientVersion));
+		if (handshake.getSerializationVersion() > 0) {
+			//a newer client may support serialization versions that we do not
+			this.workContext.setClientSerializationVersion((byte)Math.min(BatchSerializer.CURRENT_VERSION, handshake.getSerializationVersion()));
+			this.workContext.setCompressResults(handshake.isCompressResults());
+		}
 		if (usingEncryption) {
             byte[] returnedPublicKey = handshake.getPublicKey();
             byte[] returnedPublicKeyLarge = handshake.getPublicKeyLarge();
@@ -67,6 +67,7 @@ import org.teiid.core.TeiidRuntimeException;
 import org.teiid.core.types.DataTypeManager;
 import org.teiid.core.types.InputStreamFactory;
 import org.teiid.core.types.SQLXMLImpl;
+import org.teiid.core.util.FileUtils;
 import org.teiid.core.util.ObjectConverterUtil;
 import org.teiid.core.util.SimpleMock;
 import org.teiid.core.util.UnitTestUtil;
@@ -84,6 +85,7 @@ import org.teiid.metadata.MetadataFactory;
 import org.teiid.metadata.MetadataRepository;
 import org.teiid.metadata.RuntimeMetadata;
 import org.teiid.metadata.Table;
+import org.teiid.metadata.VDBResource;
 import org.teiid.query.sql.symbol.Reference;
 import org.teiid.runtime.EmbeddedServer.ConnectionFactoryProvider;
 import org.teiid.translator.DataNotAvailableException;
@@ -349,6 +351,116 @@ public class TestEmbeddedServer {
 		assertNull(es.getSchemaDdl("empty", "xxx"));
 	}
 	
+	@Test public void testParallelMetadataLoad() throws Exception {
+		File cacheDir = UnitTestUtil.getTestScratchFile("metadata-cache");
+		FileUtils.removeDirectoryAndChildren(cacheDir);
+		AtomicInteger loads = new AtomicInteger();
+		startWithMetadataCache(cacheDir, loads);
+		deployMetadataCacheVDB();
+		assertEquals(1, loads.get());
+		assertTrue(new File(cacheDir, "test_1/virt.ser").exists());
+		
+		//a restart uses the cached metadata
+		es.stop();
+		es = new EmbeddedServer();
+		startWithMetadataCache(cacheDir, loads);
+		deployMetadataCacheVDB();
+		assertEquals(1, loads.get());
+		
+		Connection c = es.getDriver().connect("jdbc:teiid:test", null);
+		Statement s = c.createStatement();
+		ResultSet rs = s.executeQuery("select * from \"my-view\", v3");
+		assertFalse(rs.next());
+		assertEquals(2, rs.getMetaData().getColumnCount());
+	}
+	
+	@Test public void testMetadataCacheRemovedOnUndeploy() throws Exception {
+		File cacheDir = UnitTestUtil.getTestScratchFile("metadata-cache-undeploy");
+		FileUtils.removeDirectoryAndChildren(cacheDir);
+		AtomicInteger loads = new AtomicInteger();
+		startWithMetadataCache(cacheDir, loads);
+		deployMetadataCacheVDB();
+		assertTrue(new File(cacheDir, "test_1/my-schema.ser").exists());
+		
+		es.undeployVDB("test");
+		assertFalse(new File(cacheDir, "test_1").exists());
+		
+		//the source metadata is reloaded rather than served from a stale snapshot
+		deployMetadataCacheVDB();
+		assertEquals(2, loads.get());
+		assertTrue(new File(cacheDir, "test_1/my-schema.ser").exists());
+	}
+	
+	private void startWithMetadataCache(File cacheDir, final AtomicInteger loads) {
+		EmbeddedConfiguration ec = new EmbeddedConfiguration();
+		ec.setUseDisk(false);
+		ec.setMaxMetadataLoadThreads(4);
+		ec.setMetadataCacheDirectory(cacheDir.getAbsolutePath());
+		es.start(ec);
+		
+		es.addTranslator("y", new FakeTranslator(false) {
+			@Override
+			public void getMetadata(MetadataFactory metadataFactory, Object conn)
+					throws TranslatorException {
+				loads.incrementAndGet();
+				super.getMetadata(metadataFactory, 1);
+			}
+		});
+		es.addConnectionFactoryProvider("z", new EmbeddedServer.SimpleConnectionFactoryProvider<AtomicInteger>(new AtomicInteger()));
+	}
+	
+	private void deployMetadataCacheVDB() throws Exception {
+		ModelMetaData mmd = new ModelMetaData();
+		mmd.setName("my-schema");
+		mmd.addSourceMapping("x", "y", "z");
+		
+		ModelMetaData mmd1 = new ModelMetaData();
+		mmd1.setName("virt");
+		mmd1.setModelType(Type.VIRTUAL);
+		mmd1.setSchemaSourceType("ddl");
+		mmd1.setSchemaText("create view \"my-view\" as select * from \"my-table\"; create view v2 as select 1 as col");
+		
+		ModelMetaData mmd2 = new ModelMetaData();
+		mmd2.setName("virt2");
+		mmd2.setModelType(Type.VIRTUAL);
+		mmd2.setSchemaSourceType("ddl");
+		mmd2.setSchemaText("create view v3 as select col from v2");
+		
+		es.deployVDB("test", mmd, mmd1, mmd2);
+	}
+	
+	@Test public void testMetadataDescriptorResourceChecksum() throws Exception {
+		ModelMetaData mmd = new ModelMetaData();
+		mmd.setName("virt");
+		mmd.setModelType(Type.VIRTUAL);
+		mmd.addSourceMetadata("DDL-FILE", "/v.ddl");
+		
+		final String[] ddl = new String[] {"create view v as select 1 as col"};
+		VDBResource resource = new VDBResource() {
+			@Override
+			public InputStream openStream() throws IOException {
+				return new ByteArrayInputStream(ddl[0].getBytes("UTF-8"));
+			}
+			@Override
+			public long getSize() {
+				return ddl[0].length();
+			}
+			@Override
+			public String getName() {
+				return "v.ddl";
+			}
+		};
+		Map<String, VDBResource> resources = new HashMap<String, VDBResource>();
+		resources.put("/v.ddl", resource);
+		
+		String descriptor = EmbeddedServer.getMetadataDescriptor(mmd, resources);
+		assertEquals(descriptor, EmbeddedServer.getMetadataDescriptor(mmd, resources));
+		
+		//a changed file must not reuse the snapshot
+		ddl[0] = "create view v as select 2 as col";
+		assertFalse(descriptor.equals(EmbeddedServer.getMetadataDescriptor(mmd, resources)));
+	}
+	
 	@Test public void testBatchedUpdate() throws Exception {
 		EmbeddedConfiguration ec = new EmbeddedConfiguration();
 		
@@ -135,6 +135,18 @@ public class TestCommSockets {
 		assertTrue(Serializable.class.isAssignableFrom(fs.getReader().getClass()));
 	}
 
+	@Test public void testNio() throws Exception {
+		Properties p = new Properties();
+		p.setProperty("org.teiid.sockets.useNio", Boolean.TRUE.toString()); //$NON-NLS-1$
+		SocketServerConnection conn = helpEstablishConnection(false, new SSLConfiguration(), p);
+		FakeService fs = conn.getService(FakeService.class);
+		assertEquals((1 << 17) + 50, fs.lobMethod(new ByteArrayInputStream(new byte[1 << 17]), new StringReader(new String(new char[50]))));
+		assertEquals("hello world", ObjectConverterUtil.convertToString(fs.getReader()));
+		SocketListenerStats stats = listener.getStats();
+		assertEquals(1, stats.sockets);
+		conn.close();
+	}
+
 	@Test public void testConnectWithoutClientEncryption() throws Exception {
 		SSLConfiguration config = new SSLConfiguration();
 		config.setMode(SSLConfiguration.DISABLED);
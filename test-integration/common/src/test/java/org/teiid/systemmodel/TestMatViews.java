@@ -689,4 +689,52 @@ public class TestMatViews {
         assertEquals("ax", rs.getString(1));
     }
 	
+    @Test
+    public void testIncrementalRefresh() throws Exception {
+        ModelMetaData mmd2 = new ModelMetaData();
+        mmd2.setName("m");
+        mmd2.setModelType(Type.PHYSICAL);
+        mmd2.addSourceMapping("x", "x", null);
+        mmd2.addSourceMetadata("DDL", "CREATE foreign TABLE t (col string, ver integer); "
+                + "CREATE VIEW v1 (col1 string, ver integer, primary key (col1)) "
+                + "OPTIONS (MATERIALIZED true, \"teiid_rel:MATVIEW_INCREMENTAL_COLUMN\" 'ver') AS /*+ cache(updatable) */ select col, ver from t;");
+        
+        HardCodedExecutionFactory hcef = new HardCodedExecutionFactory() {
+            @Override
+            public boolean supportsCompareCriteriaOrdered() {
+                return true;
+            }  
+        };
+        hcef.addData("SELECT t.col, t.ver FROM t", Arrays.asList(Arrays.asList("a", 1), Arrays.asList("b", 2)));
+        hcef.addData("SELECT t.col, t.ver FROM t WHERE t.ver >= 2", Arrays.asList(Arrays.asList("b", 2), Arrays.asList("c", 3)));
+        hcef.addData("SELECT t.col, t.ver FROM t WHERE t.ver >= 3", Arrays.asList(Arrays.asList("a", 4)));
+        server.addTranslator("x", hcef);
+        
+        server.deployVDB("comp", mmd2);
+        
+        Connection c = server.getDriver().connect("jdbc:teiid:comp", null);
+        
+        Statement s = c.createStatement();
+        ResultSet rs = s.executeQuery("select count(*) from v1");
+        rs.next();
+        assertEquals(2, rs.getInt(1));
+        
+        rs = s.executeQuery("select * from (call refreshMatView('m.v1', false)) p");
+        rs.next();
+        assertEquals(2, rs.getInt(1));
+        
+        rs = s.executeQuery("select count(*) from v1");
+        rs.next();
+        assertEquals(3, rs.getInt(1));
+        
+        //the mark has advanced to 3
+        rs = s.executeQuery("select * from (call refreshMatView('m.v1', false)) p");
+        rs.next();
+        assertEquals(1, rs.getInt(1));
+        
+        rs = s.executeQuery("select ver from v1 where col1 = 'a'");
+        rs.next();
+        assertEquals(4, rs.getInt(1));
+    }
+	
 }
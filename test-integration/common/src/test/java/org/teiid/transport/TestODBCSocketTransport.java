@@ -20,6 +20,8 @@ package org.teiid.transport;
 
 import static org.junit.Assert.*;
 
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.net.InetSocketAddress;
 import java.nio.charset.Charset;
 import java.sql.Array;
@@ -39,6 +41,8 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.postgresql.Driver;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
 import org.postgresql.core.v3.ExtendedQueryExectutorImpl;
 import org.teiid.adminapi.Model.Type;
 import org.teiid.adminapi.Request.ProcessingState;
@@ -588,6 +592,44 @@ public class TestODBCSocketTransport {
 		assertTrue(rs.next());
 	}
 	
+	@Test public void testDirectValues() throws Exception {
+		Statement s = conn.createStatement();
+		ResultSet rs = s.executeQuery("select cast(-9223372036854775808 as long), cast(-32768 as short), 0, cast(null as integer), 'ab\u00e9c', cast(12 as byte)");
+		rs.next();
+		assertEquals(Long.MIN_VALUE, rs.getLong(1));
+		assertEquals(Short.MIN_VALUE, rs.getShort(2));
+		assertEquals(0, rs.getInt(3));
+		assertNull(rs.getObject(4));
+		assertEquals("ab\u00e9c", rs.getString(5));
+		assertEquals("12", rs.getString(6));
+	}
+	
+	@Test public void testCopy() throws Exception {
+		Statement s = conn.createStatement();
+		assertFalse(s.execute("create local temporary table copy_x (e1 integer, e2 string)"));
+		CopyManager cm = ((PGConnection)conn).getCopyAPI();
+		assertEquals(3, cm.copyIn("COPY copy_x FROM STDIN WITH CSV HEADER", new StringReader("e1,e2\n1,a\n2,\"b,\nc\"\n3,\n")));
+		StringWriter writer = new StringWriter();
+		assertEquals(3, cm.copyOut("COPY (select e1, e2 from copy_x order by e1) TO STDOUT", writer));
+		assertEquals("1\ta\n2\tb,\\nc\n3\t\\N\n", writer.toString());
+	}
+	
+	@Test public void testCopyLarge() throws Exception {
+		Statement s = conn.createStatement();
+		assertFalse(s.execute("create local temporary table copy_y (e1 integer, e2 string)"));
+		StringBuilder data = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			data.append(i).append("\tvalue").append(i).append('\n');
+		}
+		//more rows than are allowed to be pending, so reading is paused and resumed
+		CopyManager cm = ((PGConnection)conn).getCopyAPI();
+		assertEquals(10000, cm.copyIn("COPY copy_y FROM STDIN", new StringReader(data.toString())));
+		ResultSet rs = s.executeQuery("select count(distinct e1), max(e1) from copy_y");
+		assertTrue(rs.next());
+		assertEquals(10000, rs.getInt(1));
+		assertEquals(9999, rs.getInt(2));
+	}
+
 	@Test public void test_pg_cast() throws Exception {
 		Statement s = conn.createStatement();
 		ResultSet rs = s.executeQuery("select '2011-01-01'::date");
@@ -24,10 +24,15 @@ import java.net.InetSocketAddress;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -35,9 +40,15 @@ import org.junit.Test;
 import org.teiid.adminapi.Model.Type;
 import org.teiid.adminapi.impl.ModelMetaData;
 import org.teiid.common.buffer.BufferManagerFactory;
+import org.teiid.jdbc.ConnectionImpl;
+import org.teiid.jdbc.ConnectionProfile;
 import org.teiid.jdbc.FakeServer;
 import org.teiid.jdbc.TeiidDriver;
+import org.teiid.jdbc.TeiidSQLException;
 import org.teiid.language.QueryExpression;
+import org.teiid.net.CommunicationException;
+import org.teiid.net.ConnectionException;
+import org.teiid.net.socket.SocketServerConnectionFactory;
 import org.teiid.query.processor.TestTextTable;
 import org.teiid.runtime.EmbeddedConfiguration;
 import org.teiid.runtime.HardCodedExecutionFactory;
@@ -101,11 +112,45 @@ public class TestJDBCSocketPerformance {
 		server.stop();
 	}
 	
-	@Test public void testLargeSelects() throws Exception {
+	private Connection getConnection(boolean nio) throws SQLException {
 		Properties p = new Properties();
 		p.setProperty("user", "testuser");
 		p.setProperty("password", "testpassword");
-		Connection conn = TeiidDriver.getInstance().connect("jdbc:teiid:x@mm://"+addr.getHostName()+":" +jdbcTransport.getPort(), p);
+		TeiidDriver td = TeiidDriver.getInstance();
+		if (nio) {
+			td = new TeiidDriver();
+			td.setSocketProfile(new ConnectionProfile() {
+				
+				@Override
+				public ConnectionImpl connect(String url, Properties info)
+						throws TeiidSQLException {
+					SocketServerConnectionFactory sscf = new SocketServerConnectionFactory();
+					Properties props = new Properties(info);
+					props.setProperty("org.teiid.sockets.useNio", "true");
+					sscf.initialize(props);
+					try {
+						return new ConnectionImpl(sscf.getConnection(info), info, url);
+					} catch (CommunicationException e) {
+						throw TeiidSQLException.create(e);
+					} catch (ConnectionException e) {
+						throw TeiidSQLException.create(e);
+					}
+				}
+			});
+		}
+		return td.connect("jdbc:teiid:x@mm://"+addr.getHostName()+":" +jdbcTransport.getPort(), p);
+	}
+	
+	@Test public void testLargeSelects() throws Exception {
+		largeSelects(false);
+	}
+	
+	@Test public void testLargeSelectsNio() throws Exception {
+		largeSelects(true);
+	}
+	
+	private void largeSelects(boolean nio) throws Exception {
+		Connection conn = getConnection(nio);
 		long start = System.currentTimeMillis();
 		for (int j = 0; j < 10; j++) {
 			Statement s = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
@@ -121,12 +166,52 @@ public class TestJDBCSocketPerformance {
 	}
 	
 	@Test public void testSmallSelects() throws Exception {
-		Properties p = new Properties();
-		p.setProperty("user", "testuser");
-		p.setProperty("password", "testpassword");
-		Connection conn = TeiidDriver.getInstance().connect("jdbc:teiid:x@mm://"+addr.getHostName()+":" +jdbcTransport.getPort(), p);
+		smallSelects(getConnection(false), 1000);
+	}
+	
+	@Test public void testSmallSelectsNio() throws Exception {
+		smallSelects(getConnection(true), 1000);
+	}
+	
+	/**
+	 * Many threads sharing a connection, which all wait on results from the same socket
+	 */
+	@Test public void testConcurrentSmallSelects() throws Exception {
+		concurrentSmallSelects(false);
+	}
+	
+	@Test public void testConcurrentSmallSelectsNio() throws Exception {
+		concurrentSmallSelects(true);
+	}
+	
+	private void concurrentSmallSelects(boolean nio) throws Exception {
+		final Connection conn = getConnection(nio);
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			long start = System.currentTimeMillis();
+			for (int i = 0; i < 16; i++) {
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						smallSelects(conn, 200);
+						return null;
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+			System.out.println((System.currentTimeMillis() - start));
+		} finally {
+			executor.shutdownNow();
+			conn.close();
+		}
+	}
+	
+	private void smallSelects(Connection conn, int count) throws Exception {
 		long start = System.currentTimeMillis();
-		for (int j = 0; j < 1000; j++) {
+		for (int j = 0; j < count; j++) {
 			Statement s = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
 			assertTrue(s.execute("select 1"));
 			ResultSet rs = s.getResultSet();
@@ -141,10 +226,7 @@ public class TestJDBCSocketPerformance {
 	
 	//TODO: this isn't a socket test per se, but does show a performance bump with multi-threaded texttable execution
 	@Test public void testTextTable() throws Exception {
-		Properties p = new Properties();
-		p.setProperty("user", "testuser");
-		p.setProperty("password", "testpassword");
-		Connection conn = TeiidDriver.getInstance().connect("jdbc:teiid:x@mm://"+addr.getHostName()+":" +jdbcTransport.getPort(), p);
+		Connection conn = getConnection(false);
 		for (int j = 0; j < 10; j++) {
 			PreparedStatement ps = conn.prepareStatement("select * from (select * from texttable(cast (? as clob) columns x string width 100000 no row delimiter) as x limit 1) as x, texttable(cast (? as clob) columns x string width 100 no row delimiter) as y");
 
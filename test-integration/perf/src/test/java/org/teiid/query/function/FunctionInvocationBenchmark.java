@@ -0,0 +1,119 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.teiid.query.function;
+
+import java.lang.reflect.Method;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.query.unittest.RealMetadataFactory;
+
+/**
+ * Compares the per call cost of {@link FunctionDescriptor#invokeFunction(Object[], org.teiid.query.util.CommandContext, Object)}
+ * with direct reflective invocation for common string and date system functions.
+ * <br>
+ * Run with the perf profile or directly via the main method.
+ */
+@SuppressWarnings("nls")
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FunctionInvocationBenchmark {
+
+	private FunctionDescriptor concat;
+	private FunctionDescriptor substring;
+	private FunctionDescriptor ucase;
+	private FunctionDescriptor dayOfMonth;
+	private FunctionDescriptor timestampAdd;
+	private Method concatMethod;
+	private Method timestampAddMethod;
+
+	private Date date = new Date(1500000000000L);
+	private Timestamp timestamp = new Timestamp(1500000000000L);
+
+	@Setup
+	public void setup() {
+		FunctionLibrary library = RealMetadataFactory.SFM.getSystemFunctionLibrary();
+		concat = library.findFunction("concat", new Class<?>[] {DataTypeManager.DefaultDataClasses.STRING, DataTypeManager.DefaultDataClasses.STRING});
+		substring = library.findFunction("substring", new Class<?>[] {DataTypeManager.DefaultDataClasses.STRING, DataTypeManager.DefaultDataClasses.INTEGER, DataTypeManager.DefaultDataClasses.INTEGER});
+		ucase = library.findFunction("ucase", new Class<?>[] {DataTypeManager.DefaultDataClasses.STRING});
+		dayOfMonth = library.findFunction("dayofmonth", new Class<?>[] {DataTypeManager.DefaultDataClasses.DATE});
+		timestampAdd = library.findFunction("timestampadd", new Class<?>[] {DataTypeManager.DefaultDataClasses.STRING, DataTypeManager.DefaultDataClasses.INTEGER, DataTypeManager.DefaultDataClasses.TIMESTAMP});
+		concatMethod = concat.getInvocationMethod();
+		timestampAddMethod = timestampAdd.getInvocationMethod();
+	}
+
+	@Benchmark
+	public Object concat() throws Exception {
+		return concat.invokeFunction(new Object[] {"hello", "world"}, null, null);
+	}
+
+	@Benchmark
+	public Object concatReflective() throws Exception {
+		return concatMethod.invoke(null, "hello", "world");
+	}
+
+	@Benchmark
+	public Object substring() throws Exception {
+		return substring.invokeFunction(new Object[] {"hello world", 2, 5}, null, null);
+	}
+
+	@Benchmark
+	public Object ucase() throws Exception {
+		return ucase.invokeFunction(new Object[] {"hello world"}, null, null);
+	}
+
+	@Benchmark
+	public Object dayOfMonth() throws Exception {
+		return dayOfMonth.invokeFunction(new Object[] {date}, null, null);
+	}
+
+	@Benchmark
+	public Object timestampAdd() throws Exception {
+		return timestampAdd.invokeFunction(new Object[] {"SQL_TSI_DAY", 3, timestamp}, null, null);
+	}
+
+	@Benchmark
+	public Object timestampAddReflective() throws Exception {
+		return timestampAddMethod.invoke(null, "SQL_TSI_DAY", 3, timestamp);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(FunctionInvocationBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}